@@ -17,6 +17,7 @@
 package org.killbill.billing.account.dao;
 
 import java.sql.SQLException;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 
@@ -46,6 +47,7 @@ import org.killbill.billing.util.customfield.StringCustomField;
 import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
+import org.killbill.billing.util.entity.SeekPagination;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
@@ -104,6 +106,45 @@ public class TestAccountDao extends AccountTestSuiteWithEmbeddedDB {
         Assert.assertEquals(auditLogsForAccount.get(0).getChangeType(), ChangeType.INSERT);
     }
 
+    @Test(groups = "slow", description = "Test Account DAO: seek pagination")
+    public void testSeekPagination() throws AccountApiException {
+        final List<UUID> accountIds = new LinkedList<UUID>();
+        for (int i = 0; i < 5; i++) {
+            final AccountModelDao account = createTestAccount();
+            accountDao.create(account, internalCallContext);
+            accountIds.add(account.getId());
+        }
+
+        final List<UUID> seekAccountIds = new LinkedList<UUID>();
+        Long offset = SeekPagination.FIRST_PAGE_OFFSET;
+        int nbPages = 0;
+        while (offset != null) {
+            final Pagination<AccountModelDao> page = accountDao.get(offset, 2L, internalCallContext);
+            // No count in seek mode
+            Assert.assertNull(page.getTotalNbRecords());
+            Assert.assertNull(page.getMaxNbRecords());
+
+            final List<AccountModelDao> accounts = ImmutableList.<AccountModelDao>copyOf(page);
+            if (nbPages == 1) {
+                // Same page as with offsets
+                final List<AccountModelDao> offsetAccounts = ImmutableList.<AccountModelDao>copyOf(accountDao.get(2L, 2L, internalCallContext));
+                Assert.assertEquals(accounts.size(), offsetAccounts.size());
+                for (int i = 0; i < accounts.size(); i++) {
+                    Assert.assertEquals(accounts.get(i).getId(), offsetAccounts.get(i).getId());
+                }
+            }
+            for (final AccountModelDao account : accounts) {
+                seekAccountIds.add(account.getId());
+            }
+
+            offset = page.getNextOffset();
+            nbPages++;
+        }
+
+        Assert.assertEquals(nbPages, 3);
+        Assert.assertEquals(seekAccountIds, accountIds);
+    }
+
     @Test(groups = "slow", description = "Test Account: verify audits")
     public void testAudits() throws AccountApiException {
         // Special test to verify audits - they are handled a bit differently due to the account record id (see EntitySqlDaoWrapperInvocationHandler#insertAudits)
@@ -19,7 +19,9 @@ package org.killbill.billing.catalog;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 import javax.xml.bind.annotation.XmlAccessType;
@@ -92,6 +94,10 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
 
     private URI catalogURI;
 
+    // Indexes by name, built in initialize (or on first use for catalogs built programmatically) and reset by the setters
+    private volatile Map<String, DefaultPlan> plansByName;
+    private volatile Map<String, DefaultProduct> productsByName;
+
     public StandaloneCatalog() {
     }
 
@@ -181,28 +187,78 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
 
     @Override
     public DefaultPlan findCurrentPlan(final String name) throws CatalogApiException {
-        if (name == null || plans == null) {
+        final DefaultPlan plan = findCurrentPlanOrNull(name);
+        if (plan == null) {
             throw new CatalogApiException(ErrorCode.CAT_NO_SUCH_PLAN, name);
         }
-        for (final DefaultPlan p : plans) {
-            if (p.getName().equals(name)) {
-                return p;
-            }
+        return plan;
+    }
+
+    /**
+     * Same as findCurrentPlan, but returns null instead of throwing when the plan doesn't exist in this version
+     * (e.g. it has been retired), for callers which walk through the catalog versions.
+     *
+     * @param name the plan name
+     * @return the plan or null if not found
+     */
+    @Nullable
+    public DefaultPlan findCurrentPlanOrNull(@Nullable final String name) {
+        if (name == null || plans == null) {
+            return null;
         }
-        throw new CatalogApiException(ErrorCode.CAT_NO_SUCH_PLAN, name);
+        return getPlansByName().get(name);
     }
 
     @Override
     public Product findCurrentProduct(final String name) throws CatalogApiException {
-        if (name == null || products == null) {
+        final DefaultProduct product = findCurrentProductOrNull(name);
+        if (product == null) {
             throw new CatalogApiException(ErrorCode.CAT_NO_SUCH_PRODUCT, name);
         }
-        for (final DefaultProduct p : products) {
-            if (p.getName().equals(name)) {
-                return p;
+        return product;
+    }
+
+    /**
+     * Same as findCurrentProduct, but returns null instead of throwing when the product doesn't exist.
+     *
+     * @param name the product name
+     * @return the product or null if not found
+     */
+    @Nullable
+    public DefaultProduct findCurrentProductOrNull(@Nullable final String name) {
+        if (name == null || products == null) {
+            return null;
+        }
+        return getProductsByName().get(name);
+    }
+
+    private Map<String, DefaultPlan> getPlansByName() {
+        Map<String, DefaultPlan> result = plansByName;
+        if (result == null) {
+            result = new HashMap<String, DefaultPlan>();
+            for (final DefaultPlan p : plans) {
+                // Keep the first match, as the previous linear scan did
+                if (!result.containsKey(p.getName())) {
+                    result.put(p.getName(), p);
+                }
             }
+            plansByName = result;
         }
-        throw new CatalogApiException(ErrorCode.CAT_NO_SUCH_PRODUCT, name);
+        return result;
+    }
+
+    private Map<String, DefaultProduct> getProductsByName() {
+        Map<String, DefaultProduct> result = productsByName;
+        if (result == null) {
+            result = new HashMap<String, DefaultProduct>();
+            for (final DefaultProduct p : products) {
+                if (!result.containsKey(p.getName())) {
+                    result.put(p.getName(), p);
+                }
+            }
+            productsByName = result;
+        }
+        return result;
     }
 
     @Override
@@ -284,6 +340,10 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
             p.initialize(catalog, sourceURI);
         }
 
+        plansByName = null;
+        productsByName = null;
+        getPlansByName();
+        getProductsByName();
     }
 
     //////////////////////////////////////////////////////////////////////////////
@@ -300,6 +360,7 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
 
     protected StandaloneCatalog setProducts(final DefaultProduct[] products) {
         this.products = products;
+        this.productsByName = null;
         return this;
     }
 
@@ -315,6 +376,7 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
 
     protected StandaloneCatalog setPlans(final DefaultPlan[] plans) {
         this.plans = plans;
+        this.plansByName = null;
         return this;
     }
 
@@ -25,6 +25,7 @@ import java.util.regex.Matcher;
 import javax.annotation.Nullable;
 
 import org.joda.time.DateTime;
+import org.killbill.billing.ErrorCode;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.BillingActionPolicy;
@@ -155,6 +156,35 @@ public class StandaloneCatalogWithPriceOverride extends ValidatingConfig<Standal
         return standaloneCatalog.findCurrentPlan(planName);
     }
 
+    /**
+     * Same as findCurrentPlan, but returns null instead of throwing when the plan (or, for an overridden plan, its parent plan)
+     * doesn't exist in this version.
+     *
+     * @param planName the plan name
+     * @return the plan or null if not found
+     * @throws CatalogApiException if the overridden plan cannot be retrieved
+     */
+    @Nullable
+    public Plan findCurrentPlanOrNull(final String planName) throws CatalogApiException {
+        final Matcher m = DefaultPriceOverride.CUSTOM_PLAN_NAME_PATTERN.matcher(planName);
+        if (m.matches()) {
+            // The parent plan has been retired in this version
+            if (standaloneCatalog.findCurrentPlanOrNull(m.group(1)) == null) {
+                return null;
+            }
+
+            try {
+                return findCurrentPlan(planName);
+            } catch (final CatalogApiException e) {
+                if (e.getCode() != ErrorCode.CAT_NO_SUCH_PLAN.getCode()) {
+                    throw e;
+                }
+                return null;
+            }
+        }
+        return standaloneCatalog.findCurrentPlanOrNull(planName);
+    }
+
     @Override
     public Product findCurrentProduct(final String productName) throws CatalogApiException {
         return standaloneCatalog.findCurrentProduct(productName);
@@ -97,23 +97,25 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
         return versions.get(indexOfVersionForDate(date.toDate()));
     }
 
-    private List<StandaloneCatalogWithPriceOverride> versionsBeforeDate(final Date date) throws CatalogApiException {
-        final List<StandaloneCatalogWithPriceOverride> result = new ArrayList<StandaloneCatalogWithPriceOverride>();
-        final int index = indexOfVersionForDate(date);
-        for (int i = 0; i <= index; i++) {
-            result.add(versions.get(i));
-        }
-        return result;
-    }
-
+    // Binary search for the latest version effective at that date (versions are sorted by effective date)
     private int indexOfVersionForDate(final Date date) throws CatalogApiException {
-        for (int i = versions.size() - 1; i >= 0; i--) {
-            final StandaloneCatalogWithPriceOverride c = versions.get(i);
-            if (c.getEffectiveDate().getTime() <= date.getTime()) {
-                return i;
+        int low = 0;
+        int high = versions.size() - 1;
+        int result = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (versions.get(mid).getEffectiveDate().getTime() <= date.getTime()) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
             }
         }
-        throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, date.toString());
+
+        if (result < 0) {
+            throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, date.toString());
+        }
+        return result;
     }
 
     private class PlanRequestWrapper {
@@ -136,11 +138,20 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
             this.overrides = overrides;
         }
 
+        // Returns null if the plan doesn't exist in that version
+        @Nullable
         public Plan findPlan(final StandaloneCatalogWithPriceOverride catalog) throws CatalogApiException {
             if (name != null) {
-                return catalog.findCurrentPlan(name);
-            } else {
+                return catalog.findCurrentPlanOrNull(name);
+            }
+
+            try {
                 return catalog.createOrFindCurrentPlan(productName, bp, priceListName, overrides);
+            } catch (CatalogApiException e) {
+                if (e.getCode() != ErrorCode.CAT_NO_SUCH_PLAN.getCode()) {
+                    throw e;
+                }
+                return null;
             }
         }
     }
@@ -149,23 +160,14 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
                           final DateTime requestedDate,
                           final DateTime subscriptionStartDate)
             throws CatalogApiException {
-        final List<StandaloneCatalogWithPriceOverride> catalogs = versionsBeforeDate(requestedDate.toDate());
-        if (catalogs.size() == 0) {
-            throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, requestedDate.toDate().toString());
-        }
+        final int index = indexOfVersionForDate(requestedDate.toDate());
 
-        for (int i = catalogs.size() - 1; i >= 0; i--) { // Working backwards to find the latest applicable plan
-            final StandaloneCatalogWithPriceOverride c = catalogs.get(i);
-            Plan plan;
-            try {
-                plan = wrapper.findPlan(c);
-            } catch (CatalogApiException e) {
-                if (e.getCode() != ErrorCode.CAT_NO_SUCH_PLAN.getCode()) {
-                    throw e;
-                } else {
-                    // If we can't find an entry it probably means the plan has been retired so we keep looking...
-                    continue;
-                }
+        for (int i = index; i >= 0; i--) { // Working backwards to find the latest applicable plan
+            final StandaloneCatalogWithPriceOverride c = versions.get(i);
+            final Plan plan = wrapper.findPlan(c);
+            if (plan == null) {
+                // If we can't find an entry it probably means the plan has been retired so we keep looking...
+                continue;
             }
 
             DateTime catalogEffectiveDate = new DateTime(c.getEffectiveDate());
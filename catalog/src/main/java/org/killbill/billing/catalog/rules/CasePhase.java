@@ -52,6 +52,10 @@ public abstract class CasePhase<T> extends CaseStandardNaming<T> {
 
     }
 
+    public PhaseType getPhaseType() {
+        return phaseType;
+    }
+
     @Override
     public ValidationErrors validate(final StandaloneCatalog catalog, final ValidationErrors errors) {
         return errors;
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.catalog.DefaultProduct;
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.catalog.api.PlanSpecifier;
+import org.killbill.billing.catalog.rules.CompiledCases.MemoizedResults;
+import org.killbill.billing.catalog.rules.CompiledCases.ProductIndex;
+import org.killbill.billing.catalog.rules.CompiledCases.SpecifierResolver;
+
+/**
+ * Decision table compiled from an array of change cases, equivalent to CaseChange#getResult.
+ * <p/>
+ * The cases are bucketed per from product name (see CompiledCases).
+ */
+class CompiledCaseChanges<T> {
+
+    private final CaseChange<T>[] cases;
+    private final ProductIndex fromProductIndex;
+    private final MemoizedResults<T> results = new MemoizedResults<T>();
+
+    CompiledCaseChanges(@Nullable final CaseChange<T>[] cases) {
+        this.cases = cases;
+        final List<DefaultProduct> fromProductPerCase = new ArrayList<DefaultProduct>();
+        if (cases != null) {
+            for (final CaseChange<T> cur : cases) {
+                fromProductPerCase.add(cur.getFromProduct());
+            }
+        }
+        this.fromProductIndex = new ProductIndex(fromProductPerCase);
+    }
+
+    public T getResult(final PlanPhaseSpecifier from, final PlanSpecifier to, final StandaloneCatalog catalog) throws CatalogApiException {
+        if (cases == null) {
+            return null;
+        }
+
+        final List<Object> key = Arrays.<Object>asList(from.getProductName(), from.getProductCategory(), from.getBillingPeriod(), from.getPriceListName(), from.getPhaseType(),
+                                                       to.getProductName(), to.getProductCategory(), to.getBillingPeriod(), to.getPriceListName());
+        if (results.contains(key)) {
+            return results.get(key);
+        }
+
+        final T result = computeResult(from, to, catalog);
+        results.put(key, result);
+        return result;
+    }
+
+    private T computeResult(final PlanPhaseSpecifier from, final PlanSpecifier to, final StandaloneCatalog catalog) throws CatalogApiException {
+        final SpecifierResolver fromResolver = new SpecifierResolver(new PlanSpecifier(from), catalog);
+        final SpecifierResolver toResolver = new SpecifierResolver(to, catalog);
+        for (final int i : fromProductIndex.getCandidates(from.getProductName(), catalog)) {
+            final CaseChange<T> cur = cases[i];
+            if (satisfiesCase(cur, from, to, fromResolver, toResolver)) {
+                final T result = cur.getResult();
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Same checks, in the same order, as CaseChange#getResult
+    private boolean satisfiesCase(final CaseChange<T> cur, final PlanPhaseSpecifier from, final PlanSpecifier to,
+                                  final SpecifierResolver fromResolver, final SpecifierResolver toResolver) throws CatalogApiException {
+        return (cur.getPhaseType() == null || from.getPhaseType() == cur.getPhaseType()) &&
+               (cur.getFromProduct() == null || cur.getFromProduct().equals(fromResolver.getProduct())) &&
+               (cur.getFromProductCategory() == null || cur.getFromProductCategory().equals(from.getProductCategory())) &&
+               (cur.getFromBillingPeriod() == null || cur.getFromBillingPeriod().equals(from.getBillingPeriod())) &&
+               (cur.getToProduct() == null || cur.getToProduct().equals(toResolver.getProduct())) &&
+               (cur.getToProductCategory() == null || cur.getToProductCategory().equals(to.getProductCategory())) &&
+               (cur.getToBillingPeriod() == null || cur.getToBillingPeriod().equals(to.getBillingPeriod())) &&
+               (cur.getFromPriceList() == null || cur.getFromPriceList().equals(fromResolver.getPriceList())) &&
+               (cur.getToPriceList() == null || cur.getToPriceList().equals(toResolver.getPriceList()));
+    }
+}
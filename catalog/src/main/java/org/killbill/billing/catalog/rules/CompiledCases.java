@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.catalog.DefaultPriceList;
+import org.killbill.billing.catalog.DefaultProduct;
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.PhaseType;
+import org.killbill.billing.catalog.api.PlanSpecifier;
+import org.killbill.billing.catalog.api.Product;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * Decision table compiled from an array of cases, equivalent to Case#getResult and CasePhase#getResult.
+ * <p/>
+ * The cases are bucketed per product name: each bucket lists, in declaration order (the first matching case wins),
+ * the cases for that product and the cases which don't specify any product. The product and price list of the
+ * specifier are resolved at most once per lookup, and the results are memoized per specifier.
+ */
+class CompiledCases<T> {
+
+    private final Case<T>[] cases;
+    private final ProductIndex productIndex;
+    private final MemoizedResults<T> results = new MemoizedResults<T>();
+
+    CompiledCases(@Nullable final Case<T>[] cases) {
+        this.cases = cases;
+        final List<DefaultProduct> productPerCase = new ArrayList<DefaultProduct>();
+        if (cases != null) {
+            for (final Case<T> cur : cases) {
+                productPerCase.add(cur.getProduct());
+            }
+        }
+        this.productIndex = new ProductIndex(productPerCase);
+    }
+
+    public T getResult(final PlanSpecifier specifier, @Nullable final PhaseType phaseType, final StandaloneCatalog catalog) throws CatalogApiException {
+        if (cases == null) {
+            return null;
+        }
+
+        final List<Object> key = Arrays.<Object>asList(specifier.getProductName(), specifier.getProductCategory(), specifier.getBillingPeriod(), specifier.getPriceListName(), phaseType);
+        if (results.contains(key)) {
+            return results.get(key);
+        }
+
+        final T result = computeResult(specifier, phaseType, catalog);
+        results.put(key, result);
+        return result;
+    }
+
+    private T computeResult(final PlanSpecifier specifier, @Nullable final PhaseType phaseType, final StandaloneCatalog catalog) throws CatalogApiException {
+        final SpecifierResolver resolver = new SpecifierResolver(specifier, catalog);
+        for (final int i : productIndex.getCandidates(specifier.getProductName(), catalog)) {
+            final Case<T> cur = cases[i];
+            if (satisfiesCase(cur, specifier, phaseType, resolver)) {
+                final T result = cur.getResult();
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Same checks, in the same order, as CasePhase#getResult and Case#satisfiesCase
+    private boolean satisfiesCase(final Case<T> cur, final PlanSpecifier specifier, @Nullable final PhaseType phaseType, final SpecifierResolver resolver) throws CatalogApiException {
+        if (cur instanceof CasePhase) {
+            final PhaseType casePhaseType = ((CasePhase<T>) cur).getPhaseType();
+            if (casePhaseType != null && casePhaseType != phaseType) {
+                return false;
+            }
+        }
+        return (cur.getProduct() == null || cur.getProduct().equals(resolver.getProduct())) &&
+               (cur.getProductCategory() == null || cur.getProductCategory().equals(specifier.getProductCategory())) &&
+               (cur.getBillingPeriod() == null || cur.getBillingPeriod().equals(specifier.getBillingPeriod())) &&
+               (cur.getPriceList() == null || cur.getPriceList().equals(resolver.getPriceList()));
+    }
+
+    /**
+     * Indexes of the cases to evaluate for a given product name, in declaration order.
+     */
+    static class ProductIndex {
+
+        private final int[] allCandidates;
+        private final int[] candidatesForOtherProducts;
+        private final Map<String, int[]> candidatesPerProductName;
+
+        ProductIndex(final List<DefaultProduct> productPerCase) {
+            final List<Integer> all = new ArrayList<Integer>();
+            final List<Integer> withoutProduct = new ArrayList<Integer>();
+            final Map<String, List<Integer>> perProductName = new HashMap<String, List<Integer>>();
+            for (int i = 0; i < productPerCase.size(); i++) {
+                all.add(i);
+                final DefaultProduct product = productPerCase.get(i);
+                if (product == null) {
+                    withoutProduct.add(i);
+                    // The cases without product apply to all the buckets
+                    for (final List<Integer> candidates : perProductName.values()) {
+                        candidates.add(i);
+                    }
+                } else if (perProductName.get(product.getName()) == null) {
+                    final List<Integer> candidates = new ArrayList<Integer>(withoutProduct);
+                    candidates.add(i);
+                    perProductName.put(product.getName(), candidates);
+                } else {
+                    perProductName.get(product.getName()).add(i);
+                }
+            }
+
+            this.allCandidates = Ints.toArray(all);
+            this.candidatesForOtherProducts = Ints.toArray(withoutProduct);
+            this.candidatesPerProductName = new HashMap<String, int[]>();
+            for (final String productName : perProductName.keySet()) {
+                candidatesPerProductName.put(productName, Ints.toArray(perProductName.get(productName)));
+            }
+        }
+
+        int[] getCandidates(@Nullable final String productName, final StandaloneCatalog catalog) {
+            if (catalog.findCurrentProductOrNull(productName) == null) {
+                // Unknown product: evaluate all the cases, so that the missing product is reported exactly as the linear evaluation does
+                return allCandidates;
+            }
+
+            final int[] candidates = candidatesPerProductName.get(productName);
+            return candidates != null ? candidates : candidatesForOtherProducts;
+        }
+    }
+
+    /**
+     * Resolves the product and price list of a specifier the first time a case needs them.
+     */
+    static class SpecifierResolver {
+
+        private final PlanSpecifier specifier;
+        private final StandaloneCatalog catalog;
+
+        private Product product;
+        private DefaultPriceList priceList;
+
+        SpecifierResolver(final PlanSpecifier specifier, final StandaloneCatalog catalog) {
+            this.specifier = specifier;
+            this.catalog = catalog;
+        }
+
+        Product getProduct() throws CatalogApiException {
+            if (product == null) {
+                product = catalog.findCurrentProduct(specifier.getProductName());
+            }
+            return product;
+        }
+
+        DefaultPriceList getPriceList() throws CatalogApiException {
+            if (priceList == null) {
+                priceList = catalog.findCurrentPriceList(specifier.getPriceListName());
+            }
+            return priceList;
+        }
+    }
+
+    /**
+     * Results memoized per specifier (lookups which throw are not memoized).
+     */
+    static class MemoizedResults<T> {
+
+        // Bound the memory used, the specifiers come from the subscriptions and API calls
+        private static final int MAX_RESULTS = 10000;
+        private static final Object NO_RESULT = new Object();
+
+        private final ConcurrentMap<List<Object>, Object> results = new ConcurrentHashMap<List<Object>, Object>();
+
+        boolean contains(final List<Object> key) {
+            return results.containsKey(key);
+        }
+
+        T get(final List<Object> key) {
+            final Object result = results.get(key);
+            return result == NO_RESULT ? null : (T) result;
+        }
+
+        void put(final List<Object> key, @Nullable final T result) {
+            if (results.size() < MAX_RESULTS) {
+                results.put(key, result == null ? NO_RESULT : result);
+            }
+        }
+    }
+}
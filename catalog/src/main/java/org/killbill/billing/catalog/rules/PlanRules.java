@@ -16,6 +16,8 @@
 
 package org.killbill.billing.catalog.rules;
 
+import java.net.URI;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
@@ -62,16 +64,25 @@ public class PlanRules extends ValidatingConfig<StandaloneCatalog> {
     @XmlElement(name = "priceListCase", required = false)
     private CasePriceList[] priceListCase;
 
+    // Compiled from the cases above in initialize (or on first use) and reset by the setters
+    private volatile CompiledPlanRules compiledPlanRules;
+
+    @Override
+    public void initialize(final StandaloneCatalog catalog, final URI sourceURI) {
+        super.initialize(catalog, sourceURI);
+        compiledPlanRules = new CompiledPlanRules(this);
+    }
+
     public PlanAlignmentCreate getPlanCreateAlignment(final PlanSpecifier specifier, final StandaloneCatalog catalog) throws CatalogApiException {
-        return Case.getResult(createAlignmentCase, specifier, catalog);
+        return getCompiledPlanRules().createAlignmentCase.getResult(specifier, null, catalog);
     }
 
     public BillingActionPolicy getPlanCancelPolicy(final PlanPhaseSpecifier planPhase, final StandaloneCatalog catalog) throws CatalogApiException {
-        return CasePhase.getResult(cancelCase, planPhase, catalog);
+        return getCompiledPlanRules().cancelCase.getResult(new PlanSpecifier(planPhase), planPhase.getPhaseType(), catalog);
     }
 
     public BillingAlignment getBillingAlignment(final PlanPhaseSpecifier planPhase, final StandaloneCatalog catalog) throws CatalogApiException {
-        return CasePhase.getResult(billingAlignmentCase, planPhase, catalog);
+        return getCompiledPlanRules().billingAlignmentCase.getResult(new PlanSpecifier(planPhase), planPhase.getPhaseType(), catalog);
     }
 
     public PlanChangeResult planChange(final PlanPhaseSpecifier from, PlanSpecifier to, final StandaloneCatalog catalog) throws CatalogApiException {
@@ -95,7 +106,7 @@ public class PlanRules extends ValidatingConfig<StandaloneCatalog> {
 
     public PlanAlignmentChange getPlanChangeAlignment(final PlanPhaseSpecifier from,
                                                       final PlanSpecifier to, final StandaloneCatalog catalog) throws CatalogApiException {
-        return CaseChange.getResult(changeAlignmentCase, from, to, catalog);
+        return getCompiledPlanRules().changeAlignmentCase.getResult(from, to, catalog);
     }
 
     public BillingActionPolicy getPlanChangePolicy(final PlanPhaseSpecifier from,
@@ -107,11 +118,11 @@ public class PlanRules extends ValidatingConfig<StandaloneCatalog> {
         }
         //Plan toPlan = catalog.findPlan()
 
-        return CaseChange.getResult(changeCase, from, to, catalog);
+        return getCompiledPlanRules().changeCase.getResult(from, to, catalog);
     }
 
     private DefaultPriceList findPriceList(final PlanSpecifier specifier, final StandaloneCatalog catalog) throws CatalogApiException {
-        DefaultPriceList result = Case.getResult(priceListCase, specifier, catalog);
+        DefaultPriceList result = getCompiledPlanRules().priceListCase.getResult(specifier, null, catalog);
         if (result == null) {
             result = catalog.findCurrentPriceList(specifier.getPriceListName());
         }
@@ -119,6 +130,15 @@ public class PlanRules extends ValidatingConfig<StandaloneCatalog> {
     }
 
 
+    private CompiledPlanRules getCompiledPlanRules() {
+        CompiledPlanRules result = compiledPlanRules;
+        if (result == null) {
+            result = new CompiledPlanRules(this);
+            compiledPlanRules = result;
+        }
+        return result;
+    }
+
     @Override
     public ValidationErrors validate(final StandaloneCatalog catalog, final ValidationErrors errors) {
         //TODO: MDW - Validation: check that the plan change special case pairs are unique!
@@ -136,34 +156,58 @@ public class PlanRules extends ValidatingConfig<StandaloneCatalog> {
 
     protected PlanRules setChangeCase(final CaseChangePlanPolicy[] changeCase) {
         this.changeCase = changeCase;
+        this.compiledPlanRules = null;
         return this;
     }
 
     protected PlanRules setChangeAlignmentCase(
             final CaseChangePlanAlignment[] changeAlignmentCase) {
         this.changeAlignmentCase = changeAlignmentCase;
+        this.compiledPlanRules = null;
         return this;
     }
 
     protected PlanRules setCancelCase(final CaseCancelPolicy[] cancelCase) {
         this.cancelCase = cancelCase;
+        this.compiledPlanRules = null;
         return this;
     }
 
     protected PlanRules setCreateAlignmentCase(final CaseCreateAlignment[] createAlignmentCase) {
         this.createAlignmentCase = createAlignmentCase;
+        this.compiledPlanRules = null;
         return this;
     }
 
     protected PlanRules setBillingAlignmentCase(
             final CaseBillingAlignment[] billingAlignmentCase) {
         this.billingAlignmentCase = billingAlignmentCase;
+        this.compiledPlanRules = null;
         return this;
     }
 
     protected PlanRules setPriceListCase(final CasePriceList[] priceListCase) {
         this.priceListCase = priceListCase;
+        this.compiledPlanRules = null;
         return this;
     }
 
+    private static final class CompiledPlanRules {
+
+        private final CompiledCaseChanges<BillingActionPolicy> changeCase;
+        private final CompiledCaseChanges<PlanAlignmentChange> changeAlignmentCase;
+        private final CompiledCases<BillingActionPolicy> cancelCase;
+        private final CompiledCases<PlanAlignmentCreate> createAlignmentCase;
+        private final CompiledCases<BillingAlignment> billingAlignmentCase;
+        private final CompiledCases<DefaultPriceList> priceListCase;
+
+        private CompiledPlanRules(final PlanRules planRules) {
+            this.changeCase = new CompiledCaseChanges<BillingActionPolicy>(planRules.changeCase);
+            this.changeAlignmentCase = new CompiledCaseChanges<PlanAlignmentChange>(planRules.changeAlignmentCase);
+            this.cancelCase = new CompiledCases<BillingActionPolicy>(planRules.cancelCase);
+            this.createAlignmentCase = new CompiledCases<PlanAlignmentCreate>(planRules.createAlignmentCase);
+            this.billingAlignmentCase = new CompiledCases<BillingAlignment>(planRules.billingAlignmentCase);
+            this.priceListCase = new CompiledCases<DefaultPriceList>(planRules.priceListCase);
+        }
+    }
 }
@@ -19,6 +19,7 @@ package org.killbill.billing.catalog;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import org.killbill.billing.ErrorCode;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.PhaseType;
 
@@ -45,4 +46,32 @@ public class TestStandaloneCatalog extends CatalogTestSuiteNoDB {
         Assert.assertEquals(cat.findCurrentPhase("TestPlan1-trial"), phaseTrial1);
         Assert.assertEquals(cat.findCurrentPhase("TestPlan2-trial"), phaseTrial2);
     }
+
+    @Test(groups = "fast")
+    public void testFindPlanAndProductByName() throws CatalogApiException {
+        final DefaultPlan plan1 = new MockPlan().setName("TestPlan1");
+        final DefaultPlan plan2 = new MockPlan().setName("TestPlan2");
+        final StandaloneCatalog cat = new MockCatalog().setPlans(new DefaultPlan[]{plan1, plan2});
+
+        Assert.assertEquals(cat.findCurrentPlan("TestPlan1"), plan1);
+        Assert.assertEquals(cat.findCurrentPlanOrNull("TestPlan2"), plan2);
+        Assert.assertNull(cat.findCurrentPlanOrNull("UnknownPlan"));
+        Assert.assertNull(cat.findCurrentPlanOrNull(null));
+        try {
+            cat.findCurrentPlan("UnknownPlan");
+            Assert.fail();
+        } catch (final CatalogApiException e) {
+            Assert.assertEquals(e.getCode(), ErrorCode.CAT_NO_SUCH_PLAN.getCode());
+        }
+
+        // The index is reset when the plans are replaced
+        final DefaultPlan plan3 = new MockPlan().setName("TestPlan3");
+        cat.setPlans(new DefaultPlan[]{plan3});
+        Assert.assertNull(cat.findCurrentPlanOrNull("TestPlan1"));
+        Assert.assertEquals(cat.findCurrentPlan("TestPlan3"), plan3);
+
+        for (final DefaultProduct product : cat.getCurrentProducts()) {
+            Assert.assertEquals(cat.findCurrentProduct(product.getName()), product);
+        }
+    }
 }
@@ -28,11 +28,18 @@ import javax.xml.transform.TransformerException;
 
 import org.joda.time.DateTime;
 import org.killbill.billing.ErrorCode;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.catalog.api.InvalidConfigException;
 import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.StaticCatalog;
+import org.killbill.billing.catalog.override.PriceOverride;
 import org.killbill.billing.platform.api.KillbillService.ServiceException;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -95,6 +102,34 @@ public class TestVersionedCatalog extends CatalogTestSuiteNoDB {
 
     }
 
+    @Test(groups = "fast")
+    public void testFindOverriddenPlanWithRetiredParentPlan() throws Exception {
+        final PriceOverride priceOverride = Mockito.mock(PriceOverride.class);
+        Mockito.when(priceOverride.getOverriddenPlan(Mockito.anyString(), Mockito.<StaticCatalog>any(), Mockito.<InternalTenantContext>any()))
+               .thenAnswer(new Answer<DefaultPlan>() {
+                   @Override
+                   public DefaultPlan answer(final InvocationOnMock invocation) throws Throwable {
+                       // Like the overridden plan cache, resolve the parent plan in the catalog version
+                       final StaticCatalog catalog = (StaticCatalog) invocation.getArguments()[1];
+                       return (DefaultPlan) catalog.findCurrentPlan("pistol-monthly");
+                   }
+               });
+        final InternalCallContextFactory internalCallContextFactory = Mockito.mock(InternalCallContextFactory.class);
+
+        final VersionedCatalog catalog = new VersionedCatalog();
+        final VersionedCatalog loaded = loader.loadDefaultCatalog(Resources.getResource("versionedCatalog").toString());
+        for (final StandaloneCatalogWithPriceOverride version : loaded.getVersions()) {
+            catalog.add(new StandaloneCatalogWithPriceOverride(version.getStandaloneCatalog(), priceOverride, 0L, internalCallContextFactory));
+        }
+        // Latest version, where all the plans have been retired
+        final DateTime dt4 = new DateTime("2011-04-04T00:01:00+00:00");
+        final StandaloneCatalog retiringCatalog = new StandaloneCatalog(dt4.minusMinutes(1).toDate()).setCatalogName(catalog.getCatalogName()).setRecurringBillingMode(catalog.getRecurringBillingMode());
+        catalog.add(new StandaloneCatalogWithPriceOverride(retiringCatalog, priceOverride, 0L, internalCallContextFactory));
+
+        final Plan plan = catalog.findPlan("pistol-monthly-1", dt4, dt4);
+        Assert.assertEquals(plan.getAllPhases()[1].getRecurring().getRecurringPrice().getPrice(Currency.USD), new BigDecimal("49.95"));
+    }
+
     @Test(groups = "fast")
     public void testErrorOnDateTooEarly() {
         final DateTime dt0 = new DateTime("1977-01-01T00:00:00+00:00");
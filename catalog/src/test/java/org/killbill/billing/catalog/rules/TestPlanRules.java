@@ -119,4 +119,34 @@ public class TestPlanRules extends CatalogTestSuiteNoDB {
         Assert.assertEquals(result.getAlignment(), PlanAlignmentChange.START_OF_SUBSCRIPTION);
         Assert.assertEquals(result.getNewPriceList(), priceList2);
     }
+
+    @Test(groups = "fast")
+    public void testChangePolicyPrecedenceIsKept() throws CatalogApiException {
+        final DefaultProduct product1 = cat.getCurrentProducts()[0];
+        final DefaultProduct product2 = cat.getCurrentProducts()[1];
+        final DefaultPriceList priceList1 = cat.findCurrentPriceList(PriceListSet.DEFAULT_PRICELIST_NAME);
+
+        final CaseChangePlanPolicy product1Policy = new CaseChangePlanPolicy().setPolicy(BillingActionPolicy.IMMEDIATE);
+        product1Policy.setFromProduct(product1);
+        final CaseChangePlanPolicy defaultPolicy = new CaseChangePlanPolicy().setPolicy(BillingActionPolicy.END_OF_TERM);
+        final CaseChangePlanPolicy product2Policy = new CaseChangePlanPolicy().setPolicy(BillingActionPolicy.ILLEGAL);
+        product2Policy.setFromProduct(product2);
+        cat.getPlanRules().setChangeCase(new CaseChangePlanPolicy[]{product1Policy, defaultPolicy, product2Policy});
+
+        final PlanPhaseSpecifier from1 = new PlanPhaseSpecifier(product1.getName(), product1.getCategory(), BillingPeriod.MONTHLY, priceList1.getName(), PhaseType.EVERGREEN);
+        final PlanPhaseSpecifier from2 = new PlanPhaseSpecifier(product2.getName(), product2.getCategory(), BillingPeriod.MONTHLY, priceList1.getName(), PhaseType.EVERGREEN);
+        final PlanSpecifier to = new PlanSpecifier(product1.getName(), product1.getCategory(), BillingPeriod.ANNUAL, priceList1.getName());
+
+        // Twice, to go through the memoized results
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(cat.getPlanRules().getPlanChangePolicy(from1, to, cat), BillingActionPolicy.IMMEDIATE);
+            // The default case is declared before the product2 specific one
+            Assert.assertEquals(cat.getPlanRules().getPlanChangePolicy(from2, to, cat), BillingActionPolicy.END_OF_TERM);
+        }
+
+        // The compiled rules are reset when the cases are replaced
+        cat.getPlanRules().setChangeCase(new CaseChangePlanPolicy[]{product2Policy, defaultPolicy});
+        Assert.assertEquals(cat.getPlanRules().getPlanChangePolicy(from1, to, cat), BillingActionPolicy.END_OF_TERM);
+        Assert.assertEquals(cat.getPlanRules().getPlanChangePolicy(from2, to, cat), BillingActionPolicy.ILLEGAL);
+    }
 }
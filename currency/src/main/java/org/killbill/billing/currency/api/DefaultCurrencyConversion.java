@@ -16,20 +16,30 @@
 
 package org.killbill.billing.currency.api;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
-import org.joda.time.DateTime;
+import javax.annotation.Nullable;
 
 import org.killbill.billing.catalog.api.Currency;
 
+import com.google.common.collect.ImmutableSet;
+
 public class DefaultCurrencyConversion implements CurrencyConversion {
 
     private final Currency baseCurrency;
     private final Set<Rate> rates;
+    private final Map<Currency, Rate> ratesPerCurrency;
 
-    public DefaultCurrencyConversion(final Currency baseCurrency, final Set<Rate> rates) {
+    public DefaultCurrencyConversion(final Currency baseCurrency, @Nullable final Set<Rate> rates) {
         this.baseCurrency = baseCurrency;
-        this.rates = rates;
+        // Instances are cached and shared, see DefaultCurrencyConversionApi
+        this.rates = rates == null ? ImmutableSet.<Rate>of() : ImmutableSet.<Rate>copyOf(rates);
+        this.ratesPerCurrency = new HashMap<Currency, Rate>();
+        for (final Rate rate : this.rates) {
+            ratesPerCurrency.put(rate.getCurrency(), rate);
+        }
     }
 
     @Override
@@ -41,4 +51,8 @@ public class DefaultCurrencyConversion implements CurrencyConversion {
     public final Set<Rate> getRates() {
         return rates;
     }
+
+    public Rate getRate(final Currency currency) {
+        return ratesPerCurrency.get(currency);
+    }
 }
@@ -16,28 +16,84 @@
 
 package org.killbill.billing.currency.api;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
 
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.currency.plugin.api.CurrencyPluginApi;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.util.config.CurrencyConfig;
+import org.killbill.clock.Clock;
 
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The conversions are cached per base currency (current rates) and per base currency and day (rates at a given date).
+ * <p/>
+ * The current rates, and the rates of the current day, are refreshed after org.killbill.currency.rates.current.cache.ttl,
+ * while the rates of past days don't change and are kept. Concurrent misses for the same key trigger a single plugin call.
+ */
 public class DefaultCurrencyConversionApi implements CurrencyConversionApi {
 
+    // Bound the memory used by the historical rates, the dates come from the payments
+    private static final int MAX_HISTORICAL_CONVERSIONS = 10000;
+
     private final CurrencyConfig config;
     private final OSGIServiceRegistration<CurrencyPluginApi> registry;
+    private final Clock clock;
+    private final LoadingCache<Currency, CurrencyConversion> currentConversions;
+    // Keyed by base currency and (UTC) day
+    private final Cache<List<Object>, CurrencyConversion> conversionsOfTheDay;
+    private final Cache<List<Object>, CurrencyConversion> historicalConversions;
 
     @Inject
-    public DefaultCurrencyConversionApi(final CurrencyConfig config, final OSGIServiceRegistration<CurrencyPluginApi> registry) {
+    public DefaultCurrencyConversionApi(final CurrencyConfig config, final OSGIServiceRegistration<CurrencyPluginApi> registry, final Clock clock) {
         this.config = config;
         this.registry = registry;
+        this.clock = clock;
 
+        final long currentRatesTtlMs = config.getCurrentRatesCacheTtl().getMillis();
+        // Expire the entries according to the Kill Bill clock, which also decides what the current day is
+        final Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return TimeUnit.MILLISECONDS.toNanos(clock.getUTCNow().getMillis());
+            }
+        };
+        this.currentConversions = CacheBuilder.newBuilder()
+                                              .expireAfterWrite(currentRatesTtlMs, TimeUnit.MILLISECONDS)
+                                              .ticker(ticker)
+                                              .build(new CacheLoader<Currency, CurrencyConversion>() {
+                                                  @Override
+                                                  public CurrencyConversion load(final Currency baseCurrency) throws CurrencyConversionException {
+                                                      final Set<Rate> allRates = getPluginApi().getCurrentRates(baseCurrency);
+                                                      return getCurrencyConversionInternal(baseCurrency, allRates);
+                                                  }
+                                              });
+        this.conversionsOfTheDay = CacheBuilder.newBuilder()
+                                               .expireAfterWrite(currentRatesTtlMs, TimeUnit.MILLISECONDS)
+                                               .ticker(ticker)
+                                               .build();
+        this.historicalConversions = CacheBuilder.newBuilder()
+                                                 .maximumSize(MAX_HISTORICAL_CONVERSIONS)
+                                                 .build();
     }
 
     private CurrencyPluginApi getPluginApi() throws CurrencyConversionException {
@@ -56,18 +112,59 @@ public class DefaultCurrencyConversionApi implements CurrencyConversionApi {
 
     @Override
     public CurrencyConversion getCurrentCurrencyConversion(final Currency baseCurrency) throws CurrencyConversionException {
-        final Set<Rate> allRates = getPluginApi().getCurrentRates(baseCurrency);
-        return getCurrencyConversionInternal(baseCurrency, allRates);
+        return getFromCache(currentConversions, baseCurrency);
     }
 
     @Override
     public CurrencyConversion getCurrencyConversion(final Currency baseCurrency, final DateTime dateConversion) throws CurrencyConversionException {
-        final Set<Rate> allRates = getPluginApi().getRates(baseCurrency, dateConversion);
-        return getCurrencyConversionInternal(baseCurrency, allRates);
+        if (dateConversion == null) {
+            // Not cached, the plugin decides what a null date means
+            final Set<Rate> allRates = getPluginApi().getRates(baseCurrency, dateConversion);
+            return getCurrencyConversionInternal(baseCurrency, allRates);
+        }
+
+        final LocalDate day = new LocalDate(dateConversion, DateTimeZone.UTC);
+        final Cache<List<Object>, CurrencyConversion> cache = day.isBefore(clock.getUTCToday()) ? historicalConversions : conversionsOfTheDay;
+        // The rates are fetched once per day, for the first date of that day requested
+        return getFromCache(cache, Arrays.<Object>asList(baseCurrency, day), new Callable<CurrencyConversion>() {
+            @Override
+            public CurrencyConversion call() throws CurrencyConversionException {
+                final Set<Rate> allRates = getPluginApi().getRates(baseCurrency, dateConversion);
+                return getCurrencyConversionInternal(baseCurrency, allRates);
+            }
+        });
     }
 
     private CurrencyConversion getCurrencyConversionInternal(final Currency baseCurrency, final Set<Rate> allRates) {
         final CurrencyConversion result = new DefaultCurrencyConversion(baseCurrency, allRates);
         return result;
     }
+
+    private CurrencyConversion getFromCache(final LoadingCache<Currency, CurrencyConversion> cache, final Currency key) throws CurrencyConversionException {
+        try {
+            return cache.get(key);
+        } catch (final ExecutionException e) {
+            throw toCurrencyConversionException(e);
+        } catch (final UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private CurrencyConversion getFromCache(final Cache<List<Object>, CurrencyConversion> cache, final List<Object> key, final Callable<CurrencyConversion> loader) throws CurrencyConversionException {
+        try {
+            return cache.get(key, loader);
+        } catch (final ExecutionException e) {
+            throw toCurrencyConversionException(e);
+        } catch (final UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    // Failed loads aren't cached
+    private CurrencyConversionException toCurrencyConversionException(final ExecutionException e) {
+        if (e.getCause() instanceof CurrencyConversionException) {
+            return (CurrencyConversionException) e.getCause();
+        }
+        throw Throwables.propagate(e.getCause());
+    }
 }
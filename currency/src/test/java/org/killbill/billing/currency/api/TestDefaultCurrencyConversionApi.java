@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.currency.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.currency.plugin.api.CurrencyPluginApi;
+import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.util.config.CurrencyConfig;
+import org.killbill.clock.ClockMock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class TestDefaultCurrencyConversionApi {
+
+    private static final String PLUGIN_NAME = "test-currency-plugin";
+    private static final long TTL_MS = 60 * 1000L;
+
+    private ClockMock clock;
+    private CurrencyPluginApi pluginApi;
+    private OSGIServiceRegistration<CurrencyPluginApi> registry;
+    private CurrencyConversionApi currencyConversionApi;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        clock = new ClockMock();
+        clock.setTime(new DateTime(2015, 3, 10, 12, 0, 0, DateTimeZone.UTC));
+
+        pluginApi = Mockito.mock(CurrencyPluginApi.class);
+        Mockito.when(pluginApi.getCurrentRates(Mockito.<Currency>any())).thenReturn(ImmutableSet.<Rate>of());
+        Mockito.when(pluginApi.getRates(Mockito.<Currency>any(), Mockito.<DateTime>any())).thenReturn(ImmutableSet.<Rate>of());
+
+        registry = Mockito.mock(OSGIServiceRegistration.class);
+        Mockito.when(registry.getServiceForName(PLUGIN_NAME)).thenReturn(pluginApi);
+
+        final CurrencyConfig config = Mockito.mock(CurrencyConfig.class);
+        Mockito.when(config.getDefaultCurrencyProvider()).thenReturn(PLUGIN_NAME);
+        Mockito.when(config.getCurrentRatesCacheTtl()).thenReturn(new TimeSpan(TTL_MS, TimeUnit.MILLISECONDS));
+
+        currencyConversionApi = new DefaultCurrencyConversionApi(config, registry, clock);
+    }
+
+    @Test(groups = "fast")
+    public void testCurrentRatesAreCachedUntilTtl() throws Exception {
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+        Mockito.verify(pluginApi, Mockito.times(1)).getCurrentRates(Currency.EUR);
+
+        // Cached per base currency
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.USD);
+        Mockito.verify(pluginApi, Mockito.times(1)).getCurrentRates(Currency.USD);
+
+        clock.addDeltaFromReality(TTL_MS / 2);
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+        Mockito.verify(pluginApi, Mockito.times(1)).getCurrentRates(Currency.EUR);
+
+        clock.addDeltaFromReality(TTL_MS);
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+        Mockito.verify(pluginApi, Mockito.times(2)).getCurrentRates(Currency.EUR);
+    }
+
+    @Test(groups = "fast")
+    public void testRatesOfTheDayAreCachedUntilTtl() throws Exception {
+        final DateTime morning = new DateTime(2015, 3, 10, 8, 0, 0, DateTimeZone.UTC);
+        final DateTime earlyAfternoon = new DateTime(2015, 3, 10, 13, 0, 0, DateTimeZone.UTC);
+
+        // Fetched once per day, for the first date of that day requested
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, morning);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, earlyAfternoon);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Mockito.eq(Currency.EUR), Mockito.<DateTime>any());
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, morning);
+
+        clock.addDeltaFromReality(TTL_MS / 2);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, morning);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Mockito.eq(Currency.EUR), Mockito.<DateTime>any());
+
+        // The rates of the current day can still change
+        clock.addDeltaFromReality(TTL_MS);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, earlyAfternoon);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, morning);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Mockito.eq(Currency.EUR), Mockito.<DateTime>any());
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, earlyAfternoon);
+    }
+
+    @Test(groups = "fast")
+    public void testPastRatesAreKept() throws Exception {
+        final DateTime yesterday = new DateTime(2015, 3, 9, 8, 0, 0, DateTimeZone.UTC);
+        final DateTime lastYear = new DateTime(2014, 3, 10, 8, 0, 0, DateTimeZone.UTC);
+
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, yesterday);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, lastYear);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, yesterday);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, lastYear);
+
+        // No expiration, even across days
+        clock.addDeltaFromReality(10 * TTL_MS);
+        clock.addDays(3);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, yesterday);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, lastYear.plusHours(2));
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, yesterday);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, lastYear);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Mockito.eq(Currency.EUR), Mockito.<DateTime>any());
+    }
+
+    @Test(groups = "fast")
+    public void testDayRollover() throws Exception {
+        clock.setTime(new DateTime(2015, 3, 10, 23, 59, 50, DateTimeZone.UTC));
+        final DateTime today = new DateTime(2015, 3, 10, 8, 0, 0, DateTimeZone.UTC);
+
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, today);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, today);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, today);
+
+        // That day is now over: its final rates are fetched once more, and then kept
+        clock.addDeltaFromReality(20 * 1000L);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, today);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Currency.EUR, today);
+
+        clock.addDeltaFromReality(10 * TTL_MS);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, today);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Currency.EUR, today);
+    }
+
+    @Test(groups = "fast")
+    public void testNullDateIsNotCached() throws Exception {
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, null);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, null);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Currency.EUR, null);
+    }
+
+    @Test(groups = "fast")
+    public void testConcurrentMissesTriggerOnePluginCall() throws Exception {
+        final DateTime today = new DateTime(2015, 3, 10, 8, 0, 0, DateTimeZone.UTC);
+        final CountDownLatch pluginCallStarted = new CountDownLatch(1);
+        final CountDownLatch releasePluginCall = new CountDownLatch(1);
+        Mockito.when(pluginApi.getRates(Currency.EUR, today)).thenAnswer(new Answer<Set<Rate>>() {
+            @Override
+            public Set<Rate> answer(final InvocationOnMock invocation) throws Throwable {
+                pluginCallStarted.countDown();
+                Assert.assertTrue(releasePluginCall.await(10, TimeUnit.SECONDS));
+                return ImmutableSet.<Rate>of();
+            }
+        });
+
+        final int nbThreads = 10;
+        final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            final List<Future<CurrencyConversion>> results = new ArrayList<Future<CurrencyConversion>>();
+            for (int i = 0; i < nbThreads; i++) {
+                results.add(executor.submit(new Callable<CurrencyConversion>() {
+                    @Override
+                    public CurrencyConversion call() throws Exception {
+                        return currencyConversionApi.getCurrencyConversion(Currency.EUR, today);
+                    }
+                }));
+            }
+
+            Assert.assertTrue(pluginCallStarted.await(10, TimeUnit.SECONDS));
+            // Give the other threads a chance to miss as well
+            Thread.sleep(200);
+            releasePluginCall.countDown();
+
+            final CurrencyConversion expected = results.get(0).get(10, TimeUnit.SECONDS);
+            for (final Future<CurrencyConversion> result : results) {
+                Assert.assertSame(result.get(10, TimeUnit.SECONDS), expected);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.EUR, today);
+    }
+
+    @Test(groups = "fast")
+    public void testFailedLoadsAreNotCached() throws Exception {
+        final DateTime yesterday = new DateTime(2015, 3, 9, 8, 0, 0, DateTimeZone.UTC);
+        Mockito.when(pluginApi.getRates(Currency.EUR, yesterday)).thenThrow(new IllegalStateException("Simulated plugin failure"))
+               .thenReturn(ImmutableSet.<Rate>of());
+        try {
+            currencyConversionApi.getCurrencyConversion(Currency.EUR, yesterday);
+            Assert.fail("The plugin call should have failed");
+        } catch (final IllegalStateException e) {
+            // Expected
+        }
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, yesterday);
+        currencyConversionApi.getCurrencyConversion(Currency.EUR, yesterday);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Currency.EUR, yesterday);
+
+        // Plugin not registered yet
+        Mockito.when(registry.getServiceForName(PLUGIN_NAME)).thenReturn(null).thenReturn(pluginApi);
+        try {
+            currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+            Assert.fail("The plugin lookup should have failed");
+        } catch (final CurrencyConversionException e) {
+            // Expected
+        }
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+        currencyConversionApi.getCurrentCurrencyConversion(Currency.EUR);
+        Mockito.verify(pluginApi, Mockito.times(1)).getCurrentRates(Currency.EUR);
+    }
+}
@@ -42,10 +42,13 @@ import com.google.common.collect.ImmutableList;
 
 public class OptimizedProxyBlockingStateDao extends ProxyBlockingStateDao {
 
+    private final Clock clock;
+
     public OptimizedProxyBlockingStateDao(final EventsStreamBuilder eventsStreamBuilder, final SubscriptionBaseInternalApi subscriptionBaseInternalApi,
                                           final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
                                           final NonEntityDao nonEntityDao) {
         super(eventsStreamBuilder, subscriptionBaseInternalApi, dbi, clock, cacheControllerDispatcher, nonEntityDao);
+        this.clock = clock;
     }
 
     /**
@@ -98,4 +101,29 @@ public class OptimizedProxyBlockingStateDao extends ProxyBlockingStateDao {
                                           ImmutableList.<SubscriptionBase>of(baseSubscription),
                                           eventsStreams);
     }
+
+    /**
+     * Retrieve blocking states for a given subscription
+     * <p/>
+     * Same as above, except that the blocking states not on disk for that add-on, computed from the events stream of its
+     * base subscription, are provided. This is a special method for EventsStreamBuilder#buildForAccount, which computes
+     * the events stream of each base subscription only once for all of its add-ons.
+     *
+     * @param subscriptionBlockingStatesOnDisk
+     *                                     blocking states on disk for that subscription
+     * @param subscription                 subscription for which to build blocking states
+     * @param addonBlockingStatesNotOnDisk blocking states not on disk for that subscription (see EventsStream#computeAddonsBlockingStatesForFutureSubscriptionBaseEvents)
+     * @return blocking states for that subscription
+     */
+    public List<BlockingState> getBlockingHistory(final List<BlockingState> subscriptionBlockingStatesOnDisk,
+                                                  final SubscriptionBase subscription,
+                                                  final Iterable<BlockingState> addonBlockingStatesNotOnDisk) {
+        if (!ProductCategory.ADD_ON.equals(subscription.getCategory())) {
+            return subscriptionBlockingStatesOnDisk;
+        }
+
+        final List<BlockingState> blockingStatesOnDiskCopy = new LinkedList<BlockingState>(subscriptionBlockingStatesOnDisk);
+        injectBlockingStatesNotOnDisk(subscription.getId(), BlockingStateType.SUBSCRIPTION, blockingStatesOnDiskCopy, addonBlockingStatesNotOnDisk, clock.getUTCNow());
+        return sortedCopy(blockingStatesOnDiskCopy);
+    }
 }
@@ -289,38 +289,47 @@ public class ProxyBlockingStateDao implements BlockingStateDao {
             final Collection<BlockingState> blockingStatesNotOnDisk = eventsStream.computeAddonsBlockingStatesForFutureSubscriptionBaseEvents();
 
             // Inject the extra blocking states into the stream if needed
-            for (final BlockingState blockingState : blockingStatesNotOnDisk) {
-                // If this entitlement is actually already cancelled, add the cancellation event we computed
-                // only if it's prior to the blocking state on disk (e.g. add-on future cancelled but base plan cancelled earlier).
-                BlockingState cancellationBlockingStateOnDisk = null;
-                boolean overrideCancellationBlockingStateOnDisk = false;
-                if (isEntitlementCancellationBlockingState(blockingState)) {
-                    cancellationBlockingStateOnDisk = findEntitlementCancellationBlockingState(blockingState.getBlockedId(), blockingStatesOnDiskCopy);
-                    overrideCancellationBlockingStateOnDisk = cancellationBlockingStateOnDisk != null && blockingState.getEffectiveDate().isBefore(cancellationBlockingStateOnDisk.getEffectiveDate());
-                }
-
-                if ((
-                            blockingStateType == null ||
-                            // In case we're coming from OptimizedProxyBlockingStateDao, make sure we don't add
-                            // blocking states for other add-ons on that base subscription
-                            (BlockingStateType.SUBSCRIPTION.equals(blockingStateType) && blockingState.getBlockedId().equals(blockableId))
-                    ) && (
-                            cancellationBlockingStateOnDisk == null || overrideCancellationBlockingStateOnDisk
-                    )) {
-                    final BlockingStateModelDao blockingStateModelDao = new BlockingStateModelDao(blockingState, now, now);
-                    blockingStatesOnDiskCopy.add(BlockingStateModelDao.toBlockingState(blockingStateModelDao));
-
-                    if (overrideCancellationBlockingStateOnDisk) {
-                        blockingStatesOnDiskCopy.remove(cancellationBlockingStateOnDisk);
-                    }
-                }
-            }
+            injectBlockingStatesNotOnDisk(blockableId, blockingStateType, blockingStatesOnDiskCopy, blockingStatesNotOnDisk, now);
         }
 
         // Return the sorted list
         return sortedCopy(blockingStatesOnDiskCopy);
     }
 
+    // Special signature for OptimizedProxyBlockingStateDao
+    protected void injectBlockingStatesNotOnDisk(@Nullable final UUID blockableId,
+                                                 @Nullable final BlockingStateType blockingStateType,
+                                                 final Collection<BlockingState> blockingStatesOnDiskCopy,
+                                                 final Iterable<BlockingState> blockingStatesNotOnDisk,
+                                                 final DateTime now) {
+        for (final BlockingState blockingState : blockingStatesNotOnDisk) {
+            // If this entitlement is actually already cancelled, add the cancellation event we computed
+            // only if it's prior to the blocking state on disk (e.g. add-on future cancelled but base plan cancelled earlier).
+            BlockingState cancellationBlockingStateOnDisk = null;
+            boolean overrideCancellationBlockingStateOnDisk = false;
+            if (isEntitlementCancellationBlockingState(blockingState)) {
+                cancellationBlockingStateOnDisk = findEntitlementCancellationBlockingState(blockingState.getBlockedId(), blockingStatesOnDiskCopy);
+                overrideCancellationBlockingStateOnDisk = cancellationBlockingStateOnDisk != null && blockingState.getEffectiveDate().isBefore(cancellationBlockingStateOnDisk.getEffectiveDate());
+            }
+
+            if ((
+                        blockingStateType == null ||
+                        // In case we're coming from OptimizedProxyBlockingStateDao, make sure we don't add
+                        // blocking states for other add-ons on that base subscription
+                        (BlockingStateType.SUBSCRIPTION.equals(blockingStateType) && blockingState.getBlockedId().equals(blockableId))
+                ) && (
+                        cancellationBlockingStateOnDisk == null || overrideCancellationBlockingStateOnDisk
+                )) {
+                final BlockingStateModelDao blockingStateModelDao = new BlockingStateModelDao(blockingState, now, now);
+                blockingStatesOnDiskCopy.add(BlockingStateModelDao.toBlockingState(blockingStateModelDao));
+
+                if (overrideCancellationBlockingStateOnDisk) {
+                    blockingStatesOnDiskCopy.remove(cancellationBlockingStateOnDisk);
+                }
+            }
+        }
+    }
+
     private BlockingState findEntitlementCancellationBlockingState(@Nullable final UUID blockedId, final Iterable<BlockingState> blockingStatesOnDisk) {
         if (blockedId == null) {
             return null;
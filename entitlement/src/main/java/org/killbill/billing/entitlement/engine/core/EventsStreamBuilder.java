@@ -59,6 +59,7 @@ import org.skife.jdbi.v2.IDBI;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 @Singleton
@@ -147,25 +148,7 @@ public class EventsStreamBuilder {
         final List<BlockingState> blockingStatesForAccount = defaultBlockingStateDao.getBlockingAllForAccountRecordId(internalTenantContext);
 
         // Optimization: build lookup tables for blocking states states
-        final Collection<BlockingState> accountBlockingStates = new LinkedList<BlockingState>();
-        final Map<UUID, List<BlockingState>> blockingStatesPerSubscription = new HashMap<UUID, List<BlockingState>>();
-        final Map<UUID, List<BlockingState>> blockingStatesPerBundle = new HashMap<UUID, List<BlockingState>>();
-        for (final BlockingState blockingState : blockingStatesForAccount) {
-            if (BlockingStateType.SUBSCRIPTION.equals(blockingState.getType())) {
-                if (blockingStatesPerSubscription.get(blockingState.getBlockedId()) == null) {
-                    blockingStatesPerSubscription.put(blockingState.getBlockedId(), new LinkedList<BlockingState>());
-                }
-                blockingStatesPerSubscription.get(blockingState.getBlockedId()).add(blockingState);
-            } else if (BlockingStateType.SUBSCRIPTION_BUNDLE.equals(blockingState.getType())) {
-                if (blockingStatesPerBundle.get(blockingState.getBlockedId()) == null) {
-                    blockingStatesPerBundle.put(blockingState.getBlockedId(), new LinkedList<BlockingState>());
-                }
-                blockingStatesPerBundle.get(blockingState.getBlockedId()).add(blockingState);
-            } else if (BlockingStateType.ACCOUNT.equals(blockingState.getType()) &&
-                       account.getId().equals(blockingState.getBlockedId())) {
-                accountBlockingStates.add(blockingState);
-            }
-        }
+        final BlockingStatesIndex blockingStatesIndex = new BlockingStatesIndex(account, blockingStatesForAccount);
 
         // Build the EventsStream objects
         final Map<UUID, Collection<EventsStream>> entitlementsPerBundle = new HashMap<UUID, Collection<EventsStream>>();
@@ -173,43 +156,45 @@ public class EventsStreamBuilder {
             final SubscriptionBaseBundle bundle = bundlesPerId.get(bundleId);
             final List<SubscriptionBase> allSubscriptionsForBundle = subscriptions.get(bundleId);
             final SubscriptionBase baseSubscription = findBaseSubscription(allSubscriptionsForBundle);
-            final List<BlockingState> bundleBlockingStates = Objects.firstNonNull(blockingStatesPerBundle.get(bundleId), ImmutableList.<BlockingState>of());
 
-            if (entitlementsPerBundle.get(bundleId) == null) {
-                entitlementsPerBundle.put(bundleId, new LinkedList<EventsStream>());
+            // Build the EventsStream of the base subscription first: it is needed to compute the blocking states not on disk of all
+            // of its add-ons, so compute it (and these blocking states) only once per bundle
+            EventsStream baseEventsStream = null;
+            Map<UUID, List<BlockingState>> addonsBlockingStatesNotOnDisk = ImmutableMap.<UUID, List<BlockingState>>of();
+            if (baseSubscription != null) {
+                // For a base subscription, all blocking states are on disk
+                final List<BlockingState> baseSubscriptionBlockingStates = blockingStatesIndex.getBlockingStates(bundleId, blockingStatesIndex.getSubscriptionBlockingStates(baseSubscription.getId()));
+                baseEventsStream = buildForEntitlement(account, bundle, baseSubscription, baseSubscription, allSubscriptionsForBundle, baseSubscriptionBlockingStates, internalTenantContext);
+                addonsBlockingStatesNotOnDisk = indexPerBlockedId(baseEventsStream.computeAddonsBlockingStatesForFutureSubscriptionBaseEvents());
             }
 
+            final Collection<EventsStream> eventsStreams = new LinkedList<EventsStream>();
             for (final SubscriptionBase subscription : allSubscriptionsForBundle) {
-                final List<BlockingState> subscriptionBlockingStatesOnDisk = Objects.firstNonNull(blockingStatesPerSubscription.get(subscription.getId()), ImmutableList.<BlockingState>of());
+                if (baseEventsStream != null && subscription.getId().equals(baseSubscription.getId())) {
+                    eventsStreams.add(baseEventsStream);
+                    continue;
+                }
+
+                final List<BlockingState> subscriptionBlockingStatesOnDisk = blockingStatesIndex.getSubscriptionBlockingStates(subscription.getId());
 
                 // We cannot always use blockingStatesForAccount here: we need subscriptionBlockingStates to contain the events not on disk when building an EventsStream
-                // for an add-on - which means going through the magic of ProxyBlockingStateDao, which will recursively
-                // create EventsStream objects. To avoid an infinite recursion, bypass ProxyBlockingStateDao when it's not
-                // needed, i.e. if this EventStream is for a standalone or a base subscription
+                // for an add-on, which are computed from the EventsStream of the base subscription
                 final List<BlockingState> subscriptionBlockingStates;
-                if (baseSubscription == null || subscription.getId().equals(baseSubscription.getId())) {
+                if (baseSubscription == null) {
                     subscriptionBlockingStates = subscriptionBlockingStatesOnDisk;
                 } else {
                     subscriptionBlockingStates = blockingStateDao.getBlockingHistory(subscriptionBlockingStatesOnDisk,
-                                                                                     blockingStatesForAccount,
-                                                                                     account,
-                                                                                     bundle,
-                                                                                     baseSubscription,
                                                                                      subscription,
-                                                                                     allSubscriptionsForBundle,
-                                                                                     internalTenantContext);
-
+                                                                                     Objects.firstNonNull(addonsBlockingStatesNotOnDisk.get(subscription.getId()), ImmutableList.<BlockingState>of()));
                 }
 
                 // Merge the BlockingStates
-                final Collection<BlockingState> blockingStateSet = new LinkedHashSet<BlockingState>(accountBlockingStates);
-                blockingStateSet.addAll(bundleBlockingStates);
-                blockingStateSet.addAll(subscriptionBlockingStates);
-                final List<BlockingState> blockingStates = ProxyBlockingStateDao.sortedCopy(blockingStateSet);
+                final List<BlockingState> blockingStates = blockingStatesIndex.getBlockingStates(bundleId, subscriptionBlockingStates);
 
                 final EventsStream eventStream = buildForEntitlement(account, bundle, baseSubscription, subscription, allSubscriptionsForBundle, blockingStates, internalTenantContext);
-                entitlementsPerBundle.get(bundleId).add(eventStream);
+                eventsStreams.add(eventStream);
             }
+            entitlementsPerBundle.put(bundleId, eventsStreams);
         }
 
         return new DefaultAccountEventsStreams(account, bundles, entitlementsPerBundle);
@@ -260,28 +245,9 @@ public class EventsStreamBuilder {
                                              final List<SubscriptionBase> allSubscriptionsForBundle,
                                              final InternalTenantContext internalTenantContext) throws EntitlementApiException {
         // Optimization: build lookup tables for blocking states states
-        final Collection<BlockingState> accountBlockingStates = new LinkedList<BlockingState>();
-        final Map<UUID, List<BlockingState>> blockingStatesPerSubscription = new HashMap<UUID, List<BlockingState>>();
-        final Map<UUID, List<BlockingState>> blockingStatesPerBundle = new HashMap<UUID, List<BlockingState>>();
-        for (final BlockingState blockingState : blockingStatesForAccount) {
-            if (BlockingStateType.SUBSCRIPTION.equals(blockingState.getType())) {
-                if (blockingStatesPerSubscription.get(blockingState.getBlockedId()) == null) {
-                    blockingStatesPerSubscription.put(blockingState.getBlockedId(), new LinkedList<BlockingState>());
-                }
-                blockingStatesPerSubscription.get(blockingState.getBlockedId()).add(blockingState);
-            } else if (BlockingStateType.SUBSCRIPTION_BUNDLE.equals(blockingState.getType())) {
-                if (blockingStatesPerBundle.get(blockingState.getBlockedId()) == null) {
-                    blockingStatesPerBundle.put(blockingState.getBlockedId(), new LinkedList<BlockingState>());
-                }
-                blockingStatesPerBundle.get(blockingState.getBlockedId()).add(blockingState);
-            } else if (BlockingStateType.ACCOUNT.equals(blockingState.getType()) &&
-                       account.getId().equals(blockingState.getBlockedId())) {
-                accountBlockingStates.add(blockingState);
-            }
-        }
+        final BlockingStatesIndex blockingStatesIndex = new BlockingStatesIndex(account, blockingStatesForAccount);
 
-        final List<BlockingState> bundleBlockingStates = Objects.firstNonNull(blockingStatesPerBundle.get(subscription.getBundleId()), ImmutableList.<BlockingState>of());
-        final List<BlockingState> subscriptionBlockingStatesOnDisk = Objects.firstNonNull(blockingStatesPerSubscription.get(subscription.getId()), ImmutableList.<BlockingState>of());
+        final List<BlockingState> subscriptionBlockingStatesOnDisk = blockingStatesIndex.getSubscriptionBlockingStates(subscription.getId());
 
         // We cannot always use blockingStatesForAccount here: we need subscriptionBlockingStates to contain the events not on disk when building an EventsStream
         // for an add-on - which means going through the magic of ProxyBlockingStateDao, which will recursively
@@ -304,10 +270,7 @@ public class EventsStreamBuilder {
         }
 
         // Merge the BlockingStates
-        final Collection<BlockingState> blockingStateSet = new LinkedHashSet<BlockingState>(accountBlockingStates);
-        blockingStateSet.addAll(bundleBlockingStates);
-        blockingStateSet.addAll(subscriptionBlockingStates);
-        final List<BlockingState> blockingStates = ProxyBlockingStateDao.sortedCopy(blockingStateSet);
+        final List<BlockingState> blockingStates = blockingStatesIndex.getBlockingStates(subscription.getBundleId(), subscriptionBlockingStates);
 
         return buildForEntitlement(account, bundle, baseSubscription, subscription, allSubscriptionsForBundle, blockingStates, internalTenantContext);
     }
@@ -343,4 +306,52 @@ public class EventsStreamBuilder {
                                                        }
                                                    }).orNull(); // null for standalone subscriptions
     }
+
+    private static Map<UUID, List<BlockingState>> indexPerBlockedId(final Iterable<BlockingState> blockingStates) {
+        final Map<UUID, List<BlockingState>> blockingStatesPerBlockedId = new HashMap<UUID, List<BlockingState>>();
+        for (final BlockingState blockingState : blockingStates) {
+            if (blockingStatesPerBlockedId.get(blockingState.getBlockedId()) == null) {
+                blockingStatesPerBlockedId.put(blockingState.getBlockedId(), new LinkedList<BlockingState>());
+            }
+            blockingStatesPerBlockedId.get(blockingState.getBlockedId()).add(blockingState);
+        }
+        return blockingStatesPerBlockedId;
+    }
+
+    // Blocking states on disk for the account, indexed by blockable id (built once per account, instead of filtering them for each subscription)
+    private static final class BlockingStatesIndex {
+
+        private final Collection<BlockingState> accountBlockingStates = new LinkedList<BlockingState>();
+        private final Map<UUID, List<BlockingState>> blockingStatesPerSubscription;
+        private final Map<UUID, List<BlockingState>> blockingStatesPerBundle;
+
+        private BlockingStatesIndex(final Account account, final Iterable<BlockingState> blockingStatesForAccount) {
+            final Collection<BlockingState> subscriptionBlockingStates = new LinkedList<BlockingState>();
+            final Collection<BlockingState> bundleBlockingStates = new LinkedList<BlockingState>();
+            for (final BlockingState blockingState : blockingStatesForAccount) {
+                if (BlockingStateType.SUBSCRIPTION.equals(blockingState.getType())) {
+                    subscriptionBlockingStates.add(blockingState);
+                } else if (BlockingStateType.SUBSCRIPTION_BUNDLE.equals(blockingState.getType())) {
+                    bundleBlockingStates.add(blockingState);
+                } else if (BlockingStateType.ACCOUNT.equals(blockingState.getType()) &&
+                           account.getId().equals(blockingState.getBlockedId())) {
+                    accountBlockingStates.add(blockingState);
+                }
+            }
+            this.blockingStatesPerSubscription = indexPerBlockedId(subscriptionBlockingStates);
+            this.blockingStatesPerBundle = indexPerBlockedId(bundleBlockingStates);
+        }
+
+        public List<BlockingState> getSubscriptionBlockingStates(final UUID subscriptionId) {
+            return Objects.firstNonNull(blockingStatesPerSubscription.get(subscriptionId), ImmutableList.<BlockingState>of());
+        }
+
+        // Merge the account and bundle blocking states with the ones of the subscription
+        public List<BlockingState> getBlockingStates(final UUID bundleId, final Collection<BlockingState> subscriptionBlockingStates) {
+            final Collection<BlockingState> blockingStateSet = new LinkedHashSet<BlockingState>(accountBlockingStates);
+            blockingStateSet.addAll(Objects.firstNonNull(blockingStatesPerBundle.get(bundleId), ImmutableList.<BlockingState>of()));
+            blockingStateSet.addAll(subscriptionBlockingStates);
+            return ProxyBlockingStateDao.sortedCopy(blockingStateSet);
+        }
+    }
 }
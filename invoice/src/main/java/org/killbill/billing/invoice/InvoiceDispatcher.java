@@ -37,7 +37,6 @@ import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountInternalApi;
 import org.killbill.billing.callcontext.InternalCallContext;
-import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.BillingActionPolicy;
 import org.killbill.billing.catalog.api.BillingMode;
 import org.killbill.billing.catalog.api.CatalogApiException;
@@ -56,14 +55,15 @@ import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
-import org.killbill.billing.invoice.api.InvoiceNotifier;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceAdjustmentEvent;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceCreationEvent;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceNotificationInternalEvent;
 import org.killbill.billing.invoice.api.user.DefaultNullInvoiceEvent;
+import org.killbill.billing.invoice.dao.InvoiceBillingSnapshotModelDao;
 import org.killbill.billing.invoice.dao.InvoiceDao;
 import org.killbill.billing.invoice.dao.InvoiceItemModelDao;
 import org.killbill.billing.invoice.dao.InvoiceModelDao;
+import org.killbill.billing.invoice.generator.BillingSnapshotUtils;
 import org.killbill.billing.invoice.generator.InvoiceGenerator;
 import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.billing.invoice.model.FixedPriceInvoiceItem;
@@ -75,7 +75,6 @@ import org.killbill.billing.subscription.api.SubscriptionBaseInternalApi;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
-import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.globallocker.LockerType;
 import org.killbill.billing.util.timezone.DateAndTimeZoneContext;
 import org.killbill.bus.api.PersistentBus;
@@ -107,7 +106,6 @@ public class InvoiceDispatcher {
     private final SubscriptionBaseInternalApi subscriptionApi;
     private final InvoiceDao invoiceDao;
     private final InternalCallContextFactory internalCallContextFactory;
-    private final InvoiceNotifier invoiceNotifier;
     private final InvoicePluginDispatcher invoicePluginDispatcher;
     private final GlobalLocker locker;
     private final PersistentBus eventBus;
@@ -120,7 +118,6 @@ public class InvoiceDispatcher {
                              final SubscriptionBaseInternalApi SubscriptionApi,
                              final InvoiceDao invoiceDao,
                              final InternalCallContextFactory internalCallContextFactory,
-                             final InvoiceNotifier invoiceNotifier,
                              final InvoicePluginDispatcher invoicePluginDispatcher,
                              final GlobalLocker locker,
                              final PersistentBus eventBus,
@@ -131,7 +128,6 @@ public class InvoiceDispatcher {
         this.accountApi = accountApi;
         this.invoiceDao = invoiceDao;
         this.internalCallContextFactory = internalCallContextFactory;
-        this.invoiceNotifier = invoiceNotifier;
         this.invoicePluginDispatcher = invoicePluginDispatcher;
         this.locker = locker;
         this.eventBus = eventBus;
@@ -145,12 +141,27 @@ public class InvoiceDispatcher {
         processSubscriptionForInvoiceGeneration(subscriptionId, targetDate, context);
     }
 
-    public void processSubscriptionForInvoiceGeneration(final UUID subscriptionId, final DateTime targetDate, final InternalCallContext context) throws InvoiceApiException {
-        processSubscriptionInternal(subscriptionId, targetDate, false, context);
+    /**
+     * @return false if the account could not be locked, in which case there was no invoice run
+     */
+    public boolean processSubscriptionForInvoiceGeneration(final UUID subscriptionId, final DateTime targetDate, final InternalCallContext context) throws InvoiceApiException {
+        try {
+            processSubscriptionInternal(subscriptionId, targetDate, false, context);
+            return true;
+        } catch (final LockFailedException e) {
+            // Already logged
+            return false;
+        }
     }
 
     public void processSubscriptionForInvoiceNotification(final UUID subscriptionId, final DateTime targetDate, final InternalCallContext context) throws InvoiceApiException {
-        final Invoice dryRunInvoice = processSubscriptionInternal(subscriptionId, targetDate, true, context);
+        final Invoice dryRunInvoice;
+        try {
+            dryRunInvoice = processSubscriptionInternal(subscriptionId, targetDate, true, context);
+        } catch (final LockFailedException e) {
+            // Already logged
+            return;
+        }
         if (dryRunInvoice != null && dryRunInvoice.getBalance().compareTo(BigDecimal.ZERO) > 0) {
             final InvoiceNotificationInternalEvent event = new DefaultInvoiceNotificationInternalEvent(dryRunInvoice.getAccountId(), dryRunInvoice.getBalance(), dryRunInvoice.getCurrency(),
                                                                                                        targetDate, context.getAccountRecordId(), context.getTenantRecordId(), context.getUserToken());
@@ -163,26 +174,37 @@ public class InvoiceDispatcher {
     }
 
 
-    private Invoice processSubscriptionInternal(final UUID subscriptionId, final DateTime targetDate, final boolean dryRunForNotification, final InternalCallContext context) throws InvoiceApiException {
+    private Invoice processSubscriptionInternal(final UUID subscriptionId, final DateTime targetDate, final boolean dryRunForNotification, final InternalCallContext context) throws InvoiceApiException, LockFailedException {
         try {
             if (subscriptionId == null) {
-                log.error("Failed handling SubscriptionBase change.", new InvoiceApiException(ErrorCode.INVOICE_INVALID_TRANSITION));
-                return null;
+                final InvoiceApiException exception = new InvoiceApiException(ErrorCode.INVOICE_INVALID_TRANSITION);
+                log.error("Failed handling SubscriptionBase change.", exception);
+                throw exception;
             }
             final UUID accountId = subscriptionApi.getAccountIdFromSubscriptionId(subscriptionId, context);
             final DryRunArguments dryRunArguments = dryRunForNotification ? NULL_DRY_RUN_ARGUMENTS : null;
 
-            return processAccount(accountId, targetDate, dryRunArguments, context);
+            return processAccountOrFailToLock(accountId, targetDate, dryRunArguments, context);
         } catch (final SubscriptionBaseApiException e) {
-            log.error("Failed handling SubscriptionBase change.",
-                      new InvoiceApiException(ErrorCode.INVOICE_NO_ACCOUNT_ID_FOR_SUBSCRIPTION_ID, subscriptionId.toString()));
-            return null;
+            final InvoiceApiException exception = new InvoiceApiException(e, ErrorCode.INVOICE_NO_ACCOUNT_ID_FOR_SUBSCRIPTION_ID, subscriptionId.toString());
+            log.error("Failed handling SubscriptionBase change.", exception);
+            throw exception;
         }
     }
 
 
     public Invoice processAccount(final UUID accountId, final DateTime targetDate,
                                   @Nullable final DryRunArguments dryRunArguments, final InternalCallContext context) throws InvoiceApiException {
+        try {
+            return processAccountOrFailToLock(accountId, targetDate, dryRunArguments, context);
+        } catch (final LockFailedException e) {
+            // Already logged
+            return null;
+        }
+    }
+
+    private Invoice processAccountOrFailToLock(final UUID accountId, final DateTime targetDate,
+                                               @Nullable final DryRunArguments dryRunArguments, final InternalCallContext context) throws InvoiceApiException, LockFailedException {
         GlobalLock lock = null;
         try {
             lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), accountId.toString(), NB_LOCK_TRY);
@@ -192,12 +214,12 @@ public class InvoiceDispatcher {
             // Not good!
             log.error(String.format("Failed to process invoice for account %s, targetDate %s",
                                     accountId.toString(), targetDate), e);
+            throw e;
         } finally {
             if (lock != null) {
                 lock.release();
             }
         }
-        return null;
     }
 
     private Invoice processAccountWithLock(final UUID accountId, final DateTime targetDateTime,
@@ -214,6 +236,8 @@ public class InvoiceDispatcher {
                                                                   new DateAndTimeZoneContext(billingEvents.iterator().next().getEffectiveDate(), account.getTimeZone(), clock) :
                                                                   null;
 
+            final Map<UUID, String> billingEventsHashes = BillingSnapshotUtils.computeBillingEventsHashes(billingEvents);
+            Map<UUID, LocalDate> billedThroughDates = new HashMap<UUID, LocalDate>();
             List<Invoice> invoices = new ArrayList<Invoice>();
             if (!billingEvents.isAccountAutoInvoiceOff()) {
                 invoices = ImmutableList.<Invoice>copyOf(Collections2.transform(invoiceDao.getInvoicesByAccount(context),
@@ -223,12 +247,13 @@ public class InvoiceDispatcher {
                                                                                         return new DefaultInvoice(input);
                                                                                     }
                                                                                 })); //no need to fetch, invoicing is off on this account
+                billedThroughDates = getBilledThroughDates(billingEventsHashes, context);
             }
 
             final Currency targetCurrency = account.getCurrency();
 
             final LocalDate targetDate = dateAndTimeZoneContext != null ? dateAndTimeZoneContext.computeTargetDate(targetDateTime) : null;
-            final Invoice invoice = targetDate != null ? generator.generateInvoice(accountId, billingEvents, invoices, targetDate, targetCurrency, context) : null;
+            final Invoice invoice = targetDate != null ? generator.generateInvoice(accountId, billingEvents, invoices, billedThroughDates, targetDate, targetCurrency, context) : null;
             //
             // If invoice comes back null, there is nothing new to generate, we can bail early
             //
@@ -287,7 +312,9 @@ public class InvoiceDispatcher {
                                                                                                                        }
                                                                                                                    }));
 
-                final FutureAccountNotifications futureAccountNotifications = createNextFutureNotificationDate(invoiceItemModelDaos, billingEvents.getUsages(), dateAndTimeZoneContext);
+                // The invoice is notified asynchronously (outside of the account lock), from a notification recorded along with the invoice
+                final boolean isInvoiceNotificationRequired = account.isNotifiedForInvoices() && isRealInvoiceWithItems;
+                final FutureAccountNotifications futureAccountNotifications = createNextFutureNotificationDate(invoiceItemModelDaos, billingEvents.getUsages(), dateAndTimeZoneContext, isInvoiceNotificationRequired);
                 invoiceDao.createInvoice(invoiceModelDao, invoiceItemModelDaos, isRealInvoiceWithItems, futureAccountNotifications, context);
 
                 final List<InvoiceItem> fixedPriceInvoiceItems = invoice.getInvoiceItems(FixedPriceInvoiceItem.class);
@@ -309,24 +336,56 @@ public class InvoiceDispatcher {
                 for (final InvoiceInternalEvent event : events) {
                     postEvent(event, accountId, context);
                 }
-            }
 
-            if (account.isNotifiedForInvoices() && isRealInvoiceWithItems && !isDryRun) {
-                // Need to re-hydrate the invoice object to get the invoice number (record id)
-                // API_FIX InvoiceNotifier public API?
-                invoiceNotifier.notify(account, new DefaultInvoice(invoiceDao.getById(invoice.getId(), context)), buildTenantContext(context));
+                updateBillingSnapshots(invoices, invoice, billingEventsHashes, context);
             }
 
             return invoice;
         } catch (final AccountApiException e) {
+            // Report the failure to the caller: the next billing date notifier must not consider the run done
             log.error("Failed handling SubscriptionBase change.", e);
-            return null;
+            throw new InvoiceApiException(e);
         } catch (CatalogApiException e) {
             log.error("Failed handling SubscriptionBase change.", e);
-            return null;
+            throw new InvoiceApiException(e);
         } catch (SubscriptionBaseApiException e) {
             log.error("Failed handling SubscriptionBase change.", e);
-            return null;
+            throw new InvoiceApiException(e);
+        }
+    }
+
+    // Only keep the snapshots for which the billing events haven't changed since the last invoice run (the generator will verify the existing items)
+    private Map<UUID, LocalDate> getBilledThroughDates(final Map<UUID, String> billingEventsHashes, final InternalCallContext context) {
+        final Map<UUID, LocalDate> billedThroughDates = new HashMap<UUID, LocalDate>();
+        for (final InvoiceBillingSnapshotModelDao snapshot : invoiceDao.getBillingSnapshots(context)) {
+            if (snapshot.getBillingEventsHash().equals(billingEventsHashes.get(snapshot.getSubscriptionId()))) {
+                billedThroughDates.put(snapshot.getSubscriptionId(), snapshot.getBilledThroughDate());
+            }
+        }
+        return billedThroughDates;
+    }
+
+    private void updateBillingSnapshots(final List<Invoice> existingInvoices, final Invoice invoice, final Map<UUID, String> billingEventsHashes, final InternalCallContext context) {
+        final List<InvoiceItem> allItems = new ArrayList<InvoiceItem>();
+        for (final Invoice existingInvoice : existingInvoices) {
+            allItems.addAll(existingInvoice.getInvoiceItems());
+        }
+        allItems.addAll(invoice.getInvoiceItems());
+
+        final Map<UUID, LocalDate> billedThroughDates = BillingSnapshotUtils.computeBilledThroughDates(allItems);
+        final List<InvoiceBillingSnapshotModelDao> snapshots = new ArrayList<InvoiceBillingSnapshotModelDao>();
+        for (final UUID subscriptionId : billedThroughDates.keySet()) {
+            final String billingEventsHash = billingEventsHashes.get(subscriptionId);
+            if (billingEventsHash != null) {
+                snapshots.add(new InvoiceBillingSnapshotModelDao(subscriptionId, billingEventsHash, billedThroughDates.get(subscriptionId)));
+            }
+        }
+
+        try {
+            invoiceDao.setBillingSnapshots(snapshots, context);
+        } catch (final RuntimeException e) {
+            // Not fatal, the next invoice run will simply replay the full history
+            log.warn("Failed to update billing snapshots for accountId " + invoice.getAccountId(), e);
         }
     }
 
@@ -345,17 +404,14 @@ public class InvoiceDispatcher {
         return cbaItem != null ? InvoiceItemFactory.fromModelDao(cbaItem) : null;
     }
 
-    private TenantContext buildTenantContext(final InternalTenantContext context) {
-        return internalCallContextFactory.createTenantContext(context);
-    }
-
     private CallContext buildCallContext(final InternalCallContext context) {
         return internalCallContextFactory.createCallContext(context);
     }
 
 
     @VisibleForTesting
-    FutureAccountNotifications createNextFutureNotificationDate(final List<InvoiceItemModelDao> invoiceItems, final Map<String, Usage> knownUsages, final DateAndTimeZoneContext dateAndTimeZoneContext) {
+    FutureAccountNotifications createNextFutureNotificationDate(final List<InvoiceItemModelDao> invoiceItems, final Map<String, Usage> knownUsages, final DateAndTimeZoneContext dateAndTimeZoneContext,
+                                                                final boolean isInvoiceNotificationRequired) {
 
         final Map<UUID, List<DateTime>> result = new HashMap<UUID, List<DateTime>>();
 
@@ -406,7 +462,7 @@ public class InvoiceDispatcher {
             perSubscriptionCallback.add(subscriptionUsageCallbackDate);
         }
 
-        return new FutureAccountNotifications(dateAndTimeZoneContext, result);
+        return new FutureAccountNotifications(dateAndTimeZoneContext, result, isInvoiceNotificationRequired);
     }
 
     private DateTime getNextUsageBillingDate(final String usageName, final LocalDate chargedThroughDate, final DateAndTimeZoneContext dateAndTimeZoneContext, final Map<String, Usage> knownUsages) {
@@ -461,10 +517,17 @@ public class InvoiceDispatcher {
     public static class FutureAccountNotifications {
         private final DateAndTimeZoneContext accountDateAndTimeZoneContext;
         private final Map<UUID, List<DateTime>> notifications;
+        private final boolean invoiceNotificationRequired;
 
         public FutureAccountNotifications(final DateAndTimeZoneContext accountDateAndTimeZoneContext, final Map<UUID, List<DateTime>> notifications) {
+            this(accountDateAndTimeZoneContext, notifications, false);
+        }
+
+        public FutureAccountNotifications(final DateAndTimeZoneContext accountDateAndTimeZoneContext, final Map<UUID, List<DateTime>> notifications,
+                                          final boolean invoiceNotificationRequired) {
             this.accountDateAndTimeZoneContext = accountDateAndTimeZoneContext;
             this.notifications = notifications;
+            this.invoiceNotificationRequired = invoiceNotificationRequired;
         }
 
         public DateAndTimeZoneContext getAccountDateAndTimeZoneContext() {
@@ -474,6 +537,11 @@ public class InvoiceDispatcher {
         public Map<UUID, List<DateTime>> getNotifications() {
             return notifications;
         }
+
+        // Whether the invoice should be notified to the account (e.g. by email), from the invoice email outbox
+        public boolean isInvoiceNotificationRequired() {
+            return invoiceNotificationRequired;
+        }
     }
 
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.math.BigDecimal;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.util.currency.KillBillMoney;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the per-account invoice ledger (account balance and CBA), so that these don't require to load all invoices.
+ * <p/>
+ * Invoice items and payments are never updated nor deleted: each time one is created, the matching amount is added to the
+ * ledger, in the same transaction. The ledger row is lazily created from the source rows the first time the account
+ * is written to (concurrent creations are serialized by the unique index on the account), and can be verified (and rebuilt)
+ * from these at any time.
+ */
+public class AccountBalanceDao {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountBalanceDao.class);
+
+    public BigDecimal getAccountBalanceFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final InvoiceAccountBalanceModelDao accountBalance = getLedgerFromTransaction(entitySqlDaoWrapperFactory, context);
+        return round(accountBalance.getBalance(), accountBalance.getCurrency());
+    }
+
+    public BigDecimal getAccountCBAFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final InvoiceAccountBalanceModelDao accountBalance = getLedgerFromTransaction(entitySqlDaoWrapperFactory, context);
+        return round(accountBalance.getCba(), accountBalance.getCurrency());
+    }
+
+    // To be called right after the item has been created
+    public void recordInvoiceItemFromTransaction(final InvoiceItemModelDao invoiceItem, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        if (InvoiceItemType.CBA_ADJ.equals(invoiceItem.getType())) {
+            addAmountsFromTransaction(BigDecimal.ZERO, invoiceItem.getAmount(), invoiceItem.getCurrency(), entitySqlDaoWrapperFactory, context);
+        } else {
+            addAmountsFromTransaction(invoiceItem.getAmount(), BigDecimal.ZERO, invoiceItem.getCurrency(), entitySqlDaoWrapperFactory, context);
+        }
+    }
+
+    // To be called right after the items have been created
+    public void recordInvoiceItemsFromTransaction(final Iterable<InvoiceItemModelDao> invoiceItems, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        BigDecimal balanceAmount = BigDecimal.ZERO;
+        BigDecimal cbaAmount = BigDecimal.ZERO;
+        Currency currency = null;
+        for (final InvoiceItemModelDao invoiceItem : invoiceItems) {
+            if (InvoiceItemType.CBA_ADJ.equals(invoiceItem.getType())) {
+                cbaAmount = cbaAmount.add(invoiceItem.getAmount());
+            } else {
+                balanceAmount = balanceAmount.add(invoiceItem.getAmount());
+            }
+            currency = invoiceItem.getCurrency();
+        }
+
+        if (currency != null) {
+            addAmountsFromTransaction(balanceAmount, cbaAmount, currency, entitySqlDaoWrapperFactory, context);
+        }
+    }
+
+    // To be called right after the payment (attempt, refund or chargeback) has been created
+    public void recordInvoicePaymentFromTransaction(final InvoicePaymentModelDao invoicePayment, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        addAmountsFromTransaction(invoicePayment.getAmount().negate(), BigDecimal.ZERO, invoicePayment.getCurrency(), entitySqlDaoWrapperFactory, context);
+    }
+
+    /**
+     * Verify the ledger against the invoice items and payments of the account, and rebuild it if needed.
+     *
+     * @param entitySqlDaoWrapperFactory the EntitySqlDaoWrapperFactory from the current transaction
+     * @param context                    the call callcontext
+     * @return true if the ledger was consistent with the source rows
+     */
+    public boolean checkAndRebuildFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        final InvoiceAccountBalanceSqlDao invoiceAccountBalanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceAccountBalanceSqlDao.class);
+        final InvoiceAccountBalanceModelDao fromSourceRows = invoiceAccountBalanceSqlDao.getFromSourceRowsByAccountRecordId(context);
+        if (fromSourceRows.getCurrency() == null) {
+            // Nothing has been invoiced yet
+            return true;
+        }
+
+        final InvoiceAccountBalanceModelDao accountBalance = invoiceAccountBalanceSqlDao.getByAccountRecordId(context);
+        if (accountBalance == null) {
+            invoiceAccountBalanceSqlDao.createIfAbsent(fromSourceRows, context);
+            return false;
+        } else if (accountBalance.getBalance().compareTo(fromSourceRows.getBalance()) != 0 ||
+                   accountBalance.getCba().compareTo(fromSourceRows.getCba()) != 0) {
+            log.warn("Rebuilding inconsistent invoice ledger for accountRecordId='{}': ledger={}, sourceRows={}", context.getAccountRecordId(), accountBalance, fromSourceRows);
+            invoiceAccountBalanceSqlDao.updateAmounts(fromSourceRows, context);
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    private InvoiceAccountBalanceModelDao getLedgerFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final InvoiceAccountBalanceSqlDao invoiceAccountBalanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceAccountBalanceSqlDao.class);
+        final InvoiceAccountBalanceModelDao accountBalance = invoiceAccountBalanceSqlDao.getByAccountRecordId(context);
+        if (accountBalance != null) {
+            return accountBalance;
+        }
+        // The ledger is only created on the write path (it could otherwise miss rows from concurrent transactions)
+        return invoiceAccountBalanceSqlDao.getFromSourceRowsByAccountRecordId(context);
+    }
+
+    private void addAmountsFromTransaction(final BigDecimal balanceAmount, final BigDecimal cbaAmount, final Currency currency,
+                                           final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        final InvoiceAccountBalanceSqlDao invoiceAccountBalanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceAccountBalanceSqlDao.class);
+        if (invoiceAccountBalanceSqlDao.addAmounts(balanceAmount, cbaAmount, context) == 0) {
+            // First write for that account: create the ledger as it was before that write (the source rows already contain the new amounts).
+            // If a concurrent transaction created it in the meantime, ours is a no-op, and the new amounts are added on top of theirs
+            // (their source rows could not see our uncommitted ones).
+            final InvoiceAccountBalanceModelDao fromSourceRows = invoiceAccountBalanceSqlDao.getFromSourceRowsByAccountRecordId(context);
+            final InvoiceAccountBalanceModelDao initialAccountBalance = new InvoiceAccountBalanceModelDao(fromSourceRows.getBalance().subtract(balanceAmount),
+                                                                                                          fromSourceRows.getCba().subtract(cbaAmount),
+                                                                                                          fromSourceRows.getCurrency() != null ? fromSourceRows.getCurrency() : currency);
+            invoiceAccountBalanceSqlDao.createIfAbsent(initialAccountBalance, context);
+            invoiceAccountBalanceSqlDao.addAmounts(balanceAmount, cbaAmount, context);
+        }
+    }
+
+    private BigDecimal round(final BigDecimal amount, final Currency currency) {
+        return currency == null ? amount : KillBillMoney.of(amount, currency);
+    }
+}
@@ -33,17 +33,18 @@ import com.google.common.collect.Ordering;
 public class CBADao {
 
     private final InvoiceDaoHelper invoiceDaoHelper;
+    private final AccountBalanceDao accountBalanceDao;
 
     public CBADao() {
         this.invoiceDaoHelper = new InvoiceDaoHelper();
+        this.accountBalanceDao = new AccountBalanceDao();
     }
 
 
     public BigDecimal getAccountCBAFromTransaction(final UUID accountId,
                                                     final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
                                                     final InternalTenantContext context) {
-        final List<InvoiceModelDao> invoices = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
-        return getAccountCBAFromTransaction(invoices);
+        return accountBalanceDao.getAccountCBAFromTransaction(entitySqlDaoWrapperFactory, context);
     }
 
     public BigDecimal getAccountCBAFromTransaction(final List<InvoiceModelDao> invoices) {
@@ -66,8 +67,7 @@ public class CBADao {
         // Current balance is positive, we need to use some of the existing if available (negative CBA amount)
         } else if (balance.compareTo(BigDecimal.ZERO) > 0) {
 
-            final List<InvoiceModelDao> allInvoices = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
-            final BigDecimal accountCBA = getAccountCBAFromTransaction(allInvoices);
+            final BigDecimal accountCBA = accountBalanceDao.getAccountCBAFromTransaction(entitySqlDaoWrapperFactory, context);
             if (accountCBA.compareTo(BigDecimal.ZERO) <= 0) {
                 return null;
             }
@@ -85,6 +85,7 @@ public class CBADao {
         if (cbaItem != null) {
             final InvoiceItemSqlDao transInvoiceItemDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
             transInvoiceItemDao.create(cbaItem, context);
+            accountBalanceDao.recordInvoiceItemFromTransaction(cbaItem, entitySqlDaoWrapperFactory, context);
         }
     }
 
@@ -99,11 +100,11 @@ public class CBADao {
 
     public void addCBAComplexityFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
 
-        List<InvoiceModelDao> invoiceItemModelDaos = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
+        // The CBA items created are added to the invoices as well, so we don't need to reload them afterwards
+        final List<InvoiceModelDao> invoiceItemModelDaos = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
         for (InvoiceModelDao cur : invoiceItemModelDaos) {
             addCBAIfNeeded(entitySqlDaoWrapperFactory, cur, context);
         }
-        invoiceItemModelDaos = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
         useExistingCBAFromTransaction(invoiceItemModelDaos, entitySqlDaoWrapperFactory, context);
     }
 
@@ -124,6 +125,8 @@ public class CBADao {
             final InvoiceItemSqlDao transInvoiceItemDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
             final InvoiceItemModelDao cbaAdjItem = new InvoiceItemModelDao(new CreditBalanceAdjInvoiceItem(invoice.getId(), invoice.getAccountId(), context.getCreatedDate().toLocalDate(), balance.negate(), invoice.getCurrency()));
             transInvoiceItemDao.create(cbaAdjItem, context);
+            accountBalanceDao.recordInvoiceItemFromTransaction(cbaAdjItem, entitySqlDaoWrapperFactory, context);
+            invoice.addInvoiceItem(cbaAdjItem);
         }
     }
 
@@ -154,6 +157,7 @@ public class CBADao {
 
             final InvoiceItemSqlDao transInvoiceItemDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
             transInvoiceItemDao.create(cbaAdjItem, context);
+            accountBalanceDao.recordInvoiceItemFromTransaction(cbaAdjItem, entitySqlDaoWrapperFactory, context);
 
             if (remainingAccountCBA.compareTo(BigDecimal.ZERO) <= 0) {
                 break;
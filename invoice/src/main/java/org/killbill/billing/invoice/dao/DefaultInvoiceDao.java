@@ -20,6 +20,7 @@ package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -41,6 +42,7 @@ import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.InvoicePaymentType;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceAdjustmentEvent;
+import org.killbill.billing.invoice.notification.InvoiceEmailPoster;
 import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
@@ -55,6 +57,8 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,16 +91,19 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                                                        InvoiceItemType.USAGE);
 
     private final NextBillingDatePoster nextBillingDatePoster;
+    private final InvoiceEmailPoster invoiceEmailPoster;
     private final PersistentBus eventBus;
     private final InternalCallContextFactory internalCallContextFactory;
     private final InvoiceDaoHelper invoiceDaoHelper;
     private final CBADao cbaDao;
+    private final AccountBalanceDao accountBalanceDao;
     private final InvoiceConfig invoiceConfig;
     private final Clock clock;
 
     @Inject
     public DefaultInvoiceDao(final IDBI dbi,
                              final NextBillingDatePoster nextBillingDatePoster,
+                             final InvoiceEmailPoster invoiceEmailPoster,
                              final PersistentBus eventBus,
                              final Clock clock,
                              final CacheControllerDispatcher cacheControllerDispatcher,
@@ -105,12 +112,17 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                              final InternalCallContextFactory internalCallContextFactory) {
         super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), InvoiceSqlDao.class);
         this.nextBillingDatePoster = nextBillingDatePoster;
+        this.invoiceEmailPoster = invoiceEmailPoster;
         this.eventBus = eventBus;
         this.invoiceConfig = invoiceConfig;
         this.internalCallContextFactory = internalCallContextFactory;
         this.invoiceDaoHelper = new InvoiceDaoHelper();
         this.cbaDao = new CBADao();
+        this.accountBalanceDao = new AccountBalanceDao();
         this.clock = clock;
+        // InvoiceBillingSnapshotSqlDao and InvoiceAccountBalanceSqlDao are NOT EntitySqlDao, so their mappers need to be registered here
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceBillingSnapshotModelDao.class));
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceAccountBalanceModelDao.class));
     }
 
     @Override
@@ -235,13 +247,15 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
                     // Create the invoice items
                     final InvoiceItemSqlDao transInvoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
-                    for (final InvoiceItemModelDao invoiceItemModelDao : invoiceItems) {
-                        createInvoiceItemFromTransaction(transInvoiceItemSqlDao, invoiceItemModelDao, context);
-                    }
+                    createInvoiceItemsFromTransaction(entitySqlDaoWrapperFactory, transInvoiceItemSqlDao, invoiceItems, context);
 
                     cbaDao.addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
 
                     notifyOfFutureBillingEvents(entitySqlDaoWrapperFactory, invoice.getAccountId(), callbackDateTimePerSubscriptions, context);
+
+                    if (isRealInvoice && callbackDateTimePerSubscriptions.isInvoiceNotificationRequired()) {
+                        invoiceEmailPoster.insertInvoiceEmailNotificationFromTransaction(entitySqlDaoWrapperFactory, invoice.getId(), clock.getUTCNow(), context);
+                    }
                 }
                 return null;
             }
@@ -269,7 +283,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     // Create the invoice items if needed
                     for (final InvoiceItemModelDao invoiceItemModelDao : invoiceModelDao.getInvoiceItems()) {
                         if (transInvoiceItemSqlDao.getById(invoiceItemModelDao.getId().toString(), context) == null) {
-                            createInvoiceItemFromTransaction(transInvoiceItemSqlDao, invoiceItemModelDao, context);
+                            createInvoiceItemFromTransaction(entitySqlDaoWrapperFactory, transInvoiceItemSqlDao, invoiceItemModelDao, context);
                             createdInvoiceItems.add(transInvoiceItemSqlDao.getById(invoiceItemModelDao.getId().toString(), context));
                             madeChanges = true;
                         }
@@ -321,11 +335,17 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                   }
 
                                                   @Override
-                                                  public Iterator<InvoiceModelDao> build(final InvoiceSqlDao invoiceSqlDao, final Long limit, final InternalTenantContext context) {
+                                                  public Iterator<InvoiceModelDao> build(final InvoiceSqlDao invoiceSqlDao, final Long offset, final Long limit, final Long lastRecordId, final InternalTenantContext context) {
                                                       try {
-                                                          return invoiceNumber != null ?
-                                                                 ImmutableList.<InvoiceModelDao>of(getByNumber(invoiceNumber, context)).iterator() :
-                                                                 invoiceSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                          if (invoiceNumber == null) {
+                                                              return invoiceSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, lastRecordId, context);
+                                                          }
+
+                                                          final InvoiceModelDao invoice = getByNumber(invoiceNumber, context);
+                                                          // Honor the seek cursor, if any
+                                                          return invoice.getRecordId() > lastRecordId ?
+                                                                 ImmutableList.<InvoiceModelDao>of(invoice).iterator() :
+                                                                 Iterators.<InvoiceModelDao>emptyIterator();
                                                       } catch (final InvoiceApiException ignored) {
                                                           return Iterators.<InvoiceModelDao>emptyIterator();
                                                       }
@@ -342,15 +362,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<BigDecimal>() {
             @Override
             public BigDecimal inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                BigDecimal cba = BigDecimal.ZERO;
-
-                BigDecimal accountBalance = BigDecimal.ZERO;
-                final List<InvoiceModelDao> invoices = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
-                for (final InvoiceModelDao cur : invoices) {
-                    accountBalance = accountBalance.add(InvoiceModelDaoHelper.getBalance(cur));
-                    cba = cba.add(InvoiceModelDaoHelper.getCBAAmount(cur));
-                }
-                return accountBalance.subtract(cba);
+                return accountBalanceDao.getAccountBalanceFromTransaction(entitySqlDaoWrapperFactory, context);
             }
         });
     }
@@ -450,6 +462,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                  context.getCreatedDate(), requestedPositiveAmount.negate(),
                                                                                  payment.getCurrency(), payment.getProcessedCurrency(), transactionExternalKey, payment.getId());
                 transactional.create(refund, context);
+                accountBalanceDao.recordInvoicePaymentFromTransaction(refund, entitySqlDaoWrapperFactory, context);
 
                 // Retrieve invoice after the Refund
                 final InvoiceModelDao invoice = transInvoiceDao.getById(payment.getInvoiceId().toString(), context);
@@ -470,7 +483,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                         final InvoiceItemModelDao adjItem = new InvoiceItemModelDao(context.getCreatedDate(), InvoiceItemType.REFUND_ADJ, invoice.getId(), invoice.getAccountId(),
                                                                                     null, null, null, null, null, null, context.getCreatedDate().toLocalDate(), null,
                                                                                     requestedPositiveAmountToAdjust.negate(), null, invoice.getCurrency(), null);
-                        createInvoiceItemFromTransaction(transInvoiceItemDao, adjItem, context);
+                        createInvoiceItemFromTransaction(entitySqlDaoWrapperFactory, transInvoiceItemDao, adjItem, context);
                         invoice.addInvoiceItem(adjItem);
                     }
                 } else if (isInvoiceAdjusted) {
@@ -481,7 +494,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                                invoice.getCurrency(), context.getCreatedDate().toLocalDate(),
                                                                                                context);
 
-                        createInvoiceItemFromTransaction(transInvoiceItemDao, item, context);
+                        createInvoiceItemFromTransaction(entitySqlDaoWrapperFactory, transInvoiceItemDao, item, context);
                         invoice.addInvoiceItem(item);
                     }
                 }
@@ -536,6 +549,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                      requestedChargedBackAmount.negate(), payment.getCurrency(), payment.getProcessedCurrency(),
                                                                                      null, payment.getId());
                 transactional.create(chargeBack, context);
+                accountBalanceDao.recordInvoicePaymentFromTransaction(chargeBack, entitySqlDaoWrapperFactory, context);
 
                 // Notify the bus since the balance of the invoice changed
                 final UUID accountId = transactional.getAccountIdFromInvoicePaymentId(chargeBack.getId().toString(), context);
@@ -650,6 +664,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 }).orNull();
                 if (existingAttempt == null) {
                     transactional.create(invoicePayment, context);
+                    accountBalanceDao.recordInvoicePaymentFromTransaction(invoicePayment, entitySqlDaoWrapperFactory, context);
                 }
                 return null;
             }
@@ -695,7 +710,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 final InvoiceItemModelDao cbaAdjItem = new InvoiceItemModelDao(context.getCreatedDate(), InvoiceItemType.CBA_ADJ, invoice.getId(), invoice.getAccountId(),
                                                                                null, null, null, null, null, null, context.getCreatedDate().toLocalDate(),
                                                                                null, cbaItem.getAmount().negate(), null, cbaItem.getCurrency(), cbaItem.getId());
-                createInvoiceItemFromTransaction(invoiceItemSqlDao, cbaAdjItem, context);
+                createInvoiceItemFromTransaction(entitySqlDaoWrapperFactory, invoiceItemSqlDao, cbaAdjItem, context);
 
                 // Verify the final invoice balance is not negative
                 invoiceDaoHelper.populateChildren(invoice, entitySqlDaoWrapperFactory, context);
@@ -752,7 +767,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                            invoice.getAccountId(), null, null, null, null, null, null,
                                                                                            context.getCreatedDate().toLocalDate(), null,
                                                                                            positiveCBAAdjItemAmount, null, cbaItem.getCurrency(), cbaItem.getId());
-                        createInvoiceItemFromTransaction(invoiceItemSqlDao, nextCBAAdjItem, context);
+                        createInvoiceItemFromTransaction(entitySqlDaoWrapperFactory, invoiceItemSqlDao, nextCBAAdjItem, context);
                         if (positiveRemainderToAdjust.compareTo(BigDecimal.ZERO) == 0) {
                             break;
                         }
@@ -775,22 +790,72 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         });
     }
 
+    @Override
+    public List<InvoiceBillingSnapshotModelDao> getBillingSnapshots(final InternalTenantContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<InvoiceBillingSnapshotModelDao>>() {
+            @Override
+            public List<InvoiceBillingSnapshotModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceBillingSnapshotSqlDao invoiceBillingSnapshotSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBillingSnapshotSqlDao.class);
+                return invoiceBillingSnapshotSqlDao.getByAccountRecordId(context);
+            }
+        });
+    }
+
+    @Override
+    public void setBillingSnapshots(final List<InvoiceBillingSnapshotModelDao> snapshots, final InternalCallContext context) {
+        transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceBillingSnapshotSqlDao invoiceBillingSnapshotSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBillingSnapshotSqlDao.class);
+                invoiceBillingSnapshotSqlDao.deleteByAccountRecordId(context);
+                if (!snapshots.isEmpty()) {
+                    invoiceBillingSnapshotSqlDao.create(snapshots, context);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public boolean checkAccountBalance(final InternalCallContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Boolean>() {
+            @Override
+            public Boolean inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return accountBalanceDao.checkAndRebuildFromTransaction(entitySqlDaoWrapperFactory, context);
+            }
+        });
+    }
+
     private void notifyOfFutureBillingEvents(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID accountId,
                                              final FutureAccountNotifications callbackDateTimePerSubscriptions, final InternalCallContext internalCallContext) {
 
-        final long dryRunNotificationTime = invoiceConfig.getDryRunNotificationSchedule().getMillis();
-        final boolean isInvoiceNotificationEnabled = dryRunNotificationTime > 0;
+        // Each notification triggers an invoice run for the whole account: coalesce them per (account local) date, keeping the earliest one
+        final Map<LocalDate, DateTime> callbackDateTimePerLocalDate = new HashMap<LocalDate, DateTime>();
+        final Map<LocalDate, UUID> subscriptionIdPerLocalDate = new HashMap<LocalDate, UUID>();
         for (final UUID subscriptionId : callbackDateTimePerSubscriptions.getNotifications().keySet()) {
             final List<DateTime> callbackDateTimeUTC = callbackDateTimePerSubscriptions.getNotifications().get(subscriptionId);
             for (final DateTime cur : callbackDateTimeUTC) {
-                if (isInvoiceNotificationEnabled) {
-                    final DateTime curDryRunNotificationTime = cur.minus(dryRunNotificationTime);
-                    final DateTime effectiveCurDryRunNotificationTime = (curDryRunNotificationTime.isAfter(clock.getUTCNow())) ? curDryRunNotificationTime : clock.getUTCNow();
-                    nextBillingDatePoster.insertNextBillingDryRunNotificationFromTransaction(entitySqlDaoWrapperFactory, accountId, subscriptionId, effectiveCurDryRunNotificationTime, cur, callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext(), internalCallContext);
+                final LocalDate curLocalDate = new LocalDate(cur, callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext().getAccountTimeZone());
+                final DateTime existingCallbackDateTime = callbackDateTimePerLocalDate.get(curLocalDate);
+                if (existingCallbackDateTime == null || cur.isBefore(existingCallbackDateTime)) {
+                    callbackDateTimePerLocalDate.put(curLocalDate, cur);
+                    subscriptionIdPerLocalDate.put(curLocalDate, subscriptionId);
                 }
-                nextBillingDatePoster.insertNextBillingNotificationFromTransaction(entitySqlDaoWrapperFactory, accountId, subscriptionId, cur, callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext(), internalCallContext);
             }
         }
+
+        final long dryRunNotificationTime = invoiceConfig.getDryRunNotificationSchedule().getMillis();
+        final boolean isInvoiceNotificationEnabled = dryRunNotificationTime > 0;
+        for (final LocalDate localDate : callbackDateTimePerLocalDate.keySet()) {
+            final UUID subscriptionId = subscriptionIdPerLocalDate.get(localDate);
+            final DateTime cur = callbackDateTimePerLocalDate.get(localDate);
+            if (isInvoiceNotificationEnabled) {
+                final DateTime curDryRunNotificationTime = cur.minus(dryRunNotificationTime);
+                final DateTime effectiveCurDryRunNotificationTime = (curDryRunNotificationTime.isAfter(clock.getUTCNow())) ? curDryRunNotificationTime : clock.getUTCNow();
+                nextBillingDatePoster.insertNextBillingDryRunNotificationFromTransaction(entitySqlDaoWrapperFactory, accountId, subscriptionId, effectiveCurDryRunNotificationTime, cur, callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext(), internalCallContext);
+            }
+            nextBillingDatePoster.insertNextBillingNotificationFromTransaction(entitySqlDaoWrapperFactory, accountId, subscriptionId, cur, callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext(), internalCallContext);
+        }
     }
 
     private void notifyBusOfInvoiceAdjustment(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID invoiceId, final UUID accountId,
@@ -803,7 +868,26 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         }
     }
 
-    private void createInvoiceItemFromTransaction(final InvoiceItemSqlDao invoiceItemSqlDao, final InvoiceItemModelDao invoiceItemModelDao, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
+    private void createInvoiceItemsFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InvoiceItemSqlDao invoiceItemSqlDao, final List<InvoiceItemModelDao> invoiceItemModelDaos, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
+        // Item adjustments are validated against their linked item, which could be part of the same list: create these one by one
+        final boolean hasItemAdjustments = Iterables.any(invoiceItemModelDaos, new Predicate<InvoiceItemModelDao>() {
+            @Override
+            public boolean apply(final InvoiceItemModelDao input) {
+                return InvoiceItemType.ITEM_ADJ.equals(input.getType());
+            }
+        });
+        if (invoiceItemModelDaos.size() <= 1 || hasItemAdjustments) {
+            for (final InvoiceItemModelDao invoiceItemModelDao : invoiceItemModelDaos) {
+                createInvoiceItemFromTransaction(entitySqlDaoWrapperFactory, invoiceItemSqlDao, invoiceItemModelDao, context);
+            }
+        } else {
+            // Single batch for the items, their history and audit rows
+            invoiceItemSqlDao.batchCreate(invoiceItemModelDaos, context);
+            accountBalanceDao.recordInvoiceItemsFromTransaction(invoiceItemModelDaos, entitySqlDaoWrapperFactory, context);
+        }
+    }
+
+    private void createInvoiceItemFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InvoiceItemSqlDao invoiceItemSqlDao, final InvoiceItemModelDao invoiceItemModelDao, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
         // There is no efficient way to retrieve an invoice item given an ID today (and invoice plugins can put item adjustments
         // on a different invoice than the original item), so it's easier to do the check in the DAO rather than in the API layer
         // See also https://github.com/killbill/killbill/issues/7
@@ -812,6 +896,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         }
 
         invoiceItemSqlDao.create(invoiceItemModelDao, context);
+        accountBalanceDao.recordInvoiceItemFromTransaction(invoiceItemModelDao, entitySqlDaoWrapperFactory, context);
     }
 
     private void validateInvoiceItemToBeAdjusted(final InvoiceItemSqlDao invoiceItemSqlDao, final InvoiceItemModelDao invoiceItemModelDao, final InternalCallContext context) throws InvoiceApiException {
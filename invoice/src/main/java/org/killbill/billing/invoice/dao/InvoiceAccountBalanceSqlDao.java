@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.math.BigDecimal;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
+import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.sqlobject.stringtemplate.UseStringTemplate3StatementLocator;
+
+@UseStringTemplate3StatementLocator
+public interface InvoiceAccountBalanceSqlDao extends Transactional<InvoiceAccountBalanceSqlDao>, CloseMe {
+
+    @SqlUpdate
+    public void createIfAbsent(@SmartBindBean final InvoiceAccountBalanceModelDao accountBalance,
+                               @SmartBindBean final InternalCallContext context);
+
+    @SqlQuery
+    public InvoiceAccountBalanceModelDao getByAccountRecordId(@SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public InvoiceAccountBalanceModelDao getFromSourceRowsByAccountRecordId(@SmartBindBean final InternalTenantContext context);
+
+    @SqlUpdate
+    public int addAmounts(@Bind("balanceAmount") final BigDecimal balanceAmount,
+                          @Bind("cbaAmount") final BigDecimal cbaAmount,
+                          @SmartBindBean final InternalCallContext context);
+
+    @SqlUpdate
+    public void updateAmounts(@SmartBindBean final InvoiceAccountBalanceModelDao accountBalance,
+                              @SmartBindBean final InternalCallContext context);
+}
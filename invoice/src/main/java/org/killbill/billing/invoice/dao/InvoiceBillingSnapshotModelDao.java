@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Per-subscription billing snapshot, recorded after each invoice run (see BillingSnapshotUtils).
+ */
+public class InvoiceBillingSnapshotModelDao {
+
+    private Long recordId;
+    private UUID subscriptionId;
+    private String billingEventsHash;
+    private LocalDate billedThroughDate;
+
+    public InvoiceBillingSnapshotModelDao() { /* For the DAO mapper */ }
+
+    public InvoiceBillingSnapshotModelDao(final UUID subscriptionId, final String billingEventsHash, final LocalDate billedThroughDate) {
+        this.subscriptionId = subscriptionId;
+        this.billingEventsHash = billingEventsHash;
+        this.billedThroughDate = billedThroughDate;
+    }
+
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(final Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(final UUID subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getBillingEventsHash() {
+        return billingEventsHash;
+    }
+
+    public void setBillingEventsHash(final String billingEventsHash) {
+        this.billingEventsHash = billingEventsHash;
+    }
+
+    public LocalDate getBilledThroughDate() {
+        return billedThroughDate;
+    }
+
+    public void setBilledThroughDate(final LocalDate billedThroughDate) {
+        this.billedThroughDate = billedThroughDate;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("InvoiceBillingSnapshotModelDao{");
+        sb.append("recordId=").append(recordId);
+        sb.append(", subscriptionId=").append(subscriptionId);
+        sb.append(", billingEventsHash='").append(billingEventsHash).append('\'');
+        sb.append(", billedThroughDate=").append(billedThroughDate);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -127,6 +127,28 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     void notifyOfPayment(InvoicePaymentModelDao invoicePayment, InternalCallContext context);
 
+    /**
+     * @param context the tenant context (with the account record id)
+     * @return the billing snapshots of the subscriptions of the account
+     */
+    List<InvoiceBillingSnapshotModelDao> getBillingSnapshots(InternalTenantContext context);
+
+    /**
+     * Replace the billing snapshots of the subscriptions of the account.
+     *
+     * @param snapshots the new snapshots
+     * @param context   the call context (with the account record id)
+     */
+    void setBillingSnapshots(List<InvoiceBillingSnapshotModelDao> snapshots, InternalCallContext context);
+
+    /**
+     * Verify the account balance and CBA ledger against the invoice items and payments, and rebuild it if needed.
+     *
+     * @param context the call context (with the account record id)
+     * @return true if the ledger was consistent
+     */
+    boolean checkAccountBalance(InternalCallContext context);
+
     /**
      * @param accountId the account for which we need to rebalance the CBA
      * @param context   the callcontext
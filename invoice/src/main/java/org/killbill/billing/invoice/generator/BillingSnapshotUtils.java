@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BillingEventSet;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * Helpers for the per-subscription billing snapshots, used to avoid replaying the full invoicing history of a subscription.
+ * <p/>
+ * A snapshot records, for a given subscription, a hash of its billing events and the date up to which it has been billed
+ * (the billed through date). As long as neither the billing events nor the existing items of the subscription have changed,
+ * the items before that date are already reconciled and only the items after it need to be merged by the generator.
+ */
+public class BillingSnapshotUtils {
+
+    /**
+     * @param events the billing events for the account
+     * @return the hash of the billing events, per subscription (subscriptions with AUTO_INVOICE_OFF are skipped)
+     */
+    public static Map<UUID, String> computeBillingEventsHashes(final BillingEventSet events) {
+        final Map<UUID, StringBuilder> billingEventsPerSubscription = new HashMap<UUID, StringBuilder>();
+        for (final BillingEvent event : events) {
+            final UUID subscriptionId = event.getSubscription().getId();
+            if (events.getSubscriptionIdsWithAutoInvoiceOff().contains(subscriptionId)) {
+                continue;
+            }
+
+            if (billingEventsPerSubscription.get(subscriptionId) == null) {
+                billingEventsPerSubscription.put(subscriptionId, new StringBuilder());
+            }
+            billingEventsPerSubscription.get(subscriptionId)
+                                        .append(event.getEffectiveDate()).append('|')
+                                        .append(event.getTimeZone()).append('|')
+                                        .append(event.getTransitionType()).append('|')
+                                        .append(event.getPlan() == null ? null : event.getPlan().getName()).append('|')
+                                        .append(event.getPlanPhase() == null ? null : event.getPlanPhase().getName()).append('|')
+                                        .append(event.getBillingPeriod()).append('|')
+                                        .append(event.getBillingMode()).append('|')
+                                        .append(event.getBillCycleDayLocal()).append('|')
+                                        .append(event.getFixedPrice()).append('|')
+                                        .append(event.getRecurringPrice()).append('|')
+                                        .append(event.getCurrency()).append('\n');
+        }
+
+        final Map<UUID, String> billingEventsHashes = new HashMap<UUID, String>();
+        for (final UUID subscriptionId : billingEventsPerSubscription.keySet()) {
+            billingEventsHashes.put(subscriptionId, Hashing.sha1().hashString(billingEventsPerSubscription.get(subscriptionId), Charsets.UTF_8).toString());
+        }
+        return billingEventsHashes;
+    }
+
+    /**
+     * Compute the billed through date of each subscription, i.e. the latest end date of its recurring items
+     * (or start date of its fixed items).
+     * <p/>
+     * Subscriptions which have been repaired or adjusted aren't returned: these always require a full replay.
+     *
+     * @param items all existing invoice items for the account
+     * @return the billed through date, per subscription
+     */
+    public static Map<UUID, LocalDate> computeBilledThroughDates(final Iterable<InvoiceItem> items) {
+        final Map<UUID, LocalDate> billedThroughDates = new HashMap<UUID, LocalDate>();
+        final Map<UUID, UUID> subscriptionIdPerItemId = new HashMap<UUID, UUID>();
+        for (final InvoiceItem item : items) {
+            if (item.getSubscriptionId() == null) {
+                continue;
+            }
+
+            final LocalDate itemBilledThroughDate;
+            if (item.getInvoiceItemType() == InvoiceItemType.RECURRING) {
+                itemBilledThroughDate = item.getEndDate();
+            } else if (item.getInvoiceItemType() == InvoiceItemType.FIXED) {
+                itemBilledThroughDate = item.getStartDate();
+            } else {
+                continue;
+            }
+            subscriptionIdPerItemId.put(item.getId(), item.getSubscriptionId());
+
+            final LocalDate billedThroughDate = billedThroughDates.get(item.getSubscriptionId());
+            if (itemBilledThroughDate != null && (billedThroughDate == null || itemBilledThroughDate.isAfter(billedThroughDate))) {
+                billedThroughDates.put(item.getSubscriptionId(), itemBilledThroughDate);
+            }
+        }
+
+        final Set<UUID> subscriptionIdsWithAdjustments = new HashSet<UUID>();
+        for (final InvoiceItem item : items) {
+            if (item.getInvoiceItemType() != InvoiceItemType.REPAIR_ADJ && item.getInvoiceItemType() != InvoiceItemType.ITEM_ADJ) {
+                continue;
+            }
+
+            if (item.getSubscriptionId() != null) {
+                subscriptionIdsWithAdjustments.add(item.getSubscriptionId());
+            }
+            if (item.getLinkedItemId() != null && subscriptionIdPerItemId.get(item.getLinkedItemId()) != null) {
+                subscriptionIdsWithAdjustments.add(subscriptionIdPerItemId.get(item.getLinkedItemId()));
+            }
+        }
+        billedThroughDates.keySet().removeAll(subscriptionIdsWithAdjustments);
+
+        return billedThroughDates;
+    }
+
+    /**
+     * @param item              an existing or proposed item for a subscription
+     * @param billedThroughDate the billed through date of that subscription
+     * @return true if the item needs to be considered by the generator for that subscription
+     */
+    public static boolean isAfterBilledThroughDate(final InvoiceItem item, final LocalDate billedThroughDate) {
+        if (item.getInvoiceItemType() == InvoiceItemType.FIXED) {
+            return !item.getStartDate().isBefore(billedThroughDate);
+        } else {
+            return item.getEndDate() == null || item.getEndDate().isAfter(billedThroughDate);
+        }
+    }
+
+    /**
+     * @param item              a proposed item for a subscription
+     * @param billedThroughDate the billed through date of that subscription
+     * @return true if the item straddles the billed through date (the snapshot cannot be used in that case)
+     */
+    public static boolean isAcrossBilledThroughDate(final InvoiceItem item, final LocalDate billedThroughDate) {
+        return item.getInvoiceItemType() == InvoiceItemType.RECURRING &&
+               item.getStartDate().isBefore(billedThroughDate) &&
+               (item.getEndDate() == null || item.getEndDate().isAfter(billedThroughDate));
+    }
+}
@@ -21,8 +21,10 @@ package org.killbill.billing.invoice.generator;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -62,6 +64,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -91,6 +94,15 @@ public class DefaultInvoiceGenerator implements InvoiceGenerator {
                                    @Nullable final List<Invoice> existingInvoices,
                                    final LocalDate targetDate,
                                    final Currency targetCurrency, final InternalCallContext context) throws InvoiceApiException {
+        return generateInvoice(accountId, events, existingInvoices, ImmutableMap.<UUID, LocalDate>of(), targetDate, targetCurrency, context);
+    }
+
+    @Override
+    public Invoice generateInvoice(final UUID accountId, @Nullable final BillingEventSet events,
+                                   @Nullable final List<Invoice> existingInvoices,
+                                   final Map<UUID, LocalDate> billedThroughDates,
+                                   final LocalDate targetDate,
+                                   final Currency targetCurrency, final InternalCallContext context) throws InvoiceApiException {
         if ((events == null) || (events.size() == 0) || events.isAccountAutoInvoiceOff()) {
             return null;
         }
@@ -101,7 +113,7 @@ public class DefaultInvoiceGenerator implements InvoiceGenerator {
         final Invoice invoice = new DefaultInvoice(accountId, clock.getUTCToday(), adjustedTargetDate, targetCurrency);
         final UUID invoiceId = invoice.getId();
 
-        final List<InvoiceItem> inAdvanceItems = generateInAdvanceInvoiceItems(accountId, invoiceId, events, existingInvoices, adjustedTargetDate, targetCurrency);
+        final List<InvoiceItem> inAdvanceItems = generateInAdvanceInvoiceItems(accountId, invoiceId, events, existingInvoices, billedThroughDates, adjustedTargetDate, targetCurrency);
         invoice.addInvoiceItems(inAdvanceItems);
 
         final List<InvoiceItem> usageItems = generateUsageInvoiceItems(invoiceId, events, existingInvoices, targetDate, context);
@@ -172,28 +184,86 @@ public class DefaultInvoiceGenerator implements InvoiceGenerator {
     }
 
     private List<InvoiceItem> generateInAdvanceInvoiceItems(final UUID accountId, final UUID invoiceId, final BillingEventSet eventSet,
-                                                            @Nullable final List<Invoice> existingInvoices, final LocalDate targetDate,
-                                                            final Currency targetCurrency) throws InvoiceApiException {
+                                                            @Nullable final List<Invoice> existingInvoices, final Map<UUID, LocalDate> billedThroughDates,
+                                                            final LocalDate targetDate, final Currency targetCurrency) throws InvoiceApiException {
+        // Generate list of proposed invoice items based on billing events from junction-- proposed items are ALL items since beginning of time
+        final List<InvoiceItem> proposedItems = generateInAdvanceInvoiceItems(invoiceId, accountId, eventSet, targetDate, targetCurrency);
+
+        // Subscriptions for which the items prior their billed through date are already reconciled and can be skipped
+        final Map<UUID, LocalDate> validBilledThroughDates = computeValidBilledThroughDates(existingInvoices, billedThroughDates, proposedItems);
+
         final AccountItemTree accountItemTree = new AccountItemTree(accountId, invoiceId);
         if (existingInvoices != null) {
             for (final Invoice invoice : existingInvoices) {
                 for (final InvoiceItem item : invoice.getInvoiceItems()) {
-                    if (item.getSubscriptionId() == null || // Always include migration invoices, credits, external charges etc.
-                        !eventSet.getSubscriptionIdsWithAutoInvoiceOff()
-                                 .contains(item.getSubscriptionId())) { //don't add items with auto_invoice_off tag
+                    if ((item.getSubscriptionId() == null || // Always include migration invoices, credits, external charges etc.
+                         !eventSet.getSubscriptionIdsWithAutoInvoiceOff()
+                                  .contains(item.getSubscriptionId())) && //don't add items with auto_invoice_off tag
+                        isAfterBilledThroughDate(item, validBilledThroughDates)) {
                         accountItemTree.addExistingItem(item);
                     }
                 }
             }
         }
 
-        // Generate list of proposed invoice items based on billing events from junction-- proposed items are ALL items since beginning of time
-        final List<InvoiceItem> proposedItems = generateInAdvanceInvoiceItems(invoiceId, accountId, eventSet, targetDate, targetCurrency);
+        final List<InvoiceItem> proposedItemsToMerge;
+        if (validBilledThroughDates.isEmpty()) {
+            proposedItemsToMerge = proposedItems;
+        } else {
+            proposedItemsToMerge = new ArrayList<InvoiceItem>();
+            for (final InvoiceItem item : proposedItems) {
+                if (isAfterBilledThroughDate(item, validBilledThroughDates)) {
+                    proposedItemsToMerge.add(item);
+                }
+            }
+        }
 
-        accountItemTree.mergeWithProposedItems(proposedItems);
+        accountItemTree.mergeWithProposedItems(proposedItemsToMerge);
         return accountItemTree.getResultingItemList();
     }
 
+    private Map<UUID, LocalDate> computeValidBilledThroughDates(@Nullable final List<Invoice> existingInvoices, final Map<UUID, LocalDate> billedThroughDates,
+                                                                final List<InvoiceItem> proposedItems) {
+        if (billedThroughDates.isEmpty() || existingInvoices == null) {
+            return ImmutableMap.<UUID, LocalDate>of();
+        }
+
+        // The snapshots are only valid if the existing items haven't changed since then (e.g. no repair or item adjustment)
+        final List<InvoiceItem> existingItems = new ArrayList<InvoiceItem>();
+        for (final Invoice invoice : existingInvoices) {
+            existingItems.addAll(invoice.getInvoiceItems());
+        }
+        final Map<UUID, LocalDate> existingBilledThroughDates = BillingSnapshotUtils.computeBilledThroughDates(existingItems);
+
+        final Map<UUID, LocalDate> validBilledThroughDates = new HashMap<UUID, LocalDate>();
+        for (final UUID subscriptionId : billedThroughDates.keySet()) {
+            final LocalDate billedThroughDate = billedThroughDates.get(subscriptionId);
+            if (billedThroughDate != null && billedThroughDate.equals(existingBilledThroughDates.get(subscriptionId))) {
+                validBilledThroughDates.put(subscriptionId, billedThroughDate);
+            }
+        }
+
+        // ... and if the proposed items line up with the billed through date
+        for (final InvoiceItem item : proposedItems) {
+            final LocalDate billedThroughDate = validBilledThroughDates.get(item.getSubscriptionId());
+            if (billedThroughDate != null && BillingSnapshotUtils.isAcrossBilledThroughDate(item, billedThroughDate)) {
+                validBilledThroughDates.remove(item.getSubscriptionId());
+            }
+        }
+
+        return validBilledThroughDates;
+    }
+
+    private boolean isAfterBilledThroughDate(final InvoiceItem item, final Map<UUID, LocalDate> billedThroughDates) {
+        if (item.getSubscriptionId() == null ||
+            (item.getInvoiceItemType() != InvoiceItemType.RECURRING && item.getInvoiceItemType() != InvoiceItemType.FIXED)) {
+            return true;
+        }
+
+        final LocalDate billedThroughDate = billedThroughDates.get(item.getSubscriptionId());
+        return billedThroughDate == null || BillingSnapshotUtils.isAfterBilledThroughDate(item, billedThroughDate);
+    }
+
     private void validateTargetDate(final LocalDate targetDate) throws InvoiceApiException {
         final int maximumNumberOfMonths = config.getNumberOfMonthsInFuture();
 
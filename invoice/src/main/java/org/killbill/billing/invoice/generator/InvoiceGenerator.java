@@ -17,6 +17,7 @@
 package org.killbill.billing.invoice.generator;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -33,4 +34,12 @@ public interface InvoiceGenerator {
 
     public Invoice generateInvoice(UUID accountId, @Nullable BillingEventSet events, @Nullable List<Invoice> existingInvoices,
                                    LocalDate targetDate, Currency targetCurrency, final InternalCallContext context) throws InvoiceApiException;
+
+    /**
+     * Same as above, but only the items after the billed through date of the subscriptions present in billedThroughDates
+     * are merged (falling back to the full history for any subscription which doesn't match its snapshot anymore).
+     */
+    public Invoice generateInvoice(UUID accountId, @Nullable BillingEventSet events, @Nullable List<Invoice> existingInvoices,
+                                   Map<UUID, LocalDate> billedThroughDates, LocalDate targetDate, Currency targetCurrency,
+                                   final InternalCallContext context) throws InvoiceApiException;
 }
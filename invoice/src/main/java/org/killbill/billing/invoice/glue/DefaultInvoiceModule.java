@@ -39,13 +39,18 @@ import org.killbill.billing.invoice.dao.DefaultInvoiceDao;
 import org.killbill.billing.invoice.dao.InvoiceDao;
 import org.killbill.billing.invoice.generator.DefaultInvoiceGenerator;
 import org.killbill.billing.invoice.generator.InvoiceGenerator;
+import org.killbill.billing.invoice.notification.DefaultInvoiceEmailOutbox;
+import org.killbill.billing.invoice.notification.DefaultInvoiceEmailPoster;
 import org.killbill.billing.invoice.notification.DefaultNextBillingDateNotifier;
 import org.killbill.billing.invoice.notification.DefaultNextBillingDatePoster;
 import org.killbill.billing.invoice.notification.EmailInvoiceNotifier;
+import org.killbill.billing.invoice.notification.InvoiceEmailOutbox;
+import org.killbill.billing.invoice.notification.InvoiceEmailPoster;
 import org.killbill.billing.invoice.notification.NextBillingDateNotifier;
 import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.invoice.notification.NullInvoiceNotifier;
 import org.killbill.billing.invoice.plugin.api.InvoicePluginApi;
+import org.killbill.billing.invoice.template.HtmlInvoiceGenerator;
 import org.killbill.billing.invoice.template.bundles.DefaultResourceBundleFactory;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.platform.api.KillbillConfigSource;
@@ -94,6 +99,8 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
 
     protected void installResourceBundleFactory() {
         bind(ResourceBundleFactory.class).to(DefaultResourceBundleFactory.class).asEagerSingleton();
+        // Shared, as it caches the tenant templates
+        bind(HtmlInvoiceGenerator.class).asEagerSingleton();
     }
 
     @Override
@@ -104,6 +111,8 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
     protected void installNotifiers() {
         bind(NextBillingDateNotifier.class).to(DefaultNextBillingDateNotifier.class).asEagerSingleton();
         bind(NextBillingDatePoster.class).to(DefaultNextBillingDatePoster.class).asEagerSingleton();
+        bind(InvoiceEmailOutbox.class).to(DefaultInvoiceEmailOutbox.class).asEagerSingleton();
+        bind(InvoiceEmailPoster.class).to(DefaultInvoiceEmailPoster.class).asEagerSingleton();
         final TranslatorConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(TranslatorConfig.class);
         bind(TranslatorConfig.class).toInstance(config);
         bind(InvoiceFormatterFactory.class).to(config.getInvoiceFormatterFactoryClass()).asEagerSingleton();
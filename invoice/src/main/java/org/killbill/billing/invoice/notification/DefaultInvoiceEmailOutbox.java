@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.notification;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountApiException;
+import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.invoice.api.DefaultInvoiceService;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceNotifier;
+import org.killbill.billing.invoice.dao.InvoiceDao;
+import org.killbill.billing.invoice.model.DefaultInvoice;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.clock.Clock;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+
+/**
+ * Outbox for the invoice notifications (emails): the notifications are recorded in the transaction which creates
+ * the invoice (see InvoiceEmailPoster) and sent from the notification queue threads, outside of the account lock,
+ * so that a slow MTA doesn't hold up invoicing. Failed notifications are retried with backoff.
+ */
+public class DefaultInvoiceEmailOutbox implements InvoiceEmailOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultInvoiceEmailOutbox.class);
+
+    public static final String INVOICE_EMAIL_QUEUE = "invoice-email-queue";
+
+    // Delay before each retry, we give up after the last one
+    static final int[] RETRY_DELAYS_SEC = {60, 300, 900, 3600, 14400};
+
+    private final NotificationQueueService notificationQueueService;
+    private final InvoiceNotifier invoiceNotifier;
+    private final InvoiceDao invoiceDao;
+    private final AccountInternalApi accountApi;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final Clock clock;
+
+    private NotificationQueue invoiceEmailQueue;
+
+    @Inject
+    public DefaultInvoiceEmailOutbox(final NotificationQueueService notificationQueueService,
+                                     final InvoiceNotifier invoiceNotifier,
+                                     final InvoiceDao invoiceDao,
+                                     final AccountInternalApi accountApi,
+                                     final InternalCallContextFactory internalCallContextFactory,
+                                     final Clock clock) {
+        this.notificationQueueService = notificationQueueService;
+        this.invoiceNotifier = invoiceNotifier;
+        this.invoiceDao = invoiceDao;
+        this.accountApi = accountApi;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.clock = clock;
+    }
+
+    @Override
+    public void initialize() throws NotificationQueueAlreadyExists {
+        final NotificationQueueHandler notificationQueueHandler = new NotificationQueueHandler() {
+            @Override
+            public void handleReadyNotification(final NotificationEvent notificationKey, final DateTime eventDate, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+                if (!(notificationKey instanceof InvoiceEmailNotificationKey)) {
+                    log.error("Invoice service received an unexpected event type {}", notificationKey.getClass().getName());
+                    return;
+                }
+
+                final InvoiceEmailNotificationKey key = (InvoiceEmailNotificationKey) notificationKey;
+                notifyInvoice(key.getUuidKey(), key.getAttemptNumber(), userToken, accountRecordId, tenantRecordId);
+            }
+        };
+
+        invoiceEmailQueue = notificationQueueService.createNotificationQueue(DefaultInvoiceService.INVOICE_SERVICE_NAME,
+                                                                             INVOICE_EMAIL_QUEUE,
+                                                                             notificationQueueHandler);
+    }
+
+    @Override
+    public void start() {
+        invoiceEmailQueue.startQueue();
+    }
+
+    @Override
+    public void stop() throws NoSuchNotificationQueue {
+        if (invoiceEmailQueue != null) {
+            invoiceEmailQueue.stopQueue();
+            notificationQueueService.deleteNotificationQueue(invoiceEmailQueue.getServiceName(), invoiceEmailQueue.getQueueName());
+        }
+    }
+
+    private void notifyInvoice(final UUID invoiceId, final int attemptNumber, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+        final InternalTenantContext context = internalCallContextFactory.createInternalTenantContext(tenantRecordId, accountRecordId);
+        try {
+            final Invoice invoice = new DefaultInvoice(invoiceDao.getById(invoiceId, context));
+            final Account account = accountApi.getAccountById(invoice.getAccountId(), context);
+            invoiceNotifier.notify(account, invoice, internalCallContextFactory.createTenantContext(context));
+        } catch (final AccountApiException e) {
+            log.warn(String.format("Failed to notify invoiceId %s", invoiceId), e);
+            scheduleRetry(invoiceId, attemptNumber, userToken, accountRecordId, tenantRecordId);
+        } catch (final InvoiceApiException e) {
+            log.warn(String.format("Failed to notify invoiceId %s", invoiceId), e);
+            scheduleRetry(invoiceId, attemptNumber, userToken, accountRecordId, tenantRecordId);
+        }
+    }
+
+    private void scheduleRetry(final UUID invoiceId, final int attemptNumber, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+        if (attemptNumber >= RETRY_DELAYS_SEC.length) {
+            log.warn("Giving up notification of invoiceId {} after {} attempts", invoiceId, attemptNumber + 1);
+            return;
+        }
+
+        final DateTime timeOfRetry = clock.getUTCNow().plusSeconds(RETRY_DELAYS_SEC[attemptNumber]);
+        try {
+            invoiceEmailQueue.recordFutureNotification(timeOfRetry, new InvoiceEmailNotificationKey(invoiceId, attemptNumber + 1), userToken, accountRecordId, tenantRecordId);
+        } catch (final IOException e) {
+            log.error(String.format("Failed to schedule retry of notification for invoiceId %s", invoiceId), e);
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.killbill.billing.invoice.notification;
 
+import java.util.LinkedList;
+import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -27,6 +29,7 @@ import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.config.InvoiceConfig;
 import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
 import org.killbill.notificationq.api.NotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService;
 import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
@@ -90,7 +93,11 @@ public class DefaultNextBillingDateNotifier implements NextBillingDateNotifier {
                             key.isDryRunForInvoiceNotification()) {
                             processEventForInvoiceNotification(key.getUuidKey(), targetDate, userToken, accountRecordId, tenantRecordId);
                         } else {
-                            processEventForInvoiceGeneration(key.getUuidKey(), targetDate, userToken, accountRecordId, tenantRecordId);
+                            // Look them up before the run, so that notifications recorded by the run itself are left alone
+                            final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> coveredNotifications = getNotificationsCoveredByInvoiceRun(targetDate, accountRecordId, tenantRecordId);
+                            if (processEventForInvoiceGeneration(key.getUuidKey(), targetDate, userToken, accountRecordId, tenantRecordId)) {
+                                removeNotificationsCoveredByInvoiceRun(coveredNotifications, targetDate);
+                            }
                         }
                     } catch (SubscriptionBaseApiException e) {
                         log.warn("Next Billing Date Notification Queue handled spurious notification (key: " + key + ")", e);
@@ -119,8 +126,30 @@ public class DefaultNextBillingDateNotifier implements NextBillingDateNotifier {
         }
     }
 
-    private void processEventForInvoiceGeneration(final UUID subscriptionId, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
-        listener.handleNextBillingDateEvent(subscriptionId, eventDateTime, userToken, accountRecordId, tenantRecordId);
+    // The invoice run for the account up to targetDate makes any other pending (non dry-run) notification for that account, due by then, redundant
+    private List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> getNotificationsCoveredByInvoiceRun(final DateTime targetDate, final Long accountRecordId, final Long tenantRecordId) {
+        final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> coveredNotifications = new LinkedList<NotificationEventWithMetadata<NextBillingDateNotificationKey>>();
+        final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> futureNotifications = nextBillingQueue.getFutureNotificationForSearchKeys(accountRecordId, tenantRecordId);
+        for (final NotificationEventWithMetadata<NextBillingDateNotificationKey> futureNotification : futureNotifications) {
+            final boolean isDryRunForInvoiceNotification = futureNotification.getEvent().isDryRunForInvoiceNotification() != null &&
+                                                           futureNotification.getEvent().isDryRunForInvoiceNotification();
+            if (!isDryRunForInvoiceNotification && !futureNotification.getEffectiveDate().isAfter(targetDate)) {
+                coveredNotifications.add(futureNotification);
+            }
+        }
+        return coveredNotifications;
+    }
+
+    // Only called once the invoice run succeeded: if it failed (or could not lock the account), these notifications are still needed
+    private void removeNotificationsCoveredByInvoiceRun(final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> coveredNotifications, final DateTime targetDate) {
+        for (final NotificationEventWithMetadata<NextBillingDateNotificationKey> coveredNotification : coveredNotifications) {
+            log.info("Coalescing next billing date notification recordId {} for subscriptionId {} with invoice run at targetDate {}", new Object[]{coveredNotification.getRecordId(), coveredNotification.getEvent().getUuidKey(), targetDate});
+            nextBillingQueue.removeNotification(coveredNotification.getRecordId());
+        }
+    }
+
+    private boolean processEventForInvoiceGeneration(final UUID subscriptionId, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+        return listener.handleNextBillingDateEvent(subscriptionId, eventDateTime, userToken, accountRecordId, tenantRecordId);
     }
 
     private void processEventForInvoiceNotification(final UUID subscriptionId, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
@@ -32,7 +32,6 @@ import org.killbill.billing.invoice.template.HtmlInvoiceGenerator;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.callcontext.TenantContext;
-import org.killbill.billing.util.email.DefaultEmailSender;
 import org.killbill.billing.util.email.EmailApiException;
 import org.killbill.billing.util.email.EmailConfig;
 import org.killbill.billing.util.email.EmailSender;
@@ -49,6 +48,7 @@ public class EmailInvoiceNotifier implements InvoiceNotifier {
     private final TagInternalApi tagUserApi;
     private final HtmlInvoiceGenerator generator;
     private final EmailConfig config;
+    private final EmailSender sender;
     private final InternalCallContextFactory internalCallContextFactory;
 
     @Inject
@@ -56,11 +56,13 @@ public class EmailInvoiceNotifier implements InvoiceNotifier {
                                 final TagInternalApi tagUserApi,
                                 final HtmlInvoiceGenerator generator,
                                 final EmailConfig config,
+                                final EmailSender sender,
                                 final InternalCallContextFactory internalCallContextFactory) {
         this.accountApi = accountApi;
         this.tagUserApi = tagUserApi;
         this.generator = generator;
         this.config = config;
+        this.sender = sender;
         this.internalCallContextFactory = internalCallContextFactory;
     }
 
@@ -99,7 +101,6 @@ public class EmailInvoiceNotifier implements InvoiceNotifier {
             subject = config.getInvoiceEmailSubject();
         }
 
-        final EmailSender sender = new DefaultEmailSender(config);
         try {
             sender.sendHTMLEmail(to, cc, subject, htmlInvoice.getBody());
         } catch (EmailApiException e) {
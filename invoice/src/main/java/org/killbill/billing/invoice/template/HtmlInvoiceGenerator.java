@@ -19,10 +19,16 @@ package org.killbill.billing.invoice.template;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
@@ -36,6 +42,8 @@ import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory;
 import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory.ResourceBundleType;
 import org.killbill.billing.invoice.template.translator.DefaultInvoiceTranslator;
 import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.util.LocaleUtils;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.email.templates.TemplateEngine;
@@ -43,7 +51,12 @@ import org.killbill.billing.util.io.IOUtils;
 import org.killbill.billing.util.template.translation.TranslatorConfig;
 import org.killbill.xmlloader.UriAccessor;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 
 public class HtmlInvoiceGenerator {
@@ -55,6 +68,12 @@ public class HtmlInvoiceGenerator {
     private final TenantInternalApi tenantApi;
     private final ResourceBundleFactory bundleFactory;
 
+    // Template text, per tenant record id, locale and manualPay flag (tenant template, or default one if the tenant didn't upload any).
+    // Entries are invalidated when the tenant uploads new templates.
+    private final Cache<List<Object>, String> templateTexts = CacheBuilder.newBuilder().build();
+    // Bumped before each invalidation: the cache doesn't discard a load which was in progress when its key got invalidated
+    private final AtomicLong templateTextsInvalidations = new AtomicLong();
+
     @Inject
     public HtmlInvoiceGenerator(final InvoiceFormatterFactory factory,
                                 final TemplateEngine templateEngine,
@@ -68,6 +87,15 @@ public class HtmlInvoiceGenerator {
         this.templateEngine = templateEngine;
         this.bundleFactory = bundleFactory;
         this.tenantApi = tenantInternalApi;
+
+        final CacheInvalidationCallback cacheInvalidationCallback = new CacheInvalidationCallback() {
+            @Override
+            public void invalidateCache(final TenantKey key, final Object cookie, final InternalTenantContext tenantContext) {
+                invalidateTemplateTexts(key == TenantKey.INVOICE_MP_TEMPLATE, tenantContext.getTenantRecordId());
+            }
+        };
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.INVOICE_TEMPLATE, cacheInvalidationCallback);
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.INVOICE_MP_TEMPLATE, cacheInvalidationCallback);
     }
 
     public HtmlInvoice generateInvoice(final Account account, @Nullable final Invoice invoice, final boolean manualPay, final InternalTenantContext context) throws IOException {
@@ -100,6 +128,40 @@ public class HtmlInvoiceGenerator {
     }
 
     private String getTemplateText(final Locale locale, final boolean manualPay, final InternalTenantContext context) throws IOException {
+        final List<Object> key = Arrays.<Object>asList(context.getTenantRecordId(), locale, manualPay);
+        final long invalidations = templateTextsInvalidations.get();
+        try {
+            final String templateText = templateTexts.get(key, new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return loadTemplateText(locale, manualPay, context);
+                }
+            });
+            if (templateTextsInvalidations.get() != invalidations) {
+                // The template may have been loaded before the upload, don't keep it
+                templateTexts.invalidate(key);
+            }
+            return templateText;
+        } catch (final UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (final ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private void invalidateTemplateTexts(final boolean manualPay, final Long tenantRecordId) {
+        templateTextsInvalidations.incrementAndGet();
+        final Iterator<List<Object>> iterator = templateTexts.asMap().keySet().iterator();
+        while (iterator.hasNext()) {
+            final List<Object> key = iterator.next();
+            if (Objects.equal(key.get(0), tenantRecordId) && key.get(2).equals(manualPay)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private String loadTemplateText(final Locale locale, final boolean manualPay, final InternalTenantContext context) throws IOException {
 
         if (context.getTenantRecordId() == InternalCallContextFactory.INTERNAL_TENANT_RECORD_ID) {
             return getDefaultTemplate(manualPay ? config.getManualPayTemplateName() : config.getTemplateName());
@@ -21,22 +21,36 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.MissingResourceException;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory;
 import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.xmlloader.UriAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 public class DefaultResourceBundleFactory implements ResourceBundleFactory {
 
@@ -44,9 +58,25 @@ public class DefaultResourceBundleFactory implements ResourceBundleFactory {
 
     private final TenantInternalApi tenantApi;
 
+    // Parsed tenant bundles (absent if the tenant didn't upload any), per tenant record id, bundle type and locale.
+    // Entries are invalidated when the tenant uploads new translations.
+    private final Cache<List<Object>, Optional<ResourceBundle>> tenantBundles = CacheBuilder.newBuilder().build();
+    // Bumped before each invalidation: the cache doesn't discard a load which was in progress when its key got invalidated
+    private final AtomicLong tenantBundlesInvalidations = new AtomicLong();
+
     @Inject
     public DefaultResourceBundleFactory(final TenantInternalApi tenantApi) {
         this.tenantApi = tenantApi;
+
+        final CacheInvalidationCallback cacheInvalidationCallback = new CacheInvalidationCallback() {
+            @Override
+            public void invalidateCache(final TenantKey key, final Object cookie, final InternalTenantContext tenantContext) {
+                final ResourceBundleType type = key == TenantKey.CATALOG_TRANSLATION_ ? ResourceBundleType.CATALOG_TRANSLATION : ResourceBundleType.INVOICE_TRANSLATION;
+                invalidateTenantBundles(type, tenantContext.getTenantRecordId());
+            }
+        };
+        tenantApi.initializeCacheInvalidationCallback(TenantKey.INVOICE_TRANSLATION_, cacheInvalidationCallback);
+        tenantApi.initializeCacheInvalidationCallback(TenantKey.CATALOG_TRANSLATION_, cacheInvalidationCallback);
     }
 
     @Override
@@ -54,6 +84,34 @@ public class DefaultResourceBundleFactory implements ResourceBundleFactory {
         if (tenantContext.getTenantRecordId() == InternalCallContextFactory.INTERNAL_TENANT_RECORD_ID) {
             return getGlobalBundle(locale, bundlePath);
         }
+
+        final Optional<ResourceBundle> tenantBundle = getTenantBundle(locale, type, tenantContext);
+        return tenantBundle.isPresent() ? tenantBundle.get() : getGlobalBundle(locale, bundlePath);
+    }
+
+    private Optional<ResourceBundle> getTenantBundle(final Locale locale, final ResourceBundleType type, final InternalTenantContext tenantContext) {
+        final List<Object> key = Arrays.<Object>asList(tenantContext.getTenantRecordId(), type, locale);
+        final long invalidations = tenantBundlesInvalidations.get();
+        try {
+            final Optional<ResourceBundle> tenantBundle = tenantBundles.get(key, new Callable<Optional<ResourceBundle>>() {
+                @Override
+                public Optional<ResourceBundle> call() {
+                    return Optional.<ResourceBundle>fromNullable(createTenantBundle(locale, type, tenantContext));
+                }
+            });
+            if (tenantBundlesInvalidations.get() != invalidations) {
+                // The bundle may have been loaded before the upload, don't keep it
+                tenantBundles.invalidate(key);
+            }
+            return tenantBundle;
+        } catch (final UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (final ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private ResourceBundle createTenantBundle(final Locale locale, final ResourceBundleType type, final InternalTenantContext tenantContext) {
         final String bundle = getTenantBundleForType(locale, type, tenantContext);
         if (bundle != null) {
             try {
@@ -63,7 +121,18 @@ public class DefaultResourceBundleFactory implements ResourceBundleFactory {
                 // Fall through...
             }
         }
-        return getGlobalBundle(locale, bundlePath);
+        return null;
+    }
+
+    private void invalidateTenantBundles(final ResourceBundleType type, final Long tenantRecordId) {
+        tenantBundlesInvalidations.incrementAndGet();
+        final Iterator<List<Object>> iterator = tenantBundles.asMap().keySet().iterator();
+        while (iterator.hasNext()) {
+            final List<Object> key = iterator.next();
+            if (Objects.equal(key.get(0), tenantRecordId) && key.get(1) == type) {
+                iterator.remove();
+            }
+        }
     }
 
     private String getTenantBundleForType(final Locale locale, final ResourceBundleType type, final InternalTenantContext tenantContext) {
@@ -29,8 +29,6 @@ import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 
 /**
  * Tree of invoice items for a given account.
@@ -52,7 +50,8 @@ public class AccountItemTree {
     private final UUID accountId;
     private final UUID targetInvoiceId;
     private final Map<UUID, SubscriptionItemTree> subscriptionItemTree;
-    private final List<InvoiceItem> allExistingItems;
+    // Existing items, indexed by id to retrieve the original item of linked items
+    private final Map<UUID, InvoiceItem> allExistingItemsById;
     private List<InvoiceItem> pendingItemAdj;
 
     private boolean isBuilt;
@@ -62,7 +61,7 @@ public class AccountItemTree {
         this.targetInvoiceId = targetInvoiceId;
         this.subscriptionItemTree = new HashMap<UUID, SubscriptionItemTree>();
         this.isBuilt = false;
-        this.allExistingItems = new LinkedList<InvoiceItem>();
+        this.allExistingItemsById = new HashMap<UUID, InvoiceItem>();
         this.pendingItemAdj = new LinkedList<InvoiceItem>();
     }
 
@@ -97,7 +96,9 @@ public class AccountItemTree {
         Preconditions.checkState(!isBuilt);
 
         // Only used to retrieve the original item for linked items
-        allExistingItems.add(existingItem);
+        if (allExistingItemsById.get(existingItem.getId()) == null) {
+            allExistingItemsById.put(existingItem.getId(), existingItem);
+        }
 
         switch (existingItem.getInvoiceItemType()) {
             case EXTERNAL_CHARGE:
@@ -120,7 +121,7 @@ public class AccountItemTree {
         }
 
         if (existingItem.getInvoiceItemType() == InvoiceItemType.ITEM_ADJ) {
-            final InvoiceItem linkedInvoiceItem = getLinkedInvoiceItem(existingItem, allExistingItems);
+            final InvoiceItem linkedInvoiceItem = getLinkedInvoiceItem(existingItem);
             if (linkedInvoiceItem != null &&
                 linkedInvoiceItem.getInvoiceItemType() != InvoiceItemType.RECURRING &&
                 linkedInvoiceItem.getInvoiceItemType() != InvoiceItemType.FIXED) {
@@ -130,7 +131,7 @@ public class AccountItemTree {
             }
         }
 
-        final UUID subscriptionId = getSubscriptionId(existingItem, allExistingItems);
+        final UUID subscriptionId = getSubscriptionId(existingItem);
         Preconditions.checkState(subscriptionId != null || !failOnMissingSubscription, "Missing subscription id");
 
         if (subscriptionId == null && existingItem.getInvoiceItemType() == InvoiceItemType.ITEM_ADJ) {
@@ -158,7 +159,7 @@ public class AccountItemTree {
         }
 
         for (InvoiceItem item : proposedItems) {
-            final UUID subscriptionId = getSubscriptionId(item, null);
+            final UUID subscriptionId = getSubscriptionId(item);
             SubscriptionItemTree tree = subscriptionItemTree.get(subscriptionId);
             if (tree == null) {
                 tree = new SubscriptionItemTree(subscriptionId, targetInvoiceId);
@@ -190,22 +191,17 @@ public class AccountItemTree {
         return accountId;
     }
 
-    private UUID getSubscriptionId(final InvoiceItem item, final List<InvoiceItem> allItems) {
+    private UUID getSubscriptionId(final InvoiceItem item) {
         if (item.getInvoiceItemType() == InvoiceItemType.RECURRING ||
             item.getInvoiceItemType() == InvoiceItemType.FIXED) {
             return item.getSubscriptionId();
         } else {
-            final InvoiceItem linkedItem = getLinkedInvoiceItem(item, allItems);
+            final InvoiceItem linkedItem = getLinkedInvoiceItem(item);
             return linkedItem != null ? linkedItem.getSubscriptionId() : null;
         }
     }
 
-    private InvoiceItem getLinkedInvoiceItem(final InvoiceItem item, final Iterable<InvoiceItem> allItems) {
-        return Iterables.tryFind(allItems, new Predicate<InvoiceItem>() {
-            @Override
-            public boolean apply(final InvoiceItem input) {
-                return input.getId().equals(item.getLinkedItemId());
-            }
-        }).orNull();
+    private InvoiceItem getLinkedInvoiceItem(final InvoiceItem item) {
+        return item.getLinkedItemId() == null ? null : allExistingItemsById.get(item.getLinkedItemId());
     }
 }
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import org.joda.time.LocalDate;
+import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.util.jackson.ObjectMapper;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -219,23 +220,37 @@ public class ItemsNodeInterval extends NodeInterval {
     }
 
     /**
-     * Add the adjustment amount on the item specified by the targetId.
+     * Add the adjustment amounts on the items specified by the linked ids of the adjustments.
+     * <p/>
+     * The nodes are indexed per item id once, instead of searching the whole tree for each adjustment.
      *
-     * @param adjustementDate date of the adjustment
-     * @param amount          amount of the adjustment
-     * @param targetId        item that has been adjusted
+     * @param adjustments the item adjustments
      */
-    public void addAdjustment(final LocalDate adjustementDate, final BigDecimal amount, final UUID targetId) {
-        // TODO we should really be using findNode(adjustementDate, new SearchCallback() instead but wrong dates in test
-        // creates test panic.
-        final NodeInterval node = findNode(new SearchCallback() {
+    public void addAdjustments(final List<InvoiceItem> adjustments) {
+        if (adjustments.isEmpty()) {
+            return;
+        }
+
+        // Same as findNode: the first node (depth first) containing the item
+        final Map<UUID, ItemsNodeInterval> nodesPerItemId = new HashMap<UUID, ItemsNodeInterval>();
+        walkTree(new WalkCallback() {
             @Override
-            public boolean isMatch(final NodeInterval curNode) {
-                return ((ItemsNodeInterval) curNode).getItemsInterval().containsItem(targetId);
+            public void onCurrentNode(final int depth, final NodeInterval curNode, final NodeInterval parent) {
+                final ItemsNodeInterval node = (ItemsNodeInterval) curNode;
+                for (final Item item : node.getItems()) {
+                    if (nodesPerItemId.get(item.getId()) == null) {
+                        nodesPerItemId.put(item.getId(), node);
+                    }
+                }
             }
         });
-        Preconditions.checkNotNull(node, "Cannot add adjustment for item = " + targetId + ", date = " + adjustementDate);
-        ((ItemsNodeInterval) node).setAdjustment(amount.negate(), targetId);
+
+        // TODO we should really be matching the adjustment date as well, but wrong dates in test creates test panic.
+        for (final InvoiceItem adjustment : adjustments) {
+            final ItemsNodeInterval node = nodesPerItemId.get(adjustment.getLinkedItemId());
+            Preconditions.checkNotNull(node, "Cannot add adjustment for item = " + adjustment.getLinkedItemId() + ", date = " + adjustment.getStartDate());
+            node.setAdjustment(adjustment.getAmount().negate(), adjustment.getLinkedItemId());
+        }
     }
 
     public void jsonSerializeTree(final ObjectMapper mapper, final OutputStream output) throws IOException {
@@ -296,7 +311,7 @@ public class ItemsNodeInterval extends NodeInterval {
                 final ItemsInterval curNodeItems = ((ItemsNodeInterval) curNode).getItemsInterval();
                 // Case A:
                 final boolean isEmpty = curNodeItems.mergeCancellingPairs();
-                if (isEmpty && curNode.getLeftChild() == null) {
+                if (isEmpty && curNode.children.isEmpty()) {
                     curNode.getParent().removeChild(curNode);
                 }
 
@@ -310,10 +325,9 @@ public class ItemsNodeInterval extends NodeInterval {
 
                     final Item curAddItem = it.next();
 
-                    NodeInterval curChild = curNode.getLeftChild();
                     Map<ItemsInterval, Item> toBeRemoved = new HashMap<ItemsInterval, Item>();
                     boolean foundFullRepairByParts = true;
-                    while (curChild != null) {
+                    for (final NodeInterval curChild : curNode.children) {
                         final ItemsInterval curChildItems = ((ItemsNodeInterval) curChild).getItemsInterval();
                         Item cancellingItem = curChildItems.getCancelledItemIfExists(curAddItem.getId());
                         if (cancellingItem == null) {
@@ -321,7 +335,6 @@ public class ItemsNodeInterval extends NodeInterval {
                             break;
                         }
                         toBeRemoved.put(curChildItems, cancellingItem);
-                        curChild = curChild.getRightSibling();
                     }
 
                     if (foundFullRepairByParts) {
@@ -16,19 +16,22 @@
 
 package org.killbill.billing.invoice.tree;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.joda.time.LocalDate;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 
 public class NodeInterval {
 
     protected NodeInterval parent;
-    protected NodeInterval leftChild;
-    protected NodeInterval rightSibling;
+    // Children, ordered by start date. Because nodes contained in a child are always inserted below that child (and
+    // rebalanced otherwise), siblings usually don't contain each other: their start and end dates are then both strictly
+    // increasing, which is tracked by childrenChained and allows binary searches on the children.
+    protected final List<NodeInterval> children;
+    private boolean childrenChained;
 
     protected LocalDate start;
     protected LocalDate end;
@@ -41,8 +44,8 @@ public class NodeInterval {
         this.start = startDate;
         this.end = endDate;
         this.parent = parent;
-        this.leftChild = null;
-        this.rightSibling = null;
+        this.children = new ArrayList<NodeInterval>();
+        this.childrenChained = true;
     }
 
     /**
@@ -55,21 +58,20 @@ public class NodeInterval {
 
         Preconditions.checkNotNull(callback);
 
-        if (leftChild == null) {
+        if (children.isEmpty()) {
             callback.onLastNode(this);
             return;
         }
 
         LocalDate curDate = start;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        for (int i = 0; i < children.size(); i++) {
+            final NodeInterval curChild = children.get(i);
             if (curChild.getStart().compareTo(curDate) > 0) {
                 callback.onMissingInterval(this, curDate, curChild.getStart());
             }
             curChild.build(callback);
             // Note that skip to child endDate, meaning that we always consider the child [start end]
             curDate = curChild.getEnd();
-            curChild = curChild.getRightSibling();
         }
 
         // Finally if there is a hole at the end, we build the missing piece from ourselves
@@ -99,25 +101,27 @@ public class NodeInterval {
         computeRootInterval(newNode);
 
         newNode.parent = this;
-        if (leftChild == null) {
+        if (children.isEmpty()) {
             if (callback.shouldInsertNode(this)) {
-                leftChild = newNode;
+                children.add(newNode);
+                childrenChained = true;
                 return true;
             } else {
                 return false;
             }
         }
 
-        NodeInterval prevChild = null;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        // The children starting and ending before the new node can neither contain it nor be contained in it: skip them
+        int curIndex = childrenChained ? Math.min(countChildrenBefore(newNode.getStart(), false, false), countChildrenBefore(newNode.getEnd(), true, false)) : 0;
+        for (; curIndex < children.size(); curIndex++) {
+            final NodeInterval curChild = children.get(curIndex);
             if (curChild.isItemContained(newNode)) {
                 return curChild.addNode(newNode, callback);
             }
 
             if (curChild.isItemOverlap(newNode)) {
                 if (callback.shouldInsertNode(this)) {
-                    rebalance(newNode);
+                    rebalance(newNode, curIndex);
                     return true;
                 } else {
                     return false;
@@ -126,23 +130,16 @@ public class NodeInterval {
 
             if (newNode.getStart().compareTo(curChild.getStart()) < 0) {
                 if (callback.shouldInsertNode(this)) {
-                    newNode.rightSibling = curChild;
-                    if (prevChild == null) {
-                        leftChild = newNode;
-                    } else {
-                        prevChild.rightSibling = newNode;
-                    }
+                    insertChild(curIndex, newNode);
                     return true;
                 } else {
                     return false;
                 }
             }
-            prevChild = curChild;
-            curChild = curChild.rightSibling;
         }
 
         if (callback.shouldInsertNode(this)) {
-            prevChild.rightSibling = newNode;
+            insertChild(children.size(), newNode);
             return true;
         } else {
             return false;
@@ -150,57 +147,38 @@ public class NodeInterval {
     }
 
     public void removeChild(final NodeInterval toBeRemoved) {
-        NodeInterval prevChild = null;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
-            if (curChild.isSame(toBeRemoved)) {
-                if (prevChild == null) {
-                    if (curChild.getLeftChild() == null) {
-                        leftChild = curChild.getRightSibling();
-                    } else {
-                        leftChild = curChild.getLeftChild();
-                        adjustRightMostChildSibling(curChild);
-                    }
-                } else {
-                    if (curChild.getLeftChild() == null) {
-                        prevChild.rightSibling = curChild.getRightSibling();
-                    } else {
-                        prevChild.rightSibling = curChild.getLeftChild();
-                        adjustRightMostChildSibling(curChild);
-                    }
-                }
-                break;
-            }
-            prevChild = curChild;
-            curChild = curChild.getRightSibling();
+        final int index = indexOfChild(toBeRemoved);
+        if (index < 0) {
+            return;
         }
-    }
 
-    private void adjustRightMostChildSibling(final NodeInterval curNode) {
-        NodeInterval tmpChild = curNode.getLeftChild();
-        NodeInterval preTmpChild = null;
-        while (tmpChild != null) {
-            preTmpChild = tmpChild;
-            tmpChild = tmpChild.getRightSibling();
+        // The children of the removed node take its place
+        final NodeInterval curChild = children.remove(index);
+        for (final NodeInterval grandChild : curChild.children) {
+            grandChild.parent = this;
+        }
+        children.addAll(index, curChild.children);
+        if (childrenChained) {
+            childrenChained = curChild.childrenChained &&
+                              isChained(index - 1, index) &&
+                              isChained(index + curChild.children.size() - 1, index + curChild.children.size());
         }
-        preTmpChild.rightSibling = curNode.getRightSibling();
     }
 
     @JsonIgnore
     public boolean isPartitionedByChildren() {
 
-        if (leftChild == null) {
+        if (children.isEmpty()) {
             return false;
         }
 
         LocalDate curDate = start;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        for (int i = 0; i < children.size(); i++) {
+            final NodeInterval curChild = children.get(i);
             if (curChild.getStart().compareTo(curDate) > 0) {
                 return false;
             }
             curDate = curChild.getEnd();
-            curChild = curChild.getRightSibling();
         }
         return (curDate.compareTo(end) == 0);
     }
@@ -221,8 +199,11 @@ public class NodeInterval {
             return null;
         }
 
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        // Only the children ending on or after the target date and starting on or before it can comprise that date
+        final int fromIndex = childrenChained ? countChildrenBefore(targetDate, true, false) : 0;
+        final int toIndex = childrenChained ? countChildrenBefore(targetDate, false, true) : children.size();
+        for (int i = fromIndex; i < toIndex; i++) {
+            final NodeInterval curChild = children.get(i);
             if (curChild.getStart().compareTo(targetDate) <= 0 && curChild.getEnd().compareTo(targetDate) >= 0) {
                 if (callback.isMatch(curChild)) {
                     return curChild;
@@ -232,7 +213,6 @@ public class NodeInterval {
                     return result;
                 }
             }
-            curChild = curChild.getRightSibling();
         }
         return null;
     }
@@ -250,13 +230,11 @@ public class NodeInterval {
             return this;
         }
 
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
-            final NodeInterval result = curChild.findNode(callback);
+        for (int i = 0; i < children.size(); i++) {
+            final NodeInterval result = children.get(i).findNode(callback);
             if (result != null) {
                 return result;
             }
-            curChild = curChild.getRightSibling();
         }
         return null;
     }
@@ -276,10 +254,14 @@ public class NodeInterval {
         Preconditions.checkNotNull(callback);
         callback.onCurrentNode(depth, this, parent);
 
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        int i = 0;
+        while (i < children.size()) {
+            final NodeInterval curChild = children.get(i);
             curChild.walkTreeWithDepth(callback, (depth + 1));
-            curChild = curChild.getRightSibling();
+            // The callback may have removed the current (leaf) child, in which case its next sibling took its place
+            if (i < children.size() && children.get(i) == curChild) {
+                i++;
+            }
         }
     }
 
@@ -324,68 +306,121 @@ public class NodeInterval {
 
     @JsonIgnore
     public NodeInterval getLeftChild() {
-        return leftChild;
+        return children.isEmpty() ? null : children.get(0);
     }
 
     @JsonIgnore
     public NodeInterval getRightSibling() {
-        return rightSibling;
+        if (parent == null) {
+            return null;
+        }
+
+        final List<NodeInterval> siblings = parent.children;
+        for (int i = 0; i < siblings.size() - 1; i++) {
+            if (siblings.get(i) == this) {
+                return siblings.get(i + 1);
+            }
+        }
+        return null;
     }
 
     @JsonIgnore
     public int getNbChildren() {
-        int result = 0;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
-            result++;
-            curChild = curChild.rightSibling;
-        }
-        return result;
+        return children.size();
     }
 
     /**
      * Since items may be added out of order, there is no guarantee that we don't suddenly have a new node
      * whose interval emcompasses cuurent node(s). In which case we need to rebalance the tree.
      *
-     * @param newNode node that triggered a rebalance operation
+     * @param newNode    node that triggered a rebalance operation
+     * @param firstIndex index of the first child overlapped by the new node
      */
-    private void rebalance(final NodeInterval newNode) {
+    private void rebalance(final NodeInterval newNode, final int firstIndex) {
 
-        NodeInterval prevRebalanced = null;
-        NodeInterval curChild = leftChild;
-        List<NodeInterval> toBeRebalanced = Lists.newLinkedList();
-        do {
-            if (curChild.isItemOverlap(newNode)) {
-                toBeRebalanced.add(curChild);
-            } else {
-                if (toBeRebalanced.size() > 0) {
-                    break;
-                }
-                prevRebalanced = curChild;
-            }
-            curChild = curChild.rightSibling;
-        } while (curChild != null);
+        int lastIndex = firstIndex;
+        while (lastIndex + 1 < children.size() && children.get(lastIndex + 1).isItemOverlap(newNode)) {
+            lastIndex++;
+        }
 
+        // The consecutive children overlapped by the new node move below it
+        final List<NodeInterval> toBeRebalanced = children.subList(firstIndex, lastIndex + 1);
         newNode.parent = this;
-        final NodeInterval lastNodeToRebalance = toBeRebalanced.get(toBeRebalanced.size() - 1);
-        newNode.rightSibling = lastNodeToRebalance.rightSibling;
-        lastNodeToRebalance.rightSibling = null;
-        if (prevRebalanced == null) {
-            leftChild = newNode;
-        } else {
-            prevRebalanced.rightSibling = newNode;
+        newNode.children.clear();
+        newNode.childrenChained = childrenChained;
+        for (final NodeInterval cur : toBeRebalanced) {
+            cur.parent = newNode;
+            newNode.children.add(cur);
         }
+        if (!newNode.childrenChained) {
+            newNode.childrenChained = newNode.computeChildrenChained();
+        }
+        toBeRebalanced.clear();
 
-        NodeInterval prev = null;
-        for (NodeInterval cur : toBeRebalanced) {
-            cur.parent = newNode;
-            if (prev == null) {
-                newNode.leftChild = cur;
+        insertChild(firstIndex, newNode);
+    }
+
+    private void insertChild(final int index, final NodeInterval newNode) {
+        children.add(index, newNode);
+        childrenChained = childrenChained && isChained(index - 1, index) && isChained(index, index + 1);
+    }
+
+    private int indexOfChild(final NodeInterval node) {
+        if (childrenChained) {
+            // Start dates are unique
+            final int index = countChildrenBefore(node.getStart(), false, false);
+            return index < children.size() && children.get(index).isSame(node) ? index : -1;
+        }
+
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).isSame(node)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Binary search, only valid when the children are chained.
+     *
+     * @param date        the date to compare to
+     * @param useEndDate  whether to compare the end dates (or the start dates) of the children
+     * @param isInclusive whether to count the children whose date is the date itself
+     * @return the number of children whose date is before the date
+     */
+    private int countChildrenBefore(final LocalDate date, final boolean useEndDate, final boolean isInclusive) {
+        int low = 0;
+        int high = children.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            final NodeInterval child = children.get(mid);
+            final int comparison = (useEndDate ? child.getEnd() : child.getStart()).compareTo(date);
+            if (comparison < 0 || (isInclusive && comparison == 0)) {
+                low = mid + 1;
             } else {
-                prev.rightSibling = cur;
+                high = mid;
             }
-            prev = cur;
         }
+        return low;
+    }
+
+    private boolean computeChildrenChained() {
+        for (int i = 1; i < children.size(); i++) {
+            if (!isChained(i - 1, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Out of bounds indexes are considered chained
+    private boolean isChained(final int prevIndex, final int nextIndex) {
+        if (prevIndex < 0 || nextIndex >= children.size()) {
+            return true;
+        }
+        final NodeInterval prev = children.get(prevIndex);
+        final NodeInterval next = children.get(nextIndex);
+        return prev.getStart().compareTo(next.getStart()) < 0 && prev.getEnd().compareTo(next.getEnd()) < 0;
     }
 
     private void computeRootInterval(final NodeInterval newNode) {
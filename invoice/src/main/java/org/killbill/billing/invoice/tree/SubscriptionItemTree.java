@@ -89,9 +89,7 @@ public class SubscriptionItemTree {
      */
     public void build() {
         Preconditions.checkState(!isBuilt);
-        for (InvoiceItem item : pendingItemAdj) {
-            root.addAdjustment(item.getStartDate(), item.getAmount(), item.getLinkedItemId());
-        }
+        root.addAdjustments(pendingItemAdj);
         pendingItemAdj.clear();
         root.buildForExistingItems(items);
         isBuilt = true;
@@ -74,3 +74,31 @@ CREATE UNIQUE INDEX invoice_payments ON invoice_payments(payment_id, type);
 CREATE INDEX invoice_payments_invoice_id ON invoice_payments(invoice_id);
 CREATE INDEX invoice_payments_reversals ON invoice_payments(linked_invoice_payment_id);
 CREATE INDEX invoice_payments_tenant_account_record_id ON invoice_payments(tenant_record_id, account_record_id);
+
+DROP TABLE IF EXISTS invoice_billing_snapshots;
+CREATE TABLE invoice_billing_snapshots (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    subscription_id char(36) NOT NULL,
+    billing_events_hash char(40) NOT NULL,
+    billed_through_date date NOT NULL,
+    created_date datetime NOT NULL,
+    account_record_id int(11) unsigned default null,
+    tenant_record_id int(11) unsigned default null,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX invoice_billing_snapshots_subscription_id ON invoice_billing_snapshots(subscription_id);
+CREATE INDEX invoice_billing_snapshots_tenant_account_record_id ON invoice_billing_snapshots(tenant_record_id, account_record_id);
+
+DROP TABLE IF EXISTS invoice_account_balances;
+CREATE TABLE invoice_account_balances (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    balance numeric(24,9) NOT NULL,
+    cba numeric(24,9) NOT NULL,
+    currency char(3) NOT NULL,
+    created_date datetime NOT NULL,
+    updated_date datetime NOT NULL,
+    account_record_id int(11) unsigned default null,
+    tenant_record_id int(11) unsigned default null,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX invoice_account_balances_tenant_account_record_id ON invoice_account_balances(tenant_record_id, account_record_id);
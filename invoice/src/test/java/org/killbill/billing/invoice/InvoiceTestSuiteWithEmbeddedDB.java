@@ -31,6 +31,7 @@ import org.killbill.billing.invoice.api.InvoiceUserApi;
 import org.killbill.billing.invoice.dao.InvoiceDao;
 import org.killbill.billing.invoice.generator.InvoiceGenerator;
 import org.killbill.billing.invoice.glue.TestInvoiceModuleWithEmbeddedDb;
+import org.killbill.billing.invoice.notification.InvoiceEmailPoster;
 import org.killbill.billing.invoice.notification.NextBillingDateNotifier;
 import org.killbill.billing.invoice.plugin.api.InvoicePluginApi;
 import org.killbill.billing.junction.BillingInternalApi;
@@ -109,6 +110,10 @@ public abstract class InvoiceTestSuiteWithEmbeddedDB extends GuicyKillbillTestSu
     @Inject
     protected TestInvoiceNotificationQListener testInvoiceNotificationQListener;
     @Inject
+    protected TestInvoiceNotifier testInvoiceNotifier;
+    @Inject
+    protected InvoiceEmailPoster invoiceEmailPoster;
+    @Inject
     protected InvoicePluginDispatcher invoicePluginDispatcher;
 
     @Override
@@ -30,6 +30,9 @@ public class TestInvoiceNotificationQListener extends InvoiceListener {
 
     int eventCount = 0;
     UUID latestSubscriptionId = null;
+    volatile boolean invoiceRunCompleted = true;
+    volatile boolean delegatingToDispatcher = false;
+    volatile Boolean latestInvoiceRunResult = null;
 
     @Inject
     public TestInvoiceNotificationQListener(final AccountInternalApi accountApi, final Clock clock, final InternalCallContextFactory internalCallContextFactory, final InvoiceDispatcher dispatcher) {
@@ -37,9 +40,13 @@ public class TestInvoiceNotificationQListener extends InvoiceListener {
     }
 
     @Override
-    public void handleNextBillingDateEvent(final UUID subscriptionId, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
-        eventCount++;
+    public boolean handleNextBillingDateEvent(final UUID subscriptionId, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+        final boolean result = delegatingToDispatcher ? super.handleNextBillingDateEvent(subscriptionId, eventDateTime, userToken, accountRecordId, tenantRecordId) : invoiceRunCompleted;
         latestSubscriptionId = subscriptionId;
+        latestInvoiceRunResult = result;
+        // Last, so that the fields above are set once the event is seen
+        eventCount++;
+        return result;
     }
 
     public int getEventCount() {
@@ -50,4 +57,18 @@ public class TestInvoiceNotificationQListener extends InvoiceListener {
         return latestSubscriptionId;
     }
 
+    public Boolean getLatestInvoiceRunResult() {
+        return latestInvoiceRunResult;
+    }
+
+    // Simulate an invoice run that failed (or could not lock the account)
+    public void setInvoiceRunCompleted(final boolean invoiceRunCompleted) {
+        this.invoiceRunCompleted = invoiceRunCompleted;
+    }
+
+    // Run the real invoice run (through the InvoiceDispatcher) instead
+    public void setDelegatingToDispatcher(final boolean delegatingToDispatcher) {
+        this.delegatingToDispatcher = delegatingToDispatcher;
+    }
+
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceNotifier;
+import org.killbill.billing.util.callcontext.TenantContext;
+
+public class TestInvoiceNotifier implements InvoiceNotifier {
+
+    private final List<UUID> notifiedInvoiceIds = new CopyOnWriteArrayList<UUID>();
+
+    private volatile boolean failing = false;
+
+    @Override
+    public void notify(final Account account, final Invoice invoice, final TenantContext context) throws InvoiceApiException {
+        notifiedInvoiceIds.add(invoice.getId());
+        if (failing) {
+            throw new InvoiceApiException(new IOException("Simulated MTA failure"), ErrorCode.EMAIL_SENDING_FAILED);
+        }
+    }
+
+    public int getNbNotifications(final UUID invoiceId) {
+        int nbNotifications = 0;
+        for (final UUID notifiedInvoiceId : notifiedInvoiceIds) {
+            if (notifiedInvoiceId.equals(invoiceId)) {
+                nbNotifications++;
+            }
+        }
+        return nbNotifications;
+    }
+
+    // Simulate an MTA which is down
+    public void setFailing(final boolean failing) {
+        this.failing = failing;
+    }
+}
@@ -53,6 +53,7 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
     private final Map<UUID, InvoiceItemModelDao> items = new LinkedHashMap<UUID, InvoiceItemModelDao>();
     private final Map<UUID, InvoicePaymentModelDao> payments = new LinkedHashMap<UUID, InvoicePaymentModelDao>();
     private final BiMap<UUID, Long> accountRecordIds = HashBiMap.create();
+    private final Map<Long, List<InvoiceBillingSnapshotModelDao>> billingSnapshots = new LinkedHashMap<Long, List<InvoiceBillingSnapshotModelDao>>();
 
     @Inject
     public MockInvoiceDao(final PersistentBus eventBus) {
@@ -350,4 +351,25 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
     public void deleteCBA(final UUID accountId, final UUID invoiceId, final UUID invoiceItemId, final InternalCallContext context) throws InvoiceApiException {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public List<InvoiceBillingSnapshotModelDao> getBillingSnapshots(final InternalTenantContext context) {
+        synchronized (monitor) {
+            final List<InvoiceBillingSnapshotModelDao> snapshots = billingSnapshots.get(context.getAccountRecordId());
+            return snapshots == null ? new ArrayList<InvoiceBillingSnapshotModelDao>() : new ArrayList<InvoiceBillingSnapshotModelDao>(snapshots);
+        }
+    }
+
+    @Override
+    public void setBillingSnapshots(final List<InvoiceBillingSnapshotModelDao> snapshots, final InternalCallContext context) {
+        synchronized (monitor) {
+            billingSnapshots.put(context.getAccountRecordId(), new ArrayList<InvoiceBillingSnapshotModelDao>(snapshots));
+        }
+    }
+
+    @Override
+    public boolean checkAccountBalance(final InternalCallContext context) {
+        // Balances are always computed from the invoices
+        return true;
+    }
 }
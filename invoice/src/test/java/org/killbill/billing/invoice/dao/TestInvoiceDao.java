@@ -68,7 +68,9 @@ import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
 import org.killbill.billing.util.currency.KillBillMoney;
 import org.killbill.clock.ClockMock;
 import org.mockito.Mockito;
+import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
+import org.skife.jdbi.v2.tweak.HandleCallback;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -81,6 +83,7 @@ import static org.killbill.billing.invoice.TestInvoiceHelper.TEN;
 import static org.killbill.billing.invoice.TestInvoiceHelper.TWENTY;
 import static org.killbill.billing.invoice.TestInvoiceHelper.ZERO;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -551,6 +554,46 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertEquals(balance.compareTo(BigDecimal.ZERO), 0);
     }
 
+    @Test(groups = "slow")
+    public void testAccountBalanceLedger() throws InvoiceApiException {
+        final UUID accountId = account.getId();
+        final Invoice invoice = new DefaultInvoice(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD);
+        final LocalDate startDate = new LocalDate(2010, 1, 1);
+        final LocalDate endDate = new LocalDate(2010, 4, 1);
+        invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), accountId, UUID.randomUUID(), UUID.randomUUID(), "test plan", "test phase", startDate, endDate,
+                                                        new BigDecimal("21.00"), new BigDecimal("7.00"), Currency.USD));
+        invoiceUtil.createInvoice(invoice, true, context);
+
+        final DefaultInvoicePayment defaultInvoicePayment = new DefaultInvoicePayment(InvoicePaymentType.ATTEMPT, UUID.randomUUID(), invoice.getId(), clock.getUTCNow(), new BigDecimal("25.00"), Currency.USD, Currency.USD);
+        invoiceDao.notifyOfPayment(new InvoicePaymentModelDao(defaultInvoicePayment), context);
+        invoiceDao.consumeExstingCBAOnAccountWithUnpaidInvoices(accountId, context);
+
+        // The ledger was maintained with the items and payments
+        assertTrue(invoiceDao.checkAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(new BigDecimal("-4.00")), 0);
+        assertEquals(invoiceDao.getAccountCBA(accountId, context).compareTo(new BigDecimal("4.00")), 0);
+
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("update invoice_account_balances set balance = 0, cba = 0 where account_record_id = ?", context.getAccountRecordId());
+                return null;
+            }
+        });
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(BigDecimal.ZERO), 0);
+
+        // The ledger is rebuilt from the invoice items and payments
+        assertFalse(invoiceDao.checkAccountBalance(context));
+        assertTrue(invoiceDao.checkAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(new BigDecimal("-4.00")), 0);
+        assertEquals(invoiceDao.getAccountCBA(accountId, context).compareTo(new BigDecimal("4.00")), 0);
+
+        // Rows inserted by the test helpers are recorded in the ledger as well
+        invoiceUtil.createPayment(new DefaultInvoicePayment(InvoicePaymentType.REFUND, UUID.randomUUID(), invoice.getId(), clock.getUTCNow(), new BigDecimal("-5.00"), Currency.USD, Currency.USD), context);
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(new BigDecimal("1.00")), 0);
+        assertTrue(invoiceDao.checkAccountBalance(context));
+    }
+
     @Test(groups = "slow")
     public void testAccountBalanceWithNoPayments() throws EntityPersistenceException {
         final UUID accountId = account.getId();
@@ -373,6 +373,44 @@ public class TestDefaultInvoiceGenerator extends InvoiceTestSuiteNoDB {
         assertNull(invoice2);
     }
 
+    @Test(groups = "fast")
+    public void testSingleEventWithBilledThroughSnapshot() throws InvoiceApiException, CatalogApiException {
+        final BillingEventSet events = new MockBillingEventSet();
+
+        final SubscriptionBase sub = createSubscription();
+        final LocalDate startDate = invoiceUtil.buildDate(2011, 9, 1);
+
+        final Plan plan1 = new MockPlan();
+        final BigDecimal rate = FIVE;
+        final PlanPhase phase1 = createMockMonthlyPlanPhase(rate);
+
+        final BillingEvent event1 = createBillingEvent(sub.getId(), sub.getBundleId(), startDate, plan1, phase1, 1);
+        events.add(event1);
+
+        final UUID accountId = UUID.randomUUID();
+        final Invoice invoice1 = generator.generateInvoice(accountId, events, null, invoiceUtil.buildDate(2011, 12, 1), Currency.USD, internalCallContext);
+        assertEquals(invoice1.getNumberOfItems(), 4);
+        final List<Invoice> existingInvoices = new ArrayList<Invoice>();
+        existingInvoices.add(invoice1);
+
+        final Map<UUID, LocalDate> billedThroughDates = BillingSnapshotUtils.computeBilledThroughDates(invoice1.getInvoiceItems());
+        assertEquals(billedThroughDates.size(), 1);
+        assertEquals(billedThroughDates.get(sub.getId()), invoiceUtil.buildDate(2012, 1, 1));
+
+        // Only the items after the billed through date are merged
+        final LocalDate targetDate = invoiceUtil.buildDate(2012, 2, 1);
+        final Invoice invoice2 = generator.generateInvoice(accountId, events, existingInvoices, billedThroughDates, targetDate, Currency.USD, internalCallContext);
+        assertEquals(invoice2.getNumberOfItems(), 2);
+        assertEquals(invoice2.getBalance(), KillBillMoney.of(TWO.multiply(rate), invoice2.getCurrency()));
+
+        // A stale snapshot is ignored (full replay)
+        final Map<UUID, LocalDate> staleBilledThroughDates = new HashMap<UUID, LocalDate>();
+        staleBilledThroughDates.put(sub.getId(), invoiceUtil.buildDate(2011, 11, 1));
+        final Invoice invoice3 = generator.generateInvoice(accountId, events, existingInvoices, staleBilledThroughDates, targetDate, Currency.USD, internalCallContext);
+        assertEquals(invoice3.getNumberOfItems(), 2);
+        assertEquals(invoice3.getBalance(), KillBillMoney.of(TWO.multiply(rate), invoice3.getCurrency()));
+    }
+
     // TODO: modify this test to keep a running total of expected invoice amount over time
     @Test(groups = "fast")
     public void testMultiplePlansWithUtterChaos() throws InvoiceApiException, CatalogApiException {
@@ -23,6 +23,8 @@ import org.killbill.billing.account.glue.DefaultAccountModule;
 import org.killbill.billing.currency.api.CurrencyConversionApi;
 import org.killbill.billing.invoice.InvoiceListener;
 import org.killbill.billing.invoice.TestInvoiceNotificationQListener;
+import org.killbill.billing.invoice.TestInvoiceNotifier;
+import org.killbill.billing.invoice.api.InvoiceNotifier;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.glue.NonEntityDaoModule;
 import org.mockito.Mockito;
@@ -39,6 +41,12 @@ public class TestInvoiceModuleWithEmbeddedDb extends TestInvoiceModule {
         bind(TestInvoiceNotificationQListener.class).asEagerSingleton();
     }
 
+    @Override
+    protected void installInvoiceNotifier() {
+        bind(InvoiceNotifier.class).to(TestInvoiceNotifier.class).asEagerSingleton();
+        bind(TestInvoiceNotifier.class).asEagerSingleton();
+    }
+
     @Override
     public void configure() {
         super.configure();
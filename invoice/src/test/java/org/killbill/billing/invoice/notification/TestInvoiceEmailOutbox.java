@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.notification;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications;
+import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
+import org.killbill.billing.invoice.api.DefaultInvoiceService;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.dao.InvoiceItemModelDao;
+import org.killbill.billing.invoice.dao.InvoiceModelDao;
+import org.killbill.billing.invoice.model.DefaultInvoice;
+import org.killbill.billing.invoice.model.RecurringInvoiceItem;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.timezone.DateAndTimeZoneContext;
+import org.killbill.clock.ClockMock;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.util.IntegerMapper;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+public class TestInvoiceEmailOutbox extends InvoiceTestSuiteWithEmbeddedDB {
+
+    private Account account;
+    private InternalCallContext context;
+
+    @Override
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        super.beforeMethod();
+        ((ClockMock) clock).resetDeltaFromReality();
+        testInvoiceNotifier.setFailing(false);
+
+        account = invoiceUtil.createAccount(callContext);
+        context = internalCallContextFactory.createInternalCallContext(account.getId(), callContext);
+    }
+
+    @Test(groups = "slow")
+    public void testInvoiceRunRecordsOneNotification() throws Exception {
+        final UUID invoiceId = createInvoice();
+        Assert.assertEquals(getNbRecordedNotifications(), 1);
+
+        await().atMost(1, MINUTES).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return testInvoiceNotifier.getNbNotifications(invoiceId) == 1 && getNbPendingNotifications() == 0;
+            }
+        });
+
+        // No retry on success
+        Assert.assertEquals(testInvoiceNotifier.getNbNotifications(invoiceId), 1);
+        Assert.assertEquals(getNbRecordedNotifications(), 1);
+    }
+
+    @Test(groups = "slow")
+    public void testNotificationIsRecordedInTheInvoiceTransaction() throws Exception {
+        final UUID invoiceId = UUID.randomUUID();
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao);
+        try {
+            transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+                @Override
+                public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    invoiceEmailPoster.insertInvoiceEmailNotificationFromTransaction(entitySqlDaoWrapperFactory, invoiceId, clock.getUTCNow(), context);
+                    throw new IllegalStateException("Simulated failure of the invoice transaction");
+                }
+            });
+            Assert.fail("The transaction should have failed");
+        } catch (final RuntimeException e) {
+            // Expected
+        }
+
+        // Rolled back with the invoice
+        Assert.assertEquals(getNbRecordedNotifications(), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testFailedNotificationIsRetriedWithBackoff() throws Exception {
+        testInvoiceNotifier.setFailing(true);
+
+        final UUID invoiceId = createInvoice();
+        for (int i = 0; i < DefaultInvoiceEmailOutbox.RETRY_DELAYS_SEC.length; i++) {
+            final int nbNotifications = i + 1;
+            final DateTime failureTimeLowerBound = clock.getUTCNow();
+            await().atMost(1, MINUTES).until(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    // The failed notification has been processed, and its retry recorded
+                    return testInvoiceNotifier.getNbNotifications(invoiceId) == nbNotifications && getNbPendingNotifications() == 1 && getNbAvailableNotifications() == 1;
+                }
+            });
+
+            // The retry is scheduled after the next backoff step (the datetime columns have a precision of a second)
+            final int delaySec = DefaultInvoiceEmailOutbox.RETRY_DELAYS_SEC[i];
+            final NotificationEventWithMetadata<InvoiceEmailNotificationKey> retry = getPendingNotification();
+            Assert.assertEquals(retry.getEvent().getUuidKey(), invoiceId);
+            Assert.assertEquals(retry.getEvent().getAttemptNumber(), (Integer) (i + 1));
+            final DateTime retryDate = retry.getEffectiveDate();
+            Assert.assertFalse(retryDate.isBefore(failureTimeLowerBound.plusSeconds(delaySec).minusSeconds(1)));
+            Assert.assertFalse(retryDate.isAfter(clock.getUTCNow().plusSeconds(delaySec)));
+
+            // Not retried before the backoff delay
+            Assert.assertEquals(testInvoiceNotifier.getNbNotifications(invoiceId), nbNotifications);
+
+            ((ClockMock) clock).addDeltaFromReality((delaySec + 1) * 1000L);
+        }
+
+        // Last attempt: we give up after it
+        final int nbAttempts = DefaultInvoiceEmailOutbox.RETRY_DELAYS_SEC.length + 1;
+        await().atMost(1, MINUTES).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return testInvoiceNotifier.getNbNotifications(invoiceId) == nbAttempts && getNbPendingNotifications() == 0;
+            }
+        });
+        Assert.assertEquals(getNbRecordedNotifications(), nbAttempts);
+    }
+
+    // Invoice run which requires the invoice notification
+    private UUID createInvoice() {
+        final Invoice invoice = new DefaultInvoice(account.getId(), clock.getUTCToday(), clock.getUTCToday(), Currency.USD);
+        final LocalDate startDate = new LocalDate(2010, 1, 1);
+        final LocalDate endDate = new LocalDate(2010, 2, 1);
+        final RecurringInvoiceItem invoiceItem = new RecurringInvoiceItem(invoice.getId(), invoice.getAccountId(), UUID.randomUUID(), UUID.randomUUID(), "test plan", "test phase",
+                                                                          startDate, endDate, new BigDecimal("7.00"), new BigDecimal("7.00"), Currency.USD);
+
+        final DateAndTimeZoneContext dateAndTimeZoneContext = new DateAndTimeZoneContext(clock.getUTCNow(), DateTimeZone.UTC, clock);
+        invoiceDao.createInvoice(new InvoiceModelDao(invoice), ImmutableList.<InvoiceItemModelDao>of(new InvoiceItemModelDao(invoiceItem)), true,
+                                 new FutureAccountNotifications(dateAndTimeZoneContext, ImmutableMap.<UUID, List<DateTime>>of(), true), context);
+        return invoice.getId();
+    }
+
+    // Recorded notifications, whether processed (moved to the history table) or not
+    private int getNbRecordedNotifications() {
+        return countNotifications("notifications", "") + countNotifications("notifications_history", "");
+    }
+
+    // Not processed yet, or being processed (until the handler returns)
+    private int getNbPendingNotifications() {
+        return countNotifications("notifications", "and processing_state in ('AVAILABLE', 'IN_PROCESSING')");
+    }
+
+    private int getNbAvailableNotifications() {
+        return countNotifications("notifications", "and processing_state = 'AVAILABLE'");
+    }
+
+    private NotificationEventWithMetadata<InvoiceEmailNotificationKey> getPendingNotification() throws NoSuchNotificationQueue {
+        final NotificationQueue invoiceEmailQueue = notificationQueueService.getNotificationQueue(DefaultInvoiceService.INVOICE_SERVICE_NAME, DefaultInvoiceEmailOutbox.INVOICE_EMAIL_QUEUE);
+        final List<NotificationEventWithMetadata<InvoiceEmailNotificationKey>> pendingNotifications = invoiceEmailQueue.getFutureNotificationForSearchKeys(context.getAccountRecordId(), context.getTenantRecordId());
+        Assert.assertEquals(pendingNotifications.size(), 1);
+        return pendingNotifications.get(0);
+    }
+
+    private int countNotifications(final String tableName, final String extraWhereClause) {
+        return dbi.withHandle(new HandleCallback<Integer>() {
+            @Override
+            public Integer withHandle(final Handle handle) throws Exception {
+                return handle.createQuery("select count(*) from " + tableName + " where class_name = :className and search_key1 = :accountRecordId and search_key2 = :tenantRecordId " + extraWhereClause)
+                             .bind("className", InvoiceEmailNotificationKey.class.getName())
+                             .bind("accountRecordId", context.getAccountRecordId())
+                             .bind("tenantRecordId", context.getTenantRecordId())
+                             .map(IntegerMapper.FIRST)
+                             .first();
+            }
+        });
+    }
+}
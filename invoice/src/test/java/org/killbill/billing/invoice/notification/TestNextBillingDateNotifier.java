@@ -16,16 +16,25 @@
 
 package org.killbill.billing.invoice.notification;
 
+import java.util.LinkedList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
 import org.joda.time.DateTime;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.invoice.api.DryRunArguments;
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import org.killbill.billing.subscription.api.SubscriptionBase;
 import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
 import org.killbill.billing.invoice.api.DefaultInvoiceService;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
 import org.killbill.notificationq.api.NotificationQueue;
 import org.killbill.clock.ClockMock;
 
@@ -60,4 +69,88 @@ public class TestNextBillingDateNotifier extends InvoiceTestSuiteWithEmbeddedDB
         Assert.assertEquals(testInvoiceNotificationQListener.getEventCount(), 1);
         Assert.assertEquals(testInvoiceNotificationQListener.getLatestSubscriptionId(), subscriptionId);
     }
+
+    @Test(groups = "slow")
+    public void testCoveredNotificationIsKeptWhenInvoiceRunFails() throws Exception {
+        testInvoiceNotificationQListener.setInvoiceRunCompleted(false);
+        try {
+            final DateTime coveredTargetDate = recordNotificationsAndTriggerInvoiceRun();
+
+            // The invoice run did not happen, so the notification it would have covered is still needed
+            Assert.assertEquals(getPendingNotifications(coveredTargetDate).size(), 1);
+        } finally {
+            testInvoiceNotificationQListener.setInvoiceRunCompleted(true);
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testCoveredNotificationIsKeptWhenInvoiceRunThrows() throws Exception {
+        Mockito.when(subscriptionApi.getAccountIdFromSubscriptionId(Mockito.<UUID>any(), Mockito.<InternalTenantContext>any())).thenReturn(UUID.randomUUID());
+        Mockito.when(billingApi.getBillingEventsForAccountAndUpdateAccountBCD(Mockito.<UUID>any(), Mockito.<DryRunArguments>any(), Mockito.<InternalCallContext>any()))
+               .thenThrow(new CatalogApiException(ErrorCode.CAT_NO_SUCH_PLAN, "unknown-plan"));
+        testInvoiceNotificationQListener.setDelegatingToDispatcher(true);
+        try {
+            final DateTime coveredTargetDate = recordNotificationsAndTriggerInvoiceRun();
+
+            // The failure is reported to the notifier, which keeps the notification the run would have covered
+            Assert.assertEquals(testInvoiceNotificationQListener.getLatestInvoiceRunResult(), Boolean.FALSE);
+            Assert.assertEquals(getPendingNotifications(coveredTargetDate).size(), 1);
+        } finally {
+            testInvoiceNotificationQListener.setDelegatingToDispatcher(false);
+            Mockito.reset(billingApi);
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testCoveredNotificationIsRemovedWhenInvoiceRunSucceeds() throws Exception {
+        testInvoiceNotificationQListener.setInvoiceRunCompleted(true);
+
+        final DateTime coveredTargetDate = recordNotificationsAndTriggerInvoiceRun();
+
+        await().atMost(1, MINUTES).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return getPendingNotifications(coveredTargetDate).isEmpty();
+            }
+        });
+    }
+
+    // Records a notification due tomorrow, and one due now whose invoice run (targetDate in two days) covers it; returns the targetDate of the covered one
+    private DateTime recordNotificationsAndTriggerInvoiceRun() throws Exception {
+        final SubscriptionBase subscription = invoiceUtil.createSubscription();
+        final UUID subscriptionId = subscription.getId();
+        ((ClockMock) clock).resetDeltaFromReality();
+        final DateTime now = clock.getUTCNow();
+
+        final NotificationQueue nextBillingQueue = notificationQueueService.getNotificationQueue(DefaultInvoiceService.INVOICE_SERVICE_NAME, DefaultNextBillingDateNotifier.NEXT_BILLING_DATE_NOTIFIER_QUEUE);
+
+        nextBillingQueue.recordFutureNotification(now.plusDays(1), new NextBillingDateNotificationKey(subscriptionId, now.plusDays(1), Boolean.FALSE), internalCallContext.getUserToken(), internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
+        nextBillingQueue.recordFutureNotification(now, new NextBillingDateNotificationKey(subscriptionId, now.plusDays(2), Boolean.FALSE), internalCallContext.getUserToken(), internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
+
+        final int initialEventCount = testInvoiceNotificationQListener.getEventCount();
+
+        // Move time in the future after the first notification effectiveDate only
+        ((ClockMock) clock).setDeltaFromReality(3000);
+
+        await().atMost(1, MINUTES).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return testInvoiceNotificationQListener.getEventCount() == initialEventCount + 1;
+            }
+        });
+        Assert.assertEquals(testInvoiceNotificationQListener.getLatestSubscriptionId(), subscriptionId);
+
+        return now.plusDays(1);
+    }
+
+    private List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> getPendingNotifications(final DateTime targetDate) throws Exception {
+        final NotificationQueue nextBillingQueue = notificationQueueService.getNotificationQueue(DefaultInvoiceService.INVOICE_SERVICE_NAME, DefaultNextBillingDateNotifier.NEXT_BILLING_DATE_NOTIFIER_QUEUE);
+        final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> pendingNotifications = new LinkedList<NotificationEventWithMetadata<NextBillingDateNotificationKey>>();
+        for (final NotificationEventWithMetadata<NextBillingDateNotificationKey> notification : nextBillingQueue.<NextBillingDateNotificationKey>getFutureNotificationForSearchKeys(internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId())) {
+            if (notification.getEvent().getTargetDate().isEqual(targetDate)) {
+                pendingNotifications.add(notification);
+            }
+        }
+        return pendingNotifications;
+    }
 }
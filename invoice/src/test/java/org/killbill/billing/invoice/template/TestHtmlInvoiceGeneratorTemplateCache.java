@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.template;
+
+import java.util.Locale;
+
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.template.bundles.DefaultResourceBundleFactory;
+import org.killbill.billing.invoice.template.formatters.DefaultInvoiceFormatterFactory;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.util.email.templates.MustacheTemplateEngine;
+import org.killbill.billing.util.template.translation.TranslatorConfig;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.skife.config.ConfigurationObjectFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestHtmlInvoiceGeneratorTemplateCache extends InvoiceTestSuiteNoDB {
+
+    private final InternalTenantContext tenantContext = new InternalTenantContext(12L, null);
+
+    private TenantInternalApi tenantInternalApi;
+    private HtmlInvoiceGenerator generator;
+    private CacheInvalidationCallback invoiceTemplateCallback;
+    private Account account;
+    private Invoice invoice;
+
+    @BeforeMethod(groups = "fast")
+    public void setUp() throws Exception {
+        tenantInternalApi = Mockito.mock(TenantInternalApi.class);
+        final TranslatorConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(TranslatorConfig.class);
+        generator = new HtmlInvoiceGenerator(new DefaultInvoiceFormatterFactory(), new MustacheTemplateEngine(), config, null, new DefaultResourceBundleFactory(tenantInternalApi), tenantInternalApi);
+
+        final ArgumentCaptor<CacheInvalidationCallback> callbackCaptor = ArgumentCaptor.forClass(CacheInvalidationCallback.class);
+        Mockito.verify(tenantInternalApi).initializeCacheInvalidationCallback(Mockito.eq(TenantKey.INVOICE_TEMPLATE), callbackCaptor.capture());
+        invoiceTemplateCallback = callbackCaptor.getValue();
+
+        account = Mockito.mock(Account.class);
+        invoice = Mockito.mock(Invoice.class);
+    }
+
+    @Test(groups = "fast")
+    public void testTemplatesAreCachedUntilInvalidation() throws Exception {
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Template A");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "Template A");
+
+        // Cached
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Template B");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "Template A");
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any());
+
+        // The manual pay template of the tenant isn't affected
+        Mockito.when(tenantInternalApi.getManualPayInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Manual pay template");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, true, tenantContext).getBody(), "Manual pay template");
+
+        // New template uploaded by the tenant
+        invoiceTemplateCallback.invalidateCache(TenantKey.INVOICE_TEMPLATE, null, tenantContext);
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "Template B");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, true, tenantContext).getBody(), "Manual pay template");
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getManualPayInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any());
+    }
+
+    @Test(groups = "fast")
+    public void testTemplateLoadedDuringInvalidationIsNotKept() throws Exception {
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenAnswer(new Answer<String>() {
+            private int nbCalls = 0;
+
+            @Override
+            public String answer(final InvocationOnMock invocation) throws Throwable {
+                nbCalls++;
+                if (nbCalls == 1) {
+                    // The tenant uploads a new template while the previous one is being loaded
+                    invoiceTemplateCallback.invalidateCache(TenantKey.INVOICE_TEMPLATE, null, tenantContext);
+                    return "Template A";
+                } else {
+                    return "Template B";
+                }
+            }
+        });
+
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "Template A");
+        // The stale template wasn't cached
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "Template B");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "Template B");
+        Mockito.verify(tenantInternalApi, Mockito.times(2)).getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any());
+    }
+}
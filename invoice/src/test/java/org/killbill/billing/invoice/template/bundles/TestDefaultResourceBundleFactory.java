@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.template.bundles;
+
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
+import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory.ResourceBundleType;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestDefaultResourceBundleFactory extends InvoiceTestSuiteNoDB {
+
+    private static final String BUNDLE_PATH = "org/killbill/billing/util/template/translation/InvoiceTranslation";
+
+    @Test(groups = "fast")
+    public void testTenantBundlesAreCachedUntilInvalidation() throws Exception {
+        final TenantInternalApi tenantInternalApi = Mockito.mock(TenantInternalApi.class);
+        final DefaultResourceBundleFactory factory = new DefaultResourceBundleFactory(tenantInternalApi);
+
+        final ArgumentCaptor<CacheInvalidationCallback> callbackCaptor = ArgumentCaptor.forClass(CacheInvalidationCallback.class);
+        Mockito.verify(tenantInternalApi).initializeCacheInvalidationCallback(Mockito.eq(TenantKey.INVOICE_TRANSLATION_), callbackCaptor.capture());
+
+        final InternalTenantContext tenantContext = new InternalTenantContext(12L, null);
+        Mockito.when(tenantInternalApi.getInvoiceTranslation(Mockito.eq(Locale.FRANCE), Mockito.<InternalTenantContext>any())).thenReturn("invoiceTitle=Facture");
+
+        final ResourceBundle bundle = factory.createBundle(Locale.FRANCE, BUNDLE_PATH, ResourceBundleType.INVOICE_TRANSLATION, tenantContext);
+        Assert.assertEquals(bundle.getString("invoiceTitle"), "Facture");
+
+        // Cached
+        Mockito.when(tenantInternalApi.getInvoiceTranslation(Mockito.eq(Locale.FRANCE), Mockito.<InternalTenantContext>any())).thenReturn("invoiceTitle=Nouvelle facture");
+        Assert.assertSame(factory.createBundle(Locale.FRANCE, BUNDLE_PATH, ResourceBundleType.INVOICE_TRANSLATION, tenantContext), bundle);
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getInvoiceTranslation(Mockito.eq(Locale.FRANCE), Mockito.<InternalTenantContext>any());
+
+        // New translation uploaded by the tenant
+        callbackCaptor.getValue().invalidateCache(TenantKey.INVOICE_TRANSLATION_, "_fr_FR", tenantContext);
+        Assert.assertEquals(factory.createBundle(Locale.FRANCE, BUNDLE_PATH, ResourceBundleType.INVOICE_TRANSLATION, tenantContext).getString("invoiceTitle"), "Nouvelle facture");
+    }
+
+    @Test(groups = "fast")
+    public void testTenantBundleLoadedDuringInvalidationIsNotKept() throws Exception {
+        final TenantInternalApi tenantInternalApi = Mockito.mock(TenantInternalApi.class);
+        final DefaultResourceBundleFactory factory = new DefaultResourceBundleFactory(tenantInternalApi);
+
+        final ArgumentCaptor<CacheInvalidationCallback> callbackCaptor = ArgumentCaptor.forClass(CacheInvalidationCallback.class);
+        Mockito.verify(tenantInternalApi).initializeCacheInvalidationCallback(Mockito.eq(TenantKey.INVOICE_TRANSLATION_), callbackCaptor.capture());
+
+        final InternalTenantContext tenantContext = new InternalTenantContext(12L, null);
+        Mockito.when(tenantInternalApi.getInvoiceTranslation(Mockito.eq(Locale.FRANCE), Mockito.<InternalTenantContext>any())).thenAnswer(new Answer<String>() {
+            private int nbCalls = 0;
+
+            @Override
+            public String answer(final InvocationOnMock invocation) throws Throwable {
+                nbCalls++;
+                if (nbCalls == 1) {
+                    // The tenant uploads a new translation while the previous one is being loaded
+                    callbackCaptor.getValue().invalidateCache(TenantKey.INVOICE_TRANSLATION_, "_fr_FR", tenantContext);
+                    return "invoiceTitle=Facture";
+                } else {
+                    return "invoiceTitle=Nouvelle facture";
+                }
+            }
+        });
+
+        Assert.assertEquals(factory.createBundle(Locale.FRANCE, BUNDLE_PATH, ResourceBundleType.INVOICE_TRANSLATION, tenantContext).getString("invoiceTitle"), "Facture");
+        // The stale bundle wasn't cached
+        final ResourceBundle bundle = factory.createBundle(Locale.FRANCE, BUNDLE_PATH, ResourceBundleType.INVOICE_TRANSLATION, tenantContext);
+        Assert.assertEquals(bundle.getString("invoiceTitle"), "Nouvelle facture");
+        Assert.assertSame(factory.createBundle(Locale.FRANCE, BUNDLE_PATH, ResourceBundleType.INVOICE_TRANSLATION, tenantContext), bundle);
+        Mockito.verify(tenantInternalApi, Mockito.times(2)).getInvoiceTranslation(Mockito.eq(Locale.FRANCE), Mockito.<InternalTenantContext>any());
+    }
+}
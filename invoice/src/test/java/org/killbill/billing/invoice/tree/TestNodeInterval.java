@@ -427,6 +427,65 @@ public class TestNodeInterval /* extends InvoiceTestSuiteNoDB  */ {
 
     }
 
+    @Test(groups = "fast")
+    public void testAddNodesOutOfOrder() {
+        final DummyNodeInterval root = new DummyNodeInterval();
+
+        final List<DummyNodeInterval> months = new ArrayList<DummyNodeInterval>();
+        for (int i = 0; i < 12; i++) {
+            months.add(createNodeInterval(new LocalDate("2014-01-01").plusMonths(i), new LocalDate("2014-01-01").plusMonths(i + 1)));
+        }
+        for (int i = months.size() - 1; i >= 0; i--) {
+            root.addNode(months.get(i), CALLBACK);
+        }
+
+        // Overlaps January and February, without containing any of them
+        final DummyNodeInterval acrossJanuaryAndFebruary = createNodeInterval("2014-01-15", "2014-02-15");
+        root.addNode(acrossJanuaryAndFebruary, CALLBACK);
+
+        // Contained in both the previous node and February: the first one wins
+        final DummyNodeInterval inFebruary = createNodeInterval("2014-02-05", "2014-02-10");
+        root.addNode(inFebruary, CALLBACK);
+        assertEquals(inFebruary.getParent(), acrossJanuaryAndFebruary);
+
+        // Rebalance March, April and May
+        final DummyNodeInterval fromMarchToMay = createNodeInterval("2014-03-01", "2014-06-01");
+        root.addNode(fromMarchToMay, CALLBACK);
+
+        final List<NodeInterval> expectedNodes = new ArrayList<NodeInterval>();
+        expectedNodes.add(root);
+        expectedNodes.add(months.get(0));
+        expectedNodes.add(acrossJanuaryAndFebruary);
+        expectedNodes.add(inFebruary);
+        expectedNodes.add(months.get(1));
+        expectedNodes.add(fromMarchToMay);
+        expectedNodes.addAll(months.subList(2, months.size()));
+        root.walkTree(new WalkCallback() {
+            @Override
+            public void onCurrentNode(final int depth, final NodeInterval curNode, final NodeInterval parent) {
+                Assert.assertEquals(curNode, expectedNodes.remove(0));
+            }
+        });
+        assertEquals(root.getNbChildren(), 11);
+        checkNode(fromMarchToMay, 3, root, months.get(2), months.get(5));
+
+        final NodeInterval foundNode = root.findNode(new LocalDate("2014-02-07"), new SearchCallback() {
+            @Override
+            public boolean isMatch(final NodeInterval curNode) {
+                return curNode.getNbChildren() == 0;
+            }
+        });
+        assertEquals(foundNode, inFebruary);
+
+        final NodeInterval foundNodeOnBoundary = root.findNode(new LocalDate("2014-04-01"), new SearchCallback() {
+            @Override
+            public boolean isMatch(final NodeInterval curNode) {
+                return curNode.getNbChildren() == 0;
+            }
+        });
+        assertEquals(foundNodeOnBoundary, months.get(2));
+    }
+
     private void checkInterval(final NodeInterval real, final NodeInterval expected) {
         assertEquals(real.getStart(), expected.getStart());
         assertEquals(real.getEnd(), expected.getEnd());
@@ -56,6 +56,7 @@ import org.killbill.billing.payment.api.Payment;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.util.api.AuditLevel;
 import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.api.CustomFieldUserApi;
@@ -217,8 +218,11 @@ public class InvoicePaymentResource extends JaxRsResourceBase {
     @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid payment id supplied")})
     public Response getCustomFields(@PathParam(ID_PARAM_NAME) final String id,
                                     @QueryParam(QUERY_AUDIT) @DefaultValue("NONE") final AuditMode auditMode,
-                                    @javax.ws.rs.core.Context final HttpServletRequest request) {
-        return super.getCustomFields(UUID.fromString(id), auditMode, context.createContext(request));
+                                    @javax.ws.rs.core.Context final HttpServletRequest request) throws PaymentApiException {
+        final UUID paymentId = UUID.fromString(id);
+        final TenantContext tenantContext = context.createContext(request);
+        final UUID accountId = auditMode.getLevel() == AuditLevel.NONE ? null : paymentApi.getPayment(paymentId, false, ImmutableList.<PluginProperty>of(), tenantContext).getAccountId();
+        return super.getCustomFields(accountId, paymentId, auditMode, tenantContext);
     }
 
     @Timed
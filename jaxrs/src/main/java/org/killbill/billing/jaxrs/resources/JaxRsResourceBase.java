@@ -26,10 +26,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -79,6 +81,7 @@ import org.killbill.billing.util.customfield.CustomField;
 import org.killbill.billing.util.customfield.StringCustomField;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
+import org.killbill.billing.util.entity.SeekPagination;
 import org.killbill.billing.util.jackson.ObjectMapper;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.TagDefinition;
@@ -139,15 +142,11 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
     protected Response getTags(final UUID accountId, final UUID taggedObjectId, final AuditMode auditMode, final boolean includeDeleted, final TenantContext context) throws TagDefinitionApiException {
         final List<Tag> tags = tagUserApi.getTagsForObject(taggedObjectId, getObjectType(), includeDeleted, context);
         final AccountAuditLogsForObjectType tagsAuditLogs = auditUserApi.getAccountAuditLogs(accountId, ObjectType.TAG, auditMode.getLevel(), context);
+        final Map<UUID, TagDefinition> tagDefinitions = getTagDefinitions(tags, context);
 
-        final Map<UUID, TagDefinition> tagDefinitionsCache = new HashMap<UUID, TagDefinition>();
         final Collection<TagJson> result = new LinkedList<TagJson>();
         for (final Tag tag : tags) {
-            if (tagDefinitionsCache.get(tag.getTagDefinitionId()) == null) {
-                tagDefinitionsCache.put(tag.getTagDefinitionId(), tagUserApi.getTagDefinition(tag.getTagDefinitionId(), context));
-            }
-            final TagDefinition tagDefinition = tagDefinitionsCache.get(tag.getTagDefinitionId());
-
+            final TagDefinition tagDefinition = tagDefinitions.get(tag.getTagDefinitionId());
             final List<AuditLog> auditLogs = tagsAuditLogs.getAuditLogs(tag.getId());
             result.add(new TagJson(tag, tagDefinition, auditLogs));
         }
@@ -155,6 +154,23 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
         return Response.status(Response.Status.OK).entity(result).build();
     }
 
+    // Retrieve all the tag definitions at once, instead of once per tag
+    protected Map<UUID, TagDefinition> getTagDefinitions(final Iterable<Tag> tags, final TenantContext context) throws TagDefinitionApiException {
+        final Set<UUID> tagDefinitionIds = new HashSet<UUID>();
+        for (final Tag tag : tags) {
+            tagDefinitionIds.add(tag.getTagDefinitionId());
+        }
+
+        final Map<UUID, TagDefinition> tagDefinitions = new HashMap<UUID, TagDefinition>();
+        if (tagDefinitionIds.isEmpty()) {
+            return tagDefinitions;
+        }
+        for (final TagDefinition tagDefinition : tagUserApi.getTagDefinitions(tagDefinitionIds, context)) {
+            tagDefinitions.put(tagDefinition.getId(), tagDefinition);
+        }
+        return tagDefinitions;
+    }
+
     protected Response createTags(final UUID id,
                                   final String tagList,
                                   final UriInfo uriInfo,
@@ -184,13 +200,14 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
         return Response.status(Response.Status.OK).build();
     }
 
-    protected Response getCustomFields(final UUID id, final AuditMode auditMode, final TenantContext context) {
+    // The accountId is only needed to retrieve the audit logs, i.e. it can be null if the audit level is NONE
+    protected Response getCustomFields(@Nullable final UUID accountId, final UUID id, final AuditMode auditMode, final TenantContext context) {
         final List<CustomField> fields = customFieldUserApi.getCustomFieldsForObject(id, getObjectType(), context);
+        final AccountAuditLogsForObjectType customFieldsAuditLogs = auditUserApi.getAccountAuditLogs(accountId, ObjectType.CUSTOM_FIELD, auditMode.getLevel(), context);
 
         final List<CustomFieldJson> result = new LinkedList<CustomFieldJson>();
         for (final CustomField cur : fields) {
-            // TODO PIERRE - Bulk API
-            final List<AuditLog> auditLogs = auditUserApi.getAuditLogs(cur.getId(), ObjectType.CUSTOM_FIELD, auditMode.getLevel(), context);
+            final List<AuditLog> auditLogs = customFieldsAuditLogs.getAuditLogs(cur.getId());
             result.add(new CustomFieldJson(cur, auditLogs));
         }
 
@@ -273,6 +290,15 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
             }
         };
 
+        if (SeekPagination.isSeekOffset(entities.getCurrentOffset())) {
+            // No offsets nor counts in seek mode
+            return Response.status(Status.OK)
+                           .entity(json)
+                           .header(HDR_PAGINATION_NEXT_PAGE_TOKEN, entities.getNextOffset() != null ? SeekPagination.toToken(entities.getNextOffset()) : null)
+                           .header(HDR_PAGINATION_NEXT_PAGE_URI, nextPageUri)
+                           .build();
+        }
+
         return Response.status(Status.OK)
                        .entity(json)
                        .header(HDR_PAGINATION_CURRENT_OFFSET, entities.getCurrentOffset())
@@ -283,6 +309,15 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
                        .build();
     }
 
+    /**
+     * @param offset    the offset query parameter
+     * @param pageToken the page token query parameter, to use seek pagination instead (empty for the first page)
+     * @return the offset to pass to the APIs
+     */
+    protected Long toPaginationOffset(final Long offset, @Nullable final String pageToken) {
+        return pageToken == null ? offset : SeekPagination.fromToken(pageToken);
+    }
+
     protected void validatePaymentMethodForAccount(final UUID accountId, final UUID paymentMethodId, final CallContext callContext) throws PaymentApiException {
         final PaymentMethod paymentMethod = paymentApi.getPaymentMethodById(paymentMethodId, false, false, ImmutableList.<PluginProperty>of(), callContext);
         if (! paymentMethod.getAccountId().equals(accountId)) {
@@ -71,6 +71,7 @@ import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.jaxrs.util.KillbillEventHandler;
 import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.util.api.AuditLevel;
 import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.api.CustomFieldUserApi;
@@ -466,8 +467,11 @@ public class SubscriptionResource extends JaxRsResourceBase {
     @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid subscription id supplied")})
     public Response getCustomFields(@PathParam(ID_PARAM_NAME) final String id,
                                     @QueryParam(QUERY_AUDIT) @DefaultValue("NONE") final AuditMode auditMode,
-                                    @javax.ws.rs.core.Context final HttpServletRequest request) {
-        return super.getCustomFields(UUID.fromString(id), auditMode, context.createContext(request));
+                                    @javax.ws.rs.core.Context final HttpServletRequest request) throws SubscriptionApiException {
+        final UUID subscriptionId = UUID.fromString(id);
+        final TenantContext tenantContext = context.createContext(request);
+        final UUID accountId = auditMode.getLevel() == AuditLevel.NONE ? null : subscriptionApi.getSubscriptionForEntitlementId(subscriptionId, tenantContext).getAccountId();
+        return super.getCustomFields(accountId, subscriptionId, auditMode, tenantContext);
     }
 
     @POST
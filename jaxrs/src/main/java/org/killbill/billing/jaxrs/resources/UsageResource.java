@@ -16,6 +16,9 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 
@@ -45,6 +48,7 @@ import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.usage.UsageInternalApi;
 import org.killbill.billing.usage.api.RolledUpUsage;
 import org.killbill.billing.usage.api.SubscriptionUsageRecord;
 import org.killbill.billing.usage.api.UsageUserApi;
@@ -56,6 +60,7 @@ import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.clock.Clock;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Singleton;
@@ -72,6 +77,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 public class UsageResource extends JaxRsResourceBase {
 
     private final UsageUserApi usageUserApi;
+    private final UsageInternalApi usageInternalApi;
     private final EntitlementApi entitlementApi;
 
     @Inject
@@ -81,12 +87,14 @@ public class UsageResource extends JaxRsResourceBase {
                          final AuditUserApi auditUserApi,
                          final AccountUserApi accountUserApi,
                          final UsageUserApi usageUserApi,
+                         final UsageInternalApi usageInternalApi,
                          final PaymentApi paymentApi,
                          final EntitlementApi entitlementApi,
                          final Clock clock,
                          final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
         this.usageUserApi = usageUserApi;
+        this.usageInternalApi = usageInternalApi;
         this.entitlementApi = entitlementApi;
     }
 
@@ -102,15 +110,8 @@ public class UsageResource extends JaxRsResourceBase {
                                 @HeaderParam(HDR_COMMENT) final String comment,
                                 @javax.ws.rs.core.Context final HttpServletRequest request,
                                 @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException, AccountApiException {
-        verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson body should be specified");
-        verifyNonNullOrEmpty(json.getSubscriptionId(), "SubscriptionUsageRecordJson subscriptionId needs to be set",
-                             json.getUnitUsageRecords(), "SubscriptionUsageRecordJson unitUsageRecords needs to be set");
-        Preconditions.checkArgument(!json.getUnitUsageRecords().isEmpty());
-
         final CallContext callContext = context.createContext(createdBy, reason, comment, request);
-        // Verify subscription exists..
-        final Entitlement entitlement = entitlementApi.getEntitlementForId(UUID.fromString(json.getSubscriptionId()), callContext);
-        if (entitlement.getState() != EntitlementState.ACTIVE) {
+        if (!isValidUsageRecord(json, callContext)) {
             return Response.status(Status.BAD_REQUEST).build();
         }
 
@@ -119,6 +120,51 @@ public class UsageResource extends JaxRsResourceBase {
         return Response.status(Status.CREATED).build();
     }
 
+    @Timed
+    @POST
+    @Path("/" + BULK)
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Record usage for multiple subscriptions (JSON array of SubscriptionUsageRecordJson)")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid subscription (e.g. inactive), none of the records have been recorded")})
+    public Response recordUsages(final InputStream jsonStream,
+                                 @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                 @HeaderParam(HDR_REASON) final String reason,
+                                 @HeaderParam(HDR_COMMENT) final String comment,
+                                 @javax.ws.rs.core.Context final HttpServletRequest request,
+                                 @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException, AccountApiException, IOException {
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+
+        // The whole payload is validated first, so that it is recorded all at once or not at all
+        final List<SubscriptionUsageRecord> records = new LinkedList<SubscriptionUsageRecord>();
+        final MappingIterator<SubscriptionUsageRecordJson> jsonRecords = mapper.reader(SubscriptionUsageRecordJson.class).readValues(jsonStream);
+        try {
+            while (jsonRecords.hasNext()) {
+                final SubscriptionUsageRecordJson json = jsonRecords.next();
+                if (!isValidUsageRecord(json, callContext)) {
+                    return Response.status(Status.BAD_REQUEST).build();
+                }
+                records.add(json.toSubscriptionUsageRecord());
+            }
+        } finally {
+            jsonRecords.close();
+        }
+
+        usageInternalApi.recordRolledUpUsages(records, callContext);
+        return Response.status(Status.CREATED).build();
+    }
+
+    private boolean isValidUsageRecord(final SubscriptionUsageRecordJson json, final CallContext callContext) throws EntitlementApiException {
+        verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson body should be specified");
+        verifyNonNullOrEmpty(json.getSubscriptionId(), "SubscriptionUsageRecordJson subscriptionId needs to be set",
+                             json.getUnitUsageRecords(), "SubscriptionUsageRecordJson unitUsageRecords needs to be set");
+        Preconditions.checkArgument(!json.getUnitUsageRecords().isEmpty());
+
+        // Verify subscription exists..
+        final Entitlement entitlement = entitlementApi.getEntitlementForId(UUID.fromString(json.getSubscriptionId()), callContext);
+        return entitlement.getState() == EntitlementState.ACTIVE;
+    }
+
     @Timed
     @GET
     @Path("/{subscriptionId:" + UUID_PATTERN + "}/{unitType}")
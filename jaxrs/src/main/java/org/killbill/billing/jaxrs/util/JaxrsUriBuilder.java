@@ -27,6 +27,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.killbill.billing.jaxrs.resources.JaxRsResourceBase;
 import org.killbill.billing.jaxrs.resources.JaxrsResource;
+import org.killbill.billing.util.entity.SeekPagination;
 
 public class JaxrsUriBuilder {
 
@@ -45,8 +46,13 @@ public class JaxrsUriBuilder {
             return null;
         }
 
-        final UriBuilder uriBuilder = getUriBuilder(theClass, getMethodName).queryParam(JaxRsResourceBase.QUERY_SEARCH_OFFSET, nextOffset)
-                                                                            .queryParam(JaxRsResourceBase.QUERY_SEARCH_LIMIT, limit);
+        final UriBuilder uriBuilder = getUriBuilder(theClass, getMethodName);
+        if (SeekPagination.isSeekOffset(nextOffset)) {
+            uriBuilder.queryParam(JaxRsResourceBase.QUERY_SEARCH_PAGE_TOKEN, SeekPagination.toToken(nextOffset));
+        } else {
+            uriBuilder.queryParam(JaxRsResourceBase.QUERY_SEARCH_OFFSET, nextOffset);
+        }
+        uriBuilder.queryParam(JaxRsResourceBase.QUERY_SEARCH_LIMIT, limit);
         for (final String key : params.keySet()) {
             uriBuilder.queryParam(key, params.get(key));
         }
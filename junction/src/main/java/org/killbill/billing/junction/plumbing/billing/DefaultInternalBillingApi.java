@@ -17,12 +17,12 @@
 package org.killbill.billing.junction.plumbing.billing;
 
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
 
-import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountInternalApi;
@@ -51,6 +51,10 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimaps;
 import com.google.inject.Inject;
 
 public class DefaultInternalBillingApi implements BillingInternalApi {
@@ -91,15 +95,17 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         try {
             final Account account = accountApi.getAccountById(accountId, context);
 
+            // All the tags for the account (account and bundles), indexed by object id
+            final ImmutableListMultimap<UUID, Tag> tagsPerObjectId = getTagsPerObjectId(tagApi.getTagsForAccount(false, context));
+
             // Check to see if billing is off for the account
-            final List<Tag> accountTags = tagApi.getTags(accountId, ObjectType.ACCOUNT, context);
-            final boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(accountTags);
+            final boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(tagsPerObjectId.get(accountId));
             if (found_AUTO_INVOICING_OFF) {
                 result.setAccountAutoInvoiceIsOff(true);
                 return result; // billing is off, we are done
             }
 
-            addBillingEventsForBundles(bundles, account, dryRunArguments, context, result);
+            addBillingEventsForBundles(bundles, tagsPerObjectId, account, dryRunArguments, context, result);
         } catch (AccountApiException e) {
             log.warn("Failed while getting BillingEvent", e);
         } catch (SubscriptionBaseApiException e) {
@@ -123,7 +129,8 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         }
     }
 
-    private void addBillingEventsForBundles(final List<SubscriptionBaseBundle> bundles, final Account account, final DryRunArguments dryRunArguments, final InternalCallContext context,
+    private void addBillingEventsForBundles(final List<SubscriptionBaseBundle> bundles, final ImmutableListMultimap<UUID, Tag> tagsPerObjectId, final Account account,
+                                            final DryRunArguments dryRunArguments, final InternalCallContext context,
                                             final DefaultBillingEventSet result) throws SubscriptionBaseApiException {
 
         final boolean dryRunMode = dryRunArguments != null;
@@ -140,15 +147,26 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
 
         }
 
+        // Load the subscriptions (and their events) for all bundles at once, instead of bundle per bundle
+        final Map<UUID, List<SubscriptionBase>> subscriptionsPerBundleId = bundles.isEmpty() ?
+                                                                          ImmutableMap.<UUID, List<SubscriptionBase>>of() :
+                                                                          subscriptionApi.getSubscriptionsForAccount(context);
+
         for (final SubscriptionBaseBundle bundle : bundles) {
-            final DryRunArguments dryRunArgumentsForBundle = (dryRunArguments != null &&
-                                                             dryRunArguments.getBundleId() != null &&
-                                                             dryRunArguments.getBundleId().equals(bundle.getId())) ?
-                                                             dryRunArguments : null;
-            final List<SubscriptionBase> subscriptions = subscriptionApi.getSubscriptionsForBundle(bundle.getId(), dryRunArgumentsForBundle, context);
+            final List<SubscriptionBase> subscriptions;
+            if (dryRunArguments != null &&
+                dryRunArguments.getBundleId() != null &&
+                dryRunArguments.getBundleId().equals(bundle.getId())) {
+                // The dry run events only apply to that bundle
+                subscriptions = subscriptionApi.getSubscriptionsForBundle(bundle.getId(), dryRunArguments, context);
+            } else if (subscriptionsPerBundleId.get(bundle.getId()) != null) {
+                subscriptions = subscriptionsPerBundleId.get(bundle.getId());
+            } else {
+                subscriptions = ImmutableList.<SubscriptionBase>of();
+            }
 
             //Check if billing is off for the bundle
-            final List<Tag> bundleTags = tagApi.getTags(bundle.getId(), ObjectType.BUNDLE, context);
+            final List<Tag> bundleTags = tagsPerObjectId.get(bundle.getId());
             boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(bundleTags);
             if (found_AUTO_INVOICING_OFF) {
                 for (final SubscriptionBase subscription : subscriptions) { // billing is off so list sub ids in set to be excluded
@@ -197,6 +215,15 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         }
     }
 
+    private ImmutableListMultimap<UUID, Tag> getTagsPerObjectId(final List<Tag> tags) {
+        return Multimaps.index(tags, new Function<Tag, UUID>() {
+            @Override
+            public UUID apply(final Tag tag) {
+                return tag.getObjectId();
+            }
+        });
+    }
+
     private final boolean is_AUTO_INVOICING_OFF(final List<Tag> tags) {
         return ControlTagType.isAutoInvoicingOff(Collections2.transform(tags, new Function<Tag, UUID>() {
             @Nullable
@@ -19,6 +19,7 @@ package org.killbill.billing.overdue;
 import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.Description;
+import org.skife.config.TimeSpan;
 
 import org.killbill.billing.util.config.KillbillConfig;
 
@@ -28,4 +29,9 @@ public interface OverdueProperties extends KillbillConfig {
     @Default("NoOverdueConfig.xml")
     @Description("Overdue configuration location. Either in the classpath or in the filesystem")
     public String getConfigURI();
+
+    @Config("org.killbill.overdue.refresh.window")
+    @Default("0s")
+    @Description("Delay before an overdue refresh triggered by a payment or invoice event is run (other refreshes for the same account within that window are collapsed)")
+    public TimeSpan getRefreshWindow();
 }
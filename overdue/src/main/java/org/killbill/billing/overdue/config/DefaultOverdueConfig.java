@@ -33,10 +33,44 @@ public class DefaultOverdueConfig extends ValidatingConfig<DefaultOverdueConfig>
     @XmlElement(required = true, name = "accountOverdueStates")
     private DefaultOverdueStatesAccount accountOverdueStates = new DefaultOverdueStatesAccount();
 
+    // Computed once the config is loaded (or lazily, for configs built programmatically)
+    private volatile Boolean overdueEnabled;
+
     public DefaultOverdueStatesAccount getOverdueStatesAccount() {
         return accountOverdueStates;
     }
 
+    /**
+     * @return true if at least one overdue state has a condition, i.e. if accounts can go overdue with this config
+     */
+    public boolean isOverdueEnabled() {
+        Boolean result = overdueEnabled;
+        if (result == null) {
+            result = computeOverdueEnabled();
+            overdueEnabled = result;
+        }
+        return result;
+    }
+
+    private boolean computeOverdueEnabled() {
+        if (accountOverdueStates == null || accountOverdueStates.getStates() == null) {
+            return false;
+        }
+
+        for (final DefaultOverdueState state : accountOverdueStates.getStates()) {
+            if (state.getConditionEvaluation() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void initialize(final DefaultOverdueConfig root, final URI uri) {
+        super.initialize(root, uri);
+        overdueEnabled = computeOverdueEnabled();
+    }
+
     @Override
     public ValidationErrors validate(final DefaultOverdueConfig root,
                                      final ValidationErrors errors) {
@@ -45,6 +79,7 @@ public class DefaultOverdueConfig extends ValidatingConfig<DefaultOverdueConfig>
 
     public DefaultOverdueConfig setOverdueStates(final DefaultOverdueStatesAccount accountOverdueStates) {
         this.accountOverdueStates = accountOverdueStates;
+        this.overdueEnabled = null;
         return this;
     }
 
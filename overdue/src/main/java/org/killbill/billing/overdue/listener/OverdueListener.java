@@ -22,6 +22,7 @@ import java.util.UUID;
 
 import javax.inject.Named;
 
+import org.joda.time.DateTime;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -30,12 +31,12 @@ import org.killbill.billing.events.ControlTagDeletionInternalEvent;
 import org.killbill.billing.events.InvoiceAdjustmentInternalEvent;
 import org.killbill.billing.events.PaymentErrorInternalEvent;
 import org.killbill.billing.events.PaymentInfoInternalEvent;
+import org.killbill.billing.overdue.OverdueProperties;
 import org.killbill.billing.overdue.OverdueService;
 import org.killbill.billing.overdue.api.OverdueApiException;
 import org.killbill.billing.overdue.api.OverdueConfig;
 import org.killbill.billing.overdue.caching.OverdueConfigCache;
 import org.killbill.billing.overdue.config.DefaultOverdueConfig;
-import org.killbill.billing.overdue.config.DefaultOverdueState;
 import org.killbill.billing.overdue.glue.DefaultOverdueModule;
 import org.killbill.billing.overdue.notification.OverdueAsyncBusNotificationKey;
 import org.killbill.billing.overdue.notification.OverdueAsyncBusNotificationKey.OverdueAsyncBusNotificationAction;
@@ -59,6 +60,7 @@ public class OverdueListener {
     private final OverduePoster asyncPoster;
     private final Clock clock;
     private final OverdueConfigCache overdueConfigCache;
+    private final OverdueProperties overdueProperties;
 
     private static final Logger log = LoggerFactory.getLogger(OverdueListener.class);
 
@@ -66,10 +68,12 @@ public class OverdueListener {
     public OverdueListener(final Clock clock,
                            @Named(DefaultOverdueModule.OVERDUE_NOTIFIER_ASYNC_BUS_NAMED) final OverduePoster asyncPoster,
                            final OverdueConfigCache overdueConfigCache,
+                           final OverdueProperties overdueProperties,
                            final InternalCallContextFactory internalCallContextFactory) {
         this.asyncPoster = asyncPoster;
         this.clock = clock;
         this.overdueConfigCache = overdueConfigCache;
+        this.overdueProperties = overdueProperties;
         this.internalCallContextFactory = internalCallContextFactory;
     }
 
@@ -110,8 +114,12 @@ public class OverdueListener {
         final boolean shouldInsertNotification = shouldInsertNotification(tenantContext);
 
         if (shouldInsertNotification) {
+            // Delay the refreshes, so that the ones for the same account within the window are collapsed into a single one (see OverdueAsyncBusPoster)
+            final DateTime effectiveDate = action == OverdueAsyncBusNotificationAction.REFRESH ?
+                                           clock.getUTCNow().plus(overdueProperties.getRefreshWindow().getMillis()) :
+                                           clock.getUTCNow();
             final OverdueAsyncBusNotificationKey notificationKey = new OverdueAsyncBusNotificationKey(accountId, action);
-            asyncPoster.insertOverdueNotification(accountId, clock.getUTCNow(), OverdueAsyncBusNotifier.OVERDUE_ASYNC_BUS_NOTIFIER_QUEUE, notificationKey, createCallContext(event.getUserToken(), event.getSearchKey1(), event.getSearchKey2()));
+            asyncPoster.insertOverdueNotification(accountId, effectiveDate, OverdueAsyncBusNotifier.OVERDUE_ASYNC_BUS_NOTIFIER_QUEUE, notificationKey, createCallContext(event.getUserToken(), event.getSearchKey1(), event.getSearchKey2()));
         }
     }
 
@@ -124,16 +132,8 @@ public class OverdueListener {
             log.warn("Failed to extract overdue config for tenant " + internalTenantContext.getTenantRecordId());
             overdueConfig = null;
         }
-        if (overdueConfig == null || overdueConfig.getOverdueStatesAccount() == null || overdueConfig.getOverdueStatesAccount().getStates() == null) {
-            return false;
-        }
-
-        for (final DefaultOverdueState state : ((DefaultOverdueConfig) overdueConfig).getOverdueStatesAccount().getStates()) {
-            if (state.getConditionEvaluation() != null) {
-                return true;
-            }
-        }
-        return false;
+        // Precomputed when the config is loaded
+        return overdueConfig != null && ((DefaultOverdueConfig) overdueConfig).isOverdueEnabled();
     }
 
     private InternalCallContext createCallContext(final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
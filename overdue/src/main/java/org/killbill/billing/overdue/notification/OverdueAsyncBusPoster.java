@@ -21,6 +21,7 @@ package org.killbill.billing.overdue.notification;
 import java.util.Collection;
 
 import org.joda.time.DateTime;
+import org.killbill.billing.overdue.notification.OverdueAsyncBusNotificationKey.OverdueAsyncBusNotificationAction;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
@@ -45,10 +46,32 @@ public class OverdueAsyncBusPoster extends DefaultOverduePosterBase {
     protected <T extends OverdueCheckNotificationKey> boolean cleanupFutureNotificationsFormTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
                                                                                                         final Collection<NotificationEventWithMetadata<T>> futureNotifications,
                                                                                                         final DateTime futureNotificationTime,
+                                                                                                        final T notificationKey,
                                                                                                         final NotificationQueue overdueQueue) {
-        // If we already have notification for that account we don't insert the new one
-        // Note that this is slightly incorrect because we could for instance already have a REFRESH and insert a CLEAR, but if that were the case,
-        // if means overdue state would change very rapidly and the behavior would anyway be non deterministic
-        return futureNotifications.isEmpty();
+        // If we already have a pending notification with the same action for that account, we don't insert the new one: the pending one will pick up
+        // the latest state of the account when it runs. A pending CLEAR also covers a new REFRESH: the CLEAR comes from disabling the overdue enforcement,
+        // so a REFRESH must never replace it (the account would stay blocked). Only a new CLEAR replaces a pending REFRESH.
+        for (final NotificationEventWithMetadata<T> cur : futureNotifications) {
+            if (isSameAction(cur.getEvent(), notificationKey) || isClearAction(cur.getEvent())) {
+                return false;
+            }
+        }
+
+        for (final NotificationEventWithMetadata<T> cur : futureNotifications) {
+            overdueQueue.removeNotificationFromTransaction(entitySqlDaoWrapperFactory.getHandle().getConnection(), cur.getRecordId());
+        }
+        return true;
+    }
+
+    private boolean isClearAction(final OverdueCheckNotificationKey existingNotificationKey) {
+        return existingNotificationKey instanceof OverdueAsyncBusNotificationKey &&
+               ((OverdueAsyncBusNotificationKey) existingNotificationKey).getAction() == OverdueAsyncBusNotificationAction.CLEAR;
+    }
+
+    private boolean isSameAction(final OverdueCheckNotificationKey existingNotificationKey, final OverdueCheckNotificationKey notificationKey) {
+        if (!(existingNotificationKey instanceof OverdueAsyncBusNotificationKey) || !(notificationKey instanceof OverdueAsyncBusNotificationKey)) {
+            return true;
+        }
+        return ((OverdueAsyncBusNotificationKey) existingNotificationKey).getAction() == ((OverdueAsyncBusNotificationKey) notificationKey).getAction();
     }
 }
@@ -69,6 +69,8 @@ public class TestOverdueConfig extends OverdueTestSuiteNoDB {
         final InputStream is = new ByteArrayInputStream(xml.getBytes());
         final DefaultOverdueConfig c = XMLLoader.getObjectFromStreamNoValidation(is, DefaultOverdueConfig.class);
         Assert.assertEquals(c.getOverdueStatesAccount().size(), 2);
+        Assert.assertTrue(c.isOverdueEnabled());
+        Assert.assertFalse(new MockOverdueRules().isOverdueEnabled());
 
         Assert.assertNull(c.getOverdueStatesAccount().getStates()[0].getEmailNotification());
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.overdue.notification;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.overdue.OverdueTestSuiteWithEmbeddedDB;
+import org.killbill.billing.overdue.notification.OverdueAsyncBusNotificationKey.OverdueAsyncBusNotificationAction;
+import org.killbill.billing.overdue.service.DefaultOverdueService;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestOverdueAsyncBusPoster extends OverdueTestSuiteWithEmbeddedDB {
+
+    private EntitySqlDaoTransactionalJdbiWrapper entitySqlDaoTransactionalJdbiWrapper;
+    private NotificationQueue overdueQueue;
+    private DateTime testReferenceTime;
+
+    @Override
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        super.beforeMethod();
+        entitySqlDaoTransactionalJdbiWrapper = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao);
+
+        overdueQueue = notificationQueueService.getNotificationQueue(DefaultOverdueService.OVERDUE_SERVICE_NAME,
+                                                                     OverdueAsyncBusNotifier.OVERDUE_ASYNC_BUS_NOTIFIER_QUEUE);
+        Assert.assertTrue(overdueQueue.isStarted());
+
+        testReferenceTime = clock.getUTCNow();
+    }
+
+    @Test(groups = "slow")
+    public void testRefreshesAreCollapsed() throws Exception {
+        final UUID accountId = UUID.randomUUID();
+
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 10, OverdueAsyncBusNotificationAction.REFRESH, 10);
+        // Collapsed into the pending refresh
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 20, OverdueAsyncBusNotificationAction.REFRESH, 10);
+        // A different action replaces the pending refresh
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.CLEAR, 5, OverdueAsyncBusNotificationAction.CLEAR, 5);
+    }
+
+    @Test(groups = "slow")
+    public void testRefreshDoesNotReplaceClear() throws Exception {
+        final UUID accountId = UUID.randomUUID();
+
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.CLEAR, 10, OverdueAsyncBusNotificationAction.CLEAR, 10);
+        // The pending clear is kept (otherwise the account would stay blocked, as refreshes are ignored while the overdue enforcement is off)
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 5, OverdueAsyncBusNotificationAction.CLEAR, 10);
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 20, OverdueAsyncBusNotificationAction.CLEAR, 10);
+        // Collapsed into the pending clear
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.CLEAR, 15, OverdueAsyncBusNotificationAction.CLEAR, 10);
+    }
+
+    private void insertAndVerifyQueueContent(final UUID accountId, final OverdueAsyncBusNotificationAction action, final int nbSecondsInFuture,
+                                             final OverdueAsyncBusNotificationAction expectedAction, final int expectedNbSecondsInFuture) {
+        final DateTime futureNotificationTime = testReferenceTime.plusSeconds(nbSecondsInFuture);
+
+        final OverdueAsyncBusNotificationKey notificationKey = new OverdueAsyncBusNotificationKey(accountId, action);
+        asyncPoster.insertOverdueNotification(accountId, futureNotificationTime, OverdueAsyncBusNotifier.OVERDUE_ASYNC_BUS_NOTIFIER_QUEUE, notificationKey, internalCallContext);
+
+        final Collection<NotificationEventWithMetadata<OverdueAsyncBusNotificationKey>> notificationsForKey = getNotificationsForAccount();
+        Assert.assertEquals(notificationsForKey.size(), 1);
+        final NotificationEventWithMetadata<OverdueAsyncBusNotificationKey> nm = notificationsForKey.iterator().next();
+        Assert.assertEquals(nm.getEvent(), new OverdueAsyncBusNotificationKey(accountId, expectedAction));
+        Assert.assertEquals(nm.getEffectiveDate(), testReferenceTime.plusSeconds(expectedNbSecondsInFuture));
+    }
+
+    private Collection<NotificationEventWithMetadata<OverdueAsyncBusNotificationKey>> getNotificationsForAccount() {
+        return entitySqlDaoTransactionalJdbiWrapper.execute(new EntitySqlDaoTransactionWrapper<Collection<NotificationEventWithMetadata<OverdueAsyncBusNotificationKey>>>() {
+            @Override
+            public Collection<NotificationEventWithMetadata<OverdueAsyncBusNotificationKey>> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return ((OverdueAsyncBusPoster) asyncPoster).getFutureNotificationsForAccountInTransaction(entitySqlDaoWrapperFactory, overdueQueue, OverdueAsyncBusNotificationKey.class, internalCallContext);
+            }
+        });
+    }
+}
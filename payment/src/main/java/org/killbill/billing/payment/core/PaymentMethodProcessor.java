@@ -80,6 +80,7 @@ public class PaymentMethodProcessor extends ProcessorBase {
     private static final Logger log = LoggerFactory.getLogger(PaymentMethodProcessor.class);
 
     private final PluginDispatcher<UUID> uuidPluginNotificationDispatcher;
+    private final long paymentPluginTimeoutSec;
 
     @Inject
     public PaymentMethodProcessor(final OSGIServiceRegistration<PaymentPluginApi> pluginRegistry,
@@ -93,7 +94,7 @@ public class PaymentMethodProcessor extends ProcessorBase {
                                   final InternalCallContextFactory internalCallContextFactory,
                                   final Clock clock) {
         super(pluginRegistry, accountInternalApi, paymentDao, tagUserApi, locker, executor, internalCallContextFactory, invoiceApi, clock);
-        final long paymentPluginTimeoutSec = TimeUnit.SECONDS.convert(paymentConfig.getPaymentPluginTimeout().getPeriod(), paymentConfig.getPaymentPluginTimeout().getUnit());
+        this.paymentPluginTimeoutSec = TimeUnit.SECONDS.convert(paymentConfig.getPaymentPluginTimeout().getPeriod(), paymentConfig.getPaymentPluginTimeout().getUnit());
         this.uuidPluginNotificationDispatcher = new PluginDispatcher<UUID>(paymentPluginTimeoutSec, executor);
     }
 
@@ -185,6 +186,9 @@ public class PaymentMethodProcessor extends ProcessorBase {
         return getEntityPaginationFromPlugins(getAvailablePlugins(),
                                               offset,
                                               limit,
+                                              executor,
+                                              paymentPluginTimeoutSec,
+                                              TimeUnit.SECONDS,
                                               new EntityPaginationBuilder<PaymentMethod, PaymentApiException>() {
                                                   @Override
                                                   public Pagination<PaymentMethod> build(final Long offset, final Long limit, final String pluginName) throws PaymentApiException {
@@ -228,6 +232,9 @@ public class PaymentMethodProcessor extends ProcessorBase {
         return getEntityPaginationFromPlugins(getAvailablePlugins(),
                                               offset,
                                               limit,
+                                              executor,
+                                              paymentPluginTimeoutSec,
+                                              TimeUnit.SECONDS,
                                               new EntityPaginationBuilder<PaymentMethod, PaymentApiException>() {
                                                   @Override
                                                   public Pagination<PaymentMethod> build(final Long offset, final Long limit, final String pluginName) throws PaymentApiException {
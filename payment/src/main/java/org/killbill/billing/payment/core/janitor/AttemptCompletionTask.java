@@ -61,12 +61,18 @@ final class AttemptCompletionTask extends CompletionTaskBase<PaymentAttemptModel
     }
 
     @Override
-    public List<PaymentAttemptModelDao> getItemsForIteration() {
-        final List<PaymentAttemptModelDao> incompleteAttempts = paymentDao.getPaymentAttemptsByState(retrySMHelper.getInitialState().getName(), getCreatedDateBefore(), completionTaskCallContext);
+    public List<PaymentAttemptModelDao> getItemsForIteration(final Long lastRecordId) {
+        final List<PaymentAttemptModelDao> incompleteAttempts = paymentDao.getPaymentAttemptsByState(retrySMHelper.getInitialState().getName(), getCreatedDateBefore(), lastRecordId,
+                                                                                                     paymentConfig.getJanitorBatchSize(), getNbShards(), getShardIndex(), completionTaskCallContext);
         log.info("Janitor AttemptCompletionTask start run : found " + incompleteAttempts.size() + " incomplete attempts");
         return incompleteAttempts;
     }
 
+    @Override
+    protected Long getRecordId(final PaymentAttemptModelDao item) {
+        return item.getRecordId();
+    }
+
     @Override
     public void doIteration(final PaymentAttemptModelDao attempt) {
         final InternalTenantContext tenantContext = internalCallContextFactory.createInternalTenantContext(attempt.getTenantRecordId(), attempt.getAccountRecordId());
@@ -17,8 +17,16 @@
 
 package org.killbill.billing.payment.core.janitor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import org.joda.time.DateTime;
 import org.killbill.billing.account.api.AccountInternalApi;
@@ -41,6 +49,13 @@ import org.killbill.clock.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Base class for the janitor tasks.
+ * <p/>
+ * Items are fetched in batches of at most PaymentConfig#getJanitorBatchSize items (paging on the record id), and the items
+ * of a batch are processed concurrently on the janitor workers. At the end of each run, the backlog (number of items found)
+ * and the drain rate (number of items completed per second) are reported.
+ */
 abstract class CompletionTaskBase<T> implements Runnable {
 
     protected Logger log = LoggerFactory.getLogger(CompletionTaskBase.class);
@@ -85,24 +100,111 @@ abstract class CompletionTaskBase<T> implements Runnable {
             log.info("Janitor Task " + taskName + " was requested to stop");
             return;
         }
-        final List<T> items = getItemsForIteration();
-        for (final T item : items) {
+
+        final long startTimeMs = System.currentTimeMillis();
+        int nbItems = 0;
+        int nbCompletedItems = 0;
+        Long lastRecordId = 0L;
+        while (lastRecordId != null) {
+            final List<T> items = getItemsForIteration(lastRecordId);
+            nbItems += items.size();
+            nbCompletedItems += doIterations(items);
             if (janitor.isStopped()) {
                 log.info("Janitor Task " + taskName + " was requested to stop");
-                return;
+                break;
+            }
+
+            // Last page reached or task without paging
+            lastRecordId = items.size() < paymentConfig.getJanitorBatchSize() ? null : getRecordId(items.get(items.size() - 1));
+        }
+
+        final long durationMs = System.currentTimeMillis() - startTimeMs;
+        if (nbItems > 0) {
+            log.info("Janitor Task {} completed {}/{} items in {} ms ({} items/s)", taskName, nbCompletedItems, nbItems, durationMs, (nbCompletedItems * 1000L) / Math.max(durationMs, 1L));
+        }
+    }
+
+    private int doIterations(final List<T> items) {
+        final List<Future<?>> futures = new ArrayList<Future<?>>(items.size());
+        for (final T item : items) {
+            if (janitor.isStopped()) {
+                break;
             }
             try {
-                doIteration(item);
-            } catch (final IllegalStateException e) {
-                log.warn(e.getMessage());
+                futures.add(janitor.getJanitorWorkersExecutor().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        doIteration(item);
+                    }
+                }));
+            } catch (final RejectedExecutionException e) {
+                // The janitor is being stopped
+                break;
             }
         }
+
+        int nbCompletedItems = 0;
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+                nbCompletedItems++;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Janitor Task " + taskName + " got interrupted");
+                break;
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof IllegalStateException) {
+                    log.warn(e.getCause().getMessage());
+                } else {
+                    log.warn("Janitor Task " + taskName + " failed to process item", e.getCause());
+                }
+            }
+        }
+        return nbCompletedItems;
     }
 
-    public abstract List<T> getItemsForIteration();
+    /**
+     * @param lastRecordId the record id of the last item of the previous batch (0 for the first batch)
+     * @return the next batch of items, of at most PaymentConfig#getJanitorBatchSize items, ordered by record id
+     */
+    public abstract List<T> getItemsForIteration(final Long lastRecordId);
+
+    /**
+     * @param item the last item of a batch
+     * @return the record id to fetch the next batch from, or null if the task doesn't page through its items
+     */
+    @Nullable
+    protected abstract Long getRecordId(final T item);
 
     public abstract void doIteration(final T item);
 
+    protected int getNbShards() {
+        return paymentConfig.getJanitorShardNb();
+    }
+
+    protected int getShardIndex() {
+        return paymentConfig.getJanitorShardIndex();
+    }
+
+    /**
+     * Acquire a permit to call the given plugin (see PaymentConfig#getJanitorPluginThreadNb), waiting at most for the plugin timeout.
+     *
+     * @param pluginName name of the payment plugin
+     * @return the permits to release once the plugin call is done
+     */
+    protected Semaphore acquirePluginPermit(final String pluginName) {
+        final Semaphore permits = janitor.getPluginPermits(pluginName);
+        try {
+            if (!permits.tryAcquire(paymentConfig.getPaymentPluginTimeout().getMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Janitor Task " + taskName + " timed out waiting for plugin " + pluginName + ", skipping");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Janitor Task " + taskName + " got interrupted waiting for plugin " + pluginName + ", skipping");
+        }
+        return permits;
+    }
+
     protected CallContext createCallContext(final String taskName, final InternalTenantContext internalTenantContext) {
         final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
         final CallContext callContext = new DefaultCallContext(tenantContext.getTenantId(), taskName, CallOrigin.INTERNAL, UserType.SYSTEM, UUID.randomUUID(), clock);
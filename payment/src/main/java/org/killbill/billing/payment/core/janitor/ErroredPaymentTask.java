@@ -19,6 +19,7 @@ package org.killbill.billing.payment.core.janitor;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 import javax.annotation.Nullable;
 
@@ -56,7 +57,6 @@ public class ErroredPaymentTask extends CompletionTaskBase<PaymentModelDao> {
     // We could configure all that if this becomes useful but we also want to avoid a flurry of parameters.
     private static final int SAFETY_DELAY_MS = (3 * 60 * 1000); // 3 minutes
     private final int OLDER_PAYMENTS_IN_DAYS = 3; // don't look at ERRORED payment older than 3 days
-    private final int MAX_ITEMS_PER_LOOP = 100; // Limit of items per iteration
 
     public ErroredPaymentTask(final Janitor janitor, final InternalCallContextFactory internalCallContextFactory, final PaymentConfig paymentConfig,
                               final PaymentDao paymentDao, final Clock clock,
@@ -66,7 +66,7 @@ public class ErroredPaymentTask extends CompletionTaskBase<PaymentModelDao> {
     }
 
     @Override
-    public List<PaymentModelDao> getItemsForIteration() {
+    public List<PaymentModelDao> getItemsForIteration(final Long lastRecordId) {
         // In theory this should be the plugin timeout but we add a 3 minutes delay for safety.
         final int delayBeforeNow = (int) paymentConfig.getPaymentPluginTimeout().getMillis() + SAFETY_DELAY_MS;
         final DateTime createdBeforeDate = clock.getUTCNow().minusMillis(delayBeforeNow);
@@ -74,11 +74,17 @@ public class ErroredPaymentTask extends CompletionTaskBase<PaymentModelDao> {
         // We want to avoid iterating on the same failed payments -- if for some reasons they can't fix themselves.
         final DateTime createdAfterDate = clock.getUTCNow().minusDays(OLDER_PAYMENTS_IN_DAYS);
 
-        final List<PaymentModelDao> result = paymentDao.getPaymentsByStates(paymentStateMachineHelper.getErroredStateNames(), createdBeforeDate, createdAfterDate, MAX_ITEMS_PER_LOOP, completionTaskCallContext);
+        final List<PaymentModelDao> result = paymentDao.getPaymentsByStates(paymentStateMachineHelper.getErroredStateNames(), createdBeforeDate, createdAfterDate, lastRecordId,
+                                                                            paymentConfig.getJanitorBatchSize(), getNbShards(), getShardIndex(), completionTaskCallContext);
         log.info("Janitor ErroredPaymentTask start run : found {} errored/unknown payments", result.size());
         return result;
     }
 
+    @Override
+    protected Long getRecordId(final PaymentModelDao item) {
+        return item.getRecordId();
+    }
+
     @Override
     public void doIteration(final PaymentModelDao item) {
         final InternalTenantContext internalTenantContext = internalCallContextFactory.createInternalTenantContext(item.getTenantRecordId(), item.getAccountRecordId());
@@ -98,6 +104,7 @@ public class ErroredPaymentTask extends CompletionTaskBase<PaymentModelDao> {
         final PaymentPluginApi paymentPluginApi = getPaymentPluginApi(item, paymentMethod.getPluginName());
 
         PaymentTransactionInfoPlugin pluginErroredTransaction = null;
+        final Semaphore pluginPermits = acquirePluginPermit(paymentMethod.getPluginName());
         try {
             final List<PaymentTransactionInfoPlugin> result = paymentPluginApi.getPaymentInfo(item.getAccountId(), item.getId(), ImmutableList.<PluginProperty>of(), callContext);
 
@@ -109,6 +116,8 @@ public class ErroredPaymentTask extends CompletionTaskBase<PaymentModelDao> {
             }).orNull();
         } catch (final PaymentPluginApiException ignored) {
 
+        } finally {
+            pluginPermits.release();
         }
 
         // Compute new transactionStatus based on pluginInfo state; and if that did not change, bail early.
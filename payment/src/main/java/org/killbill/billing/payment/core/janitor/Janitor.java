@@ -17,7 +17,11 @@
 
 package org.killbill.billing.payment.core.janitor;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -37,8 +41,13 @@ import org.killbill.clock.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
+
 /**
  * Takes care of incomplete payment/transactions.
+ * <p/>
+ * Each task is scheduled on the janitorExecutor, fetches its items in batches and processes them on the janitorWorkersExecutor.
+ * When several nodes are running, each of them only looks at its own shard of the items (see PaymentConfig#getJanitorShardIndex).
  */
 public class Janitor {
 
@@ -47,10 +56,13 @@ public class Janitor {
     private static final int TERMINATION_TIMEOUT_SEC = 5;
 
     private final ScheduledExecutorService janitorExecutor;
+    private final ExecutorService janitorWorkersExecutor;
     private final PaymentConfig paymentConfig;
     private final PendingTransactionTask pendingTransactionTask;
     private final AttemptCompletionTask attemptCompletionTask;
     private final ErroredPaymentTask erroredPaymentCompletionTask;
+    // Bound the number of concurrent janitor calls per payment plugin, so a slow gateway doesn't hold all the workers
+    private final ConcurrentMap<String, Semaphore> pluginPermits = new ConcurrentHashMap<String, Semaphore>();
 
     private volatile boolean isStopped;
 
@@ -62,10 +74,16 @@ public class Janitor {
                    final InternalCallContextFactory internalCallContextFactory,
                    final PluginRoutingPaymentAutomatonRunner pluginControlledPaymentAutomatonRunner,
                    @Named(PaymentModule.JANITOR_EXECUTOR_NAMED) final ScheduledExecutorService janitorExecutor,
+                   @Named(PaymentModule.JANITOR_WORKERS_EXECUTOR_NAMED) final ExecutorService janitorWorkersExecutor,
                    final PaymentStateMachineHelper paymentSMHelper,
                    final RetryStateMachineHelper retrySMHelper,
                    final OSGIServiceRegistration<PaymentPluginApi> pluginRegistry) {
+        Preconditions.checkArgument(paymentConfig.getJanitorShardNb() > 0, "The number of janitor shards should be positive");
+        Preconditions.checkArgument(paymentConfig.getJanitorShardIndex() >= 0 && paymentConfig.getJanitorShardIndex() < paymentConfig.getJanitorShardNb(),
+                                    "The janitor shard index should be between 0 and " + (paymentConfig.getJanitorShardNb() - 1));
+        Preconditions.checkArgument(paymentConfig.getJanitorBatchSize() > 0, "The janitor batch size should be positive");
         this.janitorExecutor = janitorExecutor;
+        this.janitorWorkersExecutor = janitorWorkersExecutor;
         this.paymentConfig = paymentConfig;
         this.pendingTransactionTask = new PendingTransactionTask(this, internalCallContextFactory, paymentConfig, paymentDao, clock, paymentSMHelper, retrySMHelper,
                                                                  accountInternalApi, pluginControlledPaymentAutomatonRunner, pluginRegistry);
@@ -110,7 +128,9 @@ public class Janitor {
              * Then, awaitTermination with a timeout is required to ensure tasks completed.
              */
             janitorExecutor.shutdown();
-            final boolean success = janitorExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+            janitorWorkersExecutor.shutdown();
+            final boolean success = janitorExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS) &&
+                                    janitorWorkersExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
             if (!success) {
                 log.warn("Janitor failed to complete termination within " + TERMINATION_TIMEOUT_SEC + "sec");
             }
@@ -125,4 +145,19 @@ public class Janitor {
     public boolean isStopped() {
         return isStopped;
     }
+
+    ExecutorService getJanitorWorkersExecutor() {
+        return janitorWorkersExecutor;
+    }
+
+    Semaphore getPluginPermits(final String pluginName) {
+        final Semaphore permits = pluginPermits.get(pluginName);
+        if (permits != null) {
+            return permits;
+        }
+
+        final Semaphore newPermits = new Semaphore(paymentConfig.getJanitorPluginThreadNb());
+        final Semaphore concurrentPermits = pluginPermits.putIfAbsent(pluginName, newPermits);
+        return concurrentPermits != null ? concurrentPermits : newPermits;
+    }
 }
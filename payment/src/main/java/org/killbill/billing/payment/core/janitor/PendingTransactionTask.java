@@ -49,10 +49,16 @@ final class PendingTransactionTask extends CompletionTaskBase<Integer> {
     }
 
     @Override
-    public List<Integer> getItemsForIteration() {
+    public List<Integer> getItemsForIteration(final Long lastRecordId) {
         return itemsForIterations;
     }
 
+    @Override
+    protected Long getRecordId(final Integer item) {
+        // Single item, no paging
+        return null;
+    }
+
     @Override
     public void doIteration(final Integer item) {
 
@@ -52,6 +52,10 @@ public interface PaymentAttemptSqlDao extends EntitySqlDao<PaymentAttemptModelDa
     @SqlQuery
     List<PaymentAttemptModelDao> getByStateName(@Bind("stateName") final String stateName,
                                                 @Bind("createdBeforeDate") final Date createdBeforeDate,
+                                                @Bind("lastRecordId") final Long lastRecordId,
+                                                @Bind("limit") final int limit,
+                                                @Bind("nbShards") final int nbShards,
+                                                @Bind("shardIndex") final int shardIndex,
                                                 @BindBean final InternalTenantContext context);
 
 }
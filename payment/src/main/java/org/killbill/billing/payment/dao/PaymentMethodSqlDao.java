@@ -67,6 +67,7 @@ public interface PaymentMethodSqlDao extends EntitySqlDao<PaymentMethodModelDao,
     public Iterator<PaymentMethodModelDao> getByPluginName(@Bind("pluginName") final String pluginName,
                                                            @Bind("offset") final Long offset,
                                                            @Bind("rowCount") final Long rowCount,
+                                                           @Bind("lastRecordId") final Long lastRecordId,
                                                            @BindBean final InternalTenantContext context);
 
     @SqlQuery
@@ -65,14 +65,18 @@ public interface PaymentSqlDao extends EntitySqlDao<PaymentModelDao, Payment> {
     public List<PaymentModelDao> getPaymentsByStates(@StateCollectionBinder final Collection<String> states,
                                                      @Bind("createdBeforeDate") final Date createdBeforeDate,
                                                      @Bind("createdAfterDate") final Date createdAfterDate,
-                                                     @BindBean final InternalTenantContext context,
-                                                     @Bind("limit") final int limit);
+                                                     @Bind("lastRecordId") final Long lastRecordId,
+                                                     @Bind("limit") final int limit,
+                                                     @Bind("nbShards") final int nbShards,
+                                                     @Bind("shardIndex") final int shardIndex,
+                                                     @BindBean final InternalTenantContext context);
 
     @SqlQuery
     @SmartFetchSize(shouldStream = true)
     public Iterator<PaymentModelDao> getByPluginName(@Bind("pluginName") final String pluginName,
                                                            @Bind("offset") final Long offset,
                                                            @Bind("rowCount") final Long rowCount,
+                                                           @Bind("lastRecordId") final Long lastRecordId,
                                                            @BindBean final InternalTenantContext context);
 
     @SqlQuery
@@ -69,8 +69,10 @@ import com.google.inject.name.Names;
 public class PaymentModule extends KillBillModule {
 
     private static final String PLUGIN_THREAD_PREFIX = "Plugin-th-";
+    private static final String JANITOR_WORKER_THREAD_PREFIX = "PaymentJanitor-th-";
 
     public static final String JANITOR_EXECUTOR_NAMED = "JanitorExecutor";
+    public static final String JANITOR_WORKERS_EXECUTOR_NAMED = "JanitorWorkersExecutor";
     public static final String PLUGIN_EXECUTOR_NAMED = "PluginExecutor";
     public static final String RETRYABLE_NAMED = "Retryable";
 
@@ -95,10 +97,25 @@ public class PaymentModule extends KillBillModule {
     protected void installPaymentProviderPlugins(final PaymentConfig config) {
     }
 
-    protected void installJanitor() {
+    protected void installJanitor(final PaymentConfig paymentConfig) {
         final ScheduledExecutorService janitorExecutor = org.killbill.commons.concurrent.Executors.newSingleThreadScheduledExecutor("PaymentJanitor");
         bind(ScheduledExecutorService.class).annotatedWith(Names.named(JANITOR_EXECUTOR_NAMED)).toInstance(janitorExecutor);
 
+        // The janitor tasks are scheduled on the janitorExecutor, but the items of each batch are processed on this pool
+        final ExecutorService janitorWorkersExecutor = new WithProfilingThreadPoolExecutor(paymentConfig.getJanitorThreadNb(), paymentConfig.getJanitorThreadNb(),
+                                                                                           0L, TimeUnit.MILLISECONDS,
+                                                                                           new LinkedBlockingQueue<Runnable>(),
+                                                                                           new ThreadFactory() {
+
+                                                                                               @Override
+                                                                                               public Thread newThread(final Runnable r) {
+                                                                                                   final Thread th = new Thread(r);
+                                                                                                   th.setName(JANITOR_WORKER_THREAD_PREFIX + th.getId());
+                                                                                                   return th;
+                                                                                               }
+                                                                                           });
+        bind(ExecutorService.class).annotatedWith(Names.named(JANITOR_WORKERS_EXECUTOR_NAMED)).toInstance(janitorWorkersExecutor);
+
         bind(Janitor.class).asEagerSingleton();
     }
 
@@ -184,6 +201,6 @@ public class PaymentModule extends KillBillModule {
         installStateMachines();
         installAutomatonRunner();
         installRetryEngines();
-        installJanitor();
+        installJanitor(paymentConfig);
     }
 }
@@ -105,7 +105,8 @@ public class MockPaymentDao implements PaymentDao {
     }
 
     @Override
-    public List<PaymentAttemptModelDao> getPaymentAttemptsByState(final String stateName, final DateTime createdBeforeDate, final InternalTenantContext context) {
+    public List<PaymentAttemptModelDao> getPaymentAttemptsByState(final String stateName, final DateTime createdBeforeDate, final Long lastRecordId, final int limit,
+                                                                  final int nbShards, final int shardIndex, final InternalTenantContext context) {
         return null;
     }
 
@@ -244,7 +245,8 @@ public class MockPaymentDao implements PaymentDao {
     }
 
     @Override
-    public List<PaymentModelDao> getPaymentsByStates(final String[] states, final DateTime createdBeforeDate, final DateTime createdAfterDate, final int limit, final InternalTenantContext context) {
+    public List<PaymentModelDao> getPaymentsByStates(final String[] states, final DateTime createdBeforeDate, final DateTime createdAfterDate, final Long lastRecordId, final int limit,
+                                                     final int nbShards, final int shardIndex, final InternalTenantContext context) {
         return null;
     }
 
@@ -37,12 +37,14 @@ import org.testng.annotations.Test;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 public class TestPaymentDao extends PaymentTestSuiteWithEmbeddedDB {
 
@@ -452,8 +454,71 @@ public class TestPaymentDao extends PaymentTestSuiteWithEmbeddedDB {
         paymentDao.insertPaymentWithFirstTransaction(paymentModelDao5, transaction5, context5);
 
         final String[] errorStates = {"AUTH_ERRORED", "CAPTURE_ERRORED", "REFUND_ERRORED", "CREDIT_ERRORED"};
-        final List<PaymentModelDao> result = paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, 10, internalCallContext);
+        final List<PaymentModelDao> result = paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, 0L, 10, 1, 0, internalCallContext);
         assertEquals(result.size(), 2);
+
+        // Paging on the record id
+        final List<PaymentModelDao> firstPage = paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, 0L, 1, 1, 0, internalCallContext);
+        assertEquals(firstPage.size(), 1);
+        final List<PaymentModelDao> secondPage = paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, firstPage.get(0).getRecordId(), 1, 1, 0, internalCallContext);
+        assertEquals(secondPage.size(), 1);
+        assertEquals(ImmutableSet.<UUID>of(firstPage.get(0).getId(), secondPage.get(0).getId()), ImmutableSet.<UUID>of(result.get(0).getId(), result.get(1).getId()));
+        assertEquals(paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, secondPage.get(0).getRecordId(), 1, 1, 0, internalCallContext).size(), 0);
+
+        // All the payments belong to the same account, hence the same shard
+        final long accountShard = internalCallContext.getAccountRecordId() % 2;
+        assertEquals(paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, 0L, 10, 2, (int) accountShard, internalCallContext).size(), 2);
+        assertEquals(paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, 0L, 10, 2, (int) (1 - accountShard), internalCallContext).size(), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testPaymentByStatesPagingOnRecordId() {
+        final UUID paymentMethodId = UUID.randomUUID();
+        final UUID accountId = UUID.randomUUID();
+
+        final DateTime createdAfterDate = clock.getUTCNow().minusDays(10);
+        final DateTime createdBeforeDate = clock.getUTCNow().minusDays(1);
+
+        // Each payment is inserted with an older created date than the previous one
+        final List<UUID> paymentIdsInInsertionOrder = new ArrayList<UUID>();
+        for (int i = 0; i < 3; i++) {
+            final DateTime createdDate = createdBeforeDate.minusDays(i + 1);
+            final PaymentModelDao paymentModelDao = new PaymentModelDao(createdDate, createdDate, accountId, paymentMethodId, "paging-" + i);
+            paymentModelDao.setStateName("CAPTURE_ERRORED");
+            final PaymentTransactionModelDao transaction = new PaymentTransactionModelDao(createdDate, createdDate, null, "paging-transaction-" + i,
+                                                                                          paymentModelDao.getId(), TransactionType.AUTHORIZE, createdDate,
+                                                                                          TransactionStatus.UNKNOWN, BigDecimal.TEN, Currency.AED,
+                                                                                          "unknown", "");
+
+            final InternalCallContext context = new InternalCallContext(internalCallContext.getTenantRecordId(),
+                                                                        internalCallContext.getAccountRecordId(),
+                                                                        internalCallContext.getUserToken(),
+                                                                        internalCallContext.getCreatedBy(),
+                                                                        internalCallContext.getCallOrigin(),
+                                                                        internalCallContext.getContextUserType(),
+                                                                        internalCallContext.getReasonCode(),
+                                                                        internalCallContext.getComments(),
+                                                                        createdDate,
+                                                                        createdDate);
+            paymentDao.insertPaymentWithFirstTransaction(paymentModelDao, transaction, context);
+            paymentIdsInInsertionOrder.add(paymentModelDao.getId());
+        }
+
+        // Pages follow the record ids, whatever the created dates, so no payment is skipped
+        final String[] errorStates = {"AUTH_ERRORED", "CAPTURE_ERRORED", "REFUND_ERRORED", "CREDIT_ERRORED"};
+        final List<UUID> pagedPaymentIds = new ArrayList<UUID>();
+        Long lastRecordId = 0L;
+        while (true) {
+            final List<PaymentModelDao> page = paymentDao.getPaymentsByStates(errorStates, createdBeforeDate, createdAfterDate, lastRecordId, 1, 1, 0, internalCallContext);
+            if (page.isEmpty()) {
+                break;
+            }
+            assertEquals(page.size(), 1);
+            assertTrue(page.get(0).getRecordId() > lastRecordId);
+            pagedPaymentIds.add(page.get(0).getId());
+            lastRecordId = page.get(0).getRecordId();
+        }
+        assertEquals(pagedPaymentIds, paymentIdsInInsertionOrder);
     }
 
     private List<PaymentTransactionModelDao> getPendingTransactions(final UUID paymentId) {
@@ -27,6 +27,8 @@ import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
 import org.killbill.billing.server.notifications.PushNotificationListener;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,18 +55,29 @@ public class DefaultServerService implements ServerService {
     @LifecycleHandlerType(LifecycleLevel.INIT_SERVICE)
     public void registerForNotifications() {
         try {
+            pushNotificationListener.initialize();
             bus.register(pushNotificationListener);
+        } catch (final NotificationQueueAlreadyExists e) {
+            log.warn("Failed to initialize Server service :", e);
         } catch (final EventBusException e) {
             log.warn("Failed to initialize Server service :", e);
         }
     }
 
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        pushNotificationListener.start();
+    }
+
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
     public void unregisterForNotifications() {
         try {
             bus.unregister(pushNotificationListener);
+            pushNotificationListener.stop();
         } catch (final EventBusException e) {
             log.warn("Failed to stop Server service :", e);
+        } catch (final NoSuchNotificationQueue e) {
+            log.warn("Failed to stop Server service :", e);
         }
     }
 }
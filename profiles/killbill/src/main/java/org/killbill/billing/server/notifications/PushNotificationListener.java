@@ -21,17 +21,34 @@ package org.killbill.billing.server.notifications;
 import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.jaxrs.json.NotificationJson;
 import org.killbill.billing.notification.plugin.api.ExtBusEvent;
+import org.killbill.billing.notification.plugin.api.ExtBusEventType;
 import org.killbill.billing.tenant.api.TenantApiException;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.tenant.api.TenantUserApi;
 import org.killbill.billing.util.callcontext.CallContextFactory;
-import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.clock.Clock;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,38 +56,131 @@ import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
 import com.ning.http.client.AsyncHttpClientConfig;
-import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.Subscribe;
 
+/**
+ * Pushes the external bus events to the callbacks registered by each tenant.
+ * <p/>
+ * The deliveries are asynchronous (the external bus thread never waits for the callbacks) and fired concurrently, with
+ * a bounded number of deliveries in flight per callback url. Failed deliveries are retried with backoff from a notification
+ * queue, so they survive a restart. Deliveries rejected because the callback had too many in flight are requeued the same
+ * way, without counting as an attempt.
+ * <p/>
+ * The callbacks of each tenant are cached, until a TENANT_CONFIG_CHANGE (or TENANT_CONFIG_DELETION) event is received for them.
+ */
 public class PushNotificationListener {
 
     private static final Logger log = LoggerFactory.getLogger(PushNotificationListener.class);
 
+    public static final String PUSH_NOTIFICATION_SERVICE = "push-notification-service";
+    public static final String PUSH_NOTIFICATION_RETRY_QUEUE = "push-notification-retry-queue";
+
     private static final int TIMEOUT_NOTIFICATION = 15; // 15 seconds
+    private static final int MAX_IN_FLIGHT_PER_CALLBACK = 20;
+    // Delay before delivering again a push notification rejected because its callback had too many in flight
+    private static final int REQUEUE_DELAY_SEC = 5;
+    // Delay before each retry, we give up after the last one
+    private static final int[] RETRY_DELAYS_SEC = {15, 60, 300, 900, 3600};
 
     private final TenantUserApi tenantApi;
+    private final TenantInternalApi tenantInternalApi;
     private final CallContextFactory contextFactory;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final NotificationQueueService notificationQueueService;
+    private final Clock clock;
     private final AsyncHttpClient httpClient;
     private final ObjectMapper mapper;
 
+    private final LoadingCache<UUID, List<String>> callbacksPerTenant;
+    // Bumped before each invalidation: the cache doesn't discard a load which was in progress when its key got invalidated
+    private final AtomicLong callbacksInvalidations = new AtomicLong();
+    private final ConcurrentMap<String, Semaphore> inFlightPerCallback = new ConcurrentHashMap<String, Semaphore>();
+
+    private NotificationQueue retryQueue;
+
     @Inject
-    public PushNotificationListener(final ObjectMapper mapper, final TenantUserApi tenantApi, final CallContextFactory contextFactory) {
+    public PushNotificationListener(final ObjectMapper mapper,
+                                    final TenantUserApi tenantApi,
+                                    final TenantInternalApi tenantInternalApi,
+                                    final CallContextFactory contextFactory,
+                                    final InternalCallContextFactory internalCallContextFactory,
+                                    final NotificationQueueService notificationQueueService,
+                                    final Clock clock) {
         this.httpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestTimeoutInMs(TIMEOUT_NOTIFICATION * 1000).build());
         this.tenantApi = tenantApi;
+        this.tenantInternalApi = tenantInternalApi;
         this.contextFactory = contextFactory;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.notificationQueueService = notificationQueueService;
+        this.clock = clock;
         this.mapper = mapper;
+        this.callbacksPerTenant = CacheBuilder.newBuilder().build(new CacheLoader<UUID, List<String>>() {
+            @Override
+            public List<String> load(final UUID tenantId) throws TenantApiException {
+                return ImmutableList.<String>copyOf(tenantApi.getTenantValuesForKey(TenantKey.PUSH_NOTIFICATION_CB.toString(), contextFactory.createTenantContext(tenantId)));
+            }
+        });
+    }
+
+    public void initialize() throws NotificationQueueAlreadyExists {
+        // The TENANT_CONFIG_CHANGE events are only posted for the keys which have a callback registered
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.PUSH_NOTIFICATION_CB, new CacheInvalidationCallback() {
+            @Override
+            public void invalidateCache(final TenantKey key, final Object cookie, final InternalTenantContext tenantContext) {
+                // Nothing to do, the cache is invalidated when the event is received (we only know about the tenant id there)
+            }
+        });
+
+        retryQueue = notificationQueueService.createNotificationQueue(PUSH_NOTIFICATION_SERVICE,
+                                                                      PUSH_NOTIFICATION_RETRY_QUEUE,
+                                                                      new NotificationQueueHandler() {
+                                                                          @Override
+                                                                          public void handleReadyNotification(final NotificationEvent notificationKey, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+                                                                              if (!(notificationKey instanceof PushNotificationKey)) {
+                                                                                  log.error("Push notification service got an unexpected notification type {}", notificationKey.getClass().getName());
+                                                                                  return;
+                                                                              }
+                                                                              final PushNotificationKey key = (PushNotificationKey) notificationKey;
+                                                                              doPost(key.getTenantId(), key.getUrl(), key.getBody(), key.getAttemptNumber());
+                                                                          }
+                                                                      }
+                                                                     );
+    }
+
+    public void start() {
+        retryQueue.startQueue();
+    }
+
+    public void stop() throws NoSuchNotificationQueue {
+        if (retryQueue != null) {
+            retryQueue.stopQueue();
+            notificationQueueService.deleteNotificationQueue(retryQueue.getServiceName(), retryQueue.getQueueName());
+        }
+        httpClient.close();
     }
 
     @Subscribe
     public void triggerPushNotifications(final ExtBusEvent event) {
+        if (isPushNotificationConfigEvent(event)) {
+            callbacksInvalidations.incrementAndGet();
+            callbacksPerTenant.invalidate(event.getTenantId());
+            // These events were never pushed before the callbacks were cached, keep it that way
+            return;
+        }
 
-        final TenantContext context = contextFactory.createTenantContext(event.getTenantId());
         try {
-            final List<String> callbacks = getCallbacksForTenant(context);
-            dispatchCallback(event.getTenantId(), event, callbacks);
+            final List<String> callbacks = getCallbacksForTenant(event.getTenantId());
+            if (!callbacks.isEmpty()) {
+                dispatchCallback(event.getTenantId(), event, callbacks);
+            }
         } catch (final TenantApiException e) {
             log.warn("Failed to retrieve push notification callback for tenant {}", event.getTenantId());
         } catch (final IOException e) {
@@ -78,37 +188,109 @@ public class PushNotificationListener {
         }
     }
 
+    private boolean isPushNotificationConfigEvent(final ExtBusEvent event) {
+        return (event.getEventType() == ExtBusEventType.TENANT_CONFIG_CHANGE || event.getEventType() == ExtBusEventType.TENANT_CONFIG_DELETION) &&
+               TenantKey.PUSH_NOTIFICATION_CB.toString().equals(event.getMetaData());
+    }
+
     private void dispatchCallback(final UUID tenantId, final ExtBusEvent event, final Iterable<String> callbacks) throws IOException {
         final NotificationJson notification = new NotificationJson(event);
         final String body = mapper.writeValueAsString(notification);
         for (final String cur : callbacks) {
-            doPost(tenantId, cur, body, TIMEOUT_NOTIFICATION);
+            doPost(tenantId, cur, body, 0);
         }
     }
 
-    private boolean doPost(final UUID tenantId, final String url, final String body, final int timeoutSec) {
+    private void doPost(final UUID tenantId, final String url, final String body, final int attemptNumber) {
+        final Semaphore inFlight = getInFlightSemaphore(url);
+        if (!inFlight.tryAcquire()) {
+            log.info("Too many push notifications in flight for the callback {}, delaying push notification for the tenant {}", url, tenantId);
+            // Not delivered, so not an attempt
+            recordFutureDelivery(tenantId, url, body, attemptNumber, REQUEUE_DELAY_SEC);
+            return;
+        }
 
         final BoundRequestBuilder builder = httpClient.preparePost(url);
         builder.setBody(body == null ? "{}" : body);
 
-        Response response = null;
+        final AtomicBoolean isCompleted = new AtomicBoolean(false);
         try {
-            final ListenableFuture<Response> futureStatus =
-                    builder.execute(new AsyncCompletionHandler<Response>() {
-                        @Override
-                        public Response onCompleted(final Response response) throws Exception {
-                            return response;
+            builder.execute(new AsyncCompletionHandler<Response>() {
+                @Override
+                public Response onCompleted(final Response response) throws Exception {
+                    if (isCompleted.compareAndSet(false, true)) {
+                        inFlight.release();
+                        if (response.getStatusCode() < 200 || response.getStatusCode() >= 300) {
+                            log.warn(String.format("Failed to push notification %s for the tenant %s, status %s", url, tenantId, response.getStatusCode()));
+                            scheduleRetry(tenantId, url, body, attemptNumber);
                         }
-                    });
-            response = futureStatus.get(timeoutSec, TimeUnit.SECONDS);
-        } catch (final Exception e) {
-            log.warn(String.format("Failed to push notification %s for the tenant %s", url, tenantId), e);
-            return false;
+                    }
+                    return response;
+                }
+
+                @Override
+                public void onThrowable(final Throwable t) {
+                    if (isCompleted.compareAndSet(false, true)) {
+                        inFlight.release();
+                        log.warn(String.format("Failed to push notification %s for the tenant %s", url, tenantId), t);
+                        scheduleRetry(tenantId, url, body, attemptNumber);
+                    }
+                }
+            });
+        } catch (final IOException e) {
+            if (isCompleted.compareAndSet(false, true)) {
+                inFlight.release();
+                log.warn(String.format("Failed to push notification %s for the tenant %s", url, tenantId), e);
+                scheduleRetry(tenantId, url, body, attemptNumber);
+            }
+        }
+    }
+
+    private void scheduleRetry(final UUID tenantId, final String url, final String body, final int attemptNumber) {
+        if (attemptNumber >= RETRY_DELAYS_SEC.length) {
+            log.warn("Giving up push notification {} for the tenant {} after {} attempts", new Object[]{url, tenantId, attemptNumber + 1});
+            return;
+        }
+
+        recordFutureDelivery(tenantId, url, body, attemptNumber + 1, RETRY_DELAYS_SEC[attemptNumber]);
+    }
+
+    private void recordFutureDelivery(final UUID tenantId, final String url, final String body, final int attemptNumber, final int delaySec) {
+        final DateTime timeOfDelivery = clock.getUTCNow().plusSeconds(delaySec);
+        try {
+            final InternalTenantContext context = internalCallContextFactory.createInternalTenantContext(contextFactory.createTenantContext(tenantId));
+            retryQueue.recordFutureNotification(timeOfDelivery, new PushNotificationKey(tenantId, url, body, attemptNumber), null, null, context.getTenantRecordId());
+        } catch (final IOException e) {
+            log.error(String.format("Failed to schedule delivery of push notification %s for the tenant %s", url, tenantId), e);
+        } catch (final RuntimeException e) {
+            // Don't let it bubble up to the http client (or bus) thread
+            log.error(String.format("Failed to schedule delivery of push notification %s for the tenant %s", url, tenantId), e);
+        }
+    }
+
+    private Semaphore getInFlightSemaphore(final String url) {
+        final Semaphore inFlight = inFlightPerCallback.get(url);
+        if (inFlight != null) {
+            return inFlight;
         }
-        return response.getStatusCode() >= 200 && response.getStatusCode() < 300;
+
+        final Semaphore newInFlight = new Semaphore(MAX_IN_FLIGHT_PER_CALLBACK);
+        final Semaphore concurrentInFlight = inFlightPerCallback.putIfAbsent(url, newInFlight);
+        return concurrentInFlight != null ? concurrentInFlight : newInFlight;
     }
 
-    private List<String> getCallbacksForTenant(final TenantContext context) throws TenantApiException {
-        return tenantApi.getTenantValuesForKey(TenantKey.PUSH_NOTIFICATION_CB.toString(), context);
+    private List<String> getCallbacksForTenant(final UUID tenantId) throws TenantApiException {
+        final long invalidations = callbacksInvalidations.get();
+        try {
+            final List<String> callbacks = callbacksPerTenant.get(tenantId);
+            if (callbacksInvalidations.get() != invalidations) {
+                // The callbacks may have been loaded before the change, don't keep them
+                callbacksPerTenant.invalidate(tenantId);
+            }
+            return callbacks;
+        } catch (final ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), TenantApiException.class);
+            throw Throwables.propagate(e.getCause());
+        }
     }
 }
@@ -35,6 +35,9 @@ import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authc.pam.ModularRealmAuthenticator;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.crypto.hash.Sha256Hash;
 import org.apache.shiro.realm.Realm;
 import org.killbill.billing.jaxrs.resources.JaxrsResource;
 import org.killbill.billing.server.listeners.KillbillGuiceListener;
@@ -53,6 +56,9 @@ public class TenantFilter implements Filter {
     // See org.killbill.billing.jaxrs.util.Context
     public static final String TENANT = "killbill_tenant";
 
+    // See ehcache.xml (bounded, with a TTL)
+    public static final String VERIFIED_CREDENTIALS_CACHE_NAME = "tenant-verified-credentials";
+
     private static final Logger log = LoggerFactory.getLogger(TenantFilter.class);
 
     @Inject
@@ -61,7 +67,11 @@ public class TenantFilter implements Filter {
     @Inject
     protected DaoConfig daoConfig;
 
+    @Inject
+    protected CacheManager cacheManager;
+
     private ModularRealmAuthenticator modularRealmAuthenticator;
+    private Cache<String, Tenant> verifiedCredentialsCache;
 
     @Override
     public void init(final FilterConfig filterConfig) throws ServletException {
@@ -69,6 +79,8 @@ public class TenantFilter implements Filter {
         // We use Shiro to verify the api credentials - but the Shiro Subject is only used for RBAC
         modularRealmAuthenticator = new ModularRealmAuthenticator();
         modularRealmAuthenticator.setRealms(ImmutableList.<Realm>of(killbillJdbcRealm));
+        // Retrieve the cache once (Shiro's cache manager is not thread safe, see EhCacheManagerProvider)
+        verifiedCredentialsCache = cacheManager.getCache(VERIFIED_CREDENTIALS_CACHE_NAME);
     }
 
     @Override
@@ -89,26 +101,38 @@ public class TenantFilter implements Filter {
             return;
         }
 
-        // Verify the apiKey/apiSecret combo
-        final AuthenticationToken token = new UsernamePasswordToken(apiKey, apiSecret);
-        try {
-            modularRealmAuthenticator.authenticate(token);
-        } catch (final AuthenticationException e) {
-            final String errorMessage = e.getLocalizedMessage();
-            handleAuthenticationError(errorMessage, chain, request, response);
-            return;
+        // Hashing the secret is expensive by design (see KillbillCredentialsMatcher): only do it if these credentials haven't been verified recently
+        final String verifiedCredentialsKey = getVerifiedCredentialsKey(apiKey, apiSecret);
+        Tenant tenant = verifiedCredentialsCache.get(verifiedCredentialsKey);
+        if (tenant == null) {
+            // Verify the apiKey/apiSecret combo
+            final AuthenticationToken token = new UsernamePasswordToken(apiKey, apiSecret);
+            try {
+                modularRealmAuthenticator.authenticate(token);
+            } catch (final AuthenticationException e) {
+                final String errorMessage = e.getLocalizedMessage();
+                handleAuthenticationError(errorMessage, chain, request, response);
+                return;
+            }
+
+            try {
+                // Load the tenant (apiKey is unique across tenants)
+                tenant = tenantUserApi.getTenantByApiKey(apiKey);
+            } catch (final TenantApiException e) {
+                // Should never happen since Shiro validated the credentials?
+                log.warn("Couldn't find the tenant?", e);
+                return;
+            }
+            verifiedCredentialsCache.put(verifiedCredentialsKey, tenant);
         }
 
-        try {
-            // Load the tenant in the request object (apiKey is unique across tenants)
-            final Tenant tenant = tenantUserApi.getTenantByApiKey(apiKey);
-            request.setAttribute(TENANT, tenant);
+        request.setAttribute(TENANT, tenant);
+        chain.doFilter(request, response);
+    }
 
-            chain.doFilter(request, response);
-        } catch (final TenantApiException e) {
-            // Should never happen since Shiro validated the credentials?
-            log.warn("Couldn't find the tenant?", e);
-        }
+    private String getVerifiedCredentialsKey(final String apiKey, final String apiSecret) {
+        // Don't keep the secrets in clear in memory: a single (salted) round is enough here since the key is never persisted
+        return apiKey + "::" + new Sha256Hash(apiSecret, apiKey).toBase64();
     }
 
     private void handleAuthenticationError(final String errorMessage, final FilterChain chain, final ServletRequest request, final ServletResponse response) throws IOException, ServletException {
@@ -49,6 +49,8 @@ public class TestPushNotification extends TestJaxrsBase {
 
     private static final int SERVER_PORT = 8087;
     private static final String CALLBACK_ENDPPOINT = "/callmeback";
+    private static final String STALLING_CALLBACK_ENDPPOINT = "/stallme";
+    private static final long STALLING_CALLBACK_DELAY_MS = 10000;
 
     private volatile boolean callbackCompleted;
     private volatile boolean callbackCompletedWithError;
@@ -57,7 +59,7 @@ public class TestPushNotification extends TestJaxrsBase {
     @BeforeMethod(groups = "slow")
     public void beforeMethod() throws Exception {
         super.beforeMethod();
-        callbackServer = new CallbackServer(this, SERVER_PORT, CALLBACK_ENDPPOINT);
+        callbackServer = new CallbackServer(this, SERVER_PORT, CALLBACK_ENDPPOINT, STALLING_CALLBACK_ENDPPOINT);
         callbackCompleted = false;
         callbackCompletedWithError = false;
         callbackServer.startServer();
@@ -69,7 +71,11 @@ public class TestPushNotification extends TestJaxrsBase {
     }
 
     private boolean waitForCallbacksToComplete() throws InterruptedException {
-        long remainingMs = 20000;
+        return waitForCallbacksToComplete(20000);
+    }
+
+    private boolean waitForCallbacksToComplete(final long timeoutMs) throws InterruptedException {
+        long remainingMs = timeoutMs;
         do {
             if (callbackCompleted) {
                 break;
@@ -121,6 +127,30 @@ public class TestPushNotification extends TestJaxrsBase {
         Assert.assertEquals(result2.getValues().size(), 0);
     }
 
+    @Test(groups = "slow", description = "A slow callback must not delay the other callbacks of the tenant")
+    public void testPushNotificationWithStallingCallback() throws Exception {
+        // Register the stalling callback first, it would be invoked first if the callbacks were invoked sequentially
+        final String stallingCallback = "http://127.0.0.1:" + SERVER_PORT + STALLING_CALLBACK_ENDPPOINT;
+        killBillClient.registerCallbackNotificationForTenant(stallingCallback, createdBy, reason, comment);
+        final String callback = "http://127.0.0.1:" + SERVER_PORT + CALLBACK_ENDPPOINT;
+        final TenantKey result0 = killBillClient.registerCallbackNotificationForTenant(callback, createdBy, reason, comment);
+        Assert.assertEquals(result0.getValues().size(), 2);
+
+        // Create account to trigger a push notification
+        createAccount();
+
+        final boolean success = waitForCallbacksToComplete(STALLING_CALLBACK_DELAY_MS / 2);
+        if (!success) {
+            Assert.fail("Push notification callback was delayed by the stalling callback");
+        }
+
+        if (callbackCompletedWithError) {
+            Assert.fail("Assertion during callback failed...");
+        }
+
+        killBillClient.unregisterCallbackNotificationForTenant(createdBy, reason, comment);
+    }
+
     public void setCompleted(final boolean withError) {
         callbackCompleted = true;
         callbackCompletedWithError = withError;
@@ -130,10 +160,12 @@ public class TestPushNotification extends TestJaxrsBase {
 
         private final Server server;
         private final String callbackEndpoint;
+        private final String stallingCallbackEndpoint;
         private final TestPushNotification test;
 
-        public CallbackServer(final TestPushNotification test, final int port, final String callbackEndpoint) {
+        public CallbackServer(final TestPushNotification test, final int port, final String callbackEndpoint, final String stallingCallbackEndpoint) {
             this.callbackEndpoint = callbackEndpoint;
+            this.stallingCallbackEndpoint = stallingCallbackEndpoint;
             this.test = test;
             this.server = new Server(port);
         }
@@ -143,6 +175,7 @@ public class TestPushNotification extends TestJaxrsBase {
             context.setContextPath("/");
             server.setHandler(context);
             context.addServlet(new ServletHolder(new CallmebackServlet(test, 1)), callbackEndpoint);
+            context.addServlet(new ServletHolder(new StallingServlet()), stallingCallbackEndpoint);
             server.start();
         }
 
@@ -206,4 +239,19 @@ public class TestPushNotification extends TestJaxrsBase {
             }
         }
     }
+
+    public static class StallingServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 4563123217446416817L;
+
+        @Override
+        protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+            try {
+                Thread.sleep(STALLING_CALLBACK_DELAY_MS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+    }
 }
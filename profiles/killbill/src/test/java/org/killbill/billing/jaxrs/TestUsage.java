@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.killbill.billing.client.model.Account;
+import org.killbill.billing.client.model.Subscription;
+import org.killbill.billing.jaxrs.json.RolledUpUsageJson;
+import org.killbill.billing.jaxrs.json.RolledUpUsageJson.RolledUpUnitJson;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UnitUsageRecordJson;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UsageRecordJson;
+import org.killbill.billing.jaxrs.resources.JaxrsResource;
+import org.killbill.billing.util.jackson.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.Realm;
+import com.ning.http.client.Realm.AuthScheme;
+import com.ning.http.client.Response;
+
+public class TestUsage extends TestJaxrsBase {
+
+    private static final int CALL_COMPLETION_TIMEOUT_SEC = 5;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private AsyncHttpClient httpClient;
+
+    @Override
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        super.beforeMethod();
+        httpClient = new AsyncHttpClient();
+    }
+
+    @Override
+    @AfterMethod(groups = "slow")
+    public void afterMethod() throws Exception {
+        httpClient.close();
+        super.afterMethod();
+    }
+
+    @Test(groups = "slow", description = "Can record usage for multiple subscriptions at once")
+    public void testRecordUsagesInBulk() throws Exception {
+        final DateTime initialDate = new DateTime(2012, 4, 25, 0, 3, 42, 0);
+        clock.setDeltaFromReality(initialDate.getMillis() - clock.getUTCNow().getMillis());
+        final LocalDate today = new LocalDate(2012, 4, 25);
+
+        final Account accountJson = createAccountWithDefaultPaymentMethod();
+        final Subscription subscription1 = createEntitlement(accountJson.getAccountId(), "11111", "Shotgun", ProductCategory.BASE, BillingPeriod.MONTHLY, true);
+        final Subscription subscription2 = createEntitlement(accountJson.getAccountId(), "22222", "Shotgun", ProductCategory.BASE, BillingPeriod.MONTHLY, true);
+
+        final List<SubscriptionUsageRecordJson> records = ImmutableList.<SubscriptionUsageRecordJson>of(createUsageRecord(subscription1.getSubscriptionId(), "bullets", today, 10L),
+                                                                                                         createUsageRecord(subscription2.getSubscriptionId(), "bullets", today, 4L),
+                                                                                                         createUsageRecord(subscription1.getSubscriptionId(), "bullets", today, 5L));
+        final Response response = postUsages(records);
+        Assert.assertEquals(response.getStatusCode(), 201);
+
+        Assert.assertEquals(getUsageAmount(subscription1.getSubscriptionId(), "bullets", today), (Long) 15L);
+        Assert.assertEquals(getUsageAmount(subscription2.getSubscriptionId(), "bullets", today), (Long) 4L);
+    }
+
+    @Test(groups = "slow", description = "Nothing is recorded if one of the subscriptions isn't active")
+    public void testRecordUsagesInBulkWithInactiveSubscription() throws Exception {
+        final DateTime initialDate = new DateTime(2012, 4, 25, 0, 3, 42, 0);
+        clock.setDeltaFromReality(initialDate.getMillis() - clock.getUTCNow().getMillis());
+        final LocalDate today = new LocalDate(2012, 4, 25);
+
+        final Account accountJson = createAccountWithDefaultPaymentMethod();
+        final Subscription activeSubscription = createEntitlement(accountJson.getAccountId(), "11111", "Shotgun", ProductCategory.BASE, BillingPeriod.MONTHLY, true);
+        final Subscription cancelledSubscription = createEntitlement(accountJson.getAccountId(), "22222", "Shotgun", ProductCategory.BASE, BillingPeriod.MONTHLY, true);
+        killBillClient.cancelSubscription(cancelledSubscription.getSubscriptionId(), CALL_COMPLETION_TIMEOUT_SEC, createdBy, reason, comment);
+
+        final List<SubscriptionUsageRecordJson> records = ImmutableList.<SubscriptionUsageRecordJson>of(createUsageRecord(activeSubscription.getSubscriptionId(), "bullets", today, 10L),
+                                                                                                         createUsageRecord(cancelledSubscription.getSubscriptionId(), "bullets", today, 4L));
+        final Response response = postUsages(records);
+        Assert.assertEquals(response.getStatusCode(), 400);
+
+        // The valid record (which comes first) must not have been written either
+        Assert.assertEquals(getUsageAmount(activeSubscription.getSubscriptionId(), "bullets", today), (Long) 0L);
+    }
+
+    private SubscriptionUsageRecordJson createUsageRecord(final UUID subscriptionId, final String unitType, final LocalDate recordDate, final Long amount) {
+        final UsageRecordJson usageRecordJson = new UsageRecordJson(recordDate, amount);
+        final UnitUsageRecordJson unitUsageRecordJson = new UnitUsageRecordJson(unitType, ImmutableList.<UsageRecordJson>of(usageRecordJson));
+        return new SubscriptionUsageRecordJson(subscriptionId.toString(), ImmutableList.<UnitUsageRecordJson>of(unitUsageRecordJson));
+    }
+
+    private Response postUsages(final List<SubscriptionUsageRecordJson> records) throws Exception {
+        return httpClient.preparePost(getUrl(JaxrsResource.USAGES_PATH + "/" + JaxrsResource.BULK))
+                         .setRealm(getRealm())
+                         .addHeader("Content-Type", "application/json")
+                         .addHeader(JaxrsResource.HDR_API_KEY, DEFAULT_API_KEY)
+                         .addHeader(JaxrsResource.HDR_API_SECRET, DEFAULT_API_SECRET)
+                         .addHeader(JaxrsResource.HDR_CREATED_BY, createdBy)
+                         .setBody(mapper.writeValueAsString(records))
+                         .execute()
+                         .get();
+    }
+
+    private Long getUsageAmount(final UUID subscriptionId, final String unitType, final LocalDate recordDate) throws Exception {
+        final Response response = httpClient.prepareGet(getUrl(JaxrsResource.USAGES_PATH + "/" + subscriptionId + "/" + unitType))
+                                            .setRealm(getRealm())
+                                            .addHeader(JaxrsResource.HDR_API_KEY, DEFAULT_API_KEY)
+                                            .addHeader(JaxrsResource.HDR_API_SECRET, DEFAULT_API_SECRET)
+                                            .addQueryParameter(JaxrsResource.QUERY_START_DATE, recordDate.toString())
+                                            .addQueryParameter(JaxrsResource.QUERY_END_DATE, recordDate.plusDays(1).toString())
+                                            .execute()
+                                            .get();
+        Assert.assertEquals(response.getStatusCode(), 200);
+
+        final RolledUpUsageJson usage = mapper.readValue(response.getResponseBody(), RolledUpUsageJson.class);
+        long amount = 0;
+        for (final RolledUpUnitJson rolledUpUnit : usage.getRolledUpUnits()) {
+            if (unitType.equals(rolledUpUnit.getUnitType())) {
+                amount += rolledUpUnit.getAmount();
+            }
+        }
+        return amount;
+    }
+
+    private String getUrl(final String path) {
+        return String.format("http://%s:%d%s", config.getServerHost(), config.getServerPort(), path);
+    }
+
+    private Realm getRealm() {
+        return new Realm.RealmBuilder().setPrincipal(USERNAME)
+                                       .setPassword(PASSWORD)
+                                       .setUsePreemptiveAuth(true)
+                                       .setScheme(AuthScheme.BASIC)
+                                       .build();
+    }
+}
@@ -80,4 +80,32 @@ public class TestTenantFilter extends TestJaxrsBase {
         loginTenant(apiKeyTenant1, apiSecretTenant1);
         Assert.assertNull(killBillClient.getAccount(account2.getExternalKey()));
     }
+
+    @Test(groups = "slow")
+    public void testWrongSecretIsRejectedOnceCredentialsHaveBeenVerified() throws Exception {
+        final String apiKeyTenant = "bob";
+        final String apiSecretTenant = "bobIsAlsoFr3nch";
+        loginTenant(apiKeyTenant, apiSecretTenant);
+        final Tenant tenant = new Tenant();
+        tenant.setApiKey(apiKeyTenant);
+        tenant.setApiSecret(apiSecretTenant);
+        killBillClient.createTenant(tenant, createdBy, reason, comment);
+
+        // Populate the verified credentials cache
+        final Account account = createAccount();
+        Assert.assertEquals(killBillClient.getAccount(account.getExternalKey()), account);
+
+        // Same api key, wrong secret
+        loginTenant(apiKeyTenant, apiSecretTenant + "!");
+        try {
+            killBillClient.createAccount(getAccount(), createdBy, reason, comment);
+            Assert.fail();
+        } catch (final KillBillClientException e) {
+            Assert.assertEquals(e.getResponse().getStatusCode(), Status.UNAUTHORIZED.getStatusCode());
+        }
+
+        // The right secret is still accepted
+        loginTenant(apiKeyTenant, apiSecretTenant);
+        Assert.assertEquals(killBillClient.getAccount(account.getExternalKey()), account);
+    }
 }
@@ -29,6 +29,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -101,7 +102,6 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Collections2;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 
 public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleModelDao, SubscriptionBaseBundle, SubscriptionApiException> implements SubscriptionDao {
@@ -201,8 +201,8 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                                                   }
 
                                                   @Override
-                                                  public Iterator<SubscriptionBundleModelDao> build(final BundleSqlDao bundleSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return bundleSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                  public Iterator<SubscriptionBundleModelDao> build(final BundleSqlDao bundleSqlDao, final Long offset, final Long limit, final Long lastRecordId, final InternalTenantContext context) {
+                                                      return bundleSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, lastRecordId, context);
                                                   }
                                               },
                                               offset,
@@ -331,56 +331,34 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
     public Map<UUID, List<SubscriptionBase>> getSubscriptionsForAccount(final InternalTenantContext context) throws CatalogApiException {
         final Map<UUID, List<SubscriptionBase>> subscriptionsFromAccountId = getSubscriptionsFromAccountId(context);
 
-        final List<SubscriptionBaseEvent> eventsForAccount = getEventsForAccountId(context);
+        // All the events for the account, already grouped per subscription
+        final Multimap<UUID, SubscriptionBaseEvent> eventsForSubscriptions = getEventsForAccountId(context);
 
-        final Map<UUID, List<SubscriptionBase>> result = new HashMap<UUID, List<SubscriptionBase>>();
-        for (final UUID bundleId : subscriptionsFromAccountId.keySet()) {
-
-            final List<SubscriptionBase> subscriptionsForBundle = subscriptionsFromAccountId.get(bundleId);
-            final Collection<UUID> subscriptionIdsForBundle = Collections2.transform(subscriptionsForBundle, new Function<SubscriptionBase, UUID>() {
-                @Override
-                public UUID apply(final SubscriptionBase input) {
-                    return input.getId();
-                }
-            });
-            final Multimap<UUID, SubscriptionBaseEvent> eventsForSubscriptions = ArrayListMultimap.create();
-
-            for (final SubscriptionBase cur : subscriptionsForBundle) {
-                final Collection<SubscriptionBaseEvent> events = Collections2.filter(eventsForAccount, new Predicate<SubscriptionBaseEvent>() {
-                    @Override
-                    public boolean apply(final SubscriptionBaseEvent input) {
-                        return input.getSubscriptionId().equals(cur.getId());
-
-                    }
-                });
-                eventsForSubscriptions.putAll(cur.getId(), ImmutableList.copyOf(events));
-            }
-
-            result.put(bundleId, buildBundleSubscriptions(subscriptionsForBundle, eventsForSubscriptions, null, context));
+        final Map<UUID, List<SubscriptionBase>> result = new HashMap<UUID, List<SubscriptionBase>>(subscriptionsFromAccountId.size());
+        for (final Entry<UUID, List<SubscriptionBase>> subscriptionsForBundle : subscriptionsFromAccountId.entrySet()) {
+            result.put(subscriptionsForBundle.getKey(), buildBundleSubscriptions(subscriptionsForBundle.getValue(), eventsForSubscriptions, null, context));
         }
         return result;
     }
 
     private Map<UUID, List<SubscriptionBase>> getSubscriptionsFromAccountId(final InternalTenantContext context) {
-        final List<SubscriptionBase> allSubscriptions = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<SubscriptionBase>>() {
+        final List<SubscriptionModelDao> models = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<SubscriptionModelDao>>() {
             @Override
-            public List<SubscriptionBase> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final List<SubscriptionModelDao> models = entitySqlDaoWrapperFactory.become(SubscriptionSqlDao.class).getByAccountRecordId(context);
-                return new ArrayList<SubscriptionBase>(Collections2.transform(models, new Function<SubscriptionModelDao, SubscriptionBase>() {
-                    @Override
-                    public SubscriptionBase apply(final SubscriptionModelDao input) {
-                        return SubscriptionModelDao.toSubscription(input);
-                    }
-                }));
+            public List<SubscriptionModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(SubscriptionSqlDao.class).getByAccountRecordId(context);
             }
         });
 
+        // Map and group in a single pass
         final Map<UUID, List<SubscriptionBase>> result = new HashMap<UUID, List<SubscriptionBase>>();
-        for (final SubscriptionBase subscriptionBase : allSubscriptions) {
-            if (result.get(subscriptionBase.getBundleId()) == null) {
-                result.put(subscriptionBase.getBundleId(), new LinkedList<SubscriptionBase>());
+        for (final SubscriptionModelDao model : models) {
+            final SubscriptionBase subscriptionBase = SubscriptionModelDao.toSubscription(model);
+            List<SubscriptionBase> subscriptionsForBundle = result.get(subscriptionBase.getBundleId());
+            if (subscriptionsForBundle == null) {
+                subscriptionsForBundle = new ArrayList<SubscriptionBase>();
+                result.put(subscriptionBase.getBundleId(), subscriptionsForBundle);
             }
-            result.get(subscriptionBase.getBundleId()).add(subscriptionBase);
+            subscriptionsForBundle.add(subscriptionBase);
         }
         return result;
     }
@@ -746,14 +724,26 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
         }));
     }
 
-    private List<SubscriptionBaseEvent> getEventsForAccountId(final InternalTenantContext context) {
-        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<SubscriptionBaseEvent>>() {
+    /**
+     * @return all the events for the account, grouped per subscription id (the order of the events of each subscription is preserved)
+     */
+    private Multimap<UUID, SubscriptionBaseEvent> getEventsForAccountId(final InternalTenantContext context) {
+        final List<SubscriptionEventModelDao> models = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<SubscriptionEventModelDao>>() {
             @Override
-            public List<SubscriptionBaseEvent> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final List<SubscriptionEventModelDao> models = entitySqlDaoWrapperFactory.become(SubscriptionEventSqlDao.class).getByAccountRecordId(context);
-                return filterSubscriptionBaseEvents(models);
+            public List<SubscriptionEventModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(SubscriptionEventSqlDao.class).getByAccountRecordId(context);
             }
         });
+
+        // Filter, map and group in a single pass (see filterSubscriptionBaseEvents)
+        final Multimap<UUID, SubscriptionBaseEvent> eventsForSubscriptions = ArrayListMultimap.create();
+        for (final SubscriptionEventModelDao model : models) {
+            if (model.getUserType() == ApiEventType.UNCANCEL) {
+                continue;
+            }
+            eventsForSubscriptions.put(model.getSubscriptionId(), SubscriptionEventModelDao.toSubscriptionEvent(model));
+        }
+        return eventsForSubscriptions;
     }
 
     private void cancelSubscriptionFromTransaction(final DefaultSubscriptionBase subscription, final SubscriptionBaseEvent cancelEvent, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context, final int seqId)
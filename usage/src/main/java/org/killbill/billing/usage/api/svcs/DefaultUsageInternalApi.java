@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api.svcs;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.usage.UsageInternalApi;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UnitUsageRecord;
+import org.killbill.billing.usage.api.UsageRecord;
+import org.killbill.billing.usage.dao.RolledUpUsageDao;
+import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+
+public class DefaultUsageInternalApi implements UsageInternalApi {
+
+    private final RolledUpUsageDao rolledUpUsageDao;
+    private final InternalCallContextFactory internalCallContextFactory;
+
+    @Inject
+    public DefaultUsageInternalApi(final RolledUpUsageDao rolledUpUsageDao,
+                                   final InternalCallContextFactory internalCallContextFactory) {
+        this.rolledUpUsageDao = rolledUpUsageDao;
+        this.internalCallContextFactory = internalCallContextFactory;
+    }
+
+    @Override
+    public void recordRolledUpUsages(final Iterable<SubscriptionUsageRecord> records, final CallContext callContext) {
+        // Amounts for the same day are summed on read anyway, so we only write one row per subscription, unit type and day
+        final Map<UUID, Map<String, Map<LocalDate, Long>>> amountsPerSubscription = new LinkedHashMap<UUID, Map<String, Map<LocalDate, Long>>>();
+        for (final SubscriptionUsageRecord record : records) {
+            Map<String, Map<LocalDate, Long>> amountsPerUnitType = amountsPerSubscription.get(record.getSubscriptionId());
+            if (amountsPerUnitType == null) {
+                amountsPerUnitType = new LinkedHashMap<String, Map<LocalDate, Long>>();
+                amountsPerSubscription.put(record.getSubscriptionId(), amountsPerUnitType);
+            }
+
+            for (final UnitUsageRecord unitUsageRecord : record.getUnitUsageRecord()) {
+                Map<LocalDate, Long> amountPerDate = amountsPerUnitType.get(unitUsageRecord.getUnitType());
+                if (amountPerDate == null) {
+                    amountPerDate = new LinkedHashMap<LocalDate, Long>();
+                    amountsPerUnitType.put(unitUsageRecord.getUnitType(), amountPerDate);
+                }
+
+                for (final UsageRecord usageRecord : unitUsageRecord.getDailyAmount()) {
+                    final Long currentAmount = amountPerDate.get(usageRecord.getDate());
+                    amountPerDate.put(usageRecord.getDate(), currentAmount == null ? usageRecord.getAmount() : currentAmount + usageRecord.getAmount());
+                }
+            }
+        }
+
+        // One batch per account record id (contexts for subscriptions of the same account are equal)
+        final Map<InternalCallContext, List<RolledUpUsageModelDao>> rolledUpUsagesPerContext = new LinkedHashMap<InternalCallContext, List<RolledUpUsageModelDao>>();
+        for (final UUID subscriptionId : amountsPerSubscription.keySet()) {
+            final List<RolledUpUsageModelDao> rolledUpUsages = new LinkedList<RolledUpUsageModelDao>();
+            final Map<String, Map<LocalDate, Long>> amountsPerUnitType = amountsPerSubscription.get(subscriptionId);
+            for (final String unitType : amountsPerUnitType.keySet()) {
+                final Map<LocalDate, Long> amountPerDate = amountsPerUnitType.get(unitType);
+                for (final LocalDate date : amountPerDate.keySet()) {
+                    rolledUpUsages.add(new RolledUpUsageModelDao(subscriptionId, unitType, date, amountPerDate.get(date)));
+                }
+            }
+
+            if (!rolledUpUsages.isEmpty()) {
+                final InternalCallContext internalCallContext = internalCallContextFactory.createInternalCallContext(subscriptionId, ObjectType.SUBSCRIPTION, callContext);
+                final List<RolledUpUsageModelDao> rolledUpUsagesForContext = rolledUpUsagesPerContext.get(internalCallContext);
+                if (rolledUpUsagesForContext == null) {
+                    rolledUpUsagesPerContext.put(internalCallContext, rolledUpUsages);
+                } else {
+                    rolledUpUsagesForContext.addAll(rolledUpUsages);
+                }
+            }
+        }
+
+        if (!rolledUpUsagesPerContext.isEmpty()) {
+            // Single transaction
+            rolledUpUsageDao.record(rolledUpUsagesPerContext);
+        }
+    }
+}
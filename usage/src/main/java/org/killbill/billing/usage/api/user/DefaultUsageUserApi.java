@@ -18,6 +18,8 @@ package org.killbill.billing.usage.api.user;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -26,13 +28,11 @@ import javax.inject.Inject;
 
 import org.joda.time.LocalDate;
 import org.killbill.billing.ObjectType;
-import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.usage.UsageInternalApi;
 import org.killbill.billing.usage.api.RolledUpUnit;
 import org.killbill.billing.usage.api.RolledUpUsage;
 import org.killbill.billing.usage.api.SubscriptionUsageRecord;
-import org.killbill.billing.usage.api.UnitUsageRecord;
-import org.killbill.billing.usage.api.UsageRecord;
 import org.killbill.billing.usage.api.UsageUserApi;
 import org.killbill.billing.usage.dao.RolledUpUsageDao;
 import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
@@ -40,26 +40,27 @@ import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 
+import com.google.common.collect.ImmutableList;
+
 public class DefaultUsageUserApi implements UsageUserApi {
 
     private final RolledUpUsageDao rolledUpUsageDao;
+    private final UsageInternalApi usageInternalApi;
     private final InternalCallContextFactory internalCallContextFactory;
 
     @Inject
     public DefaultUsageUserApi(final RolledUpUsageDao rolledUpUsageDao,
+                               final UsageInternalApi usageInternalApi,
                                final InternalCallContextFactory internalCallContextFactory) {
         this.rolledUpUsageDao = rolledUpUsageDao;
+        this.usageInternalApi = usageInternalApi;
         this.internalCallContextFactory = internalCallContextFactory;
     }
 
     @Override
     public void recordRolledUpUsage(final SubscriptionUsageRecord record, final CallContext callContext) {
-        final InternalCallContext internalCallContext = internalCallContextFactory.createInternalCallContext(record.getSubscriptionId(), ObjectType.SUBSCRIPTION, callContext);
-        for (UnitUsageRecord unitUsageRecord : record.getUnitUsageRecord()) {
-            for (UsageRecord usageRecord : unitUsageRecord.getDailyAmount()) {
-                rolledUpUsageDao.record(record.getSubscriptionId(), unitUsageRecord.getUnitType(), usageRecord.getDate(), usageRecord.getAmount(), internalCallContext);
-            }
-        }
+        // Amounts are coalesced per unit type and day, and written in a single batch
+        usageInternalApi.recordRolledUpUsages(ImmutableList.<SubscriptionUsageRecord>of(record), callContext);
     }
 
     @Override
@@ -72,12 +73,29 @@ public class DefaultUsageUserApi implements UsageUserApi {
     @Override
     public List<RolledUpUsage> getAllUsageForSubscription(final UUID subscriptionId, final List<LocalDate> transitionTimes, final TenantContext tenantContext) {
         final InternalTenantContext internalCallContext = internalCallContextFactory.createInternalTenantContext(subscriptionId, ObjectType.SUBSCRIPTION, tenantContext);
-        List<RolledUpUsage> result = new ArrayList<RolledUpUsage>();
+        final List<RolledUpUsage> result = new ArrayList<RolledUpUsage>();
+        if (transitionTimes.size() <= 1) {
+            return result;
+        }
+
+        // Single query for the whole [first transition, last transition) range, ordered by day
+        final List<RolledUpUsageModelDao> usageForSubscription = rolledUpUsageDao.getRolledUpUsageForSubscription(subscriptionId,
+                                                                                                                  transitionTimes.get(0),
+                                                                                                                  transitionTimes.get(transitionTimes.size() - 1),
+                                                                                                                  internalCallContext);
+
+        // Split it across the intervals in a single pass
+        final Iterator<RolledUpUsageModelDao> usageIterator = usageForSubscription.iterator();
+        RolledUpUsageModelDao nextUsage = usageIterator.hasNext() ? usageIterator.next() : null;
         LocalDate prevDate = null;
-        for (LocalDate curDate : transitionTimes) {
+        for (final LocalDate curDate : transitionTimes) {
             if (prevDate != null) {
-                final List<RolledUpUsageModelDao> usageForSubscription = rolledUpUsageDao.getAllUsageForSubscription(subscriptionId, prevDate, curDate, internalCallContext);
-                final List<RolledUpUnit> rolledUpAmount = getRolledUpUnits(usageForSubscription);
+                final List<RolledUpUsageModelDao> usageForInterval = new LinkedList<RolledUpUsageModelDao>();
+                while (nextUsage != null && nextUsage.getRecordDate().isBefore(curDate)) {
+                    usageForInterval.add(nextUsage);
+                    nextUsage = usageIterator.hasNext() ? usageIterator.next() : null;
+                }
+                final List<RolledUpUnit> rolledUpAmount = getRolledUpUnits(usageForInterval);
                 result.add(new DefaultRolledUpUsage(subscriptionId, prevDate, curDate, rolledUpAmount));
             }
             prevDate = curDate;
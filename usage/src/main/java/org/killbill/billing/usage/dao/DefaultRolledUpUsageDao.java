@@ -18,6 +18,7 @@ package org.killbill.billing.usage.dao;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -25,14 +26,19 @@ import javax.inject.Inject;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
 
 public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
 
+    private final IDBI dbi;
     private final RolledUpUsageSqlDao rolledUpUsageSqlDao;
 
     @Inject
     public DefaultRolledUpUsageDao(final IDBI dbi) {
+        this.dbi = dbi;
         this.rolledUpUsageSqlDao = dbi.onDemand(RolledUpUsageSqlDao.class);
     }
 
@@ -42,6 +48,25 @@ public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
         rolledUpUsageSqlDao.create(rolledUpUsageModelDao, context);
     }
 
+    @Override
+    public void record(final Iterable<RolledUpUsageModelDao> rolledUpUsages, final InternalCallContext context) {
+        rolledUpUsageSqlDao.batchCreate(rolledUpUsages, context);
+    }
+
+    @Override
+    public void record(final Map<InternalCallContext, List<RolledUpUsageModelDao>> rolledUpUsagesPerContext) {
+        dbi.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                final RolledUpUsageSqlDao transactional = handle.attach(RolledUpUsageSqlDao.class);
+                for (final InternalCallContext context : rolledUpUsagesPerContext.keySet()) {
+                    transactional.batchCreate(rolledUpUsagesPerContext.get(context), context);
+                }
+                return null;
+            }
+        });
+    }
+
     @Override
     public List<RolledUpUsageModelDao> getUsageForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate, final String unitType, final InternalTenantContext context) {
         return rolledUpUsageSqlDao.getUsageForSubscription(subscriptionId, startDate.toDate(), endDate.toDate(), unitType, context);
@@ -51,4 +76,9 @@ public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
     public List<RolledUpUsageModelDao> getAllUsageForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
         return rolledUpUsageSqlDao.getAllUsageForSubscription(subscriptionId, startDate.toDate(), endDate.toDate(), context);
     }
+
+    @Override
+    public List<RolledUpUsageModelDao> getRolledUpUsageForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+        return rolledUpUsageSqlDao.getRolledUpUsageForSubscription(subscriptionId, startDate.toDate(), endDate.toDate(), context);
+    }
 }
@@ -17,6 +17,7 @@
 package org.killbill.billing.usage.dao;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.joda.time.LocalDate;
@@ -28,7 +29,19 @@ public interface RolledUpUsageDao {
     void record(UUID subscriptionId, String unitType, LocalDate date,
                 Long amount, InternalCallContext context);
 
+    void record(Iterable<RolledUpUsageModelDao> rolledUpUsages, InternalCallContext context);
+
+    /**
+     * Record the usage in a single transaction, with one batch per context
+     */
+    void record(Map<InternalCallContext, List<RolledUpUsageModelDao>> rolledUpUsagesPerContext);
+
     List<RolledUpUsageModelDao> getUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, String unitType, InternalTenantContext context);
 
     List<RolledUpUsageModelDao> getAllUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
+    /**
+     * @return the usage amounts, summed per unit type and day, ordered by day
+     */
+    List<RolledUpUsageModelDao> getRolledUpUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, InternalTenantContext context);
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api.user;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.usage.UsageTestSuiteNoDB;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UnitUsageRecord;
+import org.killbill.billing.usage.api.UsageRecord;
+import org.killbill.billing.usage.api.svcs.DefaultUsageInternalApi;
+import org.killbill.billing.usage.dao.RolledUpUsageDao;
+import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestDefaultUsageUserApi extends UsageTestSuiteNoDB {
+
+    private RolledUpUsageDao rolledUpUsageDao;
+    private DefaultUsageInternalApi usageInternalApi;
+    private DefaultUsageUserApi usageUserApi;
+
+    @BeforeMethod(groups = "fast")
+    public void setUp() throws Exception {
+        rolledUpUsageDao = Mockito.mock(RolledUpUsageDao.class);
+        final InternalCallContextFactory internalCallContextFactory = Mockito.mock(InternalCallContextFactory.class);
+        Mockito.when(internalCallContextFactory.createInternalCallContext(Mockito.<UUID>any(), Mockito.<ObjectType>any(), Mockito.<CallContext>any())).thenReturn(internalCallContext);
+        usageInternalApi = new DefaultUsageInternalApi(rolledUpUsageDao, internalCallContextFactory);
+        usageUserApi = new DefaultUsageUserApi(rolledUpUsageDao, usageInternalApi, internalCallContextFactory);
+    }
+
+    @Test(groups = "fast")
+    public void testRecordRolledUpUsageCoalescesAmountsPerUnitTypeAndDay() throws Exception {
+        final UUID subscriptionId = UUID.randomUUID();
+        final LocalDate day1 = new LocalDate(2013, 1, 1);
+        final LocalDate day2 = day1.plusDays(1);
+
+        final UnitUsageRecord foo1 = new UnitUsageRecord("foo", ImmutableList.<UsageRecord>of(new UsageRecord(day1, 10L), new UsageRecord(day2, 5L), new UsageRecord(day1, 3L)));
+        final UnitUsageRecord bar = new UnitUsageRecord("bar", ImmutableList.<UsageRecord>of(new UsageRecord(day1, 7L)));
+        final UnitUsageRecord foo2 = new UnitUsageRecord("foo", ImmutableList.<UsageRecord>of(new UsageRecord(day2, 1L)));
+        usageUserApi.recordRolledUpUsage(new SubscriptionUsageRecord(subscriptionId, ImmutableList.<UnitUsageRecord>of(foo1, bar, foo2)), callContext);
+
+        final List<RolledUpUsageModelDao> rolledUpUsages = captureRecordedUsages();
+        Assert.assertEquals(rolledUpUsages.size(), 3);
+        checkRolledUpUsage(rolledUpUsages.get(0), subscriptionId, "foo", day1, 13L);
+        checkRolledUpUsage(rolledUpUsages.get(1), subscriptionId, "foo", day2, 6L);
+        checkRolledUpUsage(rolledUpUsages.get(2), subscriptionId, "bar", day1, 7L);
+    }
+
+    @Test(groups = "fast")
+    public void testRecordRolledUpUsageForSubscriptionsOfTheSameAccount() throws Exception {
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final LocalDate day = new LocalDate(2013, 1, 1);
+
+        final SubscriptionUsageRecord record1 = new SubscriptionUsageRecord(subscriptionId1, ImmutableList.<UnitUsageRecord>of(new UnitUsageRecord("foo", ImmutableList.<UsageRecord>of(new UsageRecord(day, 2L)))));
+        final SubscriptionUsageRecord record2 = new SubscriptionUsageRecord(subscriptionId2, ImmutableList.<UnitUsageRecord>of(new UnitUsageRecord("foo", ImmutableList.<UsageRecord>of(new UsageRecord(day, 4L)))));
+        final SubscriptionUsageRecord record3 = new SubscriptionUsageRecord(subscriptionId1, ImmutableList.<UnitUsageRecord>of(new UnitUsageRecord("foo", ImmutableList.<UsageRecord>of(new UsageRecord(day, 8L)))));
+        usageInternalApi.recordRolledUpUsages(ImmutableList.<SubscriptionUsageRecord>of(record1, record2, record3), callContext);
+
+        // Both subscriptions share the same account, hence the same context and batch
+        final List<RolledUpUsageModelDao> rolledUpUsages = captureRecordedUsages();
+        Assert.assertEquals(rolledUpUsages.size(), 2);
+        checkRolledUpUsage(rolledUpUsages.get(0), subscriptionId1, "foo", day, 10L);
+        checkRolledUpUsage(rolledUpUsages.get(1), subscriptionId2, "foo", day, 4L);
+    }
+
+    @Test(groups = "fast")
+    public void testNothingRecordedWithoutUsage() throws Exception {
+        usageUserApi.recordRolledUpUsage(new SubscriptionUsageRecord(UUID.randomUUID(), ImmutableList.<UnitUsageRecord>of()), callContext);
+        Mockito.verify(rolledUpUsageDao, Mockito.never()).record(Mockito.<Map<InternalCallContext, List<RolledUpUsageModelDao>>>any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RolledUpUsageModelDao> captureRecordedUsages() {
+        final ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(rolledUpUsageDao, Mockito.times(1)).record(captor.capture());
+
+        final Map<InternalCallContext, List<RolledUpUsageModelDao>> rolledUpUsagesPerContext = (Map<InternalCallContext, List<RolledUpUsageModelDao>>) captor.getValue();
+        Assert.assertEquals(rolledUpUsagesPerContext.size(), 1);
+        Assert.assertTrue(rolledUpUsagesPerContext.containsKey(internalCallContext));
+        return rolledUpUsagesPerContext.get(internalCallContext);
+    }
+
+    private void checkRolledUpUsage(final RolledUpUsageModelDao rolledUpUsage, final UUID subscriptionId, final String unitType, final LocalDate recordDate, final Long amount) {
+        Assert.assertEquals(rolledUpUsage.getSubscriptionId(), subscriptionId);
+        Assert.assertEquals(rolledUpUsage.getUnitType(), unitType);
+        Assert.assertEquals(rolledUpUsage.getRecordDate().compareTo(recordDate), 0);
+        Assert.assertEquals(rolledUpUsage.getAmount().compareTo(amount), 0);
+    }
+}
@@ -16,14 +16,18 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.LocalDate;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.usage.UsageTestSuiteWithEmbeddedDB;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableMap;
+
 import static org.testng.Assert.assertEquals;
 
 public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
@@ -90,6 +94,81 @@ public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
     }
 
 
+    @Test(groups = "slow")
+    public void testBatchRecord() {
+        final UUID subscriptionId = UUID.randomUUID();
+        final String unitType = "foo";
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+        final LocalDate endDate = new LocalDate(2013, 2, 1);
+
+        final List<RolledUpUsageModelDao> rolledUpUsages = new ArrayList<RolledUpUsageModelDao>();
+        for (int i = 0; i < 31; i++) {
+            rolledUpUsages.add(new RolledUpUsageModelDao(subscriptionId, unitType, startDate.plusDays(i), (long) i));
+        }
+        rolledUpUsageDao.record(rolledUpUsages, internalCallContext);
+
+        final List<RolledUpUsageModelDao> result = rolledUpUsageDao.getUsageForSubscription(subscriptionId, startDate, endDate, unitType, internalCallContext);
+        assertEquals(result.size(), 31);
+        for (int i = 0; i < 31; i++) {
+            assertEquals(result.get(i).getSubscriptionId(), subscriptionId);
+            assertEquals(result.get(i).getRecordDate().compareTo(startDate.plusDays(i)), 0);
+            assertEquals(result.get(i).getUnitType(), unitType);
+            assertEquals(result.get(i).getAmount().compareTo((long) i), 0);
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testRecordPerContext() {
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final String unitType = "foo";
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+        final LocalDate endDate = new LocalDate(2013, 2, 1);
+
+        final List<RolledUpUsageModelDao> rolledUpUsages = new ArrayList<RolledUpUsageModelDao>();
+        rolledUpUsages.add(new RolledUpUsageModelDao(subscriptionId1, unitType, startDate, 10L));
+        rolledUpUsages.add(new RolledUpUsageModelDao(subscriptionId2, unitType, startDate.plusDays(1), 5L));
+        rolledUpUsageDao.record(ImmutableMap.<InternalCallContext, List<RolledUpUsageModelDao>>of(internalCallContext, rolledUpUsages));
+
+        final List<RolledUpUsageModelDao> result1 = rolledUpUsageDao.getUsageForSubscription(subscriptionId1, startDate, endDate, unitType, internalCallContext);
+        assertEquals(result1.size(), 1);
+        assertEquals(result1.get(0).getRecordDate().compareTo(startDate), 0);
+        assertEquals(result1.get(0).getAmount().compareTo(10L), 0);
+
+        final List<RolledUpUsageModelDao> result2 = rolledUpUsageDao.getUsageForSubscription(subscriptionId2, startDate, endDate, unitType, internalCallContext);
+        assertEquals(result2.size(), 1);
+        assertEquals(result2.get(0).getRecordDate().compareTo(startDate.plusDays(1)), 0);
+        assertEquals(result2.get(0).getAmount().compareTo(5L), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testRolledUpUsage() {
+        final UUID subscriptionId = UUID.randomUUID();
+        final String unitType1 = "foo";
+        final String unitType2 = "bar";
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+        final LocalDate endDate = new LocalDate(2013, 2, 1);
+
+        rolledUpUsageDao.record(subscriptionId, unitType1, startDate.plusDays(1), 5L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType1, startDate, 10L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType1, startDate, 3L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType2, startDate, 7L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType2, endDate, 9L, internalCallContext);
+
+        final List<RolledUpUsageModelDao> result = rolledUpUsageDao.getRolledUpUsageForSubscription(subscriptionId, startDate, endDate, internalCallContext);
+        assertEquals(result.size(), 3);
+        // Ordered by day, amounts summed per unit type and day
+        final RolledUpUsageModelDao firstDayUnitType1 = result.get(0).getUnitType().equals(unitType1) ? result.get(0) : result.get(1);
+        final RolledUpUsageModelDao firstDayUnitType2 = result.get(0).getUnitType().equals(unitType1) ? result.get(1) : result.get(0);
+        assertEquals(firstDayUnitType1.getRecordDate().compareTo(startDate), 0);
+        assertEquals(firstDayUnitType1.getAmount().compareTo(13L), 0);
+        assertEquals(firstDayUnitType2.getRecordDate().compareTo(startDate), 0);
+        assertEquals(firstDayUnitType2.getAmount().compareTo(7L), 0);
+        assertEquals(result.get(2).getSubscriptionId(), subscriptionId);
+        assertEquals(result.get(2).getRecordDate().compareTo(startDate.plusDays(1)), 0);
+        assertEquals(result.get(2).getUnitType(), unitType1);
+        assertEquals(result.get(2).getAmount().compareTo(5L), 0);
+    }
 
     @Test(groups = "slow")
     public void testNoEntries() {
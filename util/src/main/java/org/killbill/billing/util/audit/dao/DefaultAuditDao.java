@@ -16,12 +16,12 @@
 
 package org.killbill.billing.util.audit.dao;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.skife.jdbi.v2.IDBI;
@@ -95,10 +95,14 @@ public class DefaultAuditDao implements AuditDao {
     }
 
     private Iterator<AuditLog> buildAuditLogsFromModelDao(final Iterator<AuditLogModelDao> auditLogsForAccountRecordId, final InternalTenantContext tenantContext) {
-        final Map<TableName, Map<Long, UUID>> recordIdIdsCache = new HashMap<TableName, Map<Long, UUID>>();
-        final Map<TableName, Map<Long, UUID>> historyRecordIdIdsCache = new HashMap<TableName, Map<Long, UUID>>();
         return Iterators.<AuditLogModelDao, AuditLog>transform(auditLogsForAccountRecordId,
                                                                new Function<AuditLogModelDao, AuditLog>() {
+
+                                                                   // The audit logs are streamed ordered by table name: only keep the (account specific) mappings
+                                                                   // for the table currently being iterated over, instead of the mappings for all tables seen so far
+                                                                   private TableName currentMappingsTableName = null;
+                                                                   private Map<Long, UUID> currentMappings = null;
+
                                                                    @Override
                                                                    public AuditLog apply(final AuditLogModelDao input) {
                                                                        // If input is for e.g. TAG_DEFINITION_HISTORY, retrieve TAG_DEFINITIONS
@@ -106,47 +110,43 @@ public class DefaultAuditDao implements AuditDao {
                                                                        final TableName originalTableNameForHistoryTableName = findTableNameForHistoryTableName(input.getTableName());
 
                                                                        final ObjectType objectType;
-                                                                       final UUID auditedEntityId;
                                                                        if (originalTableNameForHistoryTableName != null) {
                                                                            // input point to a history entry
                                                                            objectType = originalTableNameForHistoryTableName.getObjectType();
-
-                                                                           if (historyRecordIdIdsCache.get(originalTableNameForHistoryTableName) == null) {
-                                                                               if (TableName.ACCOUNT.equals(originalTableNameForHistoryTableName)) {
-                                                                                   final Iterable<RecordIdIdMappings> mappings = nonEntitySqlDao.getHistoryRecordIdIdMappingsForAccountsTable(originalTableNameForHistoryTableName.getTableName(),
-                                                                                                                                                                                              input.getTableName().getTableName(),
-                                                                                                                                                                                              tenantContext);
-                                                                                   historyRecordIdIdsCache.put(originalTableNameForHistoryTableName, RecordIdIdMappings.toMap(mappings));
-                                                                               } else if (TableName.TAG_DEFINITIONS.equals(originalTableNameForHistoryTableName)) {
-                                                                                   final Iterable<RecordIdIdMappings> mappings = nonEntitySqlDao.getHistoryRecordIdIdMappingsForTablesWithoutAccountRecordId(originalTableNameForHistoryTableName.getTableName(),
-                                                                                                                                                                                                             input.getTableName().getTableName(),
-                                                                                                                                                                                                             tenantContext);
-                                                                                   historyRecordIdIdsCache.put(originalTableNameForHistoryTableName, RecordIdIdMappings.toMap(mappings));
-                                                                               } else {
-                                                                                   final Iterable<RecordIdIdMappings> mappings = nonEntitySqlDao.getHistoryRecordIdIdMappings(originalTableNameForHistoryTableName.getTableName(),
-                                                                                                                                                                              input.getTableName().getTableName(),
-                                                                                                                                                                              tenantContext);
-                                                                                   historyRecordIdIdsCache.put(originalTableNameForHistoryTableName, RecordIdIdMappings.toMap(mappings));
-
-                                                                               }
-                                                                           }
-
-                                                                           auditedEntityId = historyRecordIdIdsCache.get(originalTableNameForHistoryTableName).get(input.getTargetRecordId());
                                                                        } else {
                                                                            objectType = input.getTableName().getObjectType();
+                                                                       }
 
-                                                                           if (recordIdIdsCache.get(input.getTableName()) == null) {
-                                                                               final Iterable<RecordIdIdMappings> mappings = nonEntitySqlDao.getRecordIdIdMappings(input.getTableName().getTableName(),
-                                                                                                                                                                   tenantContext);
-                                                                               recordIdIdsCache.put(input.getTableName(), RecordIdIdMappings.toMap(mappings));
-                                                                           }
-
-                                                                           auditedEntityId = recordIdIdsCache.get(input.getTableName()).get(input.getTargetRecordId());
+                                                                       if (!input.getTableName().equals(currentMappingsTableName)) {
+                                                                           currentMappings = getRecordIdIdMappings(input.getTableName(), originalTableNameForHistoryTableName);
+                                                                           currentMappingsTableName = input.getTableName();
                                                                        }
 
+                                                                       final UUID auditedEntityId = currentMappings.get(input.getTargetRecordId());
                                                                        return new DefaultAuditLog(input, objectType, auditedEntityId);
                                                                    }
 
+                                                                   private Map<Long, UUID> getRecordIdIdMappings(final TableName tableName, @Nullable final TableName originalTableNameForHistoryTableName) {
+                                                                       final Iterable<RecordIdIdMappings> mappings;
+                                                                       if (originalTableNameForHistoryTableName == null) {
+                                                                           mappings = nonEntitySqlDao.getRecordIdIdMappings(tableName.getTableName(), tenantContext);
+                                                                       } else if (TableName.ACCOUNT.equals(originalTableNameForHistoryTableName)) {
+                                                                           mappings = nonEntitySqlDao.getHistoryRecordIdIdMappingsForAccountsTable(originalTableNameForHistoryTableName.getTableName(),
+                                                                                                                                                   tableName.getTableName(),
+                                                                                                                                                   tenantContext);
+                                                                       } else if (TableName.TAG_DEFINITIONS.equals(originalTableNameForHistoryTableName)) {
+                                                                           mappings = nonEntitySqlDao.getHistoryRecordIdIdMappingsForTablesWithoutAccountRecordId(originalTableNameForHistoryTableName.getTableName(),
+                                                                                                                                                                  tableName.getTableName(),
+                                                                                                                                                                  tableName.name(),
+                                                                                                                                                                  tenantContext);
+                                                                       } else {
+                                                                           mappings = nonEntitySqlDao.getHistoryRecordIdIdMappings(originalTableNameForHistoryTableName.getTableName(),
+                                                                                                                                   tableName.getTableName(),
+                                                                                                                                   tenantContext);
+                                                                       }
+                                                                       return RecordIdIdMappings.toMap(mappings);
+                                                                   }
+
                                                                    private TableName findTableNameForHistoryTableName(final TableName historyTableName) {
                                                                        for (final TableName tableName : TableName.values()) {
                                                                            if (historyTableName.equals(tableName.getHistoryTableName())) {
@@ -80,6 +80,31 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Rate at which janitor tasks are scheduled")
     public TimeSpan getJanitorRunningRate();
 
+    @Config("org.killbill.payment.janitor.threads.nb")
+    @Default("1")
+    @Description("Number of threads processing the janitor items")
+    public int getJanitorThreadNb();
+
+    @Config("org.killbill.payment.janitor.batch.size")
+    @Default("100")
+    @Description("Number of items fetched at a time by each janitor task")
+    public int getJanitorBatchSize();
+
+    @Config("org.killbill.payment.janitor.plugin.threads.nb")
+    @Default("5")
+    @Description("Maximum number of concurrent janitor calls to a given payment plugin")
+    public int getJanitorPluginThreadNb();
+
+    @Config("org.killbill.payment.janitor.shards.nb")
+    @Default("1")
+    @Description("Number of nodes sharing the janitor work (items are sharded by account)")
+    public int getJanitorShardNb();
+
+    @Config("org.killbill.payment.janitor.shard.index")
+    @Default("0")
+    @Description("Shard handled by the janitor of this node (between 0 and the number of shards - 1)")
+    public int getJanitorShardIndex();
+
     @Config("org.killbill.payment.invoice.plugin")
     @Default("")
     @Description("Default payment control plugin names")
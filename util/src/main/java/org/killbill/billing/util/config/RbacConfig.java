@@ -27,4 +27,9 @@ public interface RbacConfig extends KillbillConfig {
     @Default("1h")
     @Description("System-wide default time that any session may remain idle before expiring")
     public TimeSpan getGlobalSessionTimeout();
+
+    @Config("org.killbill.rbac.session.lastAccessTime.flushInterval")
+    @Default("5s")
+    @Description("Interval at which updates of the session last access time are written to the database (0s to write them synchronously)")
+    public TimeSpan getSessionLastAccessTimeFlushInterval();
 }
@@ -71,6 +71,7 @@ public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe
     @SqlQuery
     public Iterable<RecordIdIdMappings> getHistoryRecordIdIdMappingsForTablesWithoutAccountRecordId(@Define("tableName") String tableName,
                                                                                                     @Define("historyTableName") String historyTableName,
+                                                                                                    @Bind("auditTableName") String auditTableName,
                                                                                                     @BindBean final InternalTenantContext context);
 
     @SqlQuery
@@ -18,7 +18,18 @@ package org.killbill.billing.util.email;
 
 import java.io.IOException;
 import java.util.List;
-
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import javax.mail.Authenticator;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.mail.DefaultAuthenticator;
 import org.apache.commons.mail.Email;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.HtmlEmail;
@@ -30,14 +41,25 @@ import org.killbill.billing.ErrorCode;
 
 import com.google.inject.Inject;
 
+/**
+ * Sends the emails over a small pool of SMTP connections: connections are kept open and reused across emails
+ * (instead of a new connection, handshake and authentication per email), and at most
+ * org.killbill.mail.smtp.connectionPoolSize of them are opened at the same time.
+ */
 public class DefaultEmailSender implements EmailSender {
 
     private final Logger log = LoggerFactory.getLogger(EmailSender.class);
     private final EmailConfig config;
+    private final BlockingQueue<Transport> idleTransports;
+    private final Semaphore transportPermits;
+
+    private volatile Session session;
 
     @Inject
     public DefaultEmailSender(final EmailConfig emailConfig) {
         this.config = emailConfig;
+        this.idleTransports = new LinkedBlockingQueue<Transport>(emailConfig.getSmtpConnectionPoolSize());
+        this.transportPermits = new Semaphore(emailConfig.getSmtpConnectionPoolSize());
     }
 
     @Override
@@ -65,12 +87,9 @@ public class DefaultEmailSender implements EmailSender {
     }
 
     private void sendEmail(final List<String> to, final List<String> cc, final String subject, final Email email) throws EmailApiException {
+        final MimeMessage message;
         try {
-            email.setSmtpPort(config.getSmtpPort());
-            if (config.useSmtpAuth()) {
-                email.setAuthentication(config.getSmtpUserName(), config.getSmtpPassword());
-            }
-            email.setHostName(config.getSmtpServerName());
+            email.setMailSession(getSession());
             email.setFrom(config.getDefaultFrom());
 
             email.setSubject(subject);
@@ -87,12 +106,108 @@ public class DefaultEmailSender implements EmailSender {
                 }
             }
 
-            email.setSSL(config.useSSL());
-
-            log.info("Sending email to {}, cc {}, subject {}", new Object[]{to, cc, subject});
-            email.send();
+            email.buildMimeMessage();
+            message = email.getMimeMessage();
+            message.saveChanges();
         } catch (EmailException ee) {
             throw new EmailApiException(ee, ErrorCode.EMAIL_SENDING_FAILED);
+        } catch (MessagingException me) {
+            throw new EmailApiException(me, ErrorCode.EMAIL_SENDING_FAILED);
+        }
+
+        log.info("Sending email to {}, cc {}, subject {}", new Object[]{to, cc, subject});
+        sendMimeMessage(message);
+    }
+
+    private void sendMimeMessage(final MimeMessage message) throws EmailApiException {
+        try {
+            transportPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmailApiException(e, ErrorCode.EMAIL_SENDING_FAILED);
         }
+
+        Transport transport = null;
+        try {
+            transport = borrowTransport();
+            transport.sendMessage(message, message.getAllRecipients());
+
+            // Only healthy connections are given back to the pool
+            idleTransports.offer(transport);
+            transport = null;
+        } catch (MessagingException e) {
+            throw new EmailApiException(e, ErrorCode.EMAIL_SENDING_FAILED);
+        } finally {
+            if (transport != null) {
+                closeQuietly(transport);
+            }
+            transportPermits.release();
+        }
+    }
+
+    private Transport borrowTransport() throws MessagingException {
+        Transport transport = idleTransports.poll();
+        // The MTA may have closed idle connections in the meantime (isConnected checks it with a NOOP)
+        while (transport != null && !transport.isConnected()) {
+            closeQuietly(transport);
+            transport = idleTransports.poll();
+        }
+
+        if (transport == null) {
+            transport = getSession().getTransport("smtp");
+            transport.connect();
+        }
+        return transport;
+    }
+
+    private void closeQuietly(final Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Failed to close SMTP connection", e);
+        }
+    }
+
+    // Built lazily, as the MTA settings are only required when sending emails
+    private Session getSession() throws EmailApiException {
+        if (session == null) {
+            synchronized (this) {
+                if (session == null) {
+                    session = createSession();
+                }
+            }
+        }
+        return session;
+    }
+
+    // Same settings as commons-email uses when it builds its own session
+    private Session createSession() throws EmailApiException {
+        if (config.getSmtpServerName() == null) {
+            throw new EmailApiException(ErrorCode.EMAIL_SENDING_FAILED);
+        }
+
+        final String port = String.valueOf(config.getSmtpPort());
+        final String timeout = String.valueOf(config.getSmtpTimeout().getMillis());
+
+        final Properties properties = new Properties();
+        properties.setProperty("mail.transport.protocol", "smtp");
+        properties.setProperty("mail.smtp.host", config.getSmtpServerName());
+        properties.setProperty("mail.smtp.port", port);
+        properties.setProperty("mail.smtp.connectiontimeout", timeout);
+        properties.setProperty("mail.smtp.timeout", timeout);
+
+        Authenticator authenticator = null;
+        if (config.useSmtpAuth()) {
+            properties.setProperty("mail.smtp.auth", "true");
+            authenticator = new DefaultAuthenticator(config.getSmtpUserName(), config.getSmtpPassword());
+        }
+
+        if (config.useSSL()) {
+            properties.setProperty("mail.smtp.socketFactory.port", port);
+            properties.setProperty("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+            properties.setProperty("mail.smtp.socketFactory.fallback", "false");
+        }
+
+        return Session.getInstance(properties, authenticator);
     }
 }
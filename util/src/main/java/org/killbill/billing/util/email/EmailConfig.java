@@ -20,6 +20,7 @@ import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.DefaultNull;
 import org.skife.config.Description;
+import org.skife.config.TimeSpan;
 
 import org.killbill.billing.util.config.KillbillConfig;
 
@@ -50,6 +51,16 @@ public interface EmailConfig extends KillbillConfig {
     @Description("Password to use to authenticate against the MTA")
     public String getSmtpPassword();
 
+    @Config("org.killbill.mail.smtp.connectionPoolSize")
+    @Default("5")
+    @Description("Maximum number of connections to the MTA, kept open and reused across emails")
+    public int getSmtpConnectionPoolSize();
+
+    @Config("org.killbill.mail.smtp.timeout")
+    @Default("30s")
+    @Description("Connection and read timeout against the MTA")
+    public TimeSpan getSmtpTimeout();
+
     @Config("org.killbill.mail.from")
     @Default("support@example.com")
     @Description("Default From: field for email notifications")
@@ -33,8 +33,14 @@ public class EmailModule extends KillBillModule {
         bind(EmailConfig.class).toInstance(config);
     }
 
+    protected void installEmailSender() {
+        // Shared, to reuse the SMTP connections
+        bind(EmailSender.class).to(DefaultEmailSender.class).asEagerSingleton();
+    }
+
     @Override
     protected void configure() {
         installEmailConfig();
+        installEmailSender();
     }
 }
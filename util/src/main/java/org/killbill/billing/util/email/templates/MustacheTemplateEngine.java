@@ -17,15 +17,46 @@
 package org.killbill.billing.util.email.templates;
 
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.samskivert.mustache.Mustache;
 import com.samskivert.mustache.Template;
 
 public class MustacheTemplateEngine implements TemplateEngine {
 
+    // Bound the memory used, templates are uploaded per tenant and locale
+    private static final int MAX_COMPILED_TEMPLATES = 1000;
+
+    // Compiled templates are immutable and thread-safe: cache them by template text (a modified template is a new entry)
+    private final Cache<String, Template> compiledTemplates = CacheBuilder.newBuilder()
+                                                                          .maximumSize(MAX_COMPILED_TEMPLATES)
+                                                                          .build();
+
     @Override
     public String executeTemplateText(final String templateText, final Map<String, Object> data) {
-        final Template template = Mustache.compiler().compile(templateText);
-        return template.execute(data);
+        return getCompiledTemplate(templateText).execute(data);
+    }
+
+    @VisibleForTesting
+    Template getCompiledTemplate(final String templateText) {
+        try {
+            // Concurrent callers for the same text wait for a single compilation
+            return compiledTemplates.get(templateText, new Callable<Template>() {
+                @Override
+                public Template call() {
+                    return Mustache.compiler().compile(templateText);
+                }
+            });
+        } catch (final UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (final ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
     }
 }
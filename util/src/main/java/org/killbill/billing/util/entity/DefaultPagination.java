@@ -31,6 +31,8 @@ public class DefaultPagination<T> implements Pagination<T> {
     private final Long limit;
     private final Long totalNbRecords;
     private final Long maxNbRecords;
+    // Only used in seek mode (see SeekPagination), where it cannot be derived from the current offset
+    private final Long nextSeekOffset;
     private final Iterator<T> delegateIterator;
 
     // Builder when the streaming API can't be used (should only be used for tests)
@@ -51,7 +53,8 @@ public class DefaultPagination<T> implements Pagination<T> {
 
     // Constructor for DAO -> API bridge
     public DefaultPagination(final Pagination original, final Long limit, final Iterator<T> delegate) {
-        this(original.getCurrentOffset(), limit, original.getTotalNbRecords(), original.getMaxNbRecords(), delegate);
+        this(original.getCurrentOffset(), limit, original.getTotalNbRecords(), original.getMaxNbRecords(),
+             SeekPagination.isSeekOffset(original.getCurrentOffset()) ? original.getNextOffset() : null, delegate);
     }
 
     // Constructor for DAO getAll calls
@@ -62,10 +65,17 @@ public class DefaultPagination<T> implements Pagination<T> {
     public DefaultPagination(final Long currentOffset, final Long limit,
                              @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
                              final Iterator<T> delegateIterator) {
+        this(currentOffset, limit, totalNbRecords, maxNbRecords, null, delegateIterator);
+    }
+
+    public DefaultPagination(final Long currentOffset, final Long limit,
+                             @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
+                             @Nullable final Long nextSeekOffset, final Iterator<T> delegateIterator) {
         this.currentOffset = currentOffset;
         this.limit = limit;
         this.totalNbRecords = totalNbRecords;
         this.maxNbRecords = maxNbRecords;
+        this.nextSeekOffset = nextSeekOffset;
         this.delegateIterator = delegateIterator;
     }
 
@@ -81,6 +91,11 @@ public class DefaultPagination<T> implements Pagination<T> {
 
     @Override
     public Long getNextOffset() {
+        if (SeekPagination.isSeekOffset(currentOffset)) {
+            // Null when there are no more results
+            return nextSeekOffset;
+        }
+
         final long candidate = currentOffset + limit;
         if (totalNbRecords != null && candidate >= totalNbRecords) {
             // No more results
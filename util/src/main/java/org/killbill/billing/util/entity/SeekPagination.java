@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Seek (keyset) pagination: instead of skipping offset rows, pages are fetched with record_id > :lastRecordId,
+ * so the cost of a page doesn't depend on its depth. No count is performed in that mode.
+ * <p/>
+ * The APIs only know about offsets, so the cursor (the record id of the last record of the previous page) travels as
+ * a negative offset. Clients only ever see an opaque token, see toToken and fromToken.
+ */
+public final class SeekPagination {
+
+    // Cursor of the first page
+    public static final Long FIRST_PAGE_OFFSET = toSeekOffset(0L);
+
+    private SeekPagination() {}
+
+    public static boolean isSeekOffset(@Nullable final Long offset) {
+        return offset != null && offset < 0;
+    }
+
+    public static Long toSeekOffset(final Long lastRecordId) {
+        return -lastRecordId - 1;
+    }
+
+    /**
+     * @param offset the offset, as passed to the APIs
+     * @return the record id to start after (0 for regular offsets)
+     */
+    public static Long getLastRecordId(final Long offset) {
+        return isSeekOffset(offset) ? -offset - 1 : 0L;
+    }
+
+    /**
+     * @param offset the offset, as passed to the APIs
+     * @return the offset to use in the SQL query (0 for seek offsets)
+     */
+    public static Long getSqlOffset(final Long offset) {
+        return isSeekOffset(offset) ? 0L : offset;
+    }
+
+    public static String toToken(final Long seekOffset) {
+        return BaseEncoding.base64Url().omitPadding().encode(String.valueOf(getLastRecordId(seekOffset)).getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * @param token the token returned by a previous call (an empty token requests the first page)
+     * @return the matching seek offset
+     * @throws IllegalArgumentException if the token is invalid
+     */
+    public static Long fromToken(final String token) {
+        if (token.isEmpty()) {
+            return FIRST_PAGE_OFFSET;
+        }
+
+        final Long lastRecordId;
+        try {
+            lastRecordId = Long.valueOf(new String(BaseEncoding.base64Url().omitPadding().decode(token), Charsets.UTF_8));
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid pagination token " + token);
+        }
+        if (lastRecordId < 0) {
+            throw new IllegalArgumentException("Invalid pagination token " + token);
+        }
+        return toSeekOffset(lastRecordId);
+    }
+}
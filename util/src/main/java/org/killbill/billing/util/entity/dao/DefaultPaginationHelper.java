@@ -16,8 +16,16 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +35,8 @@ import org.killbill.billing.util.customfield.ShouldntHappenException;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
+import org.killbill.commons.profiling.Profiling;
+import org.killbill.commons.profiling.ProfilingData;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicates;
@@ -77,6 +87,151 @@ public class DefaultPaginationHelper {
         return new DefaultPagination<E>(offset, limit, totalNbRecords, maxNbRecords, allResults.iterator());
     }
 
+    /**
+     * Same as above, except that the plugins are searched concurrently, using the specified executor.
+     * <p/>
+     * Each plugin is first queried as if it was the first one searched (i.e. with the requested offset and limit), so the
+     * total latency is the one of the slowest plugin instead of the sum. The results are then merged in the plugins order:
+     * only when a plugin needs to start at 0 (previous plugins yielded results and the offset isn't 0) is a follow-up
+     * query issued for it, to preserve the union semantics of the sequential search.
+     * <p/>
+     * Plugins which fail or don't answer within the timeout are skipped: the results are partial in that case.
+     */
+    public static <E extends Entity, T extends BillingExceptionBase> Pagination<E> getEntityPaginationFromPlugins(final Iterable<String> plugins,
+                                                                                                                  final Long offset,
+                                                                                                                  final Long limit,
+                                                                                                                  final ExecutorService executor,
+                                                                                                                  final long timeout,
+                                                                                                                  final TimeUnit timeUnit,
+                                                                                                                  final EntityPaginationBuilder<E, T> entityPaginationBuilder) {
+        final long deadlineNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        final Map<String, Future<PluginPage<E>>> futures = new LinkedHashMap<String, Future<PluginPage<E>>>();
+        for (final String pluginName : plugins) {
+            futures.put(pluginName, executor.submit(new PluginPageCallable<E, T>(entityPaginationBuilder, offset, limit, pluginName)));
+        }
+
+        final List<E> allResults = new LinkedList<E>();
+        Long totalNbRecords = 0L;
+        Long maxNbRecords = 0L;
+
+        boolean firstSearch = true;
+        for (final String pluginName : futures.keySet()) {
+            final PluginPage<E> page = getPluginPage(pluginName, futures.get(pluginName), deadlineNanos);
+            if (page == null) {
+                // Non-fatal, continue with the other plugins
+                continue;
+            }
+
+            if (allResults.size() < limit) {
+                if (firstSearch || offset == 0L) {
+                    // The page is what the sequential search would have returned
+                    allResults.addAll(page.getRecords().subList(0, (int) Math.min(page.getRecords().size(), limit - allResults.size())));
+                } else {
+                    // Previous plugins yielded results, this one needs to start at 0
+                    final Future<PluginPage<E>> future = executor.submit(new PluginPageCallable<E, T>(entityPaginationBuilder, 0L, limit - allResults.size(), pluginName));
+                    final PluginPage<E> firstPage = getPluginPage(pluginName, future, deadlineNanos);
+                    if (firstPage != null) {
+                        allResults.addAll(firstPage.getRecords());
+                    }
+                }
+            }
+            // Make sure not to start at 0 for subsequent plugins if previous ones didn't yield any result
+            firstSearch = allResults.isEmpty();
+            totalNbRecords += page.getTotalNbRecords();
+            maxNbRecords += page.getMaxNbRecords();
+        }
+
+        return new DefaultPagination<E>(offset, limit, totalNbRecords, maxNbRecords, allResults.iterator());
+    }
+
+    private static <E extends Entity> PluginPage<E> getPluginPage(final String pluginName, final Future<PluginPage<E>> future, final long deadlineNanos) {
+        try {
+            final PluginPage<E> page = future.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+            // Transfer state from dispatch thread into current one
+            final ProfilingData currentThreadProfilingData = Profiling.getPerThreadProfilingData();
+            if (currentThreadProfilingData != null && page.getProfilingData() != null) {
+                currentThreadProfilingData.merge(page.getProfilingData());
+            }
+            return page;
+        } catch (final TimeoutException e) {
+            log.warn("Timeout while searching plugin " + pluginName);
+            future.cancel(true);
+            return null;
+        } catch (final InterruptedException e) {
+            log.warn("Interrupted while searching plugin " + pluginName);
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof BillingExceptionBase) {
+                log.warn("Error while searching plugin " + pluginName, e.getCause());
+                return null;
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    private static final class PluginPageCallable<E extends Entity, T extends BillingExceptionBase> implements Callable<PluginPage<E>> {
+
+        private final EntityPaginationBuilder<E, T> entityPaginationBuilder;
+        private final Long offset;
+        private final Long limit;
+        private final String pluginName;
+
+        private PluginPageCallable(final EntityPaginationBuilder<E, T> entityPaginationBuilder, final Long offset, final Long limit, final String pluginName) {
+            this.entityPaginationBuilder = entityPaginationBuilder;
+            this.offset = offset;
+            this.limit = limit;
+            this.pluginName = pluginName;
+        }
+
+        @Override
+        public PluginPage<E> call() throws T {
+            final Pagination<E> pages = entityPaginationBuilder.build(offset, limit, pluginName);
+            // Required to close database connections (in the thread which opened them)
+            final List<E> records = ImmutableList.<E>copyOf(pages);
+            return new PluginPage<E>(records, pages.getTotalNbRecords(), pages.getMaxNbRecords(), Profiling.getPerThreadProfilingData());
+        }
+    }
+
+    private static final class PluginPage<E extends Entity> {
+
+        private final List<E> records;
+        private final Long totalNbRecords;
+        private final Long maxNbRecords;
+        private final ProfilingData profilingData;
+
+        private PluginPage(final List<E> records, final Long totalNbRecords, final Long maxNbRecords, final ProfilingData profilingData) {
+            this.records = records;
+            this.totalNbRecords = totalNbRecords;
+            this.maxNbRecords = maxNbRecords;
+            this.profilingData = profilingData;
+        }
+
+        public List<E> getRecords() {
+            return records;
+        }
+
+        public Long getTotalNbRecords() {
+            return totalNbRecords;
+        }
+
+        public Long getMaxNbRecords() {
+            return maxNbRecords;
+        }
+
+        public ProfilingData getProfilingData() {
+            return profilingData;
+        }
+    }
+
     public abstract static class SourcePaginationBuilder<O, T extends BillingExceptionBase> {
 
         public abstract Pagination<O> build() throws T;
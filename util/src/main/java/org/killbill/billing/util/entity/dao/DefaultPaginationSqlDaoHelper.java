@@ -17,11 +17,15 @@
 package org.killbill.billing.util.entity.dao;
 
 import java.util.Iterator;
+import java.util.List;
 
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
+import org.killbill.billing.util.entity.SeekPagination;
+
+import com.google.common.collect.ImmutableList;
 
 public class DefaultPaginationSqlDaoHelper {
 
@@ -36,6 +40,10 @@ public class DefaultPaginationSqlDaoHelper {
                                                                                                                      final Long offset,
                                                                                                                      final Long limit,
                                                                                                                      final InternalTenantContext context) {
+        if (SeekPagination.isSeekOffset(offset)) {
+            return getSeekPagination(sqlDaoClazz, paginationIteratorBuilder, offset, limit, context);
+        }
+
         // Note: the connection will be busy as we stream the results out: hence we cannot use
         // SQL_CALC_FOUND_ROWS / FOUND_ROWS on the actual query.
         // We still need to know the actual number of results, mainly for the UI so that it knows if it needs to fetch
@@ -52,15 +60,42 @@ public class DefaultPaginationSqlDaoHelper {
         // Since we want to stream the results out, we don't want to auto-commit when this method returns.
         final EntitySqlDao<M, E> sqlDao = transactionalSqlDao.onDemandForStreamingResults(sqlDaoClazz);
         final Long totalCount = sqlDao.getCount(context);
-        final Iterator<M> results = paginationIteratorBuilder.build((S) sqlDao, limit, context);
+        final Iterator<M> results = paginationIteratorBuilder.build((S) sqlDao, offset, limit, SeekPagination.getLastRecordId(offset), context);
 
         return new DefaultPagination<M>(offset, limit, count, totalCount, results);
     }
 
+    private <E extends Entity, M extends EntityModelDao<E>, S extends EntitySqlDao<M, E>> Pagination<M> getSeekPagination(final Class<? extends EntitySqlDao<M, E>> sqlDaoClazz,
+                                                                                                                           final PaginationIteratorBuilder<M, E, S> paginationIteratorBuilder,
+                                                                                                                           final Long offset,
+                                                                                                                           final Long limit,
+                                                                                                                           final InternalTenantContext context) {
+        // In seek mode, we skip the counts (their cost grows with the table). The page is bounded by the limit, so we fetch
+        // it eagerly instead of streaming it: we need its last record id to build the cursor of the next page.
+        final List<M> results = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<M>>() {
+            @Override
+            public List<M> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final EntitySqlDao<M, E> sqlDao = entitySqlDaoWrapperFactory.become(sqlDaoClazz);
+                return ImmutableList.<M>copyOf(paginationIteratorBuilder.build((S) sqlDao, SeekPagination.getSqlOffset(offset), limit, SeekPagination.getLastRecordId(offset), context));
+            }
+        });
+
+        final Long nextOffset;
+        if (results.isEmpty() || results.size() < limit) {
+            // No more results
+            nextOffset = null;
+        } else {
+            nextOffset = SeekPagination.toSeekOffset(results.get(results.size() - 1).getRecordId());
+        }
+
+        return new DefaultPagination<M>(offset, limit, null, null, nextOffset, results.iterator());
+    }
+
     public abstract static class PaginationIteratorBuilder<M extends EntityModelDao<E>, E extends Entity, S extends EntitySqlDao<M, E>> {
 
         public abstract Long getCount(final S sqlDao, final InternalTenantContext context);
 
-        public abstract Iterator<M> build(final S sqlDao, final Long limit, final InternalTenantContext context);
+        // The results must be ordered by record id and start after lastRecordId (0 unless in seek mode, see SeekPagination)
+        public abstract Iterator<M> build(final S sqlDao, final Long offset, final Long limit, final Long lastRecordId, final InternalTenantContext context);
     }
 }
@@ -141,8 +141,8 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
                                                   }
 
                                                   @Override
-                                                  public Iterator<M> build(final EntitySqlDao<M, E> sqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return sqlDao.get(offset, limit, getNaturalOrderingColumns(), context);
+                                                  public Iterator<M> build(final EntitySqlDao<M, E> sqlDao, final Long offset, final Long limit, final Long lastRecordId, final InternalTenantContext context) {
+                                                      return sqlDao.get(offset, limit, lastRecordId, getNaturalOrderingColumns(), context);
                                                   }
                                               },
                                               offset,
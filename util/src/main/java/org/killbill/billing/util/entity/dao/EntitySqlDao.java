@@ -18,6 +18,7 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -31,9 +32,11 @@ import org.killbill.billing.util.cache.CachableKey;
 import org.killbill.billing.util.dao.AuditSqlDao;
 import org.killbill.billing.util.dao.HistorySqlDao;
 import org.killbill.billing.util.entity.Entity;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 import org.killbill.commons.jdbi.statement.SmartFetchSize;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.customizers.Define;
@@ -48,10 +51,19 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
     public void create(@BindBean final M entity,
                        @BindBean final InternalCallContext context) throws EntityPersistenceException;
 
+    @SqlBatch(transactional = false)
+    @Audited(ChangeType.INSERT)
+    public void batchCreate(@BindBean final Iterable<M> entities,
+                            @BindBean final InternalCallContext context) throws EntityPersistenceException;
+
     @SqlQuery
     public M getById(@Bind("id") final String id,
                      @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<M> getByIds(@UUIDCollectionBinder final Collection<String> ids,
+                            @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public M getByRecordId(@Bind("recordId") final Long recordId,
                            @BindBean final InternalTenantContext context);
@@ -73,6 +85,7 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
                               @Bind("likeSearchKey") final String likeSearchKey,
                               @Bind("offset") final Long offset,
                               @Bind("rowCount") final Long rowCount,
+                              @Bind("lastRecordId") final Long lastRecordId,
                               @BindBean final InternalTenantContext context);
 
     @SqlQuery
@@ -88,6 +101,7 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
     @SmartFetchSize(shouldStream = true)
     public Iterator<M> get(@Bind("offset") final Long offset,
                            @Bind("rowCount") final Long rowCount,
+                           @Bind("lastRecordId") final Long lastRecordId,
                            @Define("orderBy") final String orderBy,
                            @BindBean final InternalTenantContext context);
 
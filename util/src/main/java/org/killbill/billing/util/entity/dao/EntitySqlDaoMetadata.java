@@ -0,0 +1,245 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.cache.Cachable;
+import org.killbill.billing.util.cache.CachableKey;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+
+/**
+ * Reflection metadata for an EntitySqlDao interface (annotations, position of the interesting arguments, ObjectType, ...).
+ * <p/>
+ * It is computed once per class (the first time the class is wrapped by EntitySqlDaoWrapperFactory) and then shared
+ * across all EntitySqlDaoWrapperInvocationHandler instances, to keep reflection out of the per-call path.
+ */
+class EntitySqlDaoMetadata {
+
+    private static final ConcurrentMap<Class<?>, EntitySqlDaoMetadata> METADATA_PER_CLASS = new ConcurrentHashMap<Class<?>, EntitySqlDaoMetadata>();
+
+    private final Class<?> sqlDaoClass;
+    private final Map<Method, MethodMetadata> methodsMetadata;
+
+    private volatile boolean objectTypeComputed;
+    private volatile ObjectType objectType;
+
+    public static EntitySqlDaoMetadata forSqlDaoClass(final Class<?> sqlDaoClass) {
+        final EntitySqlDaoMetadata existingMetadata = METADATA_PER_CLASS.get(sqlDaoClass);
+        if (existingMetadata != null) {
+            return existingMetadata;
+        }
+
+        final EntitySqlDaoMetadata metadata = new EntitySqlDaoMetadata(sqlDaoClass);
+        final EntitySqlDaoMetadata concurrentMetadata = METADATA_PER_CLASS.putIfAbsent(sqlDaoClass, metadata);
+        return concurrentMetadata != null ? concurrentMetadata : metadata;
+    }
+
+    private EntitySqlDaoMetadata(final Class<?> sqlDaoClass) {
+        this.sqlDaoClass = sqlDaoClass;
+
+        final ImmutableMap.Builder<Method, MethodMetadata> methodsMetadataBuilder = ImmutableMap.<Method, MethodMetadata>builder();
+        for (final Method method : sqlDaoClass.getMethods()) {
+            methodsMetadataBuilder.put(method, new MethodMetadata(sqlDaoClass, method));
+        }
+        this.methodsMetadata = methodsMetadataBuilder.build();
+    }
+
+    public MethodMetadata getMethodMetadata(final Method method) {
+        final MethodMetadata methodMetadata = methodsMetadata.get(method);
+        // Shouldn't happen, all methods invoked through the proxy are declared on the interface
+        return methodMetadata != null ? methodMetadata : new MethodMetadata(sqlDaoClass, method);
+    }
+
+    /**
+     * Extract object from sqlDaoClass by looking at first parameter type (EntityModelDao) and
+     * constructing an empty object so we can call the getObjectType method on it.
+     * <p/>
+     * This is lazily computed (only @Cachable methods need it), but only once.
+     *
+     * @return the objectType associated to that class
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     * @throws ClassNotFoundException
+     */
+    public ObjectType getObjectType() throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        if (!objectTypeComputed) {
+            objectType = computeObjectType();
+            objectTypeComputed = true;
+        }
+        return objectType;
+    }
+
+    private ObjectType computeObjectType() throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        int foundIndexForEntitySqlDao = -1;
+        // If the sqlDaoClass implements multiple interfaces, first figure out which one is the EntitySqlDao
+        for (int i = 0; i < sqlDaoClass.getGenericInterfaces().length; i++) {
+            final Type type = sqlDaoClass.getGenericInterfaces()[0];
+            if (!(type instanceof ParameterizedType)) {
+                // AuditSqlDao for example won't extend EntitySqlDao
+                return null;
+            }
+
+            if (EntitySqlDao.class.getName().equals(((Class) ((ParameterizedType) type).getRawType()).getName())) {
+                foundIndexForEntitySqlDao = i;
+                break;
+            }
+        }
+        // Find out from the parameters of the EntitySqlDao which one is the EntityModelDao, and extract his (sub)type to finally return the ObjectType
+        if (foundIndexForEntitySqlDao >= 0) {
+            final Type[] types = ((ParameterizedType) sqlDaoClass.getGenericInterfaces()[foundIndexForEntitySqlDao]).getActualTypeArguments();
+            int foundIndexForEntityModelDao = -1;
+            for (int i = 0; i < types.length; i++) {
+                final Class clz = ((Class) types[i]);
+                if (EntityModelDao.class.getName().equals(((Class) ((ParameterizedType) clz.getGenericInterfaces()[0]).getRawType()).getName())) {
+                    foundIndexForEntityModelDao = i;
+                    break;
+                }
+            }
+
+            if (foundIndexForEntityModelDao >= 0) {
+                final String modelClassName = ((Class) types[foundIndexForEntityModelDao]).getName();
+
+                final Class<? extends EntityModelDao<?>> clz = (Class<? extends EntityModelDao<?>>) Class.forName(modelClassName);
+
+                final EntityModelDao<?> modelDao = (EntityModelDao<?>) clz.newInstance();
+                return modelDao.getTableName().getObjectType();
+            }
+        }
+        return null;
+    }
+
+    static class MethodMetadata {
+
+        private final Audited auditedAnnotation;
+        private final Cachable cachableAnnotation;
+        private final Annotation[][] parameterAnnotations;
+        // Argument indexes of the @CachableKey parameters, ordered by key position
+        private final int[] cachableKeyArgumentIndexes;
+        private final int internalTenantContextArgumentIndex;
+        private final int internalCallContextArgumentIndex;
+        private final String profilingKey;
+        private final String rawProfilingKey;
+
+        private MethodMetadata(final Class<?> sqlDaoClass, final Method method) {
+            this.auditedAnnotation = method.getAnnotation(Audited.class);
+            this.cachableAnnotation = method.getAnnotation(Cachable.class);
+
+            this.parameterAnnotations = method.getParameterAnnotations();
+
+            final SortedMap<Integer, Integer> cachableKeyArgumentIndexesByPosition = new TreeMap<Integer, Integer>();
+            for (int i = 0; i < parameterAnnotations.length; i++) {
+                for (final Annotation annotation : parameterAnnotations[i]) {
+                    if (CachableKey.class.equals(annotation.annotationType())) {
+                        // CachableKey position starts at 1
+                        cachableKeyArgumentIndexesByPosition.put(((CachableKey) annotation).value() - 1, i);
+                        break;
+                    }
+                }
+            }
+            this.cachableKeyArgumentIndexes = Ints.toArray(cachableKeyArgumentIndexesByPosition.values());
+
+            this.internalTenantContextArgumentIndex = findFirstArgumentIndexOfType(method, InternalTenantContext.class);
+            this.internalCallContextArgumentIndex = findFirstArgumentIndexOfType(method, InternalCallContext.class);
+
+            this.profilingKey = sqlDaoClass.getSimpleName() + ":" + method.getName();
+            this.rawProfilingKey = sqlDaoClass.getSimpleName() + " (raw):" + method.getName();
+        }
+
+        private static int findFirstArgumentIndexOfType(final Method method, final Class<?> type) {
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (type.isAssignableFrom(parameterTypes[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public Audited getAuditedAnnotation() {
+            return auditedAnnotation;
+        }
+
+        public Cachable getCachableAnnotation() {
+            return cachableAnnotation;
+        }
+
+        public Annotation[][] getParameterAnnotations() {
+            return parameterAnnotations;
+        }
+
+        public Object[] getCachableKeyPieces(final Object[] args) {
+            final Object[] keyPieces = new Object[cachableKeyArgumentIndexes.length];
+            for (int i = 0; i < cachableKeyArgumentIndexes.length; i++) {
+                keyPieces[i] = args[cachableKeyArgumentIndexes[i]];
+            }
+            return keyPieces;
+        }
+
+        public InternalTenantContext getInternalTenantContext(final Object[] args) {
+            if (internalTenantContextArgumentIndex >= 0 && args[internalTenantContextArgumentIndex] instanceof InternalTenantContext) {
+                return (InternalTenantContext) args[internalTenantContextArgumentIndex];
+            }
+
+            // The declared type may be less specific than the actual one
+            return findFirstArgumentOfType(args, InternalTenantContext.class);
+        }
+
+        public InternalCallContext getInternalCallContext(final Object[] args) {
+            if (internalCallContextArgumentIndex >= 0 && args[internalCallContextArgumentIndex] instanceof InternalCallContext) {
+                return (InternalCallContext) args[internalCallContextArgumentIndex];
+            }
+
+            // The declared type may be less specific than the actual one
+            return findFirstArgumentOfType(args, InternalCallContext.class);
+        }
+
+        private static <T> T findFirstArgumentOfType(final Object[] args, final Class<T> type) {
+            if (args == null) {
+                return null;
+            }
+            for (final Object arg : args) {
+                if (type.isInstance(arg)) {
+                    return type.cast(arg);
+                }
+            }
+            return null;
+        }
+
+        public String getProfilingKey() {
+            return profilingKey;
+        }
+
+        public String getRawProfilingKey() {
+            return rawProfilingKey;
+        }
+    }
+}
@@ -21,25 +21,25 @@ package org.killbill.billing.util.entity.dao;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import javax.annotation.Nullable;
 
+import org.joda.time.DateTime;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.cache.Cachable;
 import org.killbill.billing.util.cache.Cachable.CacheType;
-import org.killbill.billing.util.cache.CachableKey;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
@@ -47,8 +47,10 @@ import org.killbill.billing.util.dao.EntityAudit;
 import org.killbill.billing.util.dao.EntityHistoryModelDao;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.dao.NonEntitySqlDao;
+import org.killbill.billing.util.dao.RecordIdIdMappings;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Entity;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoMetadata.MethodMetadata;
 import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 import org.killbill.clock.Clock;
 import org.killbill.commons.profiling.Profiling;
@@ -65,11 +67,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
 
 /**
  * Wraps an instance of EntitySqlDao, performing extra work around each method (Sql query)
@@ -83,6 +82,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
     private final Logger logger = LoggerFactory.getLogger(EntitySqlDaoWrapperInvocationHandler.class);
 
     private final Class<S> sqlDaoClass;
+    private final EntitySqlDaoMetadata sqlDaoMetadata;
     private final S sqlDao;
     private final Handle handle;
 
@@ -92,6 +92,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
     private final Profiling prof;
 
     public EntitySqlDaoWrapperInvocationHandler(final Class<S> sqlDaoClass,
+                                                final EntitySqlDaoMetadata sqlDaoMetadata,
                                                 final S sqlDao,
                                                 final Handle handle,
                                                 final Clock clock,
@@ -99,6 +100,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                                                 @Nullable final CacheControllerDispatcher cacheControllerDispatcher,
                                                 @Nullable final NonEntityDao nonEntityDao) {
         this.sqlDaoClass = sqlDaoClass;
+        this.sqlDaoMetadata = sqlDaoMetadata;
         this.sqlDao = sqlDao;
         this.handle = handle;
         this.clock = clock;
@@ -109,11 +111,12 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
 
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final MethodMetadata methodMetadata = sqlDaoMetadata.getMethodMetadata(method);
         try {
-            return prof.executeWithProfiling(ProfilingFeatureType.DAO, sqlDaoClass.getSimpleName() + ":" + method.getName(), new WithProfilingCallback() {
+            return prof.executeWithProfiling(ProfilingFeatureType.DAO, methodMetadata.getProfilingKey(), new WithProfilingCallback() {
                 @Override
                 public Object execute() throws Throwable {
-                    return invokeSafely(proxy, method, args);
+                    return invokeSafely(methodMetadata, method, args);
                 }
             });
         } catch (Throwable t) {
@@ -181,23 +184,23 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         errorDuringTransaction(t, method, null);
     }
 
-    private Object invokeSafely(final Object proxy, final Method method, final Object[] args) throws Throwable {
+    private Object invokeSafely(final MethodMetadata methodMetadata, final Method method, final Object[] args) throws Throwable {
 
-        final Audited auditedAnnotation = method.getAnnotation(Audited.class);
-        final Cachable cachableAnnotation = method.getAnnotation(Cachable.class);
+        final Audited auditedAnnotation = methodMetadata.getAuditedAnnotation();
+        final Cachable cachableAnnotation = methodMetadata.getCachableAnnotation();
 
         // This can't be AUDIT'ed and CACHABLE'd at the same time as we only cache 'get'
         if (auditedAnnotation != null) {
-            return invokeWithAuditAndHistory(auditedAnnotation, method, args);
+            return invokeWithAuditAndHistory(auditedAnnotation, methodMetadata, method, args);
         } else if (cachableAnnotation != null && cacheControllerDispatcher != null) {
-            return invokeWithCaching(cachableAnnotation, method, args);
+            return invokeWithCaching(cachableAnnotation, methodMetadata, method, args);
         } else {
-            return invokeRaw(method, args);
+            return invokeRaw(methodMetadata, method, args);
         }
     }
 
-    private Object invokeRaw(final Method method, final Object[] args) throws Throwable {
-        return prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + " (raw):" + method.getName(), new WithProfilingCallback() {
+    private Object invokeRaw(final MethodMetadata methodMetadata, final Method method, final Object[] args) throws Throwable {
+        return prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, methodMetadata.getRawProfilingKey(), new WithProfilingCallback() {
             @Override
             public Object execute() throws Throwable {
                 Object result = method.invoke(sqlDao, args);
@@ -213,41 +216,22 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         });
     }
 
-    private Object invokeWithCaching(final Cachable cachableAnnotation, final Method method, final Object[] args)
+    private Object invokeWithCaching(final Cachable cachableAnnotation, final MethodMetadata methodMetadata, final Method method, final Object[] args)
             throws Throwable {
-        final ObjectType objectType = getObjectType();
+        final ObjectType objectType = sqlDaoMetadata.getObjectType();
         final CacheType cacheType = cachableAnnotation.value();
         final CacheController<Object, Object> cache = cacheControllerDispatcher.getCacheController(cacheType);
         Object result = null;
         if (cache != null) {
-            // Find all arguments marked with @CachableKey
-            final Map<Integer, Object> keyPieces = new LinkedHashMap<Integer, Object>();
-            final Annotation[][] annotations = method.getParameterAnnotations();
-            for (int i = 0; i < annotations.length; i++) {
-                for (int j = 0; j < annotations[i].length; j++) {
-                    final Annotation annotation = annotations[i][j];
-                    if (CachableKey.class.equals(annotation.annotationType())) {
-                        // CachableKey position starts at 1
-                        keyPieces.put(((CachableKey) annotation).value() - 1, args[i]);
-                        break;
-                    }
-                }
-            }
+            // Build the Cache key from all arguments marked with @CachableKey
+            final String cacheKey = buildCacheKey(methodMetadata.getCachableKeyPieces(args));
 
-            // Build the Cache key
-            final String cacheKey = buildCacheKey(keyPieces);
-
-            final InternalTenantContext internalTenantContext = (InternalTenantContext) Iterables.find(ImmutableList.copyOf(args), new Predicate<Object>() {
-                @Override
-                public boolean apply(final Object input) {
-                    return input instanceof InternalTenantContext;
-                }
-            }, null);
+            final InternalTenantContext internalTenantContext = methodMetadata.getInternalTenantContext(args);
             final CacheLoaderArgument cacheLoaderArgument = new CacheLoaderArgument(objectType, args, internalTenantContext);
             return cache.get(cacheKey, cacheLoaderArgument);
         }
         if (result == null) {
-            result = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + "(raw) :" + method.getName(), new WithProfilingCallback() {
+            result = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, methodMetadata.getRawProfilingKey(), new WithProfilingCallback() {
                 @Override
                 public Object execute() throws Throwable {
                     return method.invoke(sqlDao, args);
@@ -257,56 +241,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return result;
     }
 
-    /**
-     * Extract object from sqlDaoClass by looking at first parameter type (EntityModelDao) and
-     * constructing an empty object so we can call the getObjectType method on it.
-     *
-     * @return the objectType associated to that handler
-     * @throws InstantiationException
-     * @throws IllegalAccessException
-     * @throws ClassNotFoundException
-     */
-    private ObjectType getObjectType() throws InstantiationException, IllegalAccessException, ClassNotFoundException {
-
-        int foundIndexForEntitySqlDao = -1;
-        // If the sqlDaoClass implements multiple interfaces, first figure out which one is the EntitySqlDao
-        for (int i = 0; i < sqlDaoClass.getGenericInterfaces().length; i++) {
-            final Type type = sqlDaoClass.getGenericInterfaces()[0];
-            if (!(type instanceof java.lang.reflect.ParameterizedType)) {
-                // AuditSqlDao for example won't extend EntitySqlDao
-                return null;
-            }
-
-            if (EntitySqlDao.class.getName().equals(((Class) ((java.lang.reflect.ParameterizedType) type).getRawType()).getName())) {
-                foundIndexForEntitySqlDao = i;
-                break;
-            }
-        }
-        // Find out from the parameters of the EntitySqlDao which one is the EntityModelDao, and extract his (sub)type to finally return the ObjectType
-        if (foundIndexForEntitySqlDao >= 0) {
-            final Type[] types = ((java.lang.reflect.ParameterizedType) sqlDaoClass.getGenericInterfaces()[foundIndexForEntitySqlDao]).getActualTypeArguments();
-            int foundIndexForEntityModelDao = -1;
-            for (int i = 0; i < types.length; i++) {
-                final Class clz = ((Class) types[i]);
-                if (EntityModelDao.class.getName().equals(((Class) ((java.lang.reflect.ParameterizedType) clz.getGenericInterfaces()[0]).getRawType()).getName())) {
-                    foundIndexForEntityModelDao = i;
-                    break;
-                }
-            }
-
-            if (foundIndexForEntityModelDao >= 0) {
-                final String modelClassName = ((Class) types[foundIndexForEntityModelDao]).getName();
-
-                final Class<? extends EntityModelDao<?>> clz = (Class<? extends EntityModelDao<?>>) Class.forName(modelClassName);
-
-                final EntityModelDao<?> modelDao = (EntityModelDao<?>) clz.newInstance();
-                return modelDao.getTableName().getObjectType();
-            }
-        }
-        return null;
-    }
-
-    private Object invokeWithAuditAndHistory(final Audited auditedAnnotation, final Method method, final Object[] args) throws Throwable {
+    private Object invokeWithAuditAndHistory(final Audited auditedAnnotation, final MethodMetadata methodMetadata, final Method method, final Object[] args) throws Throwable {
         InternalCallContext context = null;
         List<String> entityIds = null;
         final Map<String, M> entities = new HashMap<String, M>();
@@ -314,11 +249,21 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         if (auditedAnnotation != null) {
             // There will be some work required after the statement is executed,
             // get the id before in case the change is a delete
-            context = retrieveContextFromArguments(args);
-            entityIds = retrieveEntityIdsFromArguments(method, args);
-            for (final String entityId : entityIds) {
-                entities.put(entityId, sqlDao.getById(entityId, context));
-                entityRecordIds.put(entityId, sqlDao.getRecordId(entityId, context));
+            context = methodMetadata.getInternalCallContext(args);
+            entityIds = retrieveEntityIdsFromArguments(methodMetadata, args);
+            if (entityIds.size() > 1) {
+                // Batch call: retrieve all entities at once (nothing to retrieve for inserts)
+                if (!ChangeType.INSERT.equals(auditedAnnotation.value())) {
+                    for (final M entity : sqlDao.getByIds(entityIds, context)) {
+                        entities.put(entity.getId().toString(), entity);
+                        entityRecordIds.put(entity.getId().toString(), entity.getRecordId());
+                    }
+                }
+            } else {
+                for (final String entityId : entityIds) {
+                    entities.put(entityId, sqlDao.getById(entityId, context));
+                    entityRecordIds.put(entityId, sqlDao.getRecordId(entityId, context));
+                }
             }
         }
 
@@ -332,8 +277,12 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
 
         final ChangeType changeType = auditedAnnotation.value();
 
-        for (final String entityId : entityIds) {
-            updateHistoryAndAudit(entityId, entities, entityRecordIds, changeType, context);
+        if (entityIds.size() > 1) {
+            updateHistoryAndAuditInBatch(entityIds, entities, entityRecordIds, changeType, context);
+        } else {
+            for (final String entityId : entityIds) {
+                updateHistoryAndAudit(entityId, entities, entityRecordIds, changeType, context);
+            }
         }
         return obj;
     }
@@ -390,8 +339,52 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         });
     }
 
-    private List<String> retrieveEntityIdsFromArguments(final Method method, final Object[] args) {
-        final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+    private void updateHistoryAndAuditInBatch(final List<String> entityIds, final Map<String, M> entities, final Map<String, Long> entityRecordIds,
+                                              final ChangeType changeType, final InternalCallContext context) throws Throwable {
+
+        prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + " (history/audit batch) :", new WithProfilingCallback() {
+            @Override
+            public Object execute() {
+                // Make sure to re-hydrate the objects (especially needed for create calls), using a single query
+                final Map<String, M> reHydratedEntities = new HashMap<String, M>();
+                for (final M reHydratedEntity : sqlDao.getByIds(entityIds, context)) {
+                    reHydratedEntities.put(reHydratedEntity.getId().toString(), reHydratedEntity);
+                }
+
+                final List<M> entitiesToAudit = new ArrayList<M>(entityIds.size());
+                final List<Long> entitiesToAuditRecordIds = new ArrayList<Long>(entityIds.size());
+                for (final String entityId : entityIds) {
+                    final M reHydratedEntity = reHydratedEntities.get(entityId);
+                    entitiesToAudit.add(Objects.firstNonNull(reHydratedEntity, entities.get(entityId)));
+                    entitiesToAuditRecordIds.add(Objects.firstNonNull(reHydratedEntity != null ? reHydratedEntity.getRecordId() : null, entityRecordIds.get(entityId)));
+                }
+                final TableName tableName = entitiesToAudit.get(0).getTableName();
+
+                if (TableName.ACCOUNT.equals(tableName) && ChangeType.INSERT.equals(changeType)) {
+                    // Each audit entry requires its own context (see insertAudits)
+                    for (int i = 0; i < entitiesToAudit.size(); i++) {
+                        final Long historyRecordId = insertHistory(entitiesToAuditRecordIds.get(i), entitiesToAudit.get(i), changeType, context);
+                        insertAudits(tableName, entitiesToAuditRecordIds.get(i), historyRecordId, changeType, context);
+                    }
+                    return null;
+                }
+
+                // Note: audit entries point to the history record id
+                final List<Long> historyRecordIds;
+                if (tableName.getHistoryTableName() != null) {
+                    historyRecordIds = insertHistories(entitiesToAuditRecordIds, entitiesToAudit, changeType, context);
+                } else {
+                    historyRecordIds = entitiesToAuditRecordIds;
+                }
+
+                insertAudits(tableName, entitiesToAuditRecordIds, historyRecordIds, changeType, context);
+                return null;
+            }
+        });
+    }
+
+    private List<String> retrieveEntityIdsFromArguments(final MethodMetadata methodMetadata, final Object[] args) {
+        final Annotation[][] parameterAnnotations = methodMetadata.getParameterAnnotations();
         int i = -1;
         for (final Object arg : args) {
             i++;
@@ -437,16 +430,6 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return entityIds;
     }
 
-    private InternalCallContext retrieveContextFromArguments(final Object[] args) {
-        for (final Object arg : args) {
-            if (!(arg instanceof InternalCallContext)) {
-                continue;
-            }
-            return (InternalCallContext) arg;
-        }
-        return null;
-    }
-
     private Long insertHistory(final Long entityRecordId, final M entityModelDao, final ChangeType changeType, final InternalCallContext context) {
         final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(entityModelDao, entityRecordId, changeType, clock.getUTCNow());
 
@@ -458,6 +441,45 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return nonEntityDao.retrieveLastHistoryRecordIdFromTransaction(entityRecordId, entityModelDao.getHistoryTableName(), transactional);
     }
 
+    private List<Long> insertHistories(final List<Long> entityRecordIds, final List<M> entityModelDaos, final ChangeType changeType, final InternalCallContext context) {
+        final DateTime createdDate = clock.getUTCNow();
+        final List<EntityHistoryModelDao<M, E>> histories = new ArrayList<EntityHistoryModelDao<M, E>>(entityModelDaos.size());
+        final List<String> historyIds = new ArrayList<String>(entityModelDaos.size());
+        for (int i = 0; i < entityModelDaos.size(); i++) {
+            final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(entityModelDaos.get(i), entityRecordIds.get(i), changeType, createdDate);
+            histories.add(history);
+            historyIds.add(history.getId().toString());
+        }
+
+        sqlDao.addHistoriesFromTransaction(histories, context);
+
+        // Retrieve all generated history record ids at once
+        final Map<UUID, Long> historyRecordIdsPerHistoryId = new HashMap<UUID, Long>();
+        for (final RecordIdIdMappings mapping : sqlDao.getHistoryRecordIdIdMappingsForIds(historyIds, context)) {
+            historyRecordIdsPerHistoryId.put(mapping.getId(), mapping.getRecordId());
+        }
+
+        final List<Long> historyRecordIds = new ArrayList<Long>(histories.size());
+        for (final EntityHistoryModelDao<M, E> history : histories) {
+            historyRecordIds.add(historyRecordIdsPerHistoryId.get(history.getId()));
+        }
+        return historyRecordIds;
+    }
+
+    private void insertAudits(final TableName tableName, final List<Long> entityRecordIds, final List<Long> historyRecordIds, final ChangeType changeType, final InternalCallContext context) {
+        final TableName destinationTableName = Objects.firstNonNull(tableName.getHistoryTableName(), tableName);
+        final DateTime createdDate = clock.getUTCNow();
+        final List<EntityAudit> audits = new ArrayList<EntityAudit>(historyRecordIds.size());
+        for (final Long historyRecordId : historyRecordIds) {
+            audits.add(new EntityAudit(destinationTableName, historyRecordId, changeType, createdDate));
+        }
+        sqlDao.insertAuditsFromTransaction(audits, context);
+
+        for (final Long entityRecordId : entityRecordIds) {
+            invalidateAuditLogsCache(tableName, entityRecordId);
+        }
+    }
+
     private void insertAudits(final TableName tableName, final Long entityRecordId, final Long historyRecordId, final ChangeType changeType, final InternalCallContext contextMaybeWithoutAccountRecordId) {
         final TableName destinationTableName = Objects.firstNonNull(tableName.getHistoryTableName(), tableName);
         final EntityAudit audit = new EntityAudit(destinationTableName, historyRecordId, changeType, clock.getUTCNow());
@@ -471,32 +493,36 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         }
         sqlDao.insertAuditFromTransaction(audit, context);
 
+        invalidateAuditLogsCache(tableName, entityRecordId);
+    }
+
+    private void invalidateAuditLogsCache(final TableName tableName, final Long entityRecordId) {
         // We need to invalidate the caches. There is a small window of doom here where caches will be stale.
         // TODO Knowledge on how the key is constructed is also in AuditSqlDao
         if (tableName.getHistoryTableName() != null) {
             final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG_VIA_HISTORY);
             if (cacheController != null) {
-                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName.getHistoryTableName(), 1, tableName.getHistoryTableName(), 2, entityRecordId));
+                final String key = buildCacheKey(tableName.getHistoryTableName(), tableName.getHistoryTableName(), entityRecordId);
                 cacheController.remove(key);
             }
         } else {
             final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG);
             if (cacheController != null) {
-                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName, 1, entityRecordId));
+                final String key = buildCacheKey(tableName, entityRecordId);
                 cacheController.remove(key);
             }
         }
     }
 
-    private String buildCacheKey(final Map<Integer, Object> keyPieces) {
+    private String buildCacheKey(final Object... keyPieces) {
         final StringBuilder cacheKey = new StringBuilder();
-        for (int i = 0; i < keyPieces.size(); i++) {
+        for (int i = 0; i < keyPieces.length; i++) {
             // To normalize the arguments and avoid casing issues, we make all pieces of the key uppercase.
             // Since the database engine may be case insensitive and we use arguments of the SQL method call
             // to build the key, the key has to be case insensitive as well.
-            final String str = String.valueOf(keyPieces.get(i)).toUpperCase();
+            final String str = String.valueOf(keyPieces[i]).toUpperCase();
             cacheKey.append(str);
-            if (i < keyPieces.size() - 1) {
+            if (i < keyPieces.length - 1) {
                 cacheKey.append(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
             }
         }
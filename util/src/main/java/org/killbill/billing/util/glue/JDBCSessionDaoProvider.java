@@ -25,23 +25,26 @@ import org.skife.jdbi.v2.IDBI;
 
 import org.killbill.billing.util.config.RbacConfig;
 import org.killbill.billing.util.security.shiro.dao.JDBCSessionDao;
+import org.killbill.clock.Clock;
 
 public class JDBCSessionDaoProvider implements Provider<JDBCSessionDao> {
 
     private final SessionManager sessionManager;
     private final IDBI dbi;
     private final RbacConfig rbacConfig;
+    private final Clock clock;
 
     @Inject
-    public JDBCSessionDaoProvider(final IDBI dbi, final SessionManager sessionManager, final RbacConfig rbacConfig) {
+    public JDBCSessionDaoProvider(final IDBI dbi, final SessionManager sessionManager, final RbacConfig rbacConfig, final Clock clock) {
         this.sessionManager = sessionManager;
         this.dbi = dbi;
         this.rbacConfig = rbacConfig;
+        this.clock = clock;
     }
 
     @Override
     public JDBCSessionDao get() {
-        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi);
+        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi, clock, rbacConfig.getSessionLastAccessTimeFlushInterval().getMillis());
 
         if (sessionManager instanceof DefaultSessionManager) {
             final DefaultSessionManager defaultSessionManager = (DefaultSessionManager) sessionManager;
@@ -24,16 +24,19 @@ import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.mgt.SecurityManager;
 import org.killbill.billing.platform.api.LifecycleHandlerType;
 import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.security.shiro.dao.JDBCSessionDao;
 
 public class DefaultSecurityService implements SecurityService {
 
     public static final String SECURITY_SERVICE_NAME = "security-service";
 
     private final SecurityManager securityManager;
+    private final JDBCSessionDao jdbcSessionDao;
 
     @Inject
-    public DefaultSecurityService(final SecurityManager securityManager) {
+    public DefaultSecurityService(final SecurityManager securityManager, final JDBCSessionDao jdbcSessionDao) {
         this.securityManager = securityManager;
+        this.jdbcSessionDao = jdbcSessionDao;
     }
 
     @Override
@@ -49,5 +52,6 @@ public class DefaultSecurityService implements SecurityService {
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
     public void stop() {
         SecurityUtils.setSecurityManager(null);
+        jdbcSessionDao.stop();
     }
 }
@@ -18,11 +18,23 @@ package org.killbill.billing.util.security.shiro.dao;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.mgt.eis.CachingSessionDAO;
+import org.killbill.clock.Clock;
 import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.IDBI;
@@ -31,29 +43,102 @@ import org.skife.jdbi.v2.TransactionStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Shiro sessions stored in the sessions table.
+ * <p/>
+ * Shiro updates the session on every request, to bump its last access time. When a lastAccessTimeFlushIntervalMs is specified,
+ * updates which only change the last access time are kept in memory (latest one wins) and written in batches at that interval.
+ * Other updates, creations and deletions are always written synchronously. Because other nodes rely on the last access time
+ * in the database to expire the session, a touch is written synchronously if the session would otherwise expire before the next flush.
+ * Pending touches are flushed one last time by {@link #stop()}.
+ */
 public class JDBCSessionDao extends CachingSessionDAO {
 
     private static final Logger log = LoggerFactory.getLogger(JDBCSessionDao.class);
 
-    private JDBCSessionSqlDao jdbcSessionSqlDao;
+    private static final String FLUSHER_THREAD_NAME = "SessionLastAccessTimeFlusher";
+
+    private final JDBCSessionSqlDao jdbcSessionSqlDao;
+    private final Clock clock;
+    private final long lastAccessTimeFlushIntervalMs;
+    private final ScheduledExecutorService lastAccessTimeFlusher;
+
+    // Last state written to (or read from) the database, per session record id (only tracked when touches are batched)
+    private final ConcurrentMap<Long, SessionModelDao> persistedSessions = new ConcurrentHashMap<Long, SessionModelDao>();
+    // Last access time updates not yet written to the database, per session record id
+    private final ConcurrentMap<Long, SessionModelDao> pendingLastAccessTimeUpdates = new ConcurrentHashMap<Long, SessionModelDao>();
 
     @Inject
-    public JDBCSessionDao(final IDBI dbi) {
+    public JDBCSessionDao(final IDBI dbi, final Clock clock) {
+        this(dbi, clock, 0L);
+    }
+
+    public JDBCSessionDao(final IDBI dbi, final Clock clock, final long lastAccessTimeFlushIntervalMs) {
         if (dbi instanceof DBI) {
             // TODO PIERRE Move to DBIProvider, once it's in util
             ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(SessionModelDao.class));
         }
         this.jdbcSessionSqlDao = dbi.onDemand(JDBCSessionSqlDao.class);
+        this.clock = clock;
+        this.lastAccessTimeFlushIntervalMs = lastAccessTimeFlushIntervalMs;
+
+        if (lastAccessTimeFlushIntervalMs > 0) {
+            this.lastAccessTimeFlusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread th = new Thread(r, FLUSHER_THREAD_NAME);
+                    th.setDaemon(true);
+                    return th;
+                }
+            });
+            lastAccessTimeFlusher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushLastAccessTimeUpdates();
+                }
+            }, lastAccessTimeFlushIntervalMs, lastAccessTimeFlushIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.lastAccessTimeFlusher = null;
+        }
+    }
+
+    public void stop() {
+        if (lastAccessTimeFlusher == null) {
+            return;
+        }
+
+        flushLastAccessTimeUpdates();
+        lastAccessTimeFlusher.shutdown();
+        try {
+            if (!lastAccessTimeFlusher.awaitTermination(lastAccessTimeFlushIntervalMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting for the " + FLUSHER_THREAD_NAME + " thread to terminate");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     protected void doUpdate(final Session session) {
-        jdbcSessionSqlDao.update(new SessionModelDao(session));
+        final SessionModelDao sessionModelDao = new SessionModelDao(session);
+        if (lastAccessTimeFlusher != null && isLastAccessTimeUpdateOnly(sessionModelDao)) {
+            pendingLastAccessTimeUpdates.put(sessionModelDao.getRecordId(), sessionModelDao);
+            return;
+        }
+
+        pendingLastAccessTimeUpdates.remove(sessionModelDao.getRecordId());
+        jdbcSessionSqlDao.update(sessionModelDao);
+        trackPersistedSession(sessionModelDao.getRecordId(), sessionModelDao);
     }
 
     @Override
     protected void doDelete(final Session session) {
-        jdbcSessionSqlDao.delete(new SessionModelDao(session));
+        final SessionModelDao sessionModelDao = new SessionModelDao(session);
+        pendingLastAccessTimeUpdates.remove(sessionModelDao.getRecordId());
+        persistedSessions.remove(sessionModelDao.getRecordId());
+        jdbcSessionSqlDao.delete(sessionModelDao);
     }
 
     @Override
@@ -66,6 +151,7 @@ public class JDBCSessionDao extends CachingSessionDAO {
             }
         });
         assignSessionId(session, sessionId);
+        trackPersistedSession((Long) sessionId, new SessionModelDao(session));
         return sessionId;
     }
 
@@ -90,10 +176,79 @@ public class JDBCSessionDao extends CachingSessionDAO {
         }
 
         try {
-            return sessionModelDao.toSimpleSession();
+            final Session session = sessionModelDao.toSimpleSession();
+            trackPersistedSession(recordId, sessionModelDao);
+            return session;
         } catch (final IOException e) {
             log.warn("Corrupted cookie", e);
             return null;
         }
     }
+
+    @VisibleForTesting
+    void flushLastAccessTimeUpdates() {
+        final List<SessionModelDao> lastAccessTimeUpdates = new ArrayList<SessionModelDao>();
+        for (final Long recordId : pendingLastAccessTimeUpdates.keySet()) {
+            final SessionModelDao lastAccessTimeUpdate = pendingLastAccessTimeUpdates.remove(recordId);
+            if (lastAccessTimeUpdate != null) {
+                lastAccessTimeUpdates.add(lastAccessTimeUpdate);
+            }
+        }
+
+        if (!lastAccessTimeUpdates.isEmpty()) {
+            try {
+                jdbcSessionSqlDao.updateLastAccessTime(lastAccessTimeUpdates);
+            } catch (final RuntimeException e) {
+                log.warn("Unable to update the last access time of " + lastAccessTimeUpdates.size() + " sessions, will retry", e);
+                for (final SessionModelDao lastAccessTimeUpdate : lastAccessTimeUpdates) {
+                    // Don't override a more recent touch
+                    pendingLastAccessTimeUpdates.putIfAbsent(lastAccessTimeUpdate.getRecordId(), lastAccessTimeUpdate);
+                }
+                return;
+            }
+
+            for (final SessionModelDao lastAccessTimeUpdate : lastAccessTimeUpdates) {
+                final SessionModelDao persistedSession = persistedSessions.get(lastAccessTimeUpdate.getRecordId());
+                if (persistedSession != null && isSameSessionData(persistedSession, lastAccessTimeUpdate)) {
+                    // If this fails, the session has been written synchronously in the meantime
+                    persistedSessions.replace(lastAccessTimeUpdate.getRecordId(), persistedSession, lastAccessTimeUpdate);
+                }
+            }
+        }
+
+        // Forget about the sessions which have expired (Shiro will delete them, or another node already has)
+        final long now = clock.getUTCNow().getMillis();
+        final Iterator<Entry<Long, SessionModelDao>> iterator = persistedSessions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final SessionModelDao persistedSession = iterator.next().getValue();
+            if (persistedSession.getTimeout() >= 0 && persistedSession.getLastAccessTime().getMillis() + persistedSession.getTimeout() < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void trackPersistedSession(final Long recordId, final SessionModelDao sessionModelDao) {
+        // Only needed to detect touches, and only pruned by the flusher
+        if (lastAccessTimeFlusher != null) {
+            persistedSessions.put(recordId, sessionModelDao);
+        }
+    }
+
+    private boolean isLastAccessTimeUpdateOnly(final SessionModelDao sessionModelDao) {
+        final SessionModelDao persistedSession = persistedSessions.get(sessionModelDao.getRecordId());
+        if (persistedSession == null || !isSameSessionData(persistedSession, sessionModelDao)) {
+            return false;
+        }
+
+        // Other nodes would consider the session expired before the next flush
+        return persistedSession.getTimeout() < 0 ||
+               clock.getUTCNow().getMillis() + 2 * lastAccessTimeFlushIntervalMs < persistedSession.getLastAccessTime().getMillis() + persistedSession.getTimeout();
+    }
+
+    private boolean isSameSessionData(final SessionModelDao first, final SessionModelDao second) {
+        return first.getStartTimestamp().isEqual(second.getStartTimestamp()) &&
+               first.getTimeout() == second.getTimeout() &&
+               (first.getHost() != null ? first.getHost().equals(second.getHost()) : second.getHost() == null) &&
+               Arrays.equals(first.getSessionData(), second.getSessionData());
+    }
 }
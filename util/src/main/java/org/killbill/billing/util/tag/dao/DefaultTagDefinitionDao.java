@@ -16,11 +16,13 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
@@ -46,8 +48,8 @@ import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.TagDefinition;
 import org.killbill.billing.util.tag.api.user.TagEventBuilder;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterators;
 import com.google.inject.Inject;
 
@@ -55,8 +57,17 @@ public class DefaultTagDefinitionDao extends EntityDaoBase<TagDefinitionModelDao
 
     private static final Logger log = LoggerFactory.getLogger(DefaultTagDefinitionDao.class);
 
+    // Tag definitions rarely change: deletions on this node invalidate the cache right away, other nodes see them after the TTL
+    private static final int MAX_CACHED_TAG_DEFINITIONS = 10000;
+    private static final long CACHED_TAG_DEFINITIONS_TTL_SEC = 60;
+
     private final TagEventBuilder tagEventBuilder;
     private final PersistentBus bus;
+    // Mapping (tenantRecordId, tag definition id) -> user tag definition (control tags are never looked up in the database)
+    private final Cache<List<Object>, TagDefinitionModelDao> tagDefinitionsCache = CacheBuilder.newBuilder()
+                                                                                               .maximumSize(MAX_CACHED_TAG_DEFINITIONS)
+                                                                                               .expireAfterWrite(CACHED_TAG_DEFINITIONS_TTL_SEC, TimeUnit.SECONDS)
+                                                                                               .build();
 
     @Inject
     public DefaultTagDefinitionDao(final IDBI dbi, final TagEventBuilder tagEventBuilder, final PersistentBus bus, final Clock clock,
@@ -103,45 +114,60 @@ public class DefaultTagDefinitionDao extends EntityDaoBase<TagDefinitionModelDao
 
     @Override
     public TagDefinitionModelDao getById(final UUID definitionId, final InternalTenantContext context) {
-        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<TagDefinitionModelDao>() {
+        final ControlTagType controlTag = getControlTagType(definitionId);
+        if (controlTag != null) {
+            return new TagDefinitionModelDao(controlTag);
+        }
+
+        final TagDefinitionModelDao cachedTagDefinition = tagDefinitionsCache.getIfPresent(getCacheKey(definitionId, context));
+        if (cachedTagDefinition != null) {
+            return cachedTagDefinition;
+        }
+
+        final TagDefinitionModelDao tagDefinition = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<TagDefinitionModelDao>() {
             @Override
             public TagDefinitionModelDao inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                for (final ControlTagType controlTag : ControlTagType.values()) {
-                    if (controlTag.getId().equals(definitionId)) {
-                        return new TagDefinitionModelDao(controlTag);
-                    }
-                }
                 return entitySqlDaoWrapperFactory.become(TagDefinitionSqlDao.class).getById(definitionId.toString(), context);
             }
         });
+        if (tagDefinition != null) {
+            tagDefinitionsCache.put(getCacheKey(definitionId, context), tagDefinition);
+        }
+        return tagDefinition;
     }
 
     @Override
     public List<TagDefinitionModelDao> getByIds(final Collection<UUID> definitionIds, final InternalTenantContext context) {
-        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<TagDefinitionModelDao>>() {
-            @Override
-            public List<TagDefinitionModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final List<TagDefinitionModelDao> result = new LinkedList<TagDefinitionModelDao>();
-                for (final UUID cur : definitionIds) {
-                    for (final ControlTagType controlTag : ControlTagType.values()) {
-                        if (controlTag.getId().equals(cur)) {
-                            result.add(new TagDefinitionModelDao(controlTag));
-                            break;
-                        }
-                    }
-                }
-                if (definitionIds.size() > 0) {
-                    result.addAll(entitySqlDaoWrapperFactory.become(TagDefinitionSqlDao.class).getByIds(Collections2.transform(definitionIds, new Function<UUID, String>() {
-                        @Override
-                        public String apply(final UUID input) {
-                            return input.toString();
-                        }
-
-                    }), context));
+        final List<TagDefinitionModelDao> result = new LinkedList<TagDefinitionModelDao>();
+        final List<String> definitionIdsToLookup = new LinkedList<String>();
+        for (final UUID cur : definitionIds) {
+            final ControlTagType controlTag = getControlTagType(cur);
+            if (controlTag != null) {
+                result.add(new TagDefinitionModelDao(controlTag));
+                continue;
+            }
+
+            final TagDefinitionModelDao cachedTagDefinition = tagDefinitionsCache.getIfPresent(getCacheKey(cur, context));
+            if (cachedTagDefinition != null) {
+                result.add(cachedTagDefinition);
+            } else {
+                definitionIdsToLookup.add(cur.toString());
+            }
+        }
+
+        if (!definitionIdsToLookup.isEmpty()) {
+            final List<TagDefinitionModelDao> tagDefinitions = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<TagDefinitionModelDao>>() {
+                @Override
+                public List<TagDefinitionModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    return entitySqlDaoWrapperFactory.become(TagDefinitionSqlDao.class).getByIds(definitionIdsToLookup, context);
                 }
-                return result;
+            });
+            for (final TagDefinitionModelDao tagDefinition : tagDefinitions) {
+                tagDefinitionsCache.put(getCacheKey(tagDefinition.getId(), context), tagDefinition);
             }
-        });
+            result.addAll(tagDefinitions);
+        }
+        return result;
     }
 
     @Override
@@ -222,6 +248,7 @@ public class DefaultTagDefinitionDao extends EntityDaoBase<TagDefinitionModelDao
                     return null;
                 }
             });
+            tagDefinitionsCache.invalidate(getCacheKey(definitionId, context));
         } catch (final TransactionFailedException exception) {
             if (exception.getCause() instanceof TagDefinitionApiException) {
                 throw (TagDefinitionApiException) exception.getCause();
@@ -264,6 +291,19 @@ public class DefaultTagDefinitionDao extends EntityDaoBase<TagDefinitionModelDao
         }
     }
 
+    private ControlTagType getControlTagType(final UUID definitionId) {
+        for (final ControlTagType controlTag : ControlTagType.values()) {
+            if (controlTag.getId().equals(definitionId)) {
+                return controlTag;
+            }
+        }
+        return null;
+    }
+
+    private List<Object> getCacheKey(final UUID definitionId, final InternalTenantContext context) {
+        return Arrays.<Object>asList(context.getTenantRecordId(), definitionId);
+    }
+
     @Override
     protected TagDefinitionApiException generateAlreadyExistsException(final TagDefinitionModelDao entity, final InternalCallContext context) {
         return new TagDefinitionApiException(ErrorCode.TAG_DEFINITION_ALREADY_EXISTS, entity.getId());
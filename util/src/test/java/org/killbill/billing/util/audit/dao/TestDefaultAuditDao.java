@@ -34,10 +34,16 @@ import org.killbill.billing.util.audit.AccountAuditLogsForObjectType;
 import org.killbill.billing.util.audit.AuditLog;
 import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
 import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+
+import com.google.common.collect.ImmutableList;
 
 public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
 
@@ -91,6 +97,32 @@ public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(secondAuditLogs.get(1).getChangeType(), ChangeType.DELETE);
     }
 
+    @Test(groups = "slow")
+    public void testRetrieveAuditsForBatchCreate() throws Exception {
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        final TagDefinitionModelDao tagDefinition = tagDefinitionDao.create(UUID.randomUUID().toString().substring(0, 5),
+                                                                            UUID.randomUUID().toString().substring(0, 5),
+                                                                            internalCallContext);
+        assertListenerStatus();
+
+        final List<TagModelDao> tags = ImmutableList.<TagModelDao>of(new TagModelDao(new DescriptiveTag(tagDefinition.getId(), ObjectType.ACCOUNT, UUID.randomUUID(), clock.getUTCNow())),
+                                                                     new TagModelDao(new DescriptiveTag(tagDefinition.getId(), ObjectType.ACCOUNT, UUID.randomUUID(), clock.getUTCNow())),
+                                                                     new TagModelDao(new DescriptiveTag(tagDefinition.getId(), ObjectType.ACCOUNT, UUID.randomUUID(), clock.getUTCNow())));
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao);
+        transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                entitySqlDaoWrapperFactory.become(TagSqlDao.class).batchCreate(tags, internalCallContext);
+                return null;
+            }
+        });
+
+        for (final TagModelDao createdTag : tags) {
+            final List<AuditLog> auditLogs = auditDao.getAuditLogsForId(TableName.TAG, createdTag.getId(), AuditLevel.FULL, internalCallContext);
+            verifyAuditLogsForTag(auditLogs, AuditLevel.FULL);
+        }
+    }
+
     private void addTag() throws TagDefinitionApiException, TagApiException {
         // Create a tag definition
         eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
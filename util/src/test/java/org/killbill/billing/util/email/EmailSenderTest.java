@@ -20,12 +20,17 @@ package org.killbill.billing.util.email;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 
 import org.killbill.billing.util.UtilTestSuiteNoDB;
 import org.skife.config.ConfigurationObjectFactory;
+import org.skife.config.SimplePropertyConfigSource;
+import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+
 @Test(groups = "slow")
 public class EmailSenderTest extends UtilTestSuiteNoDB {
 
@@ -46,4 +51,27 @@ public class EmailSenderTest extends UtilTestSuiteNoDB {
         final EmailSender sender = new DefaultEmailSender(config);
         sender.sendHTMLEmail(recipients, null, "Test message", html);
     }
+
+    @Test(groups = "slow")
+    public void testSmtpConnectionsAreReused() throws Exception {
+        final SmtpServerStub smtpServer = new SmtpServerStub();
+        try {
+            final Properties properties = new Properties();
+            properties.setProperty("org.killbill.mail.smtp.host", "127.0.0.1");
+            properties.setProperty("org.killbill.mail.smtp.port", String.valueOf(smtpServer.getPort()));
+            properties.setProperty("org.killbill.mail.smtp.connectionPoolSize", "1");
+            final EmailConfig stubConfig = new ConfigurationObjectFactory(new SimplePropertyConfigSource(properties)).build(EmailConfig.class);
+
+            final EmailSender sender = new DefaultEmailSender(stubConfig);
+            for (int i = 0; i < 3; i++) {
+                sender.sendHTMLEmail(ImmutableList.<String>of("john@example.com"), null, "Invoice " + i, "<html><body><h1>Invoice " + i + "</h1></body></html>");
+            }
+
+            Assert.assertEquals(smtpServer.getMessages().size(), 3);
+            // All emails went through the same connection
+            Assert.assertEquals(smtpServer.getNbConnections(), 1);
+        } finally {
+            smtpServer.stop();
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.email;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-process MTA, which accepts all messages (just enough of the SMTP protocol for javax.mail)
+public class SmtpServerStub {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger nbConnections = new AtomicInteger();
+    private final List<String> messages = new CopyOnWriteArrayList<String>();
+
+    public SmtpServerStub() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getNbConnections() {
+        return nbConnections.get();
+    }
+
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (final IOException e) {
+                return;
+            }
+
+            nbConnections.incrementAndGet();
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    handleConnection(socket);
+                }
+            });
+        }
+    }
+
+    private void handleConnection(final Socket socket) {
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            final Writer writer = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+            reply(writer, "220 localhost SMTP stub");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String command = line.toUpperCase();
+                if (command.startsWith("DATA")) {
+                    reply(writer, "354 End data with <CR><LF>.<CR><LF>");
+                    final StringBuilder message = new StringBuilder();
+                    while ((line = reader.readLine()) != null && !".".equals(line)) {
+                        message.append(line).append('\n');
+                    }
+                    messages.add(message.toString());
+                    reply(writer, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(writer, "221 Bye");
+                    break;
+                } else {
+                    // EHLO, MAIL FROM, RCPT TO, NOOP, RSET
+                    reply(writer, "250 OK");
+                }
+            }
+        } catch (final IOException ignored) {
+        } finally {
+            try {
+                socket.close();
+            } catch (final IOException ignored) {
+            }
+        }
+    }
+
+    private void reply(final Writer writer, final String response) throws IOException {
+        writer.write(response + "\r\n");
+        writer.flush();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.email.templates;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.samskivert.mustache.Template;
+
+public class TestMustacheTemplateEngine extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testCompiledTemplatesAreCachedPerTemplateText() throws Exception {
+        final MustacheTemplateEngine templateEngine = new MustacheTemplateEngine();
+
+        final Map<String, Object> data = ImmutableMap.<String, Object>of("name", "Kill Bill");
+        Assert.assertEquals(templateEngine.executeTemplateText("Hello {{name}}", data), "Hello Kill Bill");
+        Assert.assertEquals(templateEngine.executeTemplateText("Hello {{name}}", ImmutableMap.<String, Object>of("name", "tenant")), "Hello tenant");
+
+        final Template template = templateEngine.getCompiledTemplate("Hello {{name}}");
+        Assert.assertSame(templateEngine.getCompiledTemplate("Hello {{name}}"), template);
+
+        // A modified template is compiled again
+        Assert.assertNotSame(templateEngine.getCompiledTemplate("Bonjour {{name}}"), template);
+        Assert.assertEquals(templateEngine.executeTemplateText("Bonjour {{name}}", data), "Bonjour Kill Bill");
+    }
+
+    @Test(groups = "fast")
+    public void testConcurrentCallersShareTheCompiledTemplate() throws Exception {
+        final MustacheTemplateEngine templateEngine = new MustacheTemplateEngine();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Template>> futures = new ArrayList<Future<Template>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Template>() {
+                    @Override
+                    public Template call() throws Exception {
+                        return templateEngine.getCompiledTemplate("Hello {{name}}");
+                    }
+                }));
+            }
+
+            final Template template = futures.get(0).get();
+            for (final Future<Template> future : futures) {
+                Assert.assertSame(future.get(), template);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.api.TagApiException;
+import org.killbill.billing.util.entity.DefaultPagination;
+import org.killbill.billing.util.entity.Pagination;
+import org.killbill.billing.util.entity.dao.DefaultPaginationHelper.EntityPaginationBuilder;
+import org.killbill.billing.util.tag.DefaultTagDefinition;
+import org.killbill.billing.util.tag.TagDefinition;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class TestDefaultPaginationHelper extends UtilTestSuiteNoDB {
+
+    private static final String SLOW_PLUGIN = "slow";
+    private static final String FAILING_PLUGIN = "failing";
+
+    private final Map<String, List<TagDefinition>> recordsPerPlugin = ImmutableMap.<String, List<TagDefinition>>of("A", createTagDefinitions("A", 5),
+                                                                                                                   "B", createTagDefinitions("B", 3));
+
+    private ExecutorService executor;
+
+    @BeforeClass(groups = "fast")
+    public void setUpExecutor() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterClass(groups = "fast")
+    public void tearDownExecutor() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test(groups = "fast", description = "Test Util: concurrent plugins search returns the same results as the sequential one")
+    public void testConcurrentSearchMatchesSequentialSearch() throws Exception {
+        final Iterable<String> plugins = ImmutableList.<String>of("A", "B");
+        for (long offset = 0; offset < 10; offset++) {
+            for (long limit = 1; limit < 10; limit++) {
+                final Pagination<TagDefinition> sequentialResults = DefaultPaginationHelper.getEntityPaginationFromPlugins(plugins, offset, limit, new TagDefinitionPaginationBuilder());
+                final Pagination<TagDefinition> concurrentResults = DefaultPaginationHelper.getEntityPaginationFromPlugins(plugins, offset, limit, executor, 10, TimeUnit.SECONDS, new TagDefinitionPaginationBuilder());
+                Assert.assertEquals(ImmutableList.<TagDefinition>copyOf(concurrentResults), ImmutableList.<TagDefinition>copyOf(sequentialResults), "offset=" + offset + ", limit=" + limit);
+            }
+        }
+    }
+
+    @Test(groups = "fast", description = "Test Util: slow and failing plugins are skipped during concurrent plugins search")
+    public void testConcurrentSearchWithPartialResults() throws Exception {
+        final Iterable<String> plugins = ImmutableList.<String>of("A", SLOW_PLUGIN, FAILING_PLUGIN, "B");
+
+        final long startTime = System.currentTimeMillis();
+        final Pagination<TagDefinition> results = DefaultPaginationHelper.getEntityPaginationFromPlugins(plugins, 0L, 100L, executor, 500, TimeUnit.MILLISECONDS, new TagDefinitionPaginationBuilder());
+        Assert.assertTrue(System.currentTimeMillis() - startTime < 10000);
+
+        final List<TagDefinition> expectedResults = ImmutableList.<TagDefinition>builder()
+                                                                 .addAll(recordsPerPlugin.get("A"))
+                                                                 .addAll(recordsPerPlugin.get("B"))
+                                                                 .build();
+        Assert.assertEquals(ImmutableList.<TagDefinition>copyOf(results), expectedResults);
+        Assert.assertEquals(results.getMaxNbRecords(), (Long) 8L);
+    }
+
+    private List<TagDefinition> createTagDefinitions(final String pluginName, final int nbRecords) {
+        final ImmutableList.Builder<TagDefinition> tagDefinitions = ImmutableList.<TagDefinition>builder();
+        for (int i = 0; i < nbRecords; i++) {
+            tagDefinitions.add(new DefaultTagDefinition(pluginName + i, pluginName, false));
+        }
+        return tagDefinitions.build();
+    }
+
+    private final class TagDefinitionPaginationBuilder extends EntityPaginationBuilder<TagDefinition, TagApiException> {
+
+        @Override
+        public Pagination<TagDefinition> build(final Long offset, final Long limit, final String pluginName) throws TagApiException {
+            if (SLOW_PLUGIN.equals(pluginName)) {
+                try {
+                    Thread.sleep(30000);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return DefaultPagination.<TagDefinition>build(offset, limit, ImmutableList.<TagDefinition>of());
+            } else if (FAILING_PLUGIN.equals(pluginName)) {
+                throw new TagApiException(ErrorCode.TAG_DEFINITION_DOES_NOT_EXIST, pluginName);
+            }
+            return DefaultPagination.<TagDefinition>build(offset, limit, recordsPerPlugin.get(pluginName));
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.killbill.billing.util.UtilTestSuiteNoDB;
 import org.killbill.billing.util.glue.KillBillShiroAopModule;
 import org.killbill.billing.util.glue.KillBillShiroModule;
 import org.killbill.billing.util.glue.SecurityModule;
+import org.killbill.clock.Clock;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -81,6 +82,7 @@ public class TestPermissionAnnotationMethodInterceptor extends UtilTestSuiteNoDB
                                                            @Override
                                                            protected void configure() {
                                                                bind(IDBI.class).toInstance(Mockito.mock(IDBI.class));
+                                                               bind(Clock.class).toInstance(clock);
                                                            }
                                                        });
         final AopTester aopedTester = injector.getInstance(AopTester.class);
@@ -109,6 +111,7 @@ public class TestPermissionAnnotationMethodInterceptor extends UtilTestSuiteNoDB
                                                            @Override
                                                            public void configure() {
                                                                bind(IDBI.class).toInstance(Mockito.mock(IDBI.class));
+                                                               bind(Clock.class).toInstance(clock);
                                                                bind(IAopTester.class).to(AopTesterImpl.class).asEagerSingleton();
                                                            }
                                                        });
@@ -19,6 +19,7 @@ package org.killbill.billing.util.security.shiro.dao;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.mgt.SimpleSession;
@@ -30,7 +31,7 @@ public class TestJDBCSessionDao extends UtilTestSuiteWithEmbeddedDB {
 
     @Test(groups = "slow")
     public void testH2AndInvalidSessionId() {
-        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi);
+        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi, clock);
 
         // We need to create some data to force H2 to build the query
         // (otherwise, the read path is optimized and the bug is not triggered)
@@ -44,7 +45,7 @@ public class TestJDBCSessionDao extends UtilTestSuiteWithEmbeddedDB {
     @Test(groups = "slow")
     public void testCRUD() throws Exception {
         // Note! We are testing the do* methods here to bypass the caching layer
-        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi);
+        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi, clock);
 
         // Retrieve
         final SimpleSession session = createSession();
@@ -67,10 +68,75 @@ public class TestJDBCSessionDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertNull(jdbcSessionDao.doReadSession(session.getId()));
     }
 
+    @Test(groups = "slow")
+    public void testLastAccessTimeUpdatesAreBatched() throws Exception {
+        // Large enough interval for the flusher not to kick in during the test
+        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi, clock, TimeUnit.MINUTES.toMillis(1));
+
+        final SimpleSession session = createSession();
+        final Serializable sessionId = jdbcSessionDao.doCreate(session);
+        final Date initialLastAccessTime = jdbcSessionDao.doReadSession(sessionId).getLastAccessTime();
+
+        // Touch: not written until the next flush
+        session.setLastAccessTime(new Date(initialLastAccessTime.getTime() + 1000));
+        jdbcSessionDao.doUpdate(session);
+        Assert.assertEquals(jdbcSessionDao.doReadSession(sessionId).getLastAccessTime(), initialLastAccessTime);
+
+        jdbcSessionDao.flushLastAccessTimeUpdates();
+        Assert.assertEquals(jdbcSessionDao.doReadSession(sessionId).getLastAccessTime(), session.getLastAccessTime());
+
+        // Attribute change: written right away
+        final String newHost = UUID.randomUUID().toString();
+        session.setHost(newHost);
+        session.setLastAccessTime(new Date(initialLastAccessTime.getTime() + 2000));
+        jdbcSessionDao.doUpdate(session);
+        Assert.assertEquals(jdbcSessionDao.doReadSession(sessionId), session);
+
+        // Deletion: written right away, a pending touch is discarded
+        session.setLastAccessTime(new Date(initialLastAccessTime.getTime() + 3000));
+        jdbcSessionDao.doUpdate(session);
+        jdbcSessionDao.doDelete(session);
+        jdbcSessionDao.flushLastAccessTimeUpdates();
+        Assert.assertNull(jdbcSessionDao.doReadSession(sessionId));
+    }
+
+    @Test(groups = "slow")
+    public void testPendingLastAccessTimeUpdatesAreFlushedOnStop() throws Exception {
+        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi, clock, TimeUnit.MINUTES.toMillis(1));
+
+        final SimpleSession session = createSession();
+        final Serializable sessionId = jdbcSessionDao.doCreate(session);
+        final Date initialLastAccessTime = jdbcSessionDao.doReadSession(sessionId).getLastAccessTime();
+
+        session.setLastAccessTime(new Date(initialLastAccessTime.getTime() + 1000));
+        jdbcSessionDao.doUpdate(session);
+        Assert.assertEquals(jdbcSessionDao.doReadSession(sessionId).getLastAccessTime(), initialLastAccessTime);
+
+        jdbcSessionDao.stop();
+        Assert.assertEquals(jdbcSessionDao.doReadSession(sessionId).getLastAccessTime(), session.getLastAccessTime());
+    }
+
+    @Test(groups = "slow")
+    public void testSessionsAreWrittenRightAwayWithoutFlusher() throws Exception {
+        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi, clock);
+
+        final SimpleSession session = createSession();
+        final Serializable sessionId = jdbcSessionDao.doCreate(session);
+        final Date initialLastAccessTime = jdbcSessionDao.doReadSession(sessionId).getLastAccessTime();
+
+        // Touch: nothing to batch it, written right away
+        session.setLastAccessTime(new Date(initialLastAccessTime.getTime() + 1000));
+        jdbcSessionDao.doUpdate(session);
+        Assert.assertEquals(jdbcSessionDao.doReadSession(sessionId).getLastAccessTime(), session.getLastAccessTime());
+
+        // No-op
+        jdbcSessionDao.stop();
+    }
+
     private SimpleSession createSession() {
         final SimpleSession simpleSession = new SimpleSession();
-        simpleSession.setStartTimestamp(new Date(System.currentTimeMillis() - 5000));
-        simpleSession.setLastAccessTime(new Date(System.currentTimeMillis()));
+        simpleSession.setStartTimestamp(new Date(clock.getUTCNow().getMillis() - 5000));
+        simpleSession.setLastAccessTime(new Date(clock.getUTCNow().getMillis()));
         simpleSession.setTimeout(493934L);
         simpleSession.setHost(UUID.randomUUID().toString());
         simpleSession.setAttribute(UUID.randomUUID().toString(), Short.MIN_VALUE);
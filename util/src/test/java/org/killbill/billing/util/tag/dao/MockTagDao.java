@@ -93,7 +93,12 @@ public class MockTagDao extends MockEntityDaoBase<TagModelDao, Tag, TagApiExcept
 
     @Override
     public List<TagModelDao> getTagsForAccount(final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
-        throw new UnsupportedOperationException();
+        // The store isn't partitioned per account
+        final List<TagModelDao> allTags = new ArrayList<TagModelDao>();
+        for (final List<TagModelDao> tags : tagStore.values()) {
+            allTags.addAll(tags);
+        }
+        return allTags;
     }
 
     public void clear() {
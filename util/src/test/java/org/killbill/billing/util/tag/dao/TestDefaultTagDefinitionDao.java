@@ -30,7 +30,9 @@ import org.killbill.billing.api.TestApiListener.NextEvent;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
 import org.killbill.billing.events.BusInternalEvent;
 import org.killbill.billing.events.TagDefinitionInternalEvent;
+import org.killbill.billing.util.tag.ControlTagType;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.Subscribe;
 
 public class TestDefaultTagDefinitionDao extends UtilTestSuiteWithEmbeddedDB {
@@ -80,6 +82,36 @@ public class TestDefaultTagDefinitionDao extends UtilTestSuiteWithEmbeddedDB {
         */
     }
 
+    @Test(groups = "slow")
+    public void testCachedTagDefinitionsAreInvalidatedOnDelete() throws Exception {
+        final String definitionName = UUID.randomUUID().toString().substring(0, 5);
+        final String description = UUID.randomUUID().toString().substring(0, 5);
+
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        final TagDefinitionModelDao createdTagDefinition = tagDefinitionDao.create(definitionName, description, internalCallContext);
+        assertListenerStatus();
+
+        // Look it up twice, the second lookups are served from the cache
+        final List<UUID> definitionIds = ImmutableList.<UUID>of(createdTagDefinition.getId(), ControlTagType.AUTO_PAY_OFF.getId());
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(tagDefinitionDao.getById(createdTagDefinition.getId(), internalCallContext), createdTagDefinition);
+
+            final List<TagDefinitionModelDao> tagDefinitions = tagDefinitionDao.getByIds(definitionIds, internalCallContext);
+            Assert.assertEquals(tagDefinitions.size(), 2);
+            Assert.assertTrue(tagDefinitions.contains(createdTagDefinition));
+        }
+
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        tagDefinitionDao.deleteById(createdTagDefinition.getId(), internalCallContext);
+        assertListenerStatus();
+
+        // Make sure the deleted tag definition isn't returned anymore
+        Assert.assertNull(tagDefinitionDao.getById(createdTagDefinition.getId(), internalCallContext));
+        final List<TagDefinitionModelDao> tagDefinitions = tagDefinitionDao.getByIds(definitionIds, internalCallContext);
+        Assert.assertEquals(tagDefinitions.size(), 1);
+        Assert.assertEquals(tagDefinitions.get(0).getId(), ControlTagType.AUTO_PAY_OFF.getId());
+    }
+
     private static final class EventsListener {
 
         private final List<BusInternalEvent> events = new ArrayList<BusInternalEvent>();